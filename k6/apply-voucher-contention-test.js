@@ -0,0 +1,58 @@
+import http from "k6/http";
+import { check } from "k6";
+import { Counter } from "k6/metrics";
+
+// Hammers a single coupon to compare apply modes under contention.
+// Run the service once per mode and compare http_req_duration and the counters:
+//   ./mvnw spring-boot:run -Dspring-boot.run.arguments=--coupon.apply.mode=LOCK
+//   ./mvnw spring-boot:run -Dspring-boot.run.arguments=--coupon.apply.mode=CONDITIONAL
+//   k6 run -e COUPON_CODE=COUP838 k6/apply-voucher-contention-test.js
+
+const applied = new Counter("coupon_applied");
+const rejected = new Counter("coupon_rejected");
+const conflicted = new Counter("coupon_lock_conflict");
+
+export let options = {
+  scenarios: {
+    contention: {
+      executor: "constant-arrival-rate",
+      rate: 500,
+      timeUnit: "1s",
+      duration: "30s",
+      preAllocatedVUs: 200,
+      maxVUs: 1000,
+    },
+  },
+  thresholds: {
+    http_req_duration: ["p(95)<500"],
+  },
+};
+
+export default function () {
+  const url = "http://localhost:8080/api/v1/coupons/apply";
+
+  const payload = JSON.stringify({
+    orderAmount: 200000,
+    couponCode: __ENV.COUPON_CODE || "COUP838",
+  });
+
+  const params = {
+    headers: {
+      "Content-Type": "application/json",
+    },
+  };
+
+  const response = http.post(url, payload, params);
+
+  if (response.status === 200) {
+    applied.add(1);
+  } else if (response.status === 409) {
+    conflicted.add(1);
+  } else if (response.status === 400) {
+    rejected.add(1);
+  }
+
+  check(response, {
+    "status is 200 or 400": (r) => r.status === 200 || r.status === 400,
+  });
+}
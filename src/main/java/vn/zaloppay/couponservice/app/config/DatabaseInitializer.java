@@ -12,12 +12,28 @@ import org.springframework.stereotype.Component;
 import java.io.BufferedReader;
 import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 @Slf4j
 @Component
 public class DatabaseInitializer implements ApplicationRunner {
 
+    // CREATE [UNIQUE] INDEX IF NOT EXISTS <name> ON <table>(<columns>)
+    private static final Pattern CREATE_INDEX = Pattern.compile(
+            "CREATE\\s+(UNIQUE\\s+)?INDEX\\s+IF\\s+NOT\\s+EXISTS\\s+(\\w+)\\s+ON\\s+(\\w+)\\s*\\((.+)\\)",
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+
+    // Indexes of the coupons table named with this prefix are only created by the schema script
+    private static final String MANAGED_INDEX_PREFIX = "idx_coupons_";
+
     private final JdbcTemplate jdbcTemplate;
 
     @Autowired
@@ -35,7 +51,9 @@ public class DatabaseInitializer implements ApplicationRunner {
                 executeSchemaScript();
                 log.info("Database schema created successfully!");
             } else {
-                log.info("Coupons table already exists.");
+                // Every statement of the script is idempotent, so it also upgrades existing schemas
+                log.info("Coupons table already exists, applying schema upgrades...");
+                executeSchemaScript();
             }
         } catch (Exception e) {
             log.error("Failed to initialize database schema", e);
@@ -70,14 +88,76 @@ public class DatabaseInitializer implements ApplicationRunner {
             
             // Split by semicolon and execute each statement
             String[] statements = script.split(";");
+            Set<String> declaredIndexes = new HashSet<>();
             
             for (String statement : statements) {
-                String trimmedStatement = statement.trim();
+                String trimmedStatement = stripComments(statement);
                 if (!trimmedStatement.isEmpty()) {
+                    Matcher createIndex = CREATE_INDEX.matcher(trimmedStatement);
+                    if (createIndex.matches()) {
+                        declaredIndexes.add(createIndex.group(2).toLowerCase(Locale.ROOT));
+                        dropIndexIfChanged(createIndex);
+                    }
+
                     log.debug("Executing SQL: {}", trimmedStatement);
                     jdbcTemplate.execute(trimmedStatement);
                 }
             }
+
+            dropUndeclaredIndexes(declaredIndexes);
+        }
+    }
+
+    private static String stripComments(String statement) {
+        return statement.lines()
+                .filter(line -> !line.trim().startsWith("--"))
+                .collect(Collectors.joining("\n"))
+                .trim();
+    }
+
+    /**
+     * IF NOT EXISTS keeps an index whose declaration changed as it is, so it is dropped first to be created again
+     */
+    private void dropIndexIfChanged(Matcher createIndex) {
+        boolean unique = createIndex.group(1) != null;
+        String indexName = createIndex.group(2);
+        String tableName = createIndex.group(3);
+        List<String> columns = Arrays.stream(createIndex.group(4).split(","))
+                .map(column -> column.trim().split("[\\s(]")[0].toLowerCase(Locale.ROOT))
+                .toList();
+
+        List<Map<String, Object>> existing = jdbcTemplate.queryForList(
+                "SELECT column_name, non_unique FROM information_schema.statistics " +
+                        "WHERE table_schema = DATABASE() AND table_name = ? AND index_name = ? " +
+                        "ORDER BY seq_in_index",
+                tableName, indexName);
+        if (existing.isEmpty()) {
+            return;
+        }
+
+        List<String> existingColumns = existing.stream()
+                .map(row -> String.valueOf(row.get("column_name")).toLowerCase(Locale.ROOT))
+                .toList();
+        boolean existingUnique = ((Number) existing.get(0).get("non_unique")).intValue() == 0;
+        if (existingColumns.equals(columns) && existingUnique == unique) {
+            return;
+        }
+
+        log.info("Index {} on {} changed from {} to {}, rebuilding it", indexName, tableName, existingColumns, columns);
+        jdbcTemplate.execute("DROP INDEX " + indexName + " ON " + tableName);
+    }
+
+    private void dropUndeclaredIndexes(Set<String> declaredIndexes) {
+        List<String> indexNames = jdbcTemplate.queryForList(
+                "SELECT DISTINCT index_name FROM information_schema.statistics " +
+                        "WHERE table_schema = DATABASE() AND table_name = 'coupons' AND index_name LIKE ?",
+                String.class, MANAGED_INDEX_PREFIX.replace("_", "\\_") + "%");
+
+        for (String indexName : indexNames) {
+            if (!declaredIndexes.contains(indexName.toLowerCase(Locale.ROOT))) {
+                log.info("Index {} is no longer declared, dropping it", indexName);
+                jdbcTemplate.execute("DROP INDEX " + indexName + " ON coupons");
+            }
         }
     }
 } 
\ No newline at end of file
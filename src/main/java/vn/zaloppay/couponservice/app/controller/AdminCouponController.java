@@ -5,6 +5,7 @@ import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.Size;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Window;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
@@ -18,6 +19,7 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 import vn.zaloppay.couponservice.domain.model.Coupon;
+import vn.zaloppay.couponservice.domain.model.PagingMode;
 import vn.zaloppay.couponservice.domain.usecase.IUseCaseExecutor;
 import vn.zaloppay.couponservice.domain.usecase.coupon.CreateCouponUseCase;
 import vn.zaloppay.couponservice.domain.usecase.coupon.GetAllCouponUseCase;
@@ -30,6 +32,7 @@ import vn.zaloppay.couponservice.app.model.response.ApiResponse;
 import vn.zaloppay.couponservice.app.model.response.CouponResponse;
 import vn.zaloppay.couponservice.app.model.response.DeleteCouponResponse;
 import vn.zaloppay.couponservice.app.model.response.GetAllCouponsResponse;
+import vn.zaloppay.couponservice.app.model.response.GetAllCouponsWindowResponse;
 
 @RestController
 @RequestMapping("/api/v1/admin/coupons")
@@ -48,7 +51,8 @@ public class AdminCouponController {
 
     @GetMapping()
     public ResponseEntity<ApiResponse> getAllCoupons(@Valid @ModelAttribute GetAllCouponsRequest request) {
-        GetAllCouponsResponse response = useCaseExecutor.execute(
+        // Offset pages keep their totals, cursor and slice windows have their own shape
+        Object response = useCaseExecutor.execute(
                 getAllCouponUseCase,
                 new GetAllCouponUseCase.InputValues(
                         request.getDiscountType(),
@@ -56,10 +60,29 @@ public class AdminCouponController {
                         request.getPage(),
                         request.getSize(),
                         request.getSortBy(),
-                        request.getSortDirection()
+                        request.getSortDirection(),
+                        request.getPaging(),
+                        request.getCursor(),
+                        request.isWithTotals()
                 ),
                 outputValues -> {
                     Page<Coupon> couponPage = outputValues.getCoupons();
+                    if (couponPage == null) {
+                        Window<Coupon> couponWindow = outputValues.getCouponWindow();
+                        Long totalElements = outputValues.getTotalElements();
+                        boolean slice = request.getPaging() == PagingMode.SLICE;
+                        return GetAllCouponsWindowResponse.builder()
+                                .content(CouponResponse.from(couponWindow.getContent()))
+                                .currentPage(slice ? request.getPage() : null)
+                                .totalPages(totalElements == null ? null : (int) ((totalElements + request.getSize() - 1) / request.getSize()))
+                                .totalElements(totalElements)
+                                .pageSize(request.getSize())
+                                .hasNext(couponWindow.hasNext())
+                                .hasPrevious(slice ? request.getPage() > 0 : request.getCursor() != null)
+                                .nextCursor(outputValues.getNextCursor())
+                                .build();
+                    }
+
                     return GetAllCouponsResponse.builder()
                             .content(CouponResponse.from(couponPage.getContent()))
                             .currentPage(couponPage.getNumber())
@@ -89,8 +112,8 @@ public class AdminCouponController {
                         createCouponRequest.getMaxDiscountAmount(),
                         createCouponRequest.getStartTime(),
                         createCouponRequest.getEndTime(),
-                        createCouponRequest.getRemainingUsage()
-
+                        createCouponRequest.getRemainingUsage(),
+                        createCouponRequest.getDiscountRules()
                 ),
                 outputValues -> CouponResponse.from(outputValues.getCoupon()));
 
@@ -117,7 +140,8 @@ public class AdminCouponController {
                         updateCouponRequest.getMinOrderValue(),
                         updateCouponRequest.getStartTime(),
                         updateCouponRequest.getEndTime(),
-                        updateCouponRequest.getRemainingUsage()
+                        updateCouponRequest.getRemainingUsage(),
+                        updateCouponRequest.getDiscountRules()
                 ),
                 outputValues -> CouponResponse.from(outputValues.getCoupon())
         );
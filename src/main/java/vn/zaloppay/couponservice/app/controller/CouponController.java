@@ -5,6 +5,7 @@ import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.Size;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Window;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
@@ -16,22 +17,42 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 import vn.zaloppay.couponservice.domain.model.Coupon;
+import vn.zaloppay.couponservice.domain.model.PagingMode;
 import vn.zaloppay.couponservice.domain.usecase.IUseCaseExecutor;
 import vn.zaloppay.couponservice.domain.usecase.coupon.ApplyCouponUseCase;
+import vn.zaloppay.couponservice.domain.usecase.coupon.ApplyStackedCouponsUseCase;
+import vn.zaloppay.couponservice.domain.usecase.coupon.BatchApplyCouponUseCase;
+import vn.zaloppay.couponservice.domain.usecase.coupon.CancelReservationUseCase;
+import vn.zaloppay.couponservice.domain.usecase.coupon.ConfirmReservationUseCase;
 import vn.zaloppay.couponservice.domain.usecase.coupon.GetAvailableCouponsUseCase;
 import vn.zaloppay.couponservice.domain.usecase.coupon.GetCouponByCodeUseCase;
+import vn.zaloppay.couponservice.domain.usecase.coupon.GetTopCouponsUseCase;
+import vn.zaloppay.couponservice.domain.usecase.coupon.QuoteCouponsUseCase;
+import vn.zaloppay.couponservice.domain.usecase.coupon.ReserveCouponUseCase;
 import vn.zaloppay.couponservice.app.config.logging.Limer;
 import vn.zaloppay.couponservice.app.config.rate_limit.RateLimit;
 import vn.zaloppay.couponservice.app.model.request.ApplyCouponRequest;
+import vn.zaloppay.couponservice.app.model.request.ApplyStackedCouponsRequest;
+import vn.zaloppay.couponservice.app.model.request.BatchApplyCouponRequest;
 import vn.zaloppay.couponservice.app.model.request.GetAvailableCouponsRequest;
+import vn.zaloppay.couponservice.app.model.request.GetTopCouponsRequest;
+import vn.zaloppay.couponservice.app.model.request.QuoteCouponsRequest;
+import vn.zaloppay.couponservice.app.model.request.ReserveCouponRequest;
 import vn.zaloppay.couponservice.app.model.response.ApiResponse;
 import vn.zaloppay.couponservice.app.model.response.ApplyCouponResponse;
+import vn.zaloppay.couponservice.app.model.response.ApplyStackedCouponsResponse;
 import vn.zaloppay.couponservice.app.model.response.AvailableCouponResponse;
+import vn.zaloppay.couponservice.app.model.response.BatchApplyCouponResponse;
 import vn.zaloppay.couponservice.app.model.response.CouponResponse;
 import vn.zaloppay.couponservice.app.model.response.GetAvailableCouponResponse;
+import vn.zaloppay.couponservice.app.model.response.GetAvailableCouponWindowResponse;
+import vn.zaloppay.couponservice.app.model.response.QuoteCouponsResponse;
+import vn.zaloppay.couponservice.app.model.response.ReservationResponse;
 
+import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.stream.IntStream;
 
 @RestController
 @RequestMapping("/api/v1/coupons")
@@ -46,8 +67,22 @@ public class CouponController {
 
     private final ApplyCouponUseCase applyCouponUseCase;
 
+    private final BatchApplyCouponUseCase batchApplyCouponUseCase;
+
+    private final ApplyStackedCouponsUseCase applyStackedCouponsUseCase;
+
     private final GetAvailableCouponsUseCase getAvailableCouponsUseCase;
 
+    private final GetTopCouponsUseCase getTopCouponsUseCase;
+
+    private final QuoteCouponsUseCase quoteCouponsUseCase;
+
+    private final ReserveCouponUseCase reserveCouponUseCase;
+
+    private final ConfirmReservationUseCase confirmReservationUseCase;
+
+    private final CancelReservationUseCase cancelReservationUseCase;
+
     @GetMapping("/{code}")
     @RateLimit(maxRequests = 100, expirySeconds = 60)
     public ResponseEntity<ApiResponse> getCouponByCode(
@@ -73,7 +108,8 @@ public class CouponController {
                 new ApplyCouponUseCase.InputValues(
                         applyCouponRequest.getOrderAmount(),
                         LocalDateTime.now(),
-                        applyCouponRequest.getCouponCode()
+                        applyCouponRequest.getCouponCode(),
+                        applyCouponRequest.getOrderId()
                 ),
                 outputValues -> ApplyCouponResponse.from(
                         outputValues.getDiscountAmount(),
@@ -84,10 +120,111 @@ public class CouponController {
         return new ResponseEntity<>(ApiResponse.success(result, "Apply coupon successfully"), HttpStatus.OK);
     }
 
+    @PostMapping("/apply/stack")
+    public ResponseEntity<ApiResponse> applyStackedCoupons(@Valid @RequestBody ApplyStackedCouponsRequest applyStackedCouponsRequest) {
+
+        ApplyStackedCouponsResponse result = useCaseExecutor.execute(
+                applyStackedCouponsUseCase,
+                new ApplyStackedCouponsUseCase.InputValues(
+                        applyStackedCouponsRequest.getOrderAmount(),
+                        LocalDateTime.now(),
+                        applyStackedCouponsRequest.getCouponCode()
+                ),
+                ApplyStackedCouponsResponse::from
+        );
+
+        return new ResponseEntity<>(ApiResponse.success(result, "Apply stacked coupons successfully"), HttpStatus.OK);
+    }
+
+    @PostMapping("/apply/batch")
+    public ResponseEntity<ApiResponse> batchApplyCoupon(@Valid @RequestBody BatchApplyCouponRequest batchApplyCouponRequest) {
+
+        BatchApplyCouponResponse result = useCaseExecutor.execute(
+                batchApplyCouponUseCase,
+                new BatchApplyCouponUseCase.InputValues(
+                        batchApplyCouponRequest.getOrders().stream()
+                                .map(order -> new BatchApplyCouponUseCase.Order(
+                                        order.getOrderId(),
+                                        order.getOrderAmount(),
+                                        order.getCouponCode()
+                                ))
+                                .toList(),
+                        LocalDateTime.now()
+                ),
+                outputValues -> BatchApplyCouponResponse.from(outputValues.getResults())
+        );
+
+        return new ResponseEntity<>(ApiResponse.success(result, "Batch apply coupons successfully"), HttpStatus.OK);
+    }
+
+    @PostMapping("/quote")
+    public ResponseEntity<ApiResponse> quoteCoupons(@Valid @RequestBody QuoteCouponsRequest quoteCouponsRequest) {
+
+        QuoteCouponsResponse result = useCaseExecutor.execute(
+                quoteCouponsUseCase,
+                new QuoteCouponsUseCase.InputValues(
+                        quoteCouponsRequest.getQuotes().stream()
+                                .map(quote -> new QuoteCouponsUseCase.Quote(quote.getOrderAmount(), quote.getCouponCode()))
+                                .toList(),
+                        LocalDateTime.now()
+                ),
+                outputValues -> QuoteCouponsResponse.from(outputValues.getResults())
+        );
+
+        return new ResponseEntity<>(ApiResponse.success(result, "Quote coupons successfully"), HttpStatus.OK);
+    }
+
+    @PostMapping("/reserve")
+    public ResponseEntity<ApiResponse> reserveCoupon(@Valid @RequestBody ReserveCouponRequest reserveCouponRequest) {
+
+        ReservationResponse result = useCaseExecutor.execute(
+                reserveCouponUseCase,
+                new ReserveCouponUseCase.InputValues(
+                        reserveCouponRequest.getOrderAmount(),
+                        LocalDateTime.now(),
+                        reserveCouponRequest.getCouponCode()
+                ),
+                outputValues -> ReservationResponse.from(outputValues.getReservation())
+        );
+
+        return new ResponseEntity<>(ApiResponse.success(result, "Reserve coupon successfully"), HttpStatus.OK);
+    }
+
+    @PostMapping("/reservations/{reservationId}/confirm")
+    public ResponseEntity<ApiResponse> confirmReservation(
+            @PathVariable
+            @NotBlank(message = "Reservation id must not be blank")
+            String reservationId) {
+
+        ReservationResponse result = useCaseExecutor.execute(
+                confirmReservationUseCase,
+                new ConfirmReservationUseCase.InputValues(reservationId, LocalDateTime.now()),
+                outputValues -> ReservationResponse.from(outputValues.getReservation())
+        );
+
+        return new ResponseEntity<>(ApiResponse.success(result, "Confirm reservation successfully"), HttpStatus.OK);
+    }
+
+    @PostMapping("/reservations/{reservationId}/cancel")
+    public ResponseEntity<ApiResponse> cancelReservation(
+            @PathVariable
+            @NotBlank(message = "Reservation id must not be blank")
+            String reservationId) {
+
+        ReservationResponse result = useCaseExecutor.execute(
+                cancelReservationUseCase,
+                new CancelReservationUseCase.InputValues(reservationId),
+                outputValues -> ReservationResponse.from(outputValues.getReservation())
+        );
+
+        return new ResponseEntity<>(ApiResponse.success(result, "Cancel reservation successfully"), HttpStatus.OK);
+    }
+
     @GetMapping("/available")
     public ResponseEntity<ApiResponse> getAvailableCoupons(@Valid @ModelAttribute GetAvailableCouponsRequest request) {
 
-        GetAvailableCouponResponse result = useCaseExecutor.execute(
+        // Offset pages keep their totals, cursor and slice windows have their own shape
+        Object result = useCaseExecutor.execute(
                 getAvailableCouponsUseCase,
                 new GetAvailableCouponsUseCase.InputValues(
                         request.getOrderAmount(),
@@ -95,14 +232,32 @@ public class CouponController {
                         request.getPage(),
                         request.getSize(),
                         request.getSortBy(),
-                        request.getSortDirection()
+                        request.getSortDirection(),
+                        request.getPaging(),
+                        request.getCursor(),
+                        request.isWithTotals()
                 ),
                 outputValues -> {
                     Page<Coupon> couponsPage = outputValues.getCouponsPage();
+                    List<BigDecimal> estimatedDiscounts = outputValues.getEstimatedDiscounts();
+
+                    if (couponsPage == null) {
+                        Window<Coupon> couponsWindow = outputValues.getCouponsWindow();
+                        Long totalElements = outputValues.getTotalElements();
+                        boolean slice = request.getPaging() == PagingMode.SLICE;
+                        return GetAvailableCouponWindowResponse.builder()
+                                .content(toAvailableCouponResponses(couponsWindow.getContent(), estimatedDiscounts))
+                                .currentPage(slice ? request.getPage() : null)
+                                .totalPages(totalElements == null ? null : (int) ((totalElements + request.getSize() - 1) / request.getSize()))
+                                .totalElements(totalElements)
+                                .pageSize(request.getSize())
+                                .hasNext(couponsWindow.hasNext())
+                                .hasPrevious(slice ? request.getPage() > 0 : request.getCursor() != null)
+                                .nextCursor(outputValues.getNextCursor())
+                                .build();
+                    }
 
-                    List<AvailableCouponResponse> couponResponses = couponsPage.getContent().stream()
-                            .map(coupon -> AvailableCouponResponse.from(coupon, request.getOrderAmount()))
-                            .toList();
+                    List<AvailableCouponResponse> couponResponses = toAvailableCouponResponses(couponsPage.getContent(), estimatedDiscounts);
 
                     return GetAvailableCouponResponse.builder()
                             .content(couponResponses)
@@ -119,4 +274,24 @@ public class CouponController {
         return new ResponseEntity<>(ApiResponse.success(result, "Get available coupons successfully"), HttpStatus.OK);
     }
 
+    private List<AvailableCouponResponse> toAvailableCouponResponses(List<Coupon> coupons, List<BigDecimal> estimatedDiscounts) {
+        return IntStream.range(0, coupons.size())
+                .mapToObj(i -> AvailableCouponResponse.from(coupons.get(i), estimatedDiscounts.get(i)))
+                .toList();
+    }
+
+    @GetMapping("/top")
+    public ResponseEntity<ApiResponse> getTopCoupons(@Valid @ModelAttribute GetTopCouponsRequest request) {
+
+        List<AvailableCouponResponse> result = useCaseExecutor.execute(
+                getTopCouponsUseCase,
+                new GetTopCouponsUseCase.InputValues(request.getOrderAmount(), request.getLimit()),
+                outputValues -> IntStream.range(0, outputValues.getCoupons().size())
+                        .mapToObj(i -> AvailableCouponResponse.from(outputValues.getCoupons().get(i), outputValues.getDiscounts().get(i)))
+                        .toList()
+        );
+
+        return new ResponseEntity<>(ApiResponse.success(result, "Get top coupons successfully"), HttpStatus.OK);
+    }
+
 }
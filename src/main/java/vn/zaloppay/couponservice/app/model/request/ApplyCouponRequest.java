@@ -2,6 +2,7 @@ package vn.zaloppay.couponservice.app.model.request;
 
 import jakarta.validation.constraints.DecimalMin;
 import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
 import lombok.Data;
 
 import java.math.BigDecimal;
@@ -15,4 +16,8 @@ public class ApplyCouponRequest {
 
     private String couponCode;
 
+    // Client order id, retries with the same id replay the first result instead of applying again
+    @Size(max = 64, message = "Order id must be at most 64 characters")
+    private String orderId;
+
 } 
\ No newline at end of file
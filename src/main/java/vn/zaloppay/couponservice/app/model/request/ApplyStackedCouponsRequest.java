@@ -0,0 +1,24 @@
+package vn.zaloppay.couponservice.app.model.request;
+
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Null;
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+@Data
+public class ApplyStackedCouponsRequest {
+
+    @NotNull(message = "Order amount is required")
+    @DecimalMin(value = "1.0", inclusive = true, message = "Order amount must be at least 1")
+    private BigDecimal orderAmount;
+
+    // Always part of the stack when present, completed with the best automatic coupons
+    private String couponCode;
+
+    // Stacked applies are not idempotent, a client relying on retries being replayed is told so
+    @Null(message = "Order id is not supported when stacking coupons")
+    private String orderId;
+
+}
@@ -0,0 +1,25 @@
+package vn.zaloppay.couponservice.app.model.request;
+
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+@Data
+public class BatchApplyOrderRequest {
+
+    // Echoed back in the result of the order, its retries get the first result back
+    @NotBlank(message = "Order id is required")
+    @Size(max = 64, message = "Order id must be at most 64 characters")
+    private String orderId;
+
+    @NotNull(message = "Order amount is required")
+    @DecimalMin(value = "1.0", inclusive = true, message = "Order amount must be at least 1")
+    private BigDecimal orderAmount;
+
+    private String couponCode;
+
+}
@@ -49,4 +49,8 @@ public class CreateCouponRequest {
 
     private Integer remainingUsage;
 
+    // Tiers of TIERED and STEP coupons, e.g. "0:10%;200000:15%"
+    @Size(max = 1000, message = "Discount rules must not exceed 1000 characters")
+    private String discountRules;
+
 } 
\ No newline at end of file
@@ -2,10 +2,12 @@ package vn.zaloppay.couponservice.app.model.request;
 
 import jakarta.validation.constraints.DecimalMin;
 import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.Size;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import vn.zaloppay.couponservice.domain.model.PagingMode;
 import vn.zaloppay.couponservice.domain.model.discount.DiscountType;
 
 import java.math.BigDecimal;
@@ -35,4 +37,15 @@ public class GetAvailableCouponsRequest {
     @Builder.Default
     private String sortDirection = "DESC";
 
-} 
\ No newline at end of file
+    @Builder.Default
+    private PagingMode paging = PagingMode.OFFSET;
+
+    // Next cursor of the previous page in CURSOR paging mode, none for the first page
+    @Size(max = 512, message = "Cursor must be at most 512 characters")
+    private String cursor;
+
+    // Totals are always counted in OFFSET paging mode, and served from a cache on request in the others
+    @Builder.Default
+    private boolean withTotals = false;
+
+}
@@ -0,0 +1,29 @@
+package vn.zaloppay.couponservice.app.model.request;
+
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class GetTopCouponsRequest {
+
+    @NotNull(message = "Order amount is required")
+    @DecimalMin(value = "0", message = "Order amount must be greater than or equal to 0")
+    private BigDecimal orderAmount;
+
+    @Min(value = 1, message = "Limit must be greater than 0")
+    @Max(value = 50, message = "Limit must be at most 50")
+    @Builder.Default
+    private Integer limit = 3;
+
+}
@@ -0,0 +1,17 @@
+package vn.zaloppay.couponservice.app.model.request;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class QuoteCouponsRequest {
+
+    @NotEmpty(message = "Quotes must not be empty")
+    @Size(max = 1000, message = "At most 1000 order amounts can be quoted in one request")
+    private List<@Valid QuoteOrderRequest> quotes;
+
+}
@@ -44,4 +44,8 @@ public class UpdateCouponRequest {
     @Min(message = "Remaining usage must be greater than or equal to 0", value = 0)
     private Integer remainingUsage;
 
+    // Tiers of TIERED and STEP coupons, e.g. "0:10%;200000:15%"
+    @Size(max = 1000, message = "Discount rules must not exceed 1000 characters")
+    private String discountRules;
+
 } 
\ No newline at end of file
@@ -0,0 +1,25 @@
+package vn.zaloppay.couponservice.app.model.response;
+
+import lombok.Value;
+import vn.zaloppay.couponservice.domain.usecase.coupon.ApplyStackedCouponsUseCase;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+@Value
+public class ApplyStackedCouponsResponse {
+
+    BigDecimal totalDiscount;
+
+    List<ApplyCouponResponse> coupons;
+
+    public static ApplyStackedCouponsResponse from(ApplyStackedCouponsUseCase.OutputValues outputValues) {
+        return new ApplyStackedCouponsResponse(
+                outputValues.getTotalDiscount(),
+                outputValues.getCoupons().stream()
+                        .map(applied -> ApplyCouponResponse.from(applied.getDiscountAmount(), applied.getCoupon()))
+                        .toList()
+        );
+    }
+
+}
@@ -10,6 +10,9 @@ import vn.zaloppay.couponservice.domain.model.discount.DiscountType;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
+/**
+ * Coupon of the available listing. It has no remaining usage: cached pages are kept as usages are taken.
+ */
 @Data
 @Builder
 @NoArgsConstructor
@@ -25,6 +28,8 @@ public class AvailableCouponResponse {
     private DiscountType discountType;
     
     private BigDecimal discountValue;
+
+    private String discountRules;
     
     private BigDecimal maxDiscountAmount;
     
@@ -34,24 +39,20 @@ public class AvailableCouponResponse {
     
     private LocalDateTime endTime;
     
-    private Integer remainingUsage;
-    
     private BigDecimal estimatedDiscountAmount;
 
-    public static AvailableCouponResponse from(Coupon coupon, BigDecimal orderAmount) {
-        BigDecimal estimatedDiscount = coupon.calculateDiscount(orderAmount);
-        
+    public static AvailableCouponResponse from(Coupon coupon, BigDecimal estimatedDiscount) {
         return AvailableCouponResponse.builder()
                 .code(coupon.getCode())
                 .title(coupon.getTitle())
                 .description(coupon.getDescription())
                 .discountType(coupon.getDiscountType())
                 .discountValue(coupon.getDiscountValue())
+                .discountRules(coupon.getDiscountRules())
                 .maxDiscountAmount(coupon.getMaxDiscountAmount())
                 .minOrderValue(coupon.getMinOrderValue())
                 .startTime(coupon.getStartTime())
                 .endTime(coupon.getEndTime())
-                .remainingUsage(coupon.getRemainingUsage())
                 .estimatedDiscountAmount(estimatedDiscount)
                 .build();
     }
@@ -0,0 +1,26 @@
+package vn.zaloppay.couponservice.app.model.response;
+
+import lombok.Value;
+import vn.zaloppay.couponservice.domain.usecase.coupon.BatchApplyCouponUseCase;
+
+import java.util.List;
+
+@Value
+public class BatchApplyCouponResponse {
+
+    List<BatchApplyOrderResponse> results;
+
+    long appliedCount;
+
+    long rejectedCount;
+
+    public static BatchApplyCouponResponse from(List<BatchApplyCouponUseCase.OrderResult> results) {
+        long appliedCount = results.stream().filter(BatchApplyCouponUseCase.OrderResult::isApplied).count();
+        return new BatchApplyCouponResponse(
+                results.stream().map(BatchApplyOrderResponse::from).toList(),
+                appliedCount,
+                results.size() - appliedCount
+        );
+    }
+
+}
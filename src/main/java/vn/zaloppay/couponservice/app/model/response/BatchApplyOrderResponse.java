@@ -0,0 +1,31 @@
+package vn.zaloppay.couponservice.app.model.response;
+
+import lombok.Value;
+import vn.zaloppay.couponservice.domain.usecase.coupon.BatchApplyCouponUseCase;
+
+import java.math.BigDecimal;
+
+@Value
+public class BatchApplyOrderResponse {
+
+    String orderId;
+
+    boolean applied;
+
+    BigDecimal discountAmount;
+
+    CouponResponse coupon;
+
+    String error;
+
+    public static BatchApplyOrderResponse from(BatchApplyCouponUseCase.OrderResult result) {
+        return new BatchApplyOrderResponse(
+                result.getOrderId(),
+                result.isApplied(),
+                result.getDiscountAmount(),
+                result.getCoupon() == null ? null : CouponResponse.from(result.getCoupon()),
+                result.getError()
+        );
+    }
+
+}
@@ -24,6 +24,8 @@ public class CouponResponse {
 
     BigDecimal discountValue;
 
+    String discountRules;
+
     BigDecimal maxDiscountAmount;
 
     BigDecimal minOrderValue;
@@ -42,6 +44,7 @@ public class CouponResponse {
                 coupon.getDiscountType(),
                 coupon.getUsageType(),
                 coupon.getDiscountValue(),
+                coupon.getDiscountRules(),
                 coupon.getMaxDiscountAmount(),
                 coupon.getMinOrderValue(),
                 coupon.getStartTime(),
@@ -0,0 +1,8 @@
+package vn.zaloppay.couponservice.app.model.response;
+
+import lombok.experimental.SuperBuilder;
+
+@SuperBuilder
+public class GetAvailableCouponWindowResponse extends WindowedResponse<AvailableCouponResponse> {
+
+}
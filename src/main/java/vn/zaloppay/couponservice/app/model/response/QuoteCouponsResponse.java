@@ -0,0 +1,17 @@
+package vn.zaloppay.couponservice.app.model.response;
+
+import lombok.Value;
+import vn.zaloppay.couponservice.domain.usecase.coupon.QuoteCouponsUseCase;
+
+import java.util.List;
+
+@Value
+public class QuoteCouponsResponse {
+
+    List<QuoteResponse> quotes;
+
+    public static QuoteCouponsResponse from(List<QuoteCouponsUseCase.QuoteResult> results) {
+        return new QuoteCouponsResponse(results.stream().map(QuoteResponse::from).toList());
+    }
+
+}
@@ -0,0 +1,34 @@
+package vn.zaloppay.couponservice.app.model.response;
+
+import lombok.Value;
+import vn.zaloppay.couponservice.domain.usecase.coupon.QuoteCouponsUseCase;
+
+import java.math.BigDecimal;
+
+@Value
+public class QuoteResponse {
+
+    BigDecimal orderAmount;
+
+    String couponCode;
+
+    boolean quoted;
+
+    BigDecimal discountAmount;
+
+    CouponResponse coupon;
+
+    String error;
+
+    public static QuoteResponse from(QuoteCouponsUseCase.QuoteResult result) {
+        return new QuoteResponse(
+                result.getOrderAmount(),
+                result.getCouponCode(),
+                result.isQuoted(),
+                result.getDiscountAmount(),
+                result.getCoupon() == null ? null : CouponResponse.from(result.getCoupon()),
+                result.getError()
+        );
+    }
+
+}
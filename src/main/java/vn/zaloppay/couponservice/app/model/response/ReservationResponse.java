@@ -0,0 +1,32 @@
+package vn.zaloppay.couponservice.app.model.response;
+
+import lombok.Value;
+import vn.zaloppay.couponservice.domain.model.Reservation;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@Value
+public class ReservationResponse {
+
+    String reservationId;
+
+    String couponCode;
+
+    BigDecimal orderAmount;
+
+    BigDecimal discountAmount;
+
+    LocalDateTime expiresAt;
+
+    public static ReservationResponse from(Reservation reservation) {
+        return new ReservationResponse(
+                reservation.getId(),
+                reservation.getCouponCode(),
+                reservation.getOrderAmount(),
+                reservation.getDiscountAmount(),
+                reservation.getExpiresAt()
+        );
+    }
+
+}
@@ -0,0 +1,32 @@
+package vn.zaloppay.couponservice.app.model.response;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.SuperBuilder;
+
+import java.util.List;
+
+/**
+ * Page of a listing paged by cursor or by slice, which unlike a {@link PagedResponse} may not know its totals
+ */
+@Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@SuperBuilder
+@NoArgsConstructor
+@AllArgsConstructor
+public abstract class WindowedResponse<T> {
+
+    private List<T> content;
+    // Page number when paging by slice, totals when they were asked for
+    private Integer currentPage;
+    private Integer totalPages;
+    private Long totalElements;
+    private int pageSize;
+    private boolean hasNext;
+    private boolean hasPrevious;
+    // Cursor of the next page when paging by cursor and there is one
+    private String nextCursor;
+
+}
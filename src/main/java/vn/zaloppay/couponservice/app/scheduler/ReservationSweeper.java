@@ -0,0 +1,44 @@
+package vn.zaloppay.couponservice.app.scheduler;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import vn.zaloppay.couponservice.domain.usecase.coupon.ApplyCouponProperties;
+import vn.zaloppay.couponservice.domain.usecase.coupon.ReleaseExpiredReservationsUseCase;
+
+import java.time.LocalDateTime;
+
+/**
+ * Periodically gives back the coupon usages of reservations that were neither confirmed nor cancelled in time.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ReservationSweeper {
+
+    private final ReleaseExpiredReservationsUseCase releaseExpiredReservationsUseCase;
+
+    private final ApplyCouponProperties applyProperties;
+
+    @Scheduled(fixedDelayString = "#{@applyCouponProperties.reservationSweepIntervalMs}")
+    public void sweep() {
+        try {
+            int batchSize = applyProperties.getReservationSweepBatchSize();
+            int releasedCount;
+            // Keep sweeping while full batches come back, a backlog of expired reservations is drained in one run
+            do {
+                releasedCount = releaseExpiredReservationsUseCase.execute(
+                        new ReleaseExpiredReservationsUseCase.InputValues(LocalDateTime.now(), batchSize)
+                ).getReleasedCount();
+
+                if (releasedCount > 0) {
+                    log.info("Released {} expired coupon reservations", releasedCount);
+                }
+            } while (releasedCount == batchSize);
+        } catch (Exception e) {
+            log.error("Error releasing expired coupon reservations", e);
+        }
+    }
+
+}
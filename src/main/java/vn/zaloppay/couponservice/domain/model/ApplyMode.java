@@ -0,0 +1,10 @@
+package vn.zaloppay.couponservice.domain.model;
+
+public enum ApplyMode {
+    // Serialise applies of the same coupon with a distributed lock, then re-read and decrement
+    LOCK,
+    // Rely on the usage store's atomic check-and-decrement, no distributed lock
+    LOCK_FREE,
+    // Fold every validity check into one conditional update by primary key, no distributed lock
+    CONDITIONAL
+}
@@ -1,6 +1,12 @@
 package vn.zaloppay.couponservice.domain.model;
 
+import com.fasterxml.jackson.annotation.JsonCreator;
+import lombok.AccessLevel;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
 import lombok.Value;
+import vn.zaloppay.couponservice.domain.model.discount.DiscountStrategy;
 import vn.zaloppay.couponservice.domain.model.discount.DiscountType;
 
 import java.math.BigDecimal;
@@ -33,8 +39,52 @@ public class Coupon {
 
     Integer remainingUsage;
 
+    // Tiers of the rule based discount types, null for the other types
+    String discountRules;
+
+    // Compiled once when the coupon is loaded, rather than on each discount calculation
+    @Getter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    DiscountStrategy strategy;
+
+    public Coupon(Long id, String code, String title, String description, DiscountType discountType,
+                  UsageType usageType, BigDecimal discountValue, BigDecimal maxDiscountAmount,
+                  BigDecimal minOrderValue, LocalDateTime startTime, LocalDateTime endTime, Integer remainingUsage) {
+        this(id, code, title, description, discountType, usageType, discountValue, maxDiscountAmount,
+                minOrderValue, startTime, endTime, remainingUsage, null);
+    }
+
+    @JsonCreator
+    public Coupon(Long id, String code, String title, String description, DiscountType discountType,
+                  UsageType usageType, BigDecimal discountValue, BigDecimal maxDiscountAmount,
+                  BigDecimal minOrderValue, LocalDateTime startTime, LocalDateTime endTime, Integer remainingUsage,
+                  String discountRules) {
+        this.id = id;
+        this.code = code;
+        this.title = title;
+        this.description = description;
+        this.discountType = discountType;
+        this.usageType = usageType;
+        this.discountValue = discountValue;
+        this.maxDiscountAmount = maxDiscountAmount;
+        this.minOrderValue = minOrderValue;
+        this.startTime = startTime;
+        this.endTime = endTime;
+        this.remainingUsage = remainingUsage;
+        this.discountRules = discountRules;
+        this.strategy = discountType == null ? null : discountType.strategyFor(discountRules);
+    }
+
+    /**
+     * @return the strategy compiled when the coupon was loaded, for callers converting the coupon to other forms
+     */
+    public DiscountStrategy discountStrategy() {
+        return strategy;
+    }
+
     public BigDecimal calculateDiscount(BigDecimal orderAmount) {
-        return discountType.getStrategy().calculateDiscount(orderAmount, discountValue, maxDiscountAmount);
+        return strategy.calculateDiscount(orderAmount, discountValue, maxDiscountAmount);
     }
 
 }
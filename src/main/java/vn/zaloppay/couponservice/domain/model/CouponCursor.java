@@ -0,0 +1,104 @@
+package vn.zaloppay.couponservice.domain.model;
+
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import vn.zaloppay.couponservice.domain.exceptions.BadRequestException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Opaque cursor of a keyset scroll over coupons sorted by a {@link CouponSortField} then by id.
+ *
+ * <p>It holds the sort it was taken with and the sort value and id of the last coupon returned, so that the next
+ * page seeks right past that coupon. A cursor is only valid with the sort it was taken with.
+ */
+public final class CouponCursor {
+
+    public static final String ID = "id";
+
+    private static final String SEPARATOR = "\n";
+
+    // Prefixes the sort value, an absent value stands for null
+    private static final String VALUE = "=";
+
+    private CouponCursor() {
+    }
+
+    /**
+     * @return the sort with the id as tie breaker, in the direction of the sort field
+     */
+    public static Sort keysetSort(Sort.Order order) {
+        return Sort.by(order, new Sort.Order(order.getDirection(), ID));
+    }
+
+    /**
+     * @return the position right after the coupon in a scroll sorted by the given sort
+     */
+    public static KeysetScrollPosition positionOf(Coupon coupon, Sort sort) {
+        Map<String, Object> keys = new LinkedHashMap<>();
+        for (Sort.Order order : sort) {
+            keys.put(order.getProperty(), ID.equals(order.getProperty())
+                    ? coupon.getId()
+                    : CouponSortField.of(order.getProperty()).valueOf(coupon));
+        }
+        return ScrollPosition.forward(keys);
+    }
+
+    /**
+     * @return the cursor of the page after the window, or null if it is the last one
+     */
+    public static String next(Window<Coupon> window, Sort.Order order) {
+        if (!window.hasNext() || window.isEmpty()) {
+            return null;
+        }
+        return encode((KeysetScrollPosition) window.positionAt(window.size() - 1), order);
+    }
+
+    public static String encode(KeysetScrollPosition position, Sort.Order order) {
+        Object value = position.getKeys().get(order.getProperty());
+        String text = String.join(SEPARATOR,
+                order.getProperty(),
+                order.getDirection().name(),
+                String.valueOf(position.getKeys().get(ID)),
+                value == null ? "" : VALUE + value
+        );
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @param cursor a cursor returned with a previous page, or null for the first page
+     * @throws BadRequestException if the cursor is malformed or was taken with another sort
+     */
+    public static KeysetScrollPosition decode(String cursor, Sort.Order order) {
+        if (cursor == null || cursor.isBlank()) {
+            return ScrollPosition.keyset();
+        }
+
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8)
+                    .split(SEPARATOR, 4);
+            if (parts.length != 4) {
+                throw new BadRequestException("Invalid cursor");
+            }
+            if (!parts[0].equals(order.getProperty()) || !parts[1].equals(order.getDirection().name())) {
+                throw new BadRequestException("Cursor was not taken with the requested sort");
+            }
+
+            Map<String, Object> keys = new LinkedHashMap<>();
+            keys.put(order.getProperty(), parts[3].startsWith(VALUE)
+                    ? CouponSortField.of(order.getProperty()).parse(parts[3].substring(VALUE.length()))
+                    : null);
+            keys.put(ID, Long.valueOf(parts[2]));
+            return ScrollPosition.forward(keys);
+        } catch (IllegalArgumentException | DateTimeException e) {
+            throw new BadRequestException("Invalid cursor");
+        }
+    }
+
+}
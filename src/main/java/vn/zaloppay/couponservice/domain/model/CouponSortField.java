@@ -1,22 +1,55 @@
 package vn.zaloppay.couponservice.domain.model;
 
+import lombok.AccessLevel;
 import lombok.Getter;
 
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.function.Function;
+
 @Getter
 public enum CouponSortField {
-    DISCOUNT_VALUE("discountValue"),
-    MAX_DISCOUNT("maxDiscountAmount"),
-    END_TIME("endTime"),
-    TITLE("title");
+    DISCOUNT_VALUE("discountValue", Coupon::getDiscountValue, BigDecimal::new),
+    MAX_DISCOUNT("maxDiscountAmount", Coupon::getMaxDiscountAmount, BigDecimal::new),
+    END_TIME("endTime", Coupon::getEndTime, LocalDateTime::parse),
+    TITLE("title", Coupon::getTitle, text -> text);
 
     private final String field;
-    CouponSortField(String field) { this.field = field; }
+
+    @Getter(AccessLevel.NONE)
+    private final Function<Coupon, Comparable<?>> value;
+
+    @Getter(AccessLevel.NONE)
+    private final Function<String, Comparable<?>> parser;
+
+    CouponSortField(String field, Function<Coupon, Comparable<?>> value, Function<String, Comparable<?>> parser) {
+        this.field = field;
+        this.value = value;
+        this.parser = parser;
+    }
 
     public static String from(String value) {
+        return of(value).field;
+    }
+
+    public static CouponSortField of(String value) {
         for (CouponSortField f : values()) {
-            if (f.field.equalsIgnoreCase(value)) return f.field;
+            if (f.field.equalsIgnoreCase(value)) return f;
         }
-        return DISCOUNT_VALUE.field;
+        return DISCOUNT_VALUE;
+    }
+
+    /**
+     * @return the value of this field on the coupon, possibly null
+     */
+    public Comparable<?> valueOf(Coupon coupon) {
+        return value.apply(coupon);
     }
-}
 
+    /**
+     * @return the value written by {@link Object#toString()} on a value of this field
+     */
+    public Comparable<?> parse(String text) {
+        return parser.apply(text);
+    }
+}
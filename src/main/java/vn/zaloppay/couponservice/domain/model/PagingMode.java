@@ -0,0 +1,10 @@
+package vn.zaloppay.couponservice.domain.model;
+
+public enum PagingMode {
+    // Page number with totals, the database skips page * size rows and counts the whole result
+    OFFSET,
+    // Page number without counting, one row more than the page is fetched to tell whether there is a next one
+    SLICE,
+    // Seek past the last row of the previous page given by a cursor, no rows skipped and no count
+    CURSOR
+}
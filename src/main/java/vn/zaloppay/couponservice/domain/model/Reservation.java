@@ -0,0 +1,26 @@
+package vn.zaloppay.couponservice.domain.model;
+
+import lombok.Value;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * One usage of a coupon held for an order until it is confirmed, cancelled or expires.
+ */
+@Value
+public class Reservation {
+
+    String id;
+
+    String couponCode;
+
+    BigDecimal orderAmount;
+
+    BigDecimal discountAmount;
+
+    LocalDateTime createdAt;
+
+    LocalDateTime expiresAt;
+
+}
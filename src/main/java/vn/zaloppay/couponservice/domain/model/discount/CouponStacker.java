@@ -0,0 +1,162 @@
+package vn.zaloppay.couponservice.domain.model.discount;
+
+import vn.zaloppay.couponservice.domain.model.Coupon;
+import vn.zaloppay.couponservice.domain.model.UsageType;
+import vn.zaloppay.couponservice.domain.util.MinorUnits;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+/**
+ * Picks the combination of coupons giving an order the highest total discount.
+ *
+ * <p>Stacked coupons are each priced on the full order amount and their discounts add up, to at most the order
+ * amount. A combination holds at most a given number of coupons, and at most one coupon of each exclusive usage type.
+ *
+ * <p>The search is a branch and bound over the candidates sorted by decreasing discount. A branch is cut as soon as
+ * its discount plus the best discounts it could still add, exclusivity aside, cannot beat the best combination found.
+ * The greedy combination is found first, so most branches are cut right away.
+ */
+public final class CouponStacker {
+
+    // Discount the order can still take, besides the required coupon
+    private final long room;
+
+    private final int maxCoupons;
+
+    // Candidates by decreasing discount
+    private final Coupon[] coupons;
+
+    private final long[] discounts;
+
+    // Bit of the usage type of each candidate when it is exclusive, 0 otherwise
+    private final int[] exclusiveBits;
+
+    // Sum of the discounts of the candidates before each index
+    private final long[] prefixSums;
+
+    private final int[] chosen;
+
+    private int[] best;
+
+    private long bestDiscount;
+
+    private CouponStacker(long room, int maxCoupons, Coupon[] coupons, long[] discounts, int[] exclusiveBits) {
+        this.room = room;
+        this.maxCoupons = maxCoupons;
+        this.coupons = coupons;
+        this.discounts = discounts;
+        this.exclusiveBits = exclusiveBits;
+        this.prefixSums = new long[coupons.length + 1];
+        for (int i = 0; i < coupons.length; i++) {
+            prefixSums[i + 1] = prefixSums[i] + discounts[i];
+        }
+        this.chosen = new int[maxCoupons];
+        this.best = new int[0];
+    }
+
+    /**
+     * @param orderAmount         order amount the coupons are priced on
+     * @param required            coupon that must be part of the combination, or null
+     * @param candidates          coupons the order is eligible to
+     * @param maxCoupons          largest number of coupons in the combination, the required one included
+     * @param exclusiveUsageTypes usage types of which a combination holds at most one coupon
+     * @return the coupons of the best combination, the required one first
+     */
+    public static List<Coupon> stack(BigDecimal orderAmount, Coupon required, Collection<Coupon> candidates,
+                                     int maxCoupons, Set<UsageType> exclusiveUsageTypes) {
+        List<Coupon> stack = new ArrayList<>();
+        if (required != null) {
+            stack.add(required);
+        }
+        int slots = maxCoupons - stack.size();
+        if (slots <= 0) {
+            return stack;
+        }
+
+        int takenBits = required == null ? 0 : exclusiveBit(required, exclusiveUsageTypes);
+        List<Coupon> compatible = candidates.stream()
+                .filter(coupon -> required == null || !coupon.getCode().equals(required.getCode()))
+                .filter(coupon -> (exclusiveBit(coupon, exclusiveUsageTypes) & takenBits) == 0)
+                .toList();
+
+        long amount = toMinorUnits(orderAmount);
+        long[] allDiscounts = discounts(orderAmount, compatible);
+        long room = amount - (required == null ? 0 : Math.min(amount, discount(orderAmount, required)));
+
+        // Coupons adding nothing never improve a combination
+        Integer[] order = IntStream.range(0, compatible.size())
+                .filter(i -> allDiscounts[i] > 0)
+                .boxed()
+                .sorted(Comparator.comparingLong((Integer i) -> allDiscounts[i]).reversed())
+                .toArray(Integer[]::new);
+
+        Coupon[] coupons = new Coupon[order.length];
+        long[] discounts = new long[order.length];
+        int[] exclusiveBits = new int[order.length];
+        for (int i = 0; i < order.length; i++) {
+            coupons[i] = compatible.get(order[i]);
+            discounts[i] = allDiscounts[order[i]];
+            exclusiveBits[i] = exclusiveBit(coupons[i], exclusiveUsageTypes);
+        }
+
+        CouponStacker stacker = new CouponStacker(room, slots, coupons, discounts, exclusiveBits);
+        stacker.search(0, 0, 0, 0);
+        for (int index : stacker.best) {
+            stack.add(coupons[index]);
+        }
+        return stack;
+    }
+
+    private void search(int from, int depth, long discount, int usedBits) {
+        long capped = Math.min(discount, room);
+        if (capped > bestDiscount) {
+            bestDiscount = capped;
+            best = Arrays.copyOf(chosen, depth);
+        }
+        if (depth == maxCoupons || bestDiscount == room) {
+            return;
+        }
+
+        for (int i = from; i < coupons.length; i++) {
+            // Best discounts still reachable: the next candidates, sorted, filling every slot left
+            long bound = discount + prefixSums[Math.min(coupons.length, i + maxCoupons - depth)] - prefixSums[i];
+            if (Math.min(bound, room) <= bestDiscount) {
+                return;
+            }
+            if ((exclusiveBits[i] & usedBits) != 0) {
+                continue;
+            }
+
+            chosen[depth] = i;
+            search(i + 1, depth + 1, discount + discounts[i], usedBits | exclusiveBits[i]);
+        }
+    }
+
+    private static long[] discounts(BigDecimal orderAmount, List<Coupon> coupons) {
+        if (MinorUnits.isExact(orderAmount)) {
+            return DiscountCatalogue.of(coupons).discounts(MinorUnits.toMinorUnits(orderAmount));
+        }
+        return coupons.stream().mapToLong(coupon -> discount(orderAmount, coupon)).toArray();
+    }
+
+    private static long discount(BigDecimal orderAmount, Coupon coupon) {
+        return toMinorUnits(coupon.calculateDiscount(orderAmount));
+    }
+
+    private static long toMinorUnits(BigDecimal amount) {
+        return MinorUnits.toMinorUnits(amount.setScale(MinorUnits.SCALE, RoundingMode.HALF_UP));
+    }
+
+    private static int exclusiveBit(Coupon coupon, Set<UsageType> exclusiveUsageTypes) {
+        return exclusiveUsageTypes.contains(coupon.getUsageType()) ? 1 << coupon.getUsageType().ordinal() : 0;
+    }
+
+}
@@ -0,0 +1,203 @@
+package vn.zaloppay.couponservice.domain.model.discount;
+
+import vn.zaloppay.couponservice.domain.model.Coupon;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Collection;
+import java.util.PriorityQueue;
+import java.util.stream.IntStream;
+
+/**
+ * A set of coupons laid out as primitive arrays (struct of arrays) for bulk discount evaluation.
+ *
+ * <p>Discounts of every coupon for an order amount are computed in one tight loop over the arrays, on minor units
+ * like {@link DiscountTerms}, without touching the coupon objects or allocating per coupon. Catalogues larger than
+ * {@link #PARALLEL_THRESHOLD} are split in chunks evaluated on the common fork/join pool.
+ */
+public final class DiscountCatalogue {
+
+    // Discount reported for coupons the order is not eligible to
+    public static final long NOT_ELIGIBLE = Long.MIN_VALUE;
+
+    // Below this size a single thread is faster than forking
+    static final int PARALLEL_THRESHOLD = 8192;
+
+    private static final int CHUNK_SIZE = 4096;
+
+    // Cents times hundredths of a percent give cents scaled by 10^4
+    private static final long PERCENT_SCALE = 10_000;
+
+    private final Coupon[] coupons;
+
+    private final boolean[] percents;
+
+    // Compiled strategy of rule based coupons, null for the other types
+    private final DiscountStrategy[] ruleStrategies;
+
+    private final long[] discountValues;
+
+    private final long[] maxDiscountAmounts;
+
+    private final long[] minOrderValues;
+
+    private final long[] startTimes;
+
+    private final long[] endTimes;
+
+    private final int[] remainingUsages;
+
+    // Largest percent value, to tell whether an order amount can overflow the products
+    private long maxPercentValue;
+
+    private DiscountCatalogue(int size) {
+        this.coupons = new Coupon[size];
+        this.percents = new boolean[size];
+        this.ruleStrategies = new DiscountStrategy[size];
+        this.discountValues = new long[size];
+        this.maxDiscountAmounts = new long[size];
+        this.minOrderValues = new long[size];
+        this.startTimes = new long[size];
+        this.endTimes = new long[size];
+        this.remainingUsages = new int[size];
+    }
+
+    public static DiscountCatalogue of(Collection<Coupon> coupons) {
+        DiscountCatalogue catalogue = new DiscountCatalogue(coupons.size());
+
+        int i = 0;
+        for (Coupon coupon : coupons) {
+            DiscountTerms terms = DiscountTerms.of(coupon);
+            catalogue.coupons[i] = coupon;
+            catalogue.percents[i] = terms.discountType() == DiscountType.PERCENT;
+            catalogue.ruleStrategies[i] = terms.discountType().isRuleBased() ? terms.strategy() : null;
+            catalogue.discountValues[i] = terms.discountValue();
+            catalogue.maxDiscountAmounts[i] = terms.maxDiscountAmount();
+            catalogue.minOrderValues[i] = terms.minOrderValue();
+            catalogue.startTimes[i] = toEpochMilli(coupon.getStartTime());
+            catalogue.endTimes[i] = toEpochMilli(coupon.getEndTime());
+            catalogue.remainingUsages[i] = coupon.getRemainingUsage() == null ? 0 : coupon.getRemainingUsage();
+            if (catalogue.percents[i]) {
+                catalogue.maxPercentValue = Math.max(catalogue.maxPercentValue, Math.abs(terms.discountValue()));
+            }
+            i++;
+        }
+        return catalogue;
+    }
+
+    public int size() {
+        return coupons.length;
+    }
+
+    public Coupon coupon(int index) {
+        return coupons[index];
+    }
+
+    /**
+     * @param orderAmount order amount in minor units
+     * @return the discount of each coupon in minor units, whether or not the order is eligible to it
+     */
+    public long[] discounts(long orderAmount) {
+        long[] discounts = new long[coupons.length];
+        evaluate(orderAmount, 0, false, discounts);
+        return discounts;
+    }
+
+    /**
+     * @param orderAmount order amount in minor units
+     * @return the discount of each coupon in minor units, {@link #NOT_ELIGIBLE} for coupons that are not active
+     * at the given time, have no remaining usage or a minimum order value above the order amount
+     */
+    public long[] eligibleDiscounts(long orderAmount, LocalDateTime at) {
+        long[] discounts = new long[coupons.length];
+        evaluate(orderAmount, toEpochMilli(at), true, discounts);
+        return discounts;
+    }
+
+    /**
+     * @param orderAmounts order amounts in minor units
+     * @return the eligible discounts of each coupon, per order amount
+     */
+    public long[][] eligibleDiscounts(long[] orderAmounts, LocalDateTime at) {
+        long atEpochMilli = toEpochMilli(at);
+        long[][] discounts = new long[orderAmounts.length][];
+        for (int i = 0; i < orderAmounts.length; i++) {
+            discounts[i] = new long[coupons.length];
+            evaluate(orderAmounts[i], atEpochMilli, true, discounts[i]);
+        }
+        return discounts;
+    }
+
+    /**
+     * @param discounts discounts returned by {@link #eligibleDiscounts(long, LocalDateTime)}
+     * @return indexes of at most limit eligible coupons, by decreasing discount
+     */
+    public static int[] top(long[] discounts, int limit) {
+        if (limit <= 0) {
+            return new int[0];
+        }
+
+        // Bounded min-heap on the discount: the smallest of the best ones so far is evicted first
+        PriorityQueue<Integer> heap = new PriorityQueue<>(limit + 1,
+                (left, right) -> Long.compare(discounts[left], discounts[right]));
+        for (int i = 0; i < discounts.length; i++) {
+            if (discounts[i] == NOT_ELIGIBLE) {
+                continue;
+            }
+            if (heap.size() < limit) {
+                heap.add(i);
+            } else if (discounts[i] > discounts[heap.peek()]) {
+                heap.poll();
+                heap.add(i);
+            }
+        }
+
+        int[] top = new int[heap.size()];
+        for (int i = top.length - 1; i >= 0; i--) {
+            top[i] = heap.poll();
+        }
+        return top;
+    }
+
+    private void evaluate(long orderAmount, long at, boolean gated, long[] discounts) {
+        if (coupons.length < PARALLEL_THRESHOLD) {
+            evaluate(orderAmount, at, gated, discounts, 0, coupons.length);
+            return;
+        }
+
+        int chunks = (coupons.length + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        IntStream.range(0, chunks).parallel().forEach(chunk -> evaluate(
+                orderAmount, at, gated, discounts, chunk * CHUNK_SIZE, Math.min(coupons.length, (chunk + 1) * CHUNK_SIZE)));
+    }
+
+    private void evaluate(long orderAmount, long at, boolean gated, long[] discounts, int from, int to) {
+        // Products of the amount and every percent value fit a long, the plain loop is exact
+        boolean fits = orderAmount >= 0 && Math.multiplyHigh(orderAmount, maxPercentValue) == 0
+                && orderAmount * maxPercentValue >= 0;
+
+        for (int i = from; i < to; i++) {
+            long discount;
+            if (ruleStrategies[i] != null) {
+                discount = ruleStrategies[i].calculateDiscount(orderAmount, discountValues[i], maxDiscountAmounts[i]);
+            } else if (!percents[i]) {
+                discount = discountValues[i];
+            } else if (fits && discountValues[i] >= 0) {
+                // Same HALF_UP rounding and cap as PercentDiscountStrategy, on non-negative values
+                discount = Math.min((orderAmount * discountValues[i] + PERCENT_SCALE / 2) / PERCENT_SCALE, maxDiscountAmounts[i]);
+            } else {
+                discount = DiscountType.PERCENT.getStrategy()
+                        .calculateDiscount(orderAmount, discountValues[i], maxDiscountAmounts[i]);
+            }
+
+            boolean eligible = !gated || (minOrderValues[i] <= orderAmount
+                    && startTimes[i] <= at && at < endTimes[i]
+                    && remainingUsages[i] > 0);
+            discounts[i] = eligible ? discount : NOT_ELIGIBLE;
+        }
+    }
+
+    private static long toEpochMilli(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+}
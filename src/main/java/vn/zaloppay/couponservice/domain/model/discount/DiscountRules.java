@@ -0,0 +1,142 @@
+package vn.zaloppay.couponservice.domain.model.discount;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.math.BigDecimal;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Discount rules of the rule based discount types, and their compilation into a {@link DiscountStrategy}.
+ *
+ * <p>Rules are tiers separated by {@code ;}, each an order amount the tier starts at and its discount, either
+ * a percent or a fixed amount: {@code 0:10%;200000:15%} gives 10% up to 200000 and 15% above it. With
+ * {@link DiscountType#TIERED}, each percent applies to the part of the order amount within its tier.
+ * With {@link DiscountType#STEP}, the highest tier the order amount reaches applies to all of it.
+ * Orders below the first tier get no discount.
+ *
+ * <p>Compiled strategies are cached by rules, so a rule set is parsed once however many times coupons are loaded.
+ * Rules are validated when a coupon is written, malformed ones read back from the database or a cache give no
+ * discount rather than failing every read of the coupon.
+ */
+@Slf4j
+public final class DiscountRules {
+
+    static final int MAX_TIERS = 32;
+
+    private static final int MAX_CACHED_STRATEGIES = 4096;
+
+    private static final BigDecimal HUNDRED = BigDecimal.valueOf(100);
+
+    private static final Map<String, DiscountStrategy> STRATEGIES = new ConcurrentHashMap<>();
+
+    private static final DiscountStrategy NO_DISCOUNT = new DiscountStrategy() {
+        @Override
+        public BigDecimal calculateDiscount(BigDecimal orderAmount, BigDecimal discountValue, BigDecimal maxDiscountAmount) {
+            return BigDecimal.ZERO;
+        }
+
+        @Override
+        public long calculateDiscount(long orderAmount, long discountValue, long maxDiscountAmount) {
+            return 0;
+        }
+    };
+
+    private DiscountRules() {
+    }
+
+    /**
+     * @return the strategy evaluating the rules, compiled on first use, or one giving no discount if they are malformed
+     */
+    public static DiscountStrategy compile(DiscountType discountType, String rules) {
+        String key = discountType.name() + '|' + rules;
+        DiscountStrategy strategy = STRATEGIES.get(key);
+        if (strategy != null) {
+            return strategy;
+        }
+
+        try {
+            strategy = parse(discountType, rules);
+        } catch (IllegalArgumentException | ArithmeticException e) {
+            // Cached as well, so that it is logged once per rule set
+            log.error("Malformed {} discount rules {}, they give no discount: {}", discountType, rules, e.getMessage());
+            strategy = NO_DISCOUNT;
+        }
+        if (STRATEGIES.size() >= MAX_CACHED_STRATEGIES) {
+            // Rule sets of deleted coupons pile up otherwise: one makes room for the new one, the others stay compiled
+            Iterator<String> keys = STRATEGIES.keySet().iterator();
+            if (keys.hasNext()) {
+                keys.next();
+                keys.remove();
+            }
+        }
+        STRATEGIES.put(key, strategy);
+        return strategy;
+    }
+
+    /**
+     * @throws IllegalArgumentException with a message fit for the client if the rules are malformed
+     */
+    public static void validate(DiscountType discountType, String rules) {
+        parse(discountType, rules);
+    }
+
+    private static DiscountStrategy parse(DiscountType discountType, String rules) {
+        if (!discountType.isRuleBased()) {
+            throw new IllegalArgumentException("Discount rules only apply to TIERED and STEP coupons");
+        }
+        if (rules == null || rules.isBlank()) {
+            throw new IllegalArgumentException("Discount rules are required for " + discountType + " coupons");
+        }
+
+        String[] tiers = rules.split(";");
+        if (tiers.length > MAX_TIERS) {
+            throw new IllegalArgumentException("Discount rules must have at most " + MAX_TIERS + " tiers");
+        }
+
+        BigDecimal[] froms = new BigDecimal[tiers.length];
+        BigDecimal[] values = new BigDecimal[tiers.length];
+        boolean[] percents = new boolean[tiers.length];
+        for (int i = 0; i < tiers.length; i++) {
+            String[] parts = tiers[i].split(":");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Discount rule tier must be <order amount>:<discount>, got: " + tiers[i].trim());
+            }
+
+            String value = parts[1].trim();
+            percents[i] = value.endsWith("%");
+            froms[i] = parseAmount(parts[0]);
+            values[i] = parseAmount(percents[i] ? value.substring(0, value.length() - 1) : value);
+
+            if (i > 0 && froms[i].compareTo(froms[i - 1]) <= 0) {
+                throw new IllegalArgumentException("Discount rule tiers must start at increasing order amounts");
+            }
+            if (percents[i] && values[i].compareTo(HUNDRED) > 0) {
+                throw new IllegalArgumentException("Discount rule percent must not exceed 100");
+            }
+            if (discountType == DiscountType.TIERED && !percents[i]) {
+                throw new IllegalArgumentException("TIERED discount rules must only have percent tiers");
+            }
+        }
+
+        return new RuleDiscountStrategy(discountType == DiscountType.TIERED, froms, values, percents);
+    }
+
+    private static BigDecimal parseAmount(String text) {
+        BigDecimal amount;
+        try {
+            amount = new BigDecimal(text.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Discount rule amount is not a number: " + text.trim());
+        }
+        if (amount.signum() < 0 || amount.stripTrailingZeros().scale() > 2) {
+            throw new IllegalArgumentException("Discount rule amounts must not be negative and have at most 2 decimals");
+        }
+        if (amount.compareTo(BigDecimal.valueOf(99_999_999_99L, 2)) > 0) {
+            throw new IllegalArgumentException("Discount rule amounts must fit a DECIMAL(10,2) column");
+        }
+        return amount;
+    }
+
+}
@@ -3,5 +3,17 @@ package vn.zaloppay.couponservice.domain.model.discount;
 import java.math.BigDecimal;
 
 public interface DiscountStrategy {
+
+    // Max discount amount in minor units standing for no cap
+    long NO_MAX_DISCOUNT = Long.MAX_VALUE;
+
     BigDecimal calculateDiscount(BigDecimal orderAmount, BigDecimal discountValue, BigDecimal maxDiscountAmount);
-} 
\ No newline at end of file
+
+    /**
+     * Same discount computed on minor units (cents) without allocating, for ranking many coupons.
+     * Amounts are in cents and percent values in hundredths of a percent, as stored in the DECIMAL(10,2) columns.
+     * @param maxDiscountAmount cap in cents, or {@link #NO_MAX_DISCOUNT}
+     */
+    long calculateDiscount(long orderAmount, long discountValue, long maxDiscountAmount);
+
+}
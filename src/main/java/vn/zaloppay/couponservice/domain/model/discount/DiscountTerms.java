@@ -0,0 +1,39 @@
+package vn.zaloppay.couponservice.domain.model.discount;
+
+import vn.zaloppay.couponservice.domain.model.Coupon;
+import vn.zaloppay.couponservice.domain.util.MinorUnits;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * The pricing fields of a coupon in minor units, converted once so that discounts
+ * can be evaluated repeatedly without any BigDecimal arithmetic.
+ */
+public record DiscountTerms(DiscountType discountType, DiscountStrategy strategy,
+                            long discountValue, long maxDiscountAmount, long minOrderValue) {
+
+    /**
+     * Money fields with more decimals are rounded the way the DECIMAL(10,2) columns store them
+     */
+    public static DiscountTerms of(Coupon coupon) {
+        return new DiscountTerms(
+                coupon.getDiscountType(),
+                coupon.discountStrategy(),
+                toMinorUnits(coupon.getDiscountValue()),
+                coupon.getMaxDiscountAmount() == null
+                        ? DiscountStrategy.NO_MAX_DISCOUNT
+                        : toMinorUnits(coupon.getMaxDiscountAmount()),
+                coupon.getMinOrderValue() == null ? 0 : toMinorUnits(coupon.getMinOrderValue())
+        );
+    }
+
+    public long calculateDiscount(long orderAmount) {
+        return strategy.calculateDiscount(orderAmount, discountValue, maxDiscountAmount);
+    }
+
+    private static long toMinorUnits(BigDecimal amount) {
+        return MinorUnits.toMinorUnits(amount.setScale(MinorUnits.SCALE, RoundingMode.HALF_UP));
+    }
+
+}
@@ -5,11 +5,25 @@ import lombok.Getter;
 @Getter
 public enum DiscountType {
     PERCENT(new PercentDiscountStrategy()),
-    FIXED(new FixedDiscountStrategy());
+    FIXED(new FixedDiscountStrategy()),
+    // Rule based types: each coupon has its own strategy, compiled from its discount rules
+    TIERED(null),
+    STEP(null);
     
     private final DiscountStrategy strategy;
     
     DiscountType(DiscountStrategy strategy) {
         this.strategy = strategy;
     }
+
+    public boolean isRuleBased() {
+        return strategy == null;
+    }
+
+    /**
+     * @param discountRules discount rules of the coupon, only read by the rule based types
+     */
+    public DiscountStrategy strategyFor(String discountRules) {
+        return isRuleBased() ? DiscountRules.compile(this, discountRules) : strategy;
+    }
 }
@@ -7,4 +7,9 @@ public class FixedDiscountStrategy implements DiscountStrategy {
     public BigDecimal calculateDiscount(BigDecimal orderAmount, BigDecimal discountValue, BigDecimal maxDiscountAmount) {
         return discountValue;
     }
-} 
\ No newline at end of file
+
+    @Override
+    public long calculateDiscount(long orderAmount, long discountValue, long maxDiscountAmount) {
+        return discountValue;
+    }
+}
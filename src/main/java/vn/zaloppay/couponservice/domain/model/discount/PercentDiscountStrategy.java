@@ -1,9 +1,15 @@
 package vn.zaloppay.couponservice.domain.model.discount;
 
+import vn.zaloppay.couponservice.domain.util.MinorUnits;
+
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 
 public class PercentDiscountStrategy implements DiscountStrategy {
+
+    // Cents times hundredths of a percent give cents scaled by 10^4
+    private static final long PERCENT_SCALE = 10_000;
+
     @Override
     public BigDecimal calculateDiscount(BigDecimal orderAmount, BigDecimal discountValue, BigDecimal maxDiscountAmount) {
         BigDecimal percentDiscount = orderAmount
@@ -17,4 +23,16 @@ public class PercentDiscountStrategy implements DiscountStrategy {
         
         return percentDiscount;
     }
-} 
\ No newline at end of file
+
+    @Override
+    public long calculateDiscount(long orderAmount, long discountValue, long maxDiscountAmount) {
+        long percentDiscount = MinorUnits.divideHalfUp(Math.multiplyExact(orderAmount, discountValue), PERCENT_SCALE);
+
+        // Apply max discount limit if specified
+        if (percentDiscount > maxDiscountAmount) {
+            return maxDiscountAmount;
+        }
+
+        return percentDiscount;
+    }
+}
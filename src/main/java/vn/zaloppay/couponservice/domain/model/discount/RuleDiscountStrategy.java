@@ -0,0 +1,127 @@
+package vn.zaloppay.couponservice.domain.model.discount;
+
+import vn.zaloppay.couponservice.domain.util.MinorUnits;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Arrays;
+
+/**
+ * Discount of a {@link DiscountType#TIERED} or {@link DiscountType#STEP} coupon, compiled from its discount rules.
+ *
+ * <p>Tiers are kept as sorted arrays, with the discount of the tiers below each tiered one summed up front, so an
+ * evaluation is a binary search followed by one multiplication, like {@link PercentDiscountStrategy}. The discount
+ * value passed in is ignored, the rules hold the values. The max discount amount still caps the result.
+ */
+final class RuleDiscountStrategy implements DiscountStrategy {
+
+    // Cents times hundredths of a percent give cents scaled by 10^4
+    private static final long PERCENT_SCALE = 10_000;
+
+    private static final BigDecimal HUNDRED = BigDecimal.valueOf(100);
+
+    // Each percent applies to the part of the amount within its tier, rather than the highest tier to all of it
+    private final boolean tiered;
+
+    // Order amount each tier starts at in minor units, ascending
+    private final long[] froms;
+
+    // Percent in hundredths of a percent, or fixed discount in minor units
+    private final long[] values;
+
+    private final boolean[] percents;
+
+    // Discount of the tiers below each tier, in minor units scaled by 10^4
+    private final long[] bases;
+
+    private final BigDecimal[] fromAmounts;
+
+    private final BigDecimal[] valueAmounts;
+
+    // Discount of the tiers below each tier, times 100
+    private final BigDecimal[] baseAmounts;
+
+    RuleDiscountStrategy(boolean tiered, BigDecimal[] fromAmounts, BigDecimal[] valueAmounts, boolean[] percents) {
+        int size = fromAmounts.length;
+        this.tiered = tiered;
+        this.fromAmounts = fromAmounts;
+        this.valueAmounts = valueAmounts;
+        this.percents = percents;
+        this.froms = new long[size];
+        this.values = new long[size];
+        this.bases = new long[size];
+        this.baseAmounts = new BigDecimal[size];
+
+        for (int i = 0; i < size; i++) {
+            froms[i] = MinorUnits.toMinorUnits(fromAmounts[i]);
+            values[i] = MinorUnits.toMinorUnits(valueAmounts[i]);
+            if (i == 0) {
+                bases[i] = 0;
+                baseAmounts[i] = BigDecimal.ZERO;
+            } else {
+                bases[i] = Math.addExact(bases[i - 1], Math.multiplyExact(froms[i] - froms[i - 1], values[i - 1]));
+                baseAmounts[i] = baseAmounts[i - 1].add(fromAmounts[i].subtract(fromAmounts[i - 1]).multiply(valueAmounts[i - 1]));
+            }
+        }
+    }
+
+    @Override
+    public BigDecimal calculateDiscount(BigDecimal orderAmount, BigDecimal discountValue, BigDecimal maxDiscountAmount) {
+        int tier = Arrays.binarySearch(fromAmounts, orderAmount);
+        if (tier < 0) {
+            // Last tier starting before the order amount
+            tier = -tier - 2;
+        }
+        if (tier < 0) {
+            return BigDecimal.ZERO;
+        }
+
+        BigDecimal discount;
+        if (tiered) {
+            discount = baseAmounts[tier]
+                    .add(orderAmount.subtract(fromAmounts[tier]).multiply(valueAmounts[tier]))
+                    .divide(HUNDRED, 2, RoundingMode.HALF_UP);
+        } else if (percents[tier]) {
+            discount = orderAmount.multiply(valueAmounts[tier]).divide(HUNDRED, 2, RoundingMode.HALF_UP);
+        } else {
+            discount = valueAmounts[tier];
+        }
+
+        // Apply max discount limit if specified
+        if (maxDiscountAmount != null && discount.compareTo(maxDiscountAmount) > 0) {
+            return maxDiscountAmount;
+        }
+
+        return discount;
+    }
+
+    @Override
+    public long calculateDiscount(long orderAmount, long discountValue, long maxDiscountAmount) {
+        int tier = Arrays.binarySearch(froms, orderAmount);
+        if (tier < 0) {
+            // Last tier starting before the order amount
+            tier = -tier - 2;
+        }
+        if (tier < 0) {
+            return 0;
+        }
+
+        long discount;
+        if (tiered) {
+            discount = MinorUnits.divideHalfUp(
+                    Math.addExact(bases[tier], Math.multiplyExact(orderAmount - froms[tier], values[tier])), PERCENT_SCALE);
+        } else if (percents[tier]) {
+            discount = MinorUnits.divideHalfUp(Math.multiplyExact(orderAmount, values[tier]), PERCENT_SCALE);
+        } else {
+            discount = values[tier];
+        }
+
+        // Apply max discount limit if specified
+        if (discount > maxDiscountAmount) {
+            return maxDiscountAmount;
+        }
+
+        return discount;
+    }
+
+}
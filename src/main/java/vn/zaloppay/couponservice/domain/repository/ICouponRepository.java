@@ -1,7 +1,11 @@
 package vn.zaloppay.couponservice.domain.repository;
 
+import org.springframework.data.domain.OffsetScrollPosition;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
 import vn.zaloppay.couponservice.domain.model.Coupon;
 import vn.zaloppay.couponservice.domain.model.discount.DiscountType;
 import vn.zaloppay.couponservice.domain.model.UsageType;
@@ -18,16 +22,62 @@ public interface ICouponRepository {
 
     Page<Coupon> findAll(DiscountType discountType, UsageType usageType, Pageable pageable);
 
+    /**
+     * @param position a keyset position to seek past, or an offset position to skip to
+     */
+    Window<Coupon> scrollAll(DiscountType discountType, UsageType usageType, Sort sort, ScrollPosition position, int size);
+
+    /**
+     * @return the number of coupons matching the filters, possibly lagging behind recent usage
+     */
+    long countAll(DiscountType discountType, UsageType usageType);
+
     List<Coupon> findEligibleCoupons(BigDecimal orderAmount, LocalDateTime currentTime);
 
+    Coupon findBestCoupon(BigDecimal orderAmount, LocalDateTime currentTime);
+
+    List<Coupon> findTopEligibleCoupons(BigDecimal orderAmount, LocalDateTime currentTime, int limit);
+
     Page<Coupon> findAvailableCoupons(BigDecimal orderAmount, DiscountType discountType, LocalDateTime currentTime, Pageable pageable);
 
+    /**
+     * @param position a keyset position to seek past, or an offset position to skip to
+     */
+    Window<Coupon> scrollAvailableCoupons(BigDecimal orderAmount, DiscountType discountType, LocalDateTime currentTime,
+                                          Sort sort, ScrollPosition position, int size);
+
+    /**
+     * Available coupons ranked by the discount they give to the order amount, then by id.
+     */
+    Page<Coupon> findAvailableCouponsByDiscount(BigDecimal orderAmount, DiscountType discountType, LocalDateTime currentTime,
+                                                Sort.Direction direction, Pageable pageable);
+
+    /**
+     * Same ranking as {@link #findAvailableCouponsByDiscount}, without counting the result.
+     */
+    Window<Coupon> scrollAvailableCouponsByDiscount(BigDecimal orderAmount, DiscountType discountType, LocalDateTime currentTime,
+                                                    Sort.Direction direction, OffsetScrollPosition position, int size);
+
+    /**
+     * @return the number of coupons currently available to the order amount, possibly lagging behind recent usage
+     */
+    long countAvailableCoupons(BigDecimal orderAmount, DiscountType discountType);
+
     Coupon save(Coupon coupon);
 
-    Coupon update(Coupon coupon);
+    /**
+     * @param usageChanged whether the admin set a new remaining usage, otherwise the usage taken meanwhile is kept
+     */
+    Coupon update(Coupon coupon, boolean usageChanged);
 
     void delete(Coupon coupon);
 
     boolean decrementRemainingUsage(String code);
 
+    int decrementRemainingUsage(String code, int count);
+
+    boolean applyUsage(Coupon coupon, BigDecimal orderAmount, LocalDateTime appliedAt);
+
+    void releaseUsage(String code, int count);
+
 }
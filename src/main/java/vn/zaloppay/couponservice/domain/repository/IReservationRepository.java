@@ -0,0 +1,30 @@
+package vn.zaloppay.couponservice.domain.repository;
+
+import vn.zaloppay.couponservice.domain.model.Reservation;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface IReservationRepository {
+
+    void save(Reservation reservation);
+
+    /**
+     * Atomically remove a reservation that has not expired yet
+     * @return the removed reservation, or null if it doesn't exist or has expired
+     */
+    Reservation takeActive(String id, LocalDateTime now);
+
+    /**
+     * Atomically remove a reservation, expired or not
+     * @return the removed reservation, or null if it doesn't exist
+     */
+    Reservation take(String id);
+
+    /**
+     * Atomically remove up to limit reservations that expired before now
+     * @return the removed reservations
+     */
+    List<Reservation> takeExpired(LocalDateTime now, int limit);
+
+}
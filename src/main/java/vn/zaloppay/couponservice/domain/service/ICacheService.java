@@ -26,6 +26,18 @@ public interface ICacheService {
      * @return Optional containing the cached value if exists and not expired
      */
     <T> Optional<T> get(String key, Class<T> type);
+
+    /**
+     * Store a value in cache only if the key is not present yet
+     * @param key cache key
+     * @param value value to cache
+     * @param ttl time to live
+     * @param <T> type of value
+     * @return true if the value was stored, false if the key already existed
+     * @throws vn.zaloppay.couponservice.domain.exceptions.InternalServerErrorException if the cache is unavailable,
+     *         since callers claim keys with it and a failed write is no claim by someone else
+     */
+    <T> boolean putIfAbsent(String key, T value, Duration ttl);
     
     /**
      * Delete a specific cache entry
@@ -0,0 +1,36 @@
+package vn.zaloppay.couponservice.domain.service;
+
+import java.util.function.BiConsumer;
+
+/**
+ * Registry of coupons known to have no remaining usage, shared by every instance.
+ * Lookups are answered from memory so that applies of a sold-out coupon are rejected without any I/O.
+ */
+public interface ISoldOutRegistry {
+
+    /**
+     * Check whether a coupon is known to be sold out
+     * @param code coupon code
+     * @return true if the coupon has no remaining usage
+     */
+    boolean isSoldOut(String code);
+
+    /**
+     * Record that a coupon ran out of usage on every instance
+     * @param code coupon code
+     */
+    void markSoldOut(String code);
+
+    /**
+     * Forget a sold-out coupon on every instance, e.g. after usage was added back
+     * @param code coupon code
+     */
+    void clear(String code);
+
+    /**
+     * Be told of every coupon marked sold out or cleared, by this instance or another one
+     * @param listener called with the coupon code and whether it is now sold out
+     */
+    void addListener(BiConsumer<String, Boolean> listener);
+
+}
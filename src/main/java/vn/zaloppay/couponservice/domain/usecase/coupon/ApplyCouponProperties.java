@@ -0,0 +1,51 @@
+package vn.zaloppay.couponservice.domain.usecase.coupon;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import vn.zaloppay.couponservice.domain.model.ApplyMode;
+import vn.zaloppay.couponservice.domain.model.UsageType;
+
+import java.time.Duration;
+import java.util.EnumSet;
+import java.util.Set;
+
+@Setter
+@Getter
+@Component
+@ConfigurationProperties(prefix = "coupon.apply")
+public class ApplyCouponProperties {
+
+    private ApplyMode mode = ApplyMode.LOCK;
+
+    // Time budget of an automatic apply to fall back down the ranked eligible coupons
+    private Duration autoApplyDeadline = Duration.ofSeconds(3);
+
+    // Eligible coupons fetched, best first, for an automatic apply to fall back on
+    private int autoApplyCandidates = 10;
+
+    // Largest number of coupons stacked on one order
+    private int maxStackedCoupons = 2;
+
+    // Usage types of which a stack holds at most one coupon
+    private Set<UsageType> stackingExclusiveUsageTypes = EnumSet.allOf(UsageType.class);
+
+    // How long a coupon stays marked sold out unless cleared earlier, one still out of usage is marked again on its next apply
+    private Duration soldOutTtl = Duration.ofMinutes(10);
+
+    // How long the result of applying a coupon to an order is replayed for retries with the same order id
+    private Duration idempotencyTtl = Duration.ofMinutes(30);
+
+    // How long an order stays claimed while its first apply is in flight
+    private Duration idempotencyClaimTtl = Duration.ofSeconds(30);
+
+    // How long a reserved usage is held before the sweeper releases it
+    private Duration reservationTtl = Duration.ofMinutes(5);
+
+    // Expired reservations released per sweep round
+    private int reservationSweepBatchSize = 500;
+
+    private long reservationSweepIntervalMs = 1000;
+
+}
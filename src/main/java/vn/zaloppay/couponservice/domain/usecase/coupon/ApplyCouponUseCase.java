@@ -1,13 +1,18 @@
 package vn.zaloppay.couponservice.domain.usecase.coupon;
 
+import lombok.AllArgsConstructor;
 import lombok.RequiredArgsConstructor;
 import lombok.Value;
 import org.springframework.stereotype.Component;
 
+import vn.zaloppay.couponservice.domain.model.ApplyMode;
 import vn.zaloppay.couponservice.domain.model.Coupon;
 import vn.zaloppay.couponservice.domain.exceptions.BadRequestException;
+import vn.zaloppay.couponservice.domain.exceptions.ConflictException;
 import vn.zaloppay.couponservice.domain.exceptions.ResourceNotFoundException;
 import vn.zaloppay.couponservice.domain.repository.ICouponRepository;
+import vn.zaloppay.couponservice.domain.service.ICacheService;
+import vn.zaloppay.couponservice.domain.service.ISoldOutRegistry;
 import vn.zaloppay.couponservice.domain.service.IDistributedLockService;
 import vn.zaloppay.couponservice.domain.usecase.UseCase;
 import vn.zaloppay.couponservice.domain.util.CacheKey;
@@ -15,8 +20,8 @@ import vn.zaloppay.couponservice.domain.util.CacheKey;
 import java.math.BigDecimal;
 import java.time.Duration;
 import java.time.LocalDateTime;
-import java.util.Comparator;
 import java.util.List;
+import java.util.Optional;
 
 @Component
 @RequiredArgsConstructor
@@ -24,14 +29,17 @@ public class ApplyCouponUseCase extends UseCase<ApplyCouponUseCase.InputValues,
 
     private final ICouponRepository couponRepository;
     private final IDistributedLockService distributedLockService;
+    private final ApplyCouponProperties applyProperties;
+    private final ICacheService cacheService;
+    private final ISoldOutRegistry soldOutRegistry;
 
     // Lock configuration constants
-    private static final Duration LOCK_WAIT_TIME = Duration.ofSeconds(3);
-    private static final Duration LOCK_LEASE_TIME = Duration.ofSeconds(10);
+    static final Duration LOCK_WAIT_TIME = Duration.ofSeconds(3);
+    static final Duration LOCK_LEASE_TIME = Duration.ofSeconds(10);
     
     // Retry configuration constants
-    private static final int MAX_RETRY_ATTEMPTS = 3;
-    private static final Duration RETRY_DELAY = Duration.ofMillis(500);
+    static final int MAX_RETRY_ATTEMPTS = 3;
+    static final Duration RETRY_DELAY = Duration.ofMillis(500);
 
     /**
      * Applies a coupon to an order, either by using a specific coupon code or by automatically
@@ -40,28 +48,119 @@ public class ApplyCouponUseCase extends UseCase<ApplyCouponUseCase.InputValues,
      * <p>This method supports two modes of operation:
      * <ul>
      *   <li><strong>Automatic coupon selection:</strong> When no coupon code is provided 
-     *       (input.getCouponCode() is null), the system finds all eligible coupons for the 
-     *       given order amount and applies the one that provides the maximum discount.</li>
+     *       (input.getCouponCode() is null), the system looks up the eligible coupon that
+     *       provides the maximum discount for the given order amount and applies it.
+     *       If it sells out or stays locked, the other eligible coupons are tried from the
+     *       next best one, within the configured auto-apply deadline.</li>
      *   <li><strong>Specific coupon application:</strong> When a coupon code is provided, 
      *       the system applies that specific coupon if it's valid and eligible.</li>
      * </ul>
      * 
      * <p>The coupon application process includes:
      * <ul>
-     *   <li>Distributed locking to ensure thread-safe coupon usage updates</li>
-     *   <li>Validation of coupon eligibility (expiration, minimum order value, remaining usage)</li>
+     *   <li>Upfront rejection of coupons every instance already knows to be sold out</li>
+     *   <li>Distributed locking to ensure thread-safe coupon usage updates, unless the
+     *       {@link ApplyMode#LOCK_FREE} or {@link ApplyMode#CONDITIONAL} mode relies on an atomic
+     *       check-and-decrement instead</li>
+     *   <li>Validation of coupon eligibility (validity window, minimum order value)</li>
      *   <li>Discount calculation based on the coupon's discount strategy</li>
-     *   <li>Atomic decrement of the coupon's remaining usage count</li>
+     *   <li>Atomic decrement of the coupon's remaining usage count, rejecting coupons out of usage</li>
      * </ul>
+     *
+     * <p>When an order id is given, the first successful result is kept for a while and
+     * returned as is to retries of the same order, without taking the lock or a usage again.
+     * A request reusing the order id with another coupon code or order amount is rejected.
      * 
-     * @param input order details and optional coupon code
+     * @param input order details, optional coupon code and optional order id
      * @return discount amount and applied coupon details
      * @throws BadRequestException if coupon is invalid, expired, insufficient order amount, 
      *                           no remaining usage, or no eligible coupons found
      * @throws ResourceNotFoundException if specified coupon code doesn't exist
+     * @throws ConflictException if the same order is being applied by another request,
+     *                           or was applied with another coupon code or order amount
      */
     @Override
     public OutputValues execute(InputValues input) {
+        if (input.getOrderId() == null) {
+            return applyToOrder(input);
+        }
+
+        return applyIdempotently(input);
+    }
+
+    private OutputValues applyIdempotently(InputValues input) {
+        String request = fingerprintOf(input);
+        Optional<OutputValues> previousResult = claim(input.getOrderId(), request);
+        if (previousResult.isPresent()) {
+            return previousResult.get();
+        }
+
+        try {
+            OutputValues result = applyToOrder(input);
+            remember(input.getOrderId(), request, result);
+            return result;
+        } finally {
+            // Failures are not remembered, a retry applies again
+            release(input.getOrderId());
+        }
+    }
+
+    /**
+     * Claims an order for a request, unless a previous request of the order already applied it
+     *
+     * @return the result of the previous successful apply of the order, to replay, or empty once claimed
+     * @throws ConflictException if the order is being applied by another request,
+     *                           or was applied with another coupon code or order amount
+     */
+    Optional<OutputValues> claim(String orderId, String request) {
+        String resultKey = CacheKey.couponApplyResult(orderId);
+
+        // Replay the result of a previous successful apply of the same order
+        Optional<AppliedOrder> previousResult = cacheService.get(resultKey, AppliedOrder.class);
+        if (previousResult.isPresent()) {
+            return Optional.of(replay(previousResult.get(), request));
+        }
+
+        // Fails rather than returning false when the cache is unavailable, which is no conflict
+        if (!cacheService.putIfAbsent(CacheKey.couponApplyClaim(orderId), request, applyProperties.getIdempotencyClaimTtl())) {
+            // The first request may have completed between both reads
+            return Optional.of(cacheService.get(resultKey, AppliedOrder.class)
+                    .map(appliedOrder -> replay(appliedOrder, request))
+                    .orElseThrow(() -> new ConflictException("Order is already being applied, please try again")));
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Keeps the result of a claimed order for its retries
+     */
+    void remember(String orderId, String request, OutputValues result) {
+        cacheService.put(CacheKey.couponApplyResult(orderId), new AppliedOrder(request, result), applyProperties.getIdempotencyTtl());
+    }
+
+    /**
+     * Releases the claim of an order, once its result is remembered or its apply failed
+     */
+    void release(String orderId) {
+        cacheService.delete(CacheKey.couponApplyClaim(orderId));
+    }
+
+    private static OutputValues replay(AppliedOrder appliedOrder, String request) {
+        if (!appliedOrder.getRequest().equals(request)) {
+            throw new ConflictException("Order was already applied with another coupon code or order amount");
+        }
+        return appliedOrder.getResult();
+    }
+
+    /**
+     * Identify what a request of an order asks for, its retries must ask for the same
+     */
+    static String fingerprintOf(InputValues input) {
+        String couponCode = input.getCouponCode() == null ? "" : input.getCouponCode();
+        return couponCode + "|" + input.getOrderAmount().stripTrailingZeros().toPlainString();
+    }
+
+    private OutputValues applyToOrder(InputValues input) {
         if (input.getCouponCode() == null) {
             return findAndApplyBestCoupon(input);
         }
@@ -70,32 +169,79 @@ public class ApplyCouponUseCase extends UseCase<ApplyCouponUseCase.InputValues,
     }
 
     private OutputValues findAndApplyBestCoupon(InputValues input) {
-        List<Coupon> eligibleCoupons = couponRepository.findEligibleCoupons(
-                input.getOrderAmount(), 
-                input.getCreatedAt()
+        // The best coupon alone first, answered by the index without ranking every eligible coupon
+        Coupon best = couponRepository.findBestCoupon(input.getOrderAmount(), input.getCreatedAt());
+        if (best == null) {
+            throw new BadRequestException("No eligible coupon found");
+        }
+
+        long deadline = System.nanoTime() + applyProperties.getAutoApplyDeadline().toNanos();
+        RuntimeException lastFailure = null;
+        if (!soldOutRegistry.isSoldOut(best.getCode())) {
+            try {
+                return applyCandidate(best, input, deadline);
+            } catch (BadRequestException | ConflictException | ResourceNotFoundException e) {
+                lastFailure = e;
+            }
+        }
+
+        // Then the next ones, ranked once, tried in order if they sell out or stay locked
+        List<Coupon> candidates = couponRepository.findTopEligibleCoupons(
+                input.getOrderAmount(), input.getCreatedAt(), applyProperties.getAutoApplyCandidates()
         );
+        for (Coupon candidate : candidates) {
+            // Known sold out coupons are skipped, the deadline only cuts the fallback short
+            if (candidate.getCode().equals(best.getCode()) || soldOutRegistry.isSoldOut(candidate.getCode())) {
+                continue;
+            }
+            if (lastFailure != null && deadline - System.nanoTime() <= 0) {
+                break;
+            }
+
+            try {
+                return applyCandidate(candidate, input, deadline);
+            } catch (BadRequestException | ConflictException | ResourceNotFoundException e) {
+                // Sold out, locked by others for too long or gone since the eligibility query
+                lastFailure = e;
+            }
+        }
 
-        // Find the coupon that gives maximum discount
-        Coupon bestCoupon = eligibleCoupons.stream()
-                .max(Comparator.comparing(coupon -> coupon.calculateDiscount(input.getOrderAmount())))
-                .orElseThrow(() -> new BadRequestException("No eligible coupon found"));
+        throw lastFailure != null ? lastFailure : new BadRequestException("No eligible coupon found");
+    }
 
-        // Apply the best coupon with distributed lock
-        return applyCouponWithLock(bestCoupon.getCode(), input);
+    private OutputValues applyCandidate(Coupon candidate, InputValues input, long deadline) {
+        Duration remainingTime = Duration.ofNanos(deadline - System.nanoTime());
+        // A single bounded lock attempt per candidate, the next one is tried instead of retrying
+        Duration lockWaitTime = remainingTime.compareTo(LOCK_WAIT_TIME) < 0 ? remainingTime : LOCK_WAIT_TIME;
+        return applyCoupon(candidate.getCode(), input, lockWaitTime, 0);
     }
 
     private OutputValues applyCouponByCode(InputValues input) {
-        return applyCouponWithLock(input.getCouponCode(), input);
+        return applyCoupon(input.getCouponCode(), input, LOCK_WAIT_TIME, MAX_RETRY_ATTEMPTS);
     }
 
-    private OutputValues applyCouponWithLock(String couponCode, InputValues input) {
+    private OutputValues applyCoupon(String couponCode, InputValues input, Duration lockWaitTime, int maxRetryAttempts) {
+        // Known sold out coupons are rejected before any lock or I/O
+        if (soldOutRegistry.isSoldOut(couponCode)) {
+            throw new BadRequestException("Coupon has no remaining usage");
+        }
+
+        return switch (applyProperties.getMode()) {
+            case LOCK -> applyCouponWithLock(couponCode, input, lockWaitTime, maxRetryAttempts);
+            // The usage store checks and decrements atomically, so no lock is needed
+            case LOCK_FREE -> executeApplyCoupon(couponCode, input);
+            case CONDITIONAL -> executeConditionalApplyCoupon(couponCode, input);
+        };
+    }
+
+    private OutputValues applyCouponWithLock(String couponCode, InputValues input, Duration lockWaitTime, int maxRetryAttempts) {
         String lockKey = CacheKey.couponLockKey(couponCode);
         
         return distributedLockService.executeWithLockAndRetry(
             lockKey,
-            LOCK_WAIT_TIME,
+            lockWaitTime,
             LOCK_LEASE_TIME,
-            MAX_RETRY_ATTEMPTS,
+            maxRetryAttempts,
             RETRY_DELAY,
             () -> executeApplyCoupon(couponCode, input)
         );
@@ -105,44 +251,80 @@ public class ApplyCouponUseCase extends UseCase<ApplyCouponUseCase.InputValues,
         // Re-fetch coupon to get latest data (important for consistency)
         Coupon coupon = couponRepository.findByCode(couponCode);
 
-        validateCoupon(coupon, couponCode, input);
+        // The remaining usage read may lag behind the store (cached coupon, write-behind or leased usages),
+        // the decrement below decides, and marks the coupon sold out once the store confirms it ran out
+        validateApplicable(coupon, couponCode, input.getOrderAmount(), input.getCreatedAt());
 
         // Calculate discount amount
         BigDecimal discountAmount = coupon.calculateDiscount(input.getOrderAmount());
 
-        // Decrement the remaining usage (critical section protected by lock)
-        couponRepository.decrementRemainingUsage(coupon.getCode());
+        // Decrement the remaining usage, the store's verdict is authoritative
+        if (!couponRepository.decrementRemainingUsage(coupon.getCode())) {
+            throw new BadRequestException("Coupon has no remaining usage");
+        }
 
         return new OutputValues(discountAmount, coupon);
     }
 
-    private void validateCoupon(Coupon coupon, String couponCode, InputValues input) {
+    private OutputValues executeConditionalApplyCoupon(String couponCode, InputValues input) {
+        Coupon coupon = couponRepository.findByCode(couponCode);
+
+        if (coupon == null) {
+            throw new ResourceNotFoundException("Cannot find coupon with code: " + couponCode);
+        }
+
+        // Every validity check is folded into one conditional update, the affected row count is the verdict
+        if (!couponRepository.applyUsage(coupon, input.getOrderAmount(), input.getCreatedAt())) {
+            // Explain the rejection from the coupon we already hold, otherwise it ran out concurrently
+            validateCoupon(coupon, couponCode, input.getOrderAmount(), input.getCreatedAt());
+            throw new BadRequestException("Coupon has no remaining usage");
+        }
+
+        return new OutputValues(coupon.calculateDiscount(input.getOrderAmount()), coupon);
+    }
+
+    static void validateCoupon(Coupon coupon, String couponCode, BigDecimal orderAmount, LocalDateTime createdAt) {
+        validateApplicable(coupon, couponCode, orderAmount, createdAt);
+
+        // Check remaining usage
+        if (coupon.getRemainingUsage() <= 0) {
+            throw new BadRequestException("Coupon has no remaining usage");
+        }
+    }
+
+    private static void validateApplicable(Coupon coupon, String couponCode, BigDecimal orderAmount, LocalDateTime createdAt) {
         // Check if coupon exists
         if (coupon == null) {
             throw new ResourceNotFoundException("Cannot find coupon with code: " + couponCode);
         }
 
+        // Check if coupon is not active yet
+        if (coupon.getStartTime().isAfter(createdAt)) {
+            throw new BadRequestException("Coupon is not active yet");
+        }
+
         // Check if coupon is expired
-        if (coupon.getEndTime().isBefore(input.getCreatedAt())) {
+        if (coupon.getEndTime().isBefore(createdAt)) {
             throw new BadRequestException("Coupon is expired");
         }
 
         // Check minimum order value
-        if (coupon.getMinOrderValue().compareTo(input.getOrderAmount()) > 0) {
+        if (coupon.getMinOrderValue().compareTo(orderAmount) > 0) {
             throw new BadRequestException("The minimum order value of the coupon is greater than the order amount");
         }
-
-        // Check remaining usage
-        if (coupon.getRemainingUsage() <= 0) {
-            throw new BadRequestException("Coupon has no remaining usage");
-        }
     }
 
     @Value
+    @AllArgsConstructor
     public static class InputValues implements UseCase.InputValues {
         BigDecimal orderAmount;
         LocalDateTime createdAt;
         String couponCode;
+        String orderId;
+
+        public InputValues(BigDecimal orderAmount, LocalDateTime createdAt, String couponCode) {
+            this(orderAmount, createdAt, couponCode, null);
+        }
     }
 
     @Value
@@ -151,4 +333,13 @@ public class ApplyCouponUseCase extends UseCase<ApplyCouponUseCase.InputValues,
         Coupon coupon;
     }
 
+    /**
+     * Result of an order kept for its retries, with the fingerprint of the request it answered
+     */
+    @Value
+    public static class AppliedOrder {
+        String request;
+        OutputValues result;
+    }
+
 }
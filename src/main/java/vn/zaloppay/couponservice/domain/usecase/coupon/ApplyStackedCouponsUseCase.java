@@ -0,0 +1,136 @@
+package vn.zaloppay.couponservice.domain.usecase.coupon;
+
+import lombok.RequiredArgsConstructor;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import vn.zaloppay.couponservice.domain.exceptions.BadRequestException;
+import vn.zaloppay.couponservice.domain.exceptions.ConflictException;
+import vn.zaloppay.couponservice.domain.exceptions.ResourceNotFoundException;
+import vn.zaloppay.couponservice.domain.model.Coupon;
+import vn.zaloppay.couponservice.domain.model.UsageType;
+import vn.zaloppay.couponservice.domain.model.discount.CouponStacker;
+import vn.zaloppay.couponservice.domain.repository.ICouponRepository;
+import vn.zaloppay.couponservice.domain.service.ISoldOutRegistry;
+import vn.zaloppay.couponservice.domain.usecase.UseCase;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ApplyStackedCouponsUseCase extends UseCase<ApplyStackedCouponsUseCase.InputValues, ApplyStackedCouponsUseCase.OutputValues> {
+
+    private final ApplyCouponUseCase applyCouponUseCase;
+    private final ICouponRepository couponRepository;
+    private final ISoldOutRegistry soldOutRegistry;
+    private final ApplyCouponProperties applyProperties;
+
+    /**
+     * Applies the combination of coupons giving an order the highest total discount.
+     *
+     * <p>The coupon named by the order, if any, is always part of the combination. It is completed with the
+     * eligible {@link UsageType#AUTO} coupons chosen by the {@link CouponStacker}, within the configured
+     * maximum number of coupons and at most one coupon per exclusive usage type.
+     *
+     * <p>All chosen coupons are applied or none is: each is applied like {@link ApplyCouponUseCase} does,
+     * in stack order, and when one fails the usages already taken are given back before the failure is reported.
+     *
+     * @param input order details and optional coupon code
+     * @return the applied coupons with their discounts, and the total discount capped at the order amount
+     * @throws BadRequestException if the named coupon is not applicable, no coupon is eligible
+     *                             or a chosen coupon ran out meanwhile
+     * @throws ResourceNotFoundException if the named coupon doesn't exist
+     * @throws ConflictException if a chosen coupon stays locked by other requests
+     */
+    @Override
+    public OutputValues execute(InputValues input) {
+        Coupon required = null;
+        if (input.getCouponCode() != null) {
+            if (soldOutRegistry.isSoldOut(input.getCouponCode())) {
+                throw new BadRequestException("Coupon has no remaining usage");
+            }
+            required = couponRepository.findByCode(input.getCouponCode());
+            ApplyCouponUseCase.validateCoupon(required, input.getCouponCode(), input.getOrderAmount(), input.getCreatedAt());
+        }
+
+        List<Coupon> candidates = couponRepository.findEligibleCoupons(input.getOrderAmount(), input.getCreatedAt()).stream()
+                .filter(coupon -> coupon.getUsageType() == UsageType.AUTO)
+                .filter(coupon -> !soldOutRegistry.isSoldOut(coupon.getCode()))
+                .toList();
+
+        List<Coupon> stack = CouponStacker.stack(
+                input.getOrderAmount(),
+                required,
+                candidates,
+                applyProperties.getMaxStackedCoupons(),
+                applyProperties.getStackingExclusiveUsageTypes()
+        );
+        if (stack.isEmpty()) {
+            throw new BadRequestException("No eligible coupon found");
+        }
+
+        Map<String, ApplyCouponUseCase.OutputValues> applied = applyAll(stack, input);
+
+        // Discounts in stack order, the last ones trimmed so that the total doesn't exceed the order amount
+        List<AppliedCoupon> appliedCoupons = new ArrayList<>();
+        BigDecimal totalDiscount = BigDecimal.ZERO;
+        for (Coupon coupon : stack) {
+            ApplyCouponUseCase.OutputValues result = applied.get(coupon.getCode());
+            BigDecimal discountAmount = result.getDiscountAmount().min(input.getOrderAmount().subtract(totalDiscount));
+            appliedCoupons.add(new AppliedCoupon(discountAmount, result.getCoupon()));
+            totalDiscount = totalDiscount.add(discountAmount);
+        }
+
+        return new OutputValues(totalDiscount, appliedCoupons);
+    }
+
+    private Map<String, ApplyCouponUseCase.OutputValues> applyAll(List<Coupon> stack, InputValues input) {
+        // Each apply takes and releases the lock of its coupon, no lock is held across the stack
+        Map<String, ApplyCouponUseCase.OutputValues> applied = new HashMap<>();
+        try {
+            for (Coupon coupon : stack) {
+                applied.put(coupon.getCode(), applyCouponUseCase.execute(
+                        new ApplyCouponUseCase.InputValues(input.getOrderAmount(), input.getCreatedAt(), coupon.getCode())
+                ));
+            }
+        } catch (RuntimeException e) {
+            // The stack is not applied, hand back the usages already taken, each one even if another can't be
+            for (String code : applied.keySet()) {
+                try {
+                    couponRepository.releaseUsage(code, 1);
+                } catch (RuntimeException releaseFailure) {
+                    log.error("Error releasing the usage of coupon {} taken by a failed stack", code, releaseFailure);
+                    e.addSuppressed(releaseFailure);
+                }
+            }
+            throw e;
+        }
+        return applied;
+    }
+
+    @Value
+    public static class AppliedCoupon {
+        BigDecimal discountAmount;
+        Coupon coupon;
+    }
+
+    @Value
+    public static class InputValues implements UseCase.InputValues {
+        BigDecimal orderAmount;
+        LocalDateTime createdAt;
+        String couponCode;
+    }
+
+    @Value
+    public static class OutputValues implements UseCase.OutputValues {
+        BigDecimal totalDiscount;
+        List<AppliedCoupon> coupons;
+    }
+
+}
@@ -0,0 +1,229 @@
+package vn.zaloppay.couponservice.domain.usecase.coupon;
+
+import lombok.RequiredArgsConstructor;
+import lombok.Value;
+import org.springframework.stereotype.Component;
+import vn.zaloppay.couponservice.domain.exceptions.BadRequestException;
+import vn.zaloppay.couponservice.domain.exceptions.ConflictException;
+import vn.zaloppay.couponservice.domain.exceptions.InternalServerErrorException;
+import vn.zaloppay.couponservice.domain.exceptions.ResourceNotFoundException;
+import vn.zaloppay.couponservice.domain.model.ApplyMode;
+import vn.zaloppay.couponservice.domain.model.Coupon;
+import vn.zaloppay.couponservice.domain.repository.ICouponRepository;
+import vn.zaloppay.couponservice.domain.service.IDistributedLockService;
+import vn.zaloppay.couponservice.domain.service.ISoldOutRegistry;
+import vn.zaloppay.couponservice.domain.usecase.UseCase;
+import vn.zaloppay.couponservice.domain.util.CacheKey;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+@Component
+@RequiredArgsConstructor
+public class BatchApplyCouponUseCase extends UseCase<BatchApplyCouponUseCase.InputValues, BatchApplyCouponUseCase.OutputValues> {
+
+    private final ApplyCouponUseCase applyCouponUseCase;
+    private final ICouponRepository couponRepository;
+    private final IDistributedLockService distributedLockService;
+    private final ISoldOutRegistry soldOutRegistry;
+    private final ApplyCouponProperties applyProperties;
+
+    /**
+     * Applies coupons to many orders at once.
+     *
+     * <p>Orders naming a coupon are grouped by coupon code. Each group is validated and priced in one pass,
+     * then all its usages are taken with a single decrement, under a single lock in the
+     * {@link ApplyMode#LOCK} mode. When the coupon runs out partway through a group, the orders
+     * beyond its remaining usage are rejected while the earlier ones are applied.
+     * Orders without a coupon code are auto-applied one by one like {@link ApplyCouponUseCase} does.
+     *
+     * <p>Orders are applied once per order id, like {@link ApplyCouponUseCase} does: the retries of an order
+     * applied before get its first result back, within the batch an order id repeated is rejected.
+     *
+     * <p>A failing order never fails the batch, it gets an error in its own result instead.
+     *
+     * @param input orders and time of the batch
+     * @return one result per order, in the order of the input
+     */
+    @Override
+    public OutputValues execute(InputValues input) {
+        OrderResult[] results = new OrderResult[input.getOrders().size()];
+
+        Set<String> orderIds = new HashSet<>();
+        List<Integer> claimedIndexes = new ArrayList<>();
+        try {
+            Map<String, List<Integer>> ordersPerCoupon = new LinkedHashMap<>();
+            for (int i = 0; i < input.getOrders().size(); i++) {
+                Order order = input.getOrders().get(i);
+                if (order.getOrderId() != null && !orderIds.add(order.getOrderId())) {
+                    results[i] = OrderResult.rejected(order, "Order id appears more than once in the batch");
+                } else if (order.getCouponCode() == null) {
+                    results[i] = autoApply(order, input.getCreatedAt());
+                } else if (order.getOrderId() == null || claim(order, input.getCreatedAt(), i, results)) {
+                    if (order.getOrderId() != null) {
+                        claimedIndexes.add(i);
+                    }
+                    ordersPerCoupon.computeIfAbsent(order.getCouponCode(), code -> new ArrayList<>()).add(i);
+                }
+            }
+
+            ordersPerCoupon.forEach((code, indexes) -> applyGroup(code, indexes, input, results));
+
+            for (Integer index : claimedIndexes) {
+                if (results[index].isApplied()) {
+                    Order order = input.getOrders().get(index);
+                    applyCouponUseCase.remember(order.getOrderId(), fingerprintOf(order, input.getCreatedAt()),
+                            new ApplyCouponUseCase.OutputValues(results[index].getDiscountAmount(), results[index].getCoupon()));
+                }
+            }
+        } finally {
+            // Rejected orders are not remembered, a retry applies them again
+            claimedIndexes.forEach(index -> applyCouponUseCase.release(input.getOrders().get(index).getOrderId()));
+        }
+
+        return new OutputValues(List.of(results));
+    }
+
+    /**
+     * Claims an order for this batch, or sets its result when it was applied before or is being applied elsewhere
+     *
+     * @return whether the order is claimed and still to be applied
+     */
+    private boolean claim(Order order, LocalDateTime createdAt, int index, OrderResult[] results) {
+        try {
+            Optional<ApplyCouponUseCase.OutputValues> previousResult =
+                    applyCouponUseCase.claim(order.getOrderId(), fingerprintOf(order, createdAt));
+            if (previousResult.isEmpty()) {
+                return true;
+            }
+            results[index] = OrderResult.applied(order, previousResult.get().getDiscountAmount(), previousResult.get().getCoupon());
+        } catch (ConflictException | InternalServerErrorException e) {
+            results[index] = OrderResult.rejected(order, e.getMessage());
+        }
+        return false;
+    }
+
+    private static String fingerprintOf(Order order, LocalDateTime createdAt) {
+        return ApplyCouponUseCase.fingerprintOf(new ApplyCouponUseCase.InputValues(
+                order.getOrderAmount(), createdAt, order.getCouponCode(), order.getOrderId()));
+    }
+
+    private OrderResult autoApply(Order order, LocalDateTime createdAt) {
+        try {
+            ApplyCouponUseCase.OutputValues applied = applyCouponUseCase.execute(
+                    new ApplyCouponUseCase.InputValues(order.getOrderAmount(), createdAt, null, order.getOrderId())
+            );
+            return OrderResult.applied(order, applied.getDiscountAmount(), applied.getCoupon());
+        } catch (BadRequestException | ConflictException | ResourceNotFoundException | InternalServerErrorException e) {
+            return OrderResult.rejected(order, e.getMessage());
+        }
+    }
+
+    private void applyGroup(String code, List<Integer> indexes, InputValues input, OrderResult[] results) {
+        try {
+            // Known sold out coupons are rejected before any lock or I/O
+            if (soldOutRegistry.isSoldOut(code)) {
+                throw new BadRequestException("Coupon has no remaining usage");
+            }
+
+            if (applyProperties.getMode() == ApplyMode.LOCK) {
+                distributedLockService.executeWithLockAndRetry(
+                        CacheKey.couponLockKey(code),
+                        ApplyCouponUseCase.LOCK_WAIT_TIME,
+                        ApplyCouponUseCase.LOCK_LEASE_TIME,
+                        ApplyCouponUseCase.MAX_RETRY_ATTEMPTS,
+                        ApplyCouponUseCase.RETRY_DELAY,
+                        () -> executeApplyGroup(code, indexes, input, results)
+                );
+            } else {
+                // The usage store takes the whole group atomically, so no lock is needed
+                executeApplyGroup(code, indexes, input, results);
+            }
+        } catch (BadRequestException | ConflictException | ResourceNotFoundException e) {
+            for (Integer index : indexes) {
+                if (results[index] == null) {
+                    results[index] = OrderResult.rejected(input.getOrders().get(index), e.getMessage());
+                }
+            }
+        }
+    }
+
+    private Void executeApplyGroup(String code, List<Integer> indexes, InputValues input, OrderResult[] results) {
+        Coupon coupon = couponRepository.findByCode(code);
+
+        // Validate and price every order of the group against the same coupon read
+        List<Integer> validIndexes = new ArrayList<>();
+        List<BigDecimal> discounts = new ArrayList<>();
+        for (Integer index : indexes) {
+            Order order = input.getOrders().get(index);
+            try {
+                ApplyCouponUseCase.validateCoupon(coupon, code, order.getOrderAmount(), input.getCreatedAt());
+                validIndexes.add(index);
+                discounts.add(coupon.calculateDiscount(order.getOrderAmount()));
+            } catch (BadRequestException | ResourceNotFoundException e) {
+                results[index] = OrderResult.rejected(order, e.getMessage());
+            }
+        }
+
+        if (validIndexes.isEmpty()) {
+            return null;
+        }
+
+        // One decrement for the whole group, the first orders get the usages that were left
+        int taken = couponRepository.decrementRemainingUsage(code, validIndexes.size());
+        for (int i = 0; i < validIndexes.size(); i++) {
+            Order order = input.getOrders().get(validIndexes.get(i));
+            results[validIndexes.get(i)] = i < taken
+                    ? OrderResult.applied(order, discounts.get(i), coupon)
+                    : OrderResult.rejected(order, "Coupon has no remaining usage");
+        }
+        return null;
+    }
+
+    @Value
+    public static class Order {
+        String orderId;
+        BigDecimal orderAmount;
+        String couponCode;
+    }
+
+    @Value
+    public static class OrderResult {
+        String orderId;
+        BigDecimal orderAmount;
+        BigDecimal discountAmount;
+        Coupon coupon;
+        String error;
+
+        static OrderResult applied(Order order, BigDecimal discountAmount, Coupon coupon) {
+            return new OrderResult(order.getOrderId(), order.getOrderAmount(), discountAmount, coupon, null);
+        }
+
+        static OrderResult rejected(Order order, String error) {
+            return new OrderResult(order.getOrderId(), order.getOrderAmount(), null, null, error);
+        }
+
+        public boolean isApplied() {
+            return error == null;
+        }
+    }
+
+    @Value
+    public static class InputValues implements UseCase.InputValues {
+        List<Order> orders;
+        LocalDateTime createdAt;
+    }
+
+    @Value
+    public static class OutputValues implements UseCase.OutputValues {
+        List<OrderResult> results;
+    }
+
+}
@@ -0,0 +1,49 @@
+package vn.zaloppay.couponservice.domain.usecase.coupon;
+
+import lombok.RequiredArgsConstructor;
+import lombok.Value;
+import org.springframework.stereotype.Component;
+import vn.zaloppay.couponservice.domain.exceptions.ResourceNotFoundException;
+import vn.zaloppay.couponservice.domain.model.Reservation;
+import vn.zaloppay.couponservice.domain.repository.ICouponRepository;
+import vn.zaloppay.couponservice.domain.repository.IReservationRepository;
+import vn.zaloppay.couponservice.domain.usecase.UseCase;
+
+@Component
+@RequiredArgsConstructor
+public class CancelReservationUseCase extends UseCase<CancelReservationUseCase.InputValues, CancelReservationUseCase.OutputValues> {
+
+    private final ICouponRepository couponRepository;
+    private final IReservationRepository reservationRepository;
+
+    /**
+     * Drops a reservation and gives its coupon usage back.
+     *
+     * @param input reservation id
+     * @return the cancelled reservation
+     * @throws ResourceNotFoundException if the reservation doesn't exist or was already settled
+     */
+    @Override
+    public OutputValues execute(InputValues input) {
+        Reservation reservation = reservationRepository.take(input.getReservationId());
+
+        if (reservation == null) {
+            throw new ResourceNotFoundException("Cannot find reservation with id: " + input.getReservationId());
+        }
+
+        couponRepository.releaseUsage(reservation.getCouponCode(), 1);
+
+        return new OutputValues(reservation);
+    }
+
+    @Value
+    public static class InputValues implements UseCase.InputValues {
+        String reservationId;
+    }
+
+    @Value
+    public static class OutputValues implements UseCase.OutputValues {
+        Reservation reservation;
+    }
+
+}
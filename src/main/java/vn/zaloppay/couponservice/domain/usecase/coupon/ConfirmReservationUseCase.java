@@ -0,0 +1,49 @@
+package vn.zaloppay.couponservice.domain.usecase.coupon;
+
+import lombok.RequiredArgsConstructor;
+import lombok.Value;
+import org.springframework.stereotype.Component;
+import vn.zaloppay.couponservice.domain.exceptions.ResourceNotFoundException;
+import vn.zaloppay.couponservice.domain.model.Reservation;
+import vn.zaloppay.couponservice.domain.repository.IReservationRepository;
+import vn.zaloppay.couponservice.domain.usecase.UseCase;
+
+import java.time.LocalDateTime;
+
+@Component
+@RequiredArgsConstructor
+public class ConfirmReservationUseCase extends UseCase<ConfirmReservationUseCase.InputValues, ConfirmReservationUseCase.OutputValues> {
+
+    private final IReservationRepository reservationRepository;
+
+    /**
+     * Makes a reserved coupon usage permanent. The usage was already taken at reservation time,
+     * so confirming only drops the reservation.
+     *
+     * @param input reservation id and confirmation time
+     * @return the confirmed reservation
+     * @throws ResourceNotFoundException if the reservation doesn't exist, was already settled or has expired
+     */
+    @Override
+    public OutputValues execute(InputValues input) {
+        Reservation reservation = reservationRepository.takeActive(input.getReservationId(), input.getConfirmedAt());
+
+        if (reservation == null) {
+            throw new ResourceNotFoundException("Cannot find active reservation with id: " + input.getReservationId());
+        }
+
+        return new OutputValues(reservation);
+    }
+
+    @Value
+    public static class InputValues implements UseCase.InputValues {
+        String reservationId;
+        LocalDateTime confirmedAt;
+    }
+
+    @Value
+    public static class OutputValues implements UseCase.OutputValues {
+        Reservation reservation;
+    }
+
+}
@@ -1,10 +1,12 @@
 package vn.zaloppay.couponservice.domain.usecase.coupon;
 
+import lombok.AllArgsConstructor;
 import lombok.RequiredArgsConstructor;
 import lombok.Value;
 import org.springframework.stereotype.Component;
 import vn.zaloppay.couponservice.domain.model.Coupon;
 import vn.zaloppay.couponservice.domain.model.UsageType;
+import vn.zaloppay.couponservice.domain.model.discount.DiscountRules;
 import vn.zaloppay.couponservice.domain.model.discount.DiscountType;
 import vn.zaloppay.couponservice.domain.exceptions.BadRequestException;
 import vn.zaloppay.couponservice.domain.exceptions.ConflictException;
@@ -27,6 +29,7 @@ public class CreateCouponUseCase extends UseCase<CreateCouponUseCase.InputValues
      * <ul>
      *   <li>Validates that the coupon code is unique (not already in use)</li>
      *   <li>Validates that the start time is before the end time</li>
+     *   <li>Validates the discount rules of TIERED and STEP coupons, which the other types must not have</li>
      *   <li>Creates a new coupon with all provided attributes</li>
      *   <li>Persists the coupon to the database</li>
      * </ul>
@@ -49,6 +52,8 @@ public class CreateCouponUseCase extends UseCase<CreateCouponUseCase.InputValues
             throw new BadRequestException("Start time must be before end time");
         }
 
+        validateDiscountRules(input.getDiscountType(), input.getDiscountRules());
+
         // If all condition is satisfied, create a new coupon
         Coupon coupon = new Coupon(
                 null,
@@ -62,13 +67,27 @@ public class CreateCouponUseCase extends UseCase<CreateCouponUseCase.InputValues
                 input.getMinOrderValue(),
                 input.getStartTime(),
                 input.getEndTime(),
-                input.getRemainingUsage()
+                input.getRemainingUsage(),
+                input.getDiscountRules()
         );
 
         return new OutputValues(couponRepository.save(coupon));
     }
 
+    static void validateDiscountRules(DiscountType discountType, String discountRules) {
+        if (!discountType.isRuleBased() && discountRules == null) {
+            return;
+        }
+
+        try {
+            DiscountRules.validate(discountType, discountRules);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException(e.getMessage());
+        }
+    }
+
     @Value
+    @AllArgsConstructor
     public static class InputValues implements UseCase.InputValues {
 
         String code;
@@ -93,6 +112,16 @@ public class CreateCouponUseCase extends UseCase<CreateCouponUseCase.InputValues
 
         Integer remainingUsage;
 
+        String discountRules;
+
+        public InputValues(String code, String title, String description, DiscountType discountType,
+                           UsageType usageType, BigDecimal discountValue, BigDecimal maxDiscountAmount,
+                           BigDecimal minOrderValue, LocalDateTime startTime, LocalDateTime endTime,
+                           Integer remainingUsage) {
+            this(code, title, description, discountType, usageType, discountValue, maxDiscountAmount,
+                    minOrderValue, startTime, endTime, remainingUsage, null);
+        }
+
     }
 
     @Value
@@ -1,14 +1,20 @@
 package vn.zaloppay.couponservice.domain.usecase.coupon;
 
+import lombok.AllArgsConstructor;
 import lombok.RequiredArgsConstructor;
 import lombok.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
 import org.springframework.stereotype.Component;
+import vn.zaloppay.couponservice.domain.exceptions.BadRequestException;
 import vn.zaloppay.couponservice.domain.model.Coupon;
+import vn.zaloppay.couponservice.domain.model.CouponCursor;
 import vn.zaloppay.couponservice.domain.model.CouponSortField;
+import vn.zaloppay.couponservice.domain.model.PagingMode;
 import vn.zaloppay.couponservice.domain.model.discount.DiscountType;
 import vn.zaloppay.couponservice.domain.model.UsageType;
 import vn.zaloppay.couponservice.domain.repository.ICouponRepository;
@@ -29,16 +35,41 @@ public class GetAllCouponUseCase extends UseCase<GetAllCouponUseCase.InputValues
      * <ul>
      *   <li>Filtering by discount type and usage type (optional)</li>
      *   <li>Sorting by configurable fields and direction</li>
-     *   <li>Pagination with customizable page size</li>
+     *   <li>Pagination with customizable page size, by page number or by cursor, counted or not</li>
      * </ul>
      * 
      * @param input search criteria including filters, pagination, and sorting parameters
      * @return OutputValues containing paginated coupon results with metadata
+     * @throws BadRequestException if the cursor is malformed or was taken with another sort
      */
     @Override
     public OutputValues execute(GetAllCouponUseCase.InputValues input) {
         // Create sorting
         Sort sort = SortUtils.createSort(input.getSortBy(), input.getSortDirection(), CouponSortField::from);
+
+        if (input.getPagingMode() == PagingMode.CURSOR) {
+            Sort.Order order = sort.iterator().next();
+            Window<Coupon> couponWindow = couponRepository.scrollAll(
+                    input.getDiscountType(),
+                    input.getUsageType(),
+                    CouponCursor.keysetSort(order),
+                    CouponCursor.decode(input.getCursor(), order),
+                    input.getSize()
+            );
+            return new OutputValues(null, couponWindow, CouponCursor.next(couponWindow, order), countIfAsked(input));
+        }
+        if (input.getPagingMode() == PagingMode.SLICE) {
+            int page = input.getPage();
+            int size = input.getSize();
+            Window<Coupon> couponWindow = couponRepository.scrollAll(
+                    input.getDiscountType(),
+                    input.getUsageType(),
+                    sort,
+                    page == 0 ? ScrollPosition.offset() : ScrollPosition.offset((long) page * size - 1),
+                    size
+            );
+            return new OutputValues(null, couponWindow, null, countIfAsked(input));
+        }
         
         // Create pageable
         Pageable pageable = PageRequest.of(input.getPage(), input.getSize(), sort);
@@ -53,7 +84,12 @@ public class GetAllCouponUseCase extends UseCase<GetAllCouponUseCase.InputValues
         return new OutputValues(couponPage);
     }
 
+    private Long countIfAsked(InputValues input) {
+        return input.isWithTotals() ? couponRepository.countAll(input.getDiscountType(), input.getUsageType()) : null;
+    }
+
     @Value
+    @AllArgsConstructor
     public static class InputValues implements UseCase.InputValues {
         DiscountType discountType;
         UsageType usageType;
@@ -61,11 +97,31 @@ public class GetAllCouponUseCase extends UseCase<GetAllCouponUseCase.InputValues
         Integer size;
         String sortBy;
         String sortDirection;
+        PagingMode pagingMode;
+        String cursor;
+        // Totals are only counted on request outside of OFFSET mode
+        boolean withTotals;
+
+        public InputValues(DiscountType discountType, UsageType usageType, Integer page, Integer size,
+                           String sortBy, String sortDirection) {
+            this(discountType, usageType, page, size, sortBy, sortDirection, PagingMode.OFFSET, null, true);
+        }
     }
 
     @Value
+    @AllArgsConstructor
     public static class OutputValues implements UseCase.OutputValues {
+        // Set in OFFSET mode
         Page<Coupon> coupons;
+        // Set in CURSOR and SLICE modes
+        Window<Coupon> couponWindow;
+        String nextCursor;
+        // Cached total outside of OFFSET mode, when asked for
+        Long totalElements;
+
+        public OutputValues(Page<Coupon> coupons) {
+            this(coupons, null, null, null);
+        }
     }
 
 }
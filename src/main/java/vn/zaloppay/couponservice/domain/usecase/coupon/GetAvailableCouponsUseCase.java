@@ -1,14 +1,20 @@
 package vn.zaloppay.couponservice.domain.usecase.coupon;
 
+import lombok.AllArgsConstructor;
 import lombok.RequiredArgsConstructor;
 import lombok.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
 import org.springframework.stereotype.Component;
+import vn.zaloppay.couponservice.domain.exceptions.BadRequestException;
 import vn.zaloppay.couponservice.domain.model.Coupon;
+import vn.zaloppay.couponservice.domain.model.CouponCursor;
 import vn.zaloppay.couponservice.domain.model.CouponSortField;
+import vn.zaloppay.couponservice.domain.model.PagingMode;
 import vn.zaloppay.couponservice.domain.model.discount.DiscountType;
 import vn.zaloppay.couponservice.domain.repository.ICouponRepository;
 import vn.zaloppay.couponservice.domain.usecase.UseCase;
@@ -17,11 +23,15 @@ import vn.zaloppay.couponservice.domain.util.SortUtils;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.List;
 
 @Component
 @RequiredArgsConstructor
 public class GetAvailableCouponsUseCase extends UseCase<GetAvailableCouponsUseCase.InputValues, GetAvailableCouponsUseCase.OutputValues> {
 
+    // Sorts by the discount each coupon gives to the order amount rather than by a column
+    public static final String SORT_BY_ESTIMATED_DISCOUNT = "estimatedDiscount";
+
     private final ICouponRepository couponRepository;
 
     /**
@@ -35,12 +45,32 @@ public class GetAvailableCouponsUseCase extends UseCase<GetAvailableCouponsUseCa
      *   <li>Match the specified discount type (if provided)</li>
      * </ul>
      * 
+     * <p>In {@link PagingMode#CURSOR} mode the page starts right after the coupon the cursor was taken on,
+     * and comes with the cursor of the next page instead of totals. In {@link PagingMode#SLICE} mode the page
+     * is found by number but the result isn't counted. In both modes, totals asked for are served from a cache.
+     *
+     * <p>Sorting by {@value #SORT_BY_ESTIMATED_DISCOUNT} ranks coupons by the discount they give to the order amount,
+     * in OFFSET and SLICE modes only.
+     *
      * @param inputValues order amount, optional discount type filter, and pagination parameters
-     * @return OutputValues containing paginated available coupons
+     * @return OutputValues containing paginated available coupons and the discount each of them gives to the order
+     * @throws BadRequestException if the cursor is malformed or was taken with another sort, or if sorting by
+     *                             estimated discount without an order amount or in CURSOR mode
      */
     @Override
     public OutputValues execute(InputValues inputValues) {
+        if (SORT_BY_ESTIMATED_DISCOUNT.equals(inputValues.getSortBy())) {
+            return rankByDiscount(inputValues);
+        }
+
         Sort sort = SortUtils.createSort(inputValues.getSortBy(), inputValues.getSortDirection(), CouponSortField::from);
+        if (inputValues.getPagingMode() == PagingMode.CURSOR) {
+            return scroll(inputValues, sort.iterator().next());
+        }
+        if (inputValues.getPagingMode() == PagingMode.SLICE) {
+            return slice(inputValues, sort);
+        }
+
         Pageable pageable = PageRequest.of(inputValues.getPage(), inputValues.getSize(), sort);
 
         Page<Coupon> couponsPage = couponRepository.findAvailableCoupons(
@@ -50,10 +80,104 @@ public class GetAvailableCouponsUseCase extends UseCase<GetAvailableCouponsUseCa
                 pageable
         );
 
-        return new OutputValues(couponsPage);
+        return new OutputValues(couponsPage, estimateDiscounts(couponsPage.getContent(), inputValues.getOrderAmount()));
+    }
+
+    private OutputValues scroll(InputValues inputValues, Sort.Order order) {
+        Window<Coupon> couponsWindow = couponRepository.scrollAvailableCoupons(
+                inputValues.getOrderAmount(),
+                inputValues.getDiscountType(),
+                LocalDateTime.now(),
+                CouponCursor.keysetSort(order),
+                CouponCursor.decode(inputValues.getCursor(), order),
+                inputValues.getSize()
+        );
+
+        return new OutputValues(
+                null,
+                couponsWindow,
+                estimateDiscounts(couponsWindow.getContent(), inputValues.getOrderAmount()),
+                CouponCursor.next(couponsWindow, order),
+                countIfAsked(inputValues)
+        );
+    }
+
+    private OutputValues slice(InputValues inputValues, Sort sort) {
+        int page = inputValues.getPage();
+        int size = inputValues.getSize();
+        Window<Coupon> couponsWindow = couponRepository.scrollAvailableCoupons(
+                inputValues.getOrderAmount(),
+                inputValues.getDiscountType(),
+                LocalDateTime.now(),
+                sort,
+                page == 0 ? ScrollPosition.offset() : ScrollPosition.offset((long) page * size - 1),
+                size
+        );
+
+        return new OutputValues(
+                null,
+                couponsWindow,
+                estimateDiscounts(couponsWindow.getContent(), inputValues.getOrderAmount()),
+                null,
+                countIfAsked(inputValues)
+        );
+    }
+
+    private OutputValues rankByDiscount(InputValues inputValues) {
+        if (inputValues.getOrderAmount() == null) {
+            throw new BadRequestException("Order amount is required to sort by " + SORT_BY_ESTIMATED_DISCOUNT);
+        }
+        if (inputValues.getPagingMode() == PagingMode.CURSOR) {
+            throw new BadRequestException("Sorting by " + SORT_BY_ESTIMATED_DISCOUNT + " is not supported in CURSOR mode");
+        }
+
+        Sort.Direction direction = SortUtils.parseSortDirection(inputValues.getSortDirection());
+        int page = inputValues.getPage();
+        int size = inputValues.getSize();
+        if (inputValues.getPagingMode() == PagingMode.SLICE) {
+            Window<Coupon> couponsWindow = couponRepository.scrollAvailableCouponsByDiscount(
+                    inputValues.getOrderAmount(),
+                    inputValues.getDiscountType(),
+                    LocalDateTime.now(),
+                    direction,
+                    page == 0 ? ScrollPosition.offset() : ScrollPosition.offset((long) page * size - 1),
+                    size
+            );
+
+            return new OutputValues(
+                    null,
+                    couponsWindow,
+                    estimateDiscounts(couponsWindow.getContent(), inputValues.getOrderAmount()),
+                    null,
+                    countIfAsked(inputValues)
+            );
+        }
+
+        Page<Coupon> couponsPage = couponRepository.findAvailableCouponsByDiscount(
+                inputValues.getOrderAmount(),
+                inputValues.getDiscountType(),
+                LocalDateTime.now(),
+                direction,
+                PageRequest.of(page, size)
+        );
+
+        return new OutputValues(couponsPage, estimateDiscounts(couponsPage.getContent(), inputValues.getOrderAmount()));
+    }
+
+    private Long countIfAsked(InputValues inputValues) {
+        if (!inputValues.isWithTotals()) {
+            return null;
+        }
+        return couponRepository.countAvailableCoupons(inputValues.getOrderAmount(), inputValues.getDiscountType());
+    }
+
+    private List<BigDecimal> estimateDiscounts(List<Coupon> coupons, BigDecimal orderAmount) {
+        // Priced coupon by coupon: a discount catalogue built for a single evaluation costs more than it saves
+        return coupons.stream().map(coupon -> coupon.calculateDiscount(orderAmount)).toList();
     }
 
     @Value
+    @AllArgsConstructor
     public static class InputValues implements UseCase.InputValues {
         BigDecimal orderAmount;
         DiscountType discountType;
@@ -61,11 +185,32 @@ public class GetAvailableCouponsUseCase extends UseCase<GetAvailableCouponsUseCa
         Integer size;
         String sortBy;
         String sortDirection;
+        PagingMode pagingMode;
+        String cursor;
+        // Totals are only counted on request outside of OFFSET mode
+        boolean withTotals;
+
+        public InputValues(BigDecimal orderAmount, DiscountType discountType, Integer page, Integer size,
+                           String sortBy, String sortDirection) {
+            this(orderAmount, discountType, page, size, sortBy, sortDirection, PagingMode.OFFSET, null, true);
+        }
     }
 
     @Value
+    @AllArgsConstructor
     public static class OutputValues implements UseCase.OutputValues {
+        // Set in OFFSET mode
         Page<Coupon> couponsPage;
+        // Set in CURSOR and SLICE modes
+        Window<Coupon> couponsWindow;
+        List<BigDecimal> estimatedDiscounts;
+        String nextCursor;
+        // Cached total outside of OFFSET mode, when asked for
+        Long totalElements;
+
+        public OutputValues(Page<Coupon> couponsPage, List<BigDecimal> estimatedDiscounts) {
+            this(couponsPage, null, estimatedDiscounts, null, null);
+        }
     }
 
 } 
\ No newline at end of file
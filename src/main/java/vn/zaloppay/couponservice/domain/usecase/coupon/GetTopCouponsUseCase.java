@@ -0,0 +1,53 @@
+package vn.zaloppay.couponservice.domain.usecase.coupon;
+
+import lombok.RequiredArgsConstructor;
+import lombok.Value;
+import org.springframework.stereotype.Component;
+import vn.zaloppay.couponservice.domain.model.Coupon;
+import vn.zaloppay.couponservice.domain.repository.ICouponRepository;
+import vn.zaloppay.couponservice.domain.usecase.UseCase;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Component
+@RequiredArgsConstructor
+public class GetTopCouponsUseCase extends UseCase<GetTopCouponsUseCase.InputValues, GetTopCouponsUseCase.OutputValues> {
+
+    private final ICouponRepository couponRepository;
+
+    /**
+     * Retrieves the coupons giving the highest discount to a given order amount.
+     *
+     * <p>The eligible coupons are ranked by the coupon index through a heap bounded by the limit, so the full
+     * eligible set is never sorted nor held in memory.
+     *
+     * @param inputValues order amount and number of coupons to return
+     * @return OutputValues containing the coupons by decreasing discount, and the discount each of them gives
+     */
+    @Override
+    public OutputValues execute(InputValues inputValues) {
+        BigDecimal orderAmount = inputValues.getOrderAmount();
+        List<Coupon> coupons = couponRepository.findTopEligibleCoupons(orderAmount, LocalDateTime.now(), inputValues.getLimit());
+
+        List<BigDecimal> discounts = coupons.stream()
+                .map(coupon -> coupon.calculateDiscount(orderAmount))
+                .toList();
+
+        return new OutputValues(coupons, discounts);
+    }
+
+    @Value
+    public static class InputValues implements UseCase.InputValues {
+        BigDecimal orderAmount;
+        int limit;
+    }
+
+    @Value
+    public static class OutputValues implements UseCase.OutputValues {
+        List<Coupon> coupons;
+        List<BigDecimal> discounts;
+    }
+
+}
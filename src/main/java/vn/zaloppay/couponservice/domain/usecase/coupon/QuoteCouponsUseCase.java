@@ -0,0 +1,169 @@
+package vn.zaloppay.couponservice.domain.usecase.coupon;
+
+import lombok.RequiredArgsConstructor;
+import lombok.Value;
+import org.springframework.stereotype.Component;
+import vn.zaloppay.couponservice.domain.exceptions.BadRequestException;
+import vn.zaloppay.couponservice.domain.exceptions.ResourceNotFoundException;
+import vn.zaloppay.couponservice.domain.model.Coupon;
+import vn.zaloppay.couponservice.domain.model.discount.DiscountCatalogue;
+import vn.zaloppay.couponservice.domain.repository.ICouponRepository;
+import vn.zaloppay.couponservice.domain.service.ISoldOutRegistry;
+import vn.zaloppay.couponservice.domain.usecase.UseCase;
+import vn.zaloppay.couponservice.domain.util.MinorUnits;
+import vn.zaloppay.couponservice.domain.util.TopK;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@Component
+@RequiredArgsConstructor
+public class QuoteCouponsUseCase extends UseCase<QuoteCouponsUseCase.InputValues, QuoteCouponsUseCase.OutputValues> {
+
+    private final ICouponRepository couponRepository;
+    private final ISoldOutRegistry soldOutRegistry;
+
+    /**
+     * Prices many order amounts without applying any coupon.
+     *
+     * <p>An order amount naming a coupon is quoted with that coupon, validated like {@link ApplyCouponUseCase} does.
+     * Otherwise it is quoted with the best coupon the auto-apply would pick, skipping known sold out coupons.
+     * Coupons are read from the coupon cache and the coupon index: no lock is taken and no usage is consumed,
+     * so a quote is an estimate that a later apply may not honour.
+     *
+     * <p>Each coupon code is looked up once per request. The coupons eligible to the highest order amount quoted
+     * without a coupon code are read once, and every such order amount is priced against them in memory.
+     * A failing quote never fails the request, it gets an error in its own result instead.
+     *
+     * @param input order amounts to quote, each with an optional coupon code, and time of the quote
+     * @return one quote per order amount, in the order of the input
+     */
+    @Override
+    public OutputValues execute(InputValues input) {
+        Map<String, Coupon> couponsByCode = new HashMap<>();
+        Map<BigDecimal, Coupon> bestCoupons = findBestCoupons(input);
+
+        List<QuoteResult> results = new ArrayList<>(input.getQuotes().size());
+        for (Quote quote : input.getQuotes()) {
+            try {
+                Coupon coupon = quote.getCouponCode() == null
+                        ? findBestCoupon(bestCoupons, quote)
+                        : findCoupon(couponsByCode, quote, input.getQuotedAt());
+                results.add(QuoteResult.quoted(quote, coupon.calculateDiscount(quote.getOrderAmount()), coupon));
+            } catch (BadRequestException | ResourceNotFoundException e) {
+                results.add(QuoteResult.rejected(quote, e.getMessage()));
+            }
+        }
+
+        return new OutputValues(results);
+    }
+
+    private Coupon findCoupon(Map<String, Coupon> couponsByCode, Quote quote, LocalDateTime quotedAt) {
+        String code = quote.getCouponCode();
+        if (soldOutRegistry.isSoldOut(code)) {
+            throw new BadRequestException("Coupon has no remaining usage");
+        }
+
+        // Unknown codes are remembered as null too
+        Coupon coupon = couponsByCode.containsKey(code) ? couponsByCode.get(code) : couponRepository.findByCode(code);
+        couponsByCode.put(code, coupon);
+
+        ApplyCouponUseCase.validateCoupon(coupon, code, quote.getOrderAmount(), quotedAt);
+        return coupon;
+    }
+
+    private static Coupon findBestCoupon(Map<BigDecimal, Coupon> bestCoupons, Quote quote) {
+        Coupon bestCoupon = bestCoupons.get(quote.getOrderAmount().stripTrailingZeros());
+        if (bestCoupon == null) {
+            throw new BadRequestException("No eligible coupon found");
+        }
+        return bestCoupon;
+    }
+
+    /**
+     * @return the best coupon of each distinct order amount quoted without a coupon code, the auto-apply would
+     * pick it unless it sells out meanwhile, or null if none is eligible to it
+     */
+    private Map<BigDecimal, Coupon> findBestCoupons(InputValues input) {
+        List<BigDecimal> orderAmounts = input.getQuotes().stream()
+                .filter(quote -> quote.getCouponCode() == null)
+                .map(quote -> quote.getOrderAmount().stripTrailingZeros())
+                .distinct()
+                .toList();
+        Map<BigDecimal, Coupon> bestCoupons = new HashMap<>();
+        if (orderAmounts.isEmpty()) {
+            return bestCoupons;
+        }
+
+        // Coupons eligible to a lower amount are eligible to the highest one, known sold out coupons are skipped
+        BigDecimal highestAmount = orderAmounts.stream().max(BigDecimal::compareTo).get();
+        List<Coupon> candidates = couponRepository.findEligibleCoupons(highestAmount, input.getQuotedAt()).stream()
+                .filter(coupon -> !soldOutRegistry.isSoldOut(coupon.getCode()))
+                .toList();
+
+        if (orderAmounts.stream().allMatch(MinorUnits::isExact)) {
+            // Every amount priced in one pass each over primitive arrays, checking the minimum order value again
+            DiscountCatalogue catalogue = DiscountCatalogue.of(candidates);
+            long[][] discounts = catalogue.eligibleDiscounts(
+                    orderAmounts.stream().mapToLong(MinorUnits::toMinorUnits).toArray(), input.getQuotedAt());
+            for (int i = 0; i < orderAmounts.size(); i++) {
+                int[] best = DiscountCatalogue.top(discounts[i], 1);
+                bestCoupons.put(orderAmounts.get(i), best.length == 0 ? null : catalogue.coupon(best[0]));
+            }
+            return bestCoupons;
+        }
+
+        for (BigDecimal orderAmount : orderAmounts) {
+            TopK<Coupon> best = new TopK<>(1);
+            candidates.stream()
+                    .filter(coupon -> coupon.getMinOrderValue().compareTo(orderAmount) <= 0)
+                    .forEach(coupon -> best.offer(coupon, coupon.calculateDiscount(orderAmount)));
+            List<Coupon> top = best.toList();
+            bestCoupons.put(orderAmount, top.isEmpty() ? null : top.get(0));
+        }
+        return bestCoupons;
+    }
+
+    @Value
+    public static class Quote {
+        BigDecimal orderAmount;
+        String couponCode;
+    }
+
+    @Value
+    public static class QuoteResult {
+        BigDecimal orderAmount;
+        String couponCode;
+        BigDecimal discountAmount;
+        Coupon coupon;
+        String error;
+
+        static QuoteResult quoted(Quote quote, BigDecimal discountAmount, Coupon coupon) {
+            return new QuoteResult(quote.getOrderAmount(), quote.getCouponCode(), discountAmount, coupon, null);
+        }
+
+        static QuoteResult rejected(Quote quote, String error) {
+            return new QuoteResult(quote.getOrderAmount(), quote.getCouponCode(), null, null, error);
+        }
+
+        public boolean isQuoted() {
+            return error == null;
+        }
+    }
+
+    @Value
+    public static class InputValues implements UseCase.InputValues {
+        List<Quote> quotes;
+        LocalDateTime quotedAt;
+    }
+
+    @Value
+    public static class OutputValues implements UseCase.OutputValues {
+        List<QuoteResult> results;
+    }
+
+}
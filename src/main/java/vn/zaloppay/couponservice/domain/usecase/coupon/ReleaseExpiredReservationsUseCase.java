@@ -0,0 +1,65 @@
+package vn.zaloppay.couponservice.domain.usecase.coupon;
+
+import lombok.RequiredArgsConstructor;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import vn.zaloppay.couponservice.domain.model.Reservation;
+import vn.zaloppay.couponservice.domain.repository.ICouponRepository;
+import vn.zaloppay.couponservice.domain.repository.IReservationRepository;
+import vn.zaloppay.couponservice.domain.usecase.UseCase;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ReleaseExpiredReservationsUseCase extends UseCase<ReleaseExpiredReservationsUseCase.InputValues, ReleaseExpiredReservationsUseCase.OutputValues> {
+
+    private final ICouponRepository couponRepository;
+    private final IReservationRepository reservationRepository;
+
+    /**
+     * Removes one batch of expired reservations and gives their usages back,
+     * with a single release per coupon however many of its reservations expired.
+     * The reservations of a coupon whose release fails are saved back, so that a later sweep retries them.
+     *
+     * @param input current time and batch size
+     * @return number of reservations released
+     */
+    @Override
+    public OutputValues execute(InputValues input) {
+        List<Reservation> expired = reservationRepository.takeExpired(input.getNow(), input.getBatchSize());
+
+        Map<String, List<Reservation>> expiredPerCoupon = expired.stream()
+                .collect(Collectors.groupingBy(Reservation::getCouponCode));
+        int releasedCount = 0;
+        for (Map.Entry<String, List<Reservation>> entry : expiredPerCoupon.entrySet()) {
+            try {
+                couponRepository.releaseUsage(entry.getKey(), entry.getValue().size());
+                releasedCount += entry.getValue().size();
+            } catch (Exception e) {
+                log.error("Error releasing expired reservations of coupon {}, keeping them for the next sweep",
+                        entry.getKey(), e);
+                entry.getValue().forEach(reservationRepository::save);
+            }
+        }
+
+        return new OutputValues(releasedCount);
+    }
+
+    @Value
+    public static class InputValues implements UseCase.InputValues {
+        LocalDateTime now;
+        int batchSize;
+    }
+
+    @Value
+    public static class OutputValues implements UseCase.OutputValues {
+        int releasedCount;
+    }
+
+}
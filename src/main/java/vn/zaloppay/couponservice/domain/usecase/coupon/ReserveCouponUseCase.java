@@ -0,0 +1,77 @@
+package vn.zaloppay.couponservice.domain.usecase.coupon;
+
+import lombok.RequiredArgsConstructor;
+import lombok.Value;
+import org.springframework.stereotype.Component;
+import vn.zaloppay.couponservice.domain.exceptions.BadRequestException;
+import vn.zaloppay.couponservice.domain.exceptions.ResourceNotFoundException;
+import vn.zaloppay.couponservice.domain.model.Coupon;
+import vn.zaloppay.couponservice.domain.model.Reservation;
+import vn.zaloppay.couponservice.domain.repository.ICouponRepository;
+import vn.zaloppay.couponservice.domain.repository.IReservationRepository;
+import vn.zaloppay.couponservice.domain.usecase.UseCase;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Component
+@RequiredArgsConstructor
+public class ReserveCouponUseCase extends UseCase<ReserveCouponUseCase.InputValues, ReserveCouponUseCase.OutputValues> {
+
+    private final ApplyCouponUseCase applyCouponUseCase;
+    private final ICouponRepository couponRepository;
+    private final IReservationRepository reservationRepository;
+    private final ApplyCouponProperties applyProperties;
+
+    /**
+     * Holds one usage of a coupon for an order until the reservation is confirmed or cancelled.
+     * The usage is taken exactly like {@link ApplyCouponUseCase} takes it, and is given back
+     * by the expiry sweeper if the reservation is neither confirmed nor cancelled in time.
+     *
+     * @param input order details and optional coupon code
+     * @return the reservation and the reserved coupon
+     * @throws BadRequestException if the coupon cannot be applied to the order
+     * @throws ResourceNotFoundException if specified coupon code doesn't exist
+     */
+    @Override
+    public OutputValues execute(InputValues input) {
+        ApplyCouponUseCase.OutputValues applied = applyCouponUseCase.execute(
+                new ApplyCouponUseCase.InputValues(input.getOrderAmount(), input.getCreatedAt(), input.getCouponCode())
+        );
+
+        Coupon coupon = applied.getCoupon();
+        Reservation reservation = new Reservation(
+                UUID.randomUUID().toString(),
+                coupon.getCode(),
+                input.getOrderAmount(),
+                applied.getDiscountAmount(),
+                input.getCreatedAt(),
+                input.getCreatedAt().plus(applyProperties.getReservationTtl())
+        );
+
+        try {
+            reservationRepository.save(reservation);
+        } catch (RuntimeException e) {
+            // Nothing holds the usage anymore, hand it back
+            couponRepository.releaseUsage(coupon.getCode(), 1);
+            throw e;
+        }
+
+        return new OutputValues(reservation, coupon);
+    }
+
+    @Value
+    public static class InputValues implements UseCase.InputValues {
+        BigDecimal orderAmount;
+        LocalDateTime createdAt;
+        String couponCode;
+    }
+
+    @Value
+    public static class OutputValues implements UseCase.OutputValues {
+        Reservation reservation;
+        Coupon coupon;
+    }
+
+}
@@ -1,5 +1,6 @@
 package vn.zaloppay.couponservice.domain.usecase.coupon;
 
+import lombok.AllArgsConstructor;
 import lombok.RequiredArgsConstructor;
 import lombok.Value;
 import org.springframework.stereotype.Component;
@@ -26,8 +27,9 @@ public class UpdateCouponUseCase extends UseCase<UpdateCouponUseCase.InputValues
      * <p>This method:
      * <ul>
      *   <li>Validates that the coupon exists by code</li>
-     *   <li>Preserves the original ID and discount value</li>
-     *   <li>Updates all other modifiable fields</li>
+     *   <li>Preserves the original ID and discount value, and the discount rules unless new ones are given</li>
+     *   <li>Validates the discount rules of TIERED and STEP coupons, which the other types must not have</li>
+     *   <li>Updates all other modifiable fields, and the remaining usage only when it differs from the current one</li>
      *   <li>Persists the changes to the database</li>
      * </ul>
      * 
@@ -44,6 +46,11 @@ public class UpdateCouponUseCase extends UseCase<UpdateCouponUseCase.InputValues
             throw new ResourceNotFoundException("Cannot find coupon with code: " + input.getCouponCode());
         }
 
+        String discountRules = input.getDiscountRules() != null || !input.getDiscountType().isRuleBased()
+                ? input.getDiscountRules()
+                : coupon.getDiscountRules();
+        CreateCouponUseCase.validateDiscountRules(input.getDiscountType(), discountRules);
+
         Coupon updatedCoupon = new Coupon(
                 coupon.getId(), 
                 input.getCouponCode(),
@@ -56,14 +63,18 @@ public class UpdateCouponUseCase extends UseCase<UpdateCouponUseCase.InputValues
                 input.getMinOrderValue(),
                 input.getStartTime(),
                 input.getEndTime(),
-                input.getRemainingUsage()
+                input.getRemainingUsage(),
+                discountRules
         );
 
-        return new UpdateCouponUseCase.OutputValues(couponRepository.update(updatedCoupon));
+        // Admins send the remaining usage back as they read it, it only overwrites the counter when changed
+        boolean usageChanged = !input.getRemainingUsage().equals(coupon.getRemainingUsage());
+        return new UpdateCouponUseCase.OutputValues(couponRepository.update(updatedCoupon, usageChanged));
     }
 
 
     @Value
+    @AllArgsConstructor
     public static class InputValues implements UseCase.InputValues {
 
         String couponCode;
@@ -86,6 +97,16 @@ public class UpdateCouponUseCase extends UseCase<UpdateCouponUseCase.InputValues
 
         Integer remainingUsage;
 
+        // Null keeps the current discount rules
+        String discountRules;
+
+        public InputValues(String couponCode, String title, String description, DiscountType discountType,
+                           UsageType usageType, BigDecimal maxDiscountAmount, BigDecimal minOrderValue,
+                           LocalDateTime startTime, LocalDateTime endTime, Integer remainingUsage) {
+            this(couponCode, title, description, discountType, usageType, maxDiscountAmount, minOrderValue,
+                    startTime, endTime, remainingUsage, null);
+        }
+
     }
 
     @Value
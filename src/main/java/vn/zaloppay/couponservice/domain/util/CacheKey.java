@@ -30,4 +30,160 @@ public final class CacheKey {
     public static String couponLockKey(String code) {
         return String.join(SEPARATOR, COUPON_PREFIX, code);
     }
-} 
\ No newline at end of file
+
+    /**
+     * Generate key for the coupon remaining usage counter
+     * Format: coupon:usage:{code}
+     */
+    public static String couponUsage(String code) {
+        return String.join(SEPARATOR, COUPON_PREFIX, "usage", code);
+    }
+
+    /**
+     * Generate key of the set of coupon codes whose remaining usage counter was created.
+     * Kept apart from the counters so that a lost counter is told apart from one never seeded.
+     * Format: coupon:usage-counters
+     */
+    public static String couponUsageCounters() {
+        return String.join(SEPARATOR, COUPON_PREFIX, "usage-counters");
+    }
+
+    /**
+     * Generate lock key serializing the writes of remaining usage counters to the database
+     * Format: coupon:usage-flush
+     */
+    public static String couponUsageFlushLock() {
+        return String.join(SEPARATOR, COUPON_PREFIX, "usage-flush");
+    }
+
+    /**
+     * Generate key for the result of applying a coupon to an order
+     * Format: coupon:apply:{orderId}
+     */
+    public static String couponApplyResult(String orderId) {
+        return String.join(SEPARATOR, COUPON_PREFIX, "apply", orderId);
+    }
+
+    /**
+     * Generate key claiming an order while its coupon is being applied
+     * Format: coupon:apply:{orderId}:claim
+     */
+    public static String couponApplyClaim(String orderId) {
+        return String.join(SEPARATOR, COUPON_PREFIX, "apply", orderId, "claim");
+    }
+
+    /**
+     * Generate key of the hash holding the pending coupon reservations of a shard by id.
+     * The hash tag keeps it in the same cluster slot as the expiry index of the shard.
+     * Format: {coupon:reservation:{shard}}:data
+     */
+    public static String couponReservations(int shard) {
+        return String.join(SEPARATOR, "{" + String.join(SEPARATOR, COUPON_PREFIX, "reservation", String.valueOf(shard)) + "}", "data");
+    }
+
+    /**
+     * Generate key of the sorted set indexing the pending coupon reservations of a shard by expiry time
+     * Format: {coupon:reservation:{shard}}:expiry
+     */
+    public static String couponReservationExpiry(int shard) {
+        return String.join(SEPARATOR, "{" + String.join(SEPARATOR, COUPON_PREFIX, "reservation", String.valueOf(shard)) + "}", "expiry");
+    }
+
+    /**
+     * Generate key of the sorted set of sold-out coupon codes, scored by the time they stop being sold out
+     * Format: coupon:sold-out-until
+     */
+    public static String couponSoldOut() {
+        return String.join(SEPARATOR, COUPON_PREFIX, "sold-out-until");
+    }
+
+    /**
+     * Generate topic broadcasting sold-out coupon changes to every instance
+     * Format: coupon:sold-out:events
+     */
+    public static String couponSoldOutTopic() {
+        return String.join(SEPARATOR, COUPON_PREFIX, "sold-out", "events");
+    }
+
+    /**
+     * Generate key of the hash holding every indexed coupon by code.
+     * The hash tag keeps every key of the coupon index in the same cluster slot.
+     * Format: {coupon:index}:data
+     */
+    public static String couponIndexData() {
+        return String.join(SEPARATOR, "{" + COUPON_PREFIX + SEPARATOR + "index}", "data");
+    }
+
+    /**
+     * Generate key of the hash holding the discount terms of every indexed coupon by code, in minor units
+     * Format: {coupon:index}:terms
+     */
+    public static String couponIndexTerms() {
+        return String.join(SEPARATOR, "{" + COUPON_PREFIX + SEPARATOR + "index}", "terms");
+    }
+
+    /**
+     * Generate key of the sorted set indexing the coupons of a usage type by minimum order value
+     * Format: {coupon:index}:min-order:{usageType}
+     */
+    public static String couponIndexMinOrder(String usageType) {
+        return String.join(SEPARATOR, "{" + COUPON_PREFIX + SEPARATOR + "index}", "min-order", usageType);
+    }
+
+    /**
+     * Generate key of the sorted set indexing coupons by end time
+     * Format: {coupon:index}:end-time
+     */
+    public static String couponIndexEndTime() {
+        return String.join(SEPARATOR, "{" + COUPON_PREFIX + SEPARATOR + "index}", "end-time");
+    }
+
+    /**
+     * Generate key claiming the next rebuild of the coupon index from the database
+     * Format: {coupon:index}:rebuilt
+     */
+    public static String couponIndexRebuilt() {
+        return String.join(SEPARATOR, "{" + COUPON_PREFIX + SEPARATOR + "index}", "rebuilt");
+    }
+
+    /**
+     * Generate topic broadcasting the codes of coupons created, updated or deleted to every in-memory coupon index
+     * Format: coupon:index:events
+     */
+    public static String couponIndexTopic() {
+        return String.join(SEPARATOR, COUPON_PREFIX, "index", "events");
+    }
+
+    /**
+     * Generate key of the set of coupon codes changed while the coupon index is rebuilt, which exists only meanwhile
+     * Format: {coupon:index}:changes
+     */
+    public static String couponIndexChanges() {
+        return String.join(SEPARATOR, "{" + COUPON_PREFIX + SEPARATOR + "index}", "changes");
+    }
+
+    /**
+     * Generate key marking that the coupon index was built, missing if the index was lost
+     * Format: {coupon:index}:built
+     */
+    public static String couponIndexBuilt() {
+        return String.join(SEPARATOR, "{" + COUPON_PREFIX + SEPARATOR + "index}", "built");
+    }
+
+    /**
+     * Generate key of the counter bumped on every write to coupons, dropping the cached listing totals of every instance
+     * Format: coupon:count:generation
+     */
+    public static String couponCountGeneration() {
+        return String.join(SEPARATOR, COUPON_PREFIX, "count", "generation");
+    }
+
+    /**
+     * Generate key of the counter bumped on every change to the available coupons of a scope,
+     * a discount type or all of them
+     * Format: coupon:available:generation:{scope}
+     */
+    public static String couponAvailableGeneration(String scope) {
+        return String.join(SEPARATOR, COUPON_PREFIX, "available", "generation", scope);
+    }
+}
@@ -0,0 +1,51 @@
+package vn.zaloppay.couponservice.domain.util;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Conversions between money amounts and minor units (cents), the scale of every money column.
+ */
+public final class MinorUnits {
+
+    public static final int SCALE = 2;
+
+    private static final BigDecimal MAX_AMOUNT = BigDecimal.valueOf(Long.MAX_VALUE, SCALE);
+
+    private MinorUnits() {
+    }
+
+    /**
+     * Check whether an amount converts to minor units without losing anything
+     */
+    public static boolean isExact(BigDecimal amount) {
+        return amount != null
+                && (amount.scale() <= SCALE || amount.stripTrailingZeros().scale() <= SCALE)
+                && amount.abs().compareTo(MAX_AMOUNT) <= 0;
+    }
+
+    /**
+     * @throws ArithmeticException if the amount has more than two significant decimals or doesn't fit a long
+     */
+    public static long toMinorUnits(BigDecimal amount) {
+        return amount.setScale(SCALE, RoundingMode.UNNECESSARY).unscaledValue().longValueExact();
+    }
+
+    public static BigDecimal toAmount(long minorUnits) {
+        return BigDecimal.valueOf(minorUnits, SCALE);
+    }
+
+    /**
+     * Integer division rounding half away from zero, like {@link RoundingMode#HALF_UP}
+     * @param divisor strictly positive
+     */
+    public static long divideHalfUp(long dividend, long divisor) {
+        long quotient = dividend / divisor;
+        long remainder = dividend % divisor;
+        if (Math.abs(remainder) >= divisor - Math.abs(remainder)) {
+            quotient += Long.signum(dividend);
+        }
+        return quotient;
+    }
+
+}
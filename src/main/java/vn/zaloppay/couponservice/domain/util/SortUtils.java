@@ -16,7 +16,7 @@ public final class SortUtils {
     }
 
 
-    private static Sort.Direction parseSortDirection(String sortDirection) {
+    public static Sort.Direction parseSortDirection(String sortDirection) {
         if (sortDirection == null) return Sort.Direction.ASC;
         try {
             return Sort.Direction.fromString(sortDirection);
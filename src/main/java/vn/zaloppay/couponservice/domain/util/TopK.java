@@ -0,0 +1,53 @@
+package vn.zaloppay.couponservice.domain.util;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Keeps the k items with the highest score out of any number offered, in O(k) memory.
+ *
+ * <p>Items sit in a min-heap on their score, so the worst of the best ones so far is the one evicted.
+ * Among equal scores the item offered first is kept.
+ */
+public final class TopK<T> {
+
+    private final int k;
+
+    private final PriorityQueue<Scored<T>> heap;
+
+    private long offered;
+
+    public TopK(int k) {
+        this.k = Math.max(k, 0);
+        this.heap = new PriorityQueue<>(this.k + 1, Comparator.<Scored<T>, BigDecimal>comparing(Scored::score)
+                .thenComparing(Comparator.<Scored<T>>comparingLong(Scored::sequence).reversed()));
+    }
+
+    public void offer(T item, BigDecimal score) {
+        long sequence = offered++;
+        if (heap.size() < k) {
+            heap.add(new Scored<>(item, score, sequence));
+        } else if (k > 0 && score.compareTo(heap.peek().score()) > 0) {
+            heap.poll();
+            heap.add(new Scored<>(item, score, sequence));
+        }
+    }
+
+    /**
+     * @return the kept items by decreasing score
+     */
+    public List<T> toList() {
+        List<Scored<T>> scored = new ArrayList<>(heap);
+        scored.sort(heap.comparator());
+        Collections.reverse(scored);
+        return scored.stream().map(Scored::item).toList();
+    }
+
+    private record Scored<T>(T item, BigDecimal score, long sequence) {
+    }
+
+}
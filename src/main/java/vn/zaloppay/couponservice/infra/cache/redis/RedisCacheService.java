@@ -9,6 +9,7 @@ import org.springframework.context.annotation.Primary;
 import org.springframework.stereotype.Service;
 
 import vn.zaloppay.couponservice.app.config.logging.Limer;
+import vn.zaloppay.couponservice.domain.exceptions.InternalServerErrorException;
 import vn.zaloppay.couponservice.domain.service.ICacheService;
 
 import java.time.Duration;
@@ -40,6 +41,20 @@ public class RedisCacheService implements ICacheService {
         }
     }
     
+    @Override
+    public <T> boolean putIfAbsent(String key, T value, Duration ttl) {
+        try {
+            RBucket<String> bucket = redissonClient.getBucket(key);
+            String jsonValue = objectMapper.writeValueAsString(value);
+            boolean stored = bucket.setIfAbsent(jsonValue, ttl);
+            log.debug("Cached value with key: {} if absent, stored: {}", key, stored);
+            return stored;
+        } catch (Exception e) {
+            log.error("Error caching value with key: {} if absent", key, e);
+            throw new InternalServerErrorException("Cache is unavailable, please try again");
+        }
+    }
+
     @Override
     public <T> Optional<T> get(String key, Class<T> type) {
         try {
@@ -0,0 +1,139 @@
+package vn.zaloppay.couponservice.infra.cache.redis;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RScoredSortedSet;
+import org.redisson.api.RTopic;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.stereotype.Service;
+import vn.zaloppay.couponservice.domain.service.ISoldOutRegistry;
+import vn.zaloppay.couponservice.domain.usecase.coupon.ApplyCouponProperties;
+import vn.zaloppay.couponservice.domain.util.CacheKey;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BiConsumer;
+
+/**
+ * Redis implementation of the sold-out registry.
+ * Each instance keeps the sold-out codes in memory, kept in sync through a Redis topic.
+ * A Redis sorted set holds the same codes so that instances starting later catch up.
+ *
+ * <p>Codes are forgotten after a while, so that a coupon marked by mistake or given usages back without
+ * this registry hearing about it (the topic is fire-and-forget) is not rejected forever. A coupon still
+ * sold out by then is marked again by its next apply.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class RedisSoldOutRegistry implements ISoldOutRegistry {
+
+    private static final String SOLD_OUT = "+";
+    private static final String AVAILABLE = "-";
+
+    private final RedissonClient redissonClient;
+
+    private final ApplyCouponProperties applyProperties;
+
+    // Sold-out codes with the time they are forgotten at, in epoch milliseconds
+    private final Map<String, Long> soldOutCodes = new ConcurrentHashMap<>();
+
+    private final List<BiConsumer<String, Boolean>> listeners = new CopyOnWriteArrayList<>();
+
+    @PostConstruct
+    public void subscribe() {
+        topic().addListener(String.class, (channel, message) -> {
+            String code = message.substring(1);
+            boolean soldOut = message.startsWith(SOLD_OUT);
+            if (soldOut) {
+                soldOutCodes.put(code, System.currentTimeMillis() + applyProperties.getSoldOutTtl().toMillis());
+            } else {
+                soldOutCodes.remove(code);
+            }
+
+            for (BiConsumer<String, Boolean> listener : listeners) {
+                try {
+                    listener.accept(code, soldOut);
+                } catch (Exception e) {
+                    log.error("Error notifying sold-out coupon: {}", code, e);
+                }
+            }
+        });
+
+        try {
+            long now = System.currentTimeMillis();
+            soldOutSet().entryRange(now, false, Double.POSITIVE_INFINITY, true)
+                    .forEach(entry -> soldOutCodes.put(entry.getValue(), entry.getScore().longValue()));
+            log.info("Loaded {} sold-out coupons", soldOutCodes.size());
+        } catch (Exception e) {
+            log.error("Error loading sold-out coupons", e);
+        }
+    }
+
+    @Override
+    public boolean isSoldOut(String code) {
+        Long expiresAt = soldOutCodes.get(code);
+        if (expiresAt == null) {
+            return false;
+        }
+        if (expiresAt <= System.currentTimeMillis()) {
+            soldOutCodes.remove(code, expiresAt);
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public void markSoldOut(String code) {
+        if (isSoldOut(code)) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        long expiresAt = now + applyProperties.getSoldOutTtl().toMillis();
+        soldOutCodes.put(code, expiresAt);
+
+        try {
+            RScoredSortedSet<String> soldOutSet = soldOutSet();
+            soldOutSet.add(expiresAt, code);
+            // Drop the codes forgotten meanwhile, the set only holds coupons sold out lately
+            soldOutSet.removeRangeByScore(Double.NEGATIVE_INFINITY, true, now, true);
+            topic().publish(SOLD_OUT + code);
+            log.debug("Marked coupon {} as sold out", code);
+        } catch (Exception e) {
+            log.error("Error publishing sold-out coupon: {}", code, e);
+        }
+    }
+
+    @Override
+    public void clear(String code) {
+        soldOutCodes.remove(code);
+
+        // Always broadcast: another instance may have marked the coupon without this one hearing about it
+        try {
+            soldOutSet().remove(code);
+            topic().publish(AVAILABLE + code);
+            log.debug("Cleared sold-out coupon {}", code);
+        } catch (Exception e) {
+            log.error("Error clearing sold-out coupon: {}", code, e);
+        }
+    }
+
+    @Override
+    public void addListener(BiConsumer<String, Boolean> listener) {
+        listeners.add(listener);
+    }
+
+    private RTopic topic() {
+        return redissonClient.getTopic(CacheKey.couponSoldOutTopic(), StringCodec.INSTANCE);
+    }
+
+    private RScoredSortedSet<String> soldOutSet() {
+        return redissonClient.getScoredSortedSet(CacheKey.couponSoldOut(), StringCodec.INSTANCE);
+    }
+
+}
@@ -68,4 +68,13 @@ public class CouponEntity extends BaseEntity {
     @Column(name = "remaining_usage", nullable = false)
     private Integer remainingUsage;
 
+    // Tiers of TIERED and STEP coupons, see DiscountRules
+    @Column(name = "discount_rules", length = 1000)
+    private String discountRules;
+
+    // Number of coupon_usage_shards rows holding the remaining usage, 0 when the row itself holds it
+    @Builder.Default
+    @Column(name = "usage_shards", nullable = false)
+    private Integer usageShards = 0;
+
 }
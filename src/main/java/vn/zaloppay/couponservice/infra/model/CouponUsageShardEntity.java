@@ -0,0 +1,52 @@
+package vn.zaloppay.couponservice.infra.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.IdClass;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.io.Serializable;
+
+/**
+ * One slice of the remaining usage of a sharded coupon.
+ * Applies of a hot coupon are spread over its shards instead of all hitting the coupons row.
+ */
+@Entity
+@Table(name = "coupon_usage_shards")
+@IdClass(CouponUsageShardEntity.ShardId.class)
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CouponUsageShardEntity {
+
+    @Id
+    @Column(name = "coupon_id", nullable = false)
+    private Long couponId;
+
+    @Id
+    @Column(name = "shard_no", nullable = false)
+    private Integer shardNo;
+
+    @Column(name = "remaining_usage", nullable = false)
+    private Integer remainingUsage;
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @EqualsAndHashCode
+    public static class ShardId implements Serializable {
+        private Long couponId;
+        private Integer shardNo;
+    }
+
+}
@@ -0,0 +1,55 @@
+package vn.zaloppay.couponservice.infra.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import vn.zaloppay.couponservice.domain.model.Coupon;
+import vn.zaloppay.couponservice.infra.model.CouponEntity;
+import vn.zaloppay.couponservice.infra.repository.usage.UsageStore;
+
+/**
+ * Maps coupon rows to domain coupons and back. The remaining usage of a coupon is read
+ * through the usage store, since it is not always the remaining_usage column.
+ */
+@Component
+@RequiredArgsConstructor
+public class CouponEntityMapper {
+
+    private final UsageStore usageStore;
+
+    public Coupon toDomainObject(CouponEntity entity) {
+        return new Coupon(
+                entity.getId(),
+                entity.getCode(),
+                entity.getTitle(),
+                entity.getDescription(),
+                entity.getDiscountType(),
+                entity.getUsageType(),
+                entity.getDiscountValue(),
+                entity.getMaxDiscountAmount(),
+                entity.getMinOrderValue(),
+                entity.getStartTime(),
+                entity.getEndTime(),
+                usageStore.remainingUsage(entity),
+                entity.getDiscountRules()
+        );
+    }
+
+    public CouponEntity toEntity(Coupon coupon) {
+        return CouponEntity.builder()
+                .id(coupon.getId())
+                .code(coupon.getCode())
+                .title(coupon.getTitle())
+                .description(coupon.getDescription())
+                .discountType(coupon.getDiscountType())
+                .usageType(coupon.getUsageType())
+                .discountValue(coupon.getDiscountValue())
+                .maxDiscountAmount(coupon.getMaxDiscountAmount())
+                .minOrderValue(coupon.getMinOrderValue())
+                .startTime(coupon.getStartTime())
+                .endTime(coupon.getEndTime())
+                .remainingUsage(coupon.getRemainingUsage())
+                .discountRules(coupon.getDiscountRules())
+                .build();
+    }
+
+}
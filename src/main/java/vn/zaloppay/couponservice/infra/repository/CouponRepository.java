@@ -1,25 +1,39 @@
 package vn.zaloppay.couponservice.infra.repository;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.OffsetScrollPosition;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
 import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.support.PageableExecutionUtils;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 
 import vn.zaloppay.couponservice.domain.model.Coupon;
+import vn.zaloppay.couponservice.domain.model.CouponCursor;
 import vn.zaloppay.couponservice.domain.model.UsageType;
 import vn.zaloppay.couponservice.domain.model.discount.DiscountType;
 import vn.zaloppay.couponservice.domain.repository.ICouponRepository;
 import vn.zaloppay.couponservice.domain.service.ICacheService;
+import vn.zaloppay.couponservice.domain.service.ISoldOutRegistry;
 import vn.zaloppay.couponservice.domain.util.CacheKey;
 import vn.zaloppay.couponservice.infra.model.CouponEntity;
+import vn.zaloppay.couponservice.infra.repository.count.CouponCountCache;
+import vn.zaloppay.couponservice.infra.repository.index.CouponIndex;
+import vn.zaloppay.couponservice.infra.repository.listing.AvailableCouponCache;
 import vn.zaloppay.couponservice.infra.repository.specifications.CouponSpecification;
+import vn.zaloppay.couponservice.infra.repository.usage.UsageStore;
 import vn.zaloppay.couponservice.app.config.logging.Limer;
 
 import java.math.BigDecimal;
 import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
 
@@ -32,6 +46,18 @@ public class CouponRepository implements ICouponRepository {
 
     private final ICacheService cacheService;
 
+    private final UsageStore usageStore;
+
+    private final ISoldOutRegistry soldOutRegistry;
+
+    private final CouponEntityMapper couponEntityMapper;
+
+    private final CouponIndex couponIndex;
+
+    private final CouponCountCache couponCountCache;
+
+    private final AvailableCouponCache availableCouponCache;
+
     // Cache TTL configurations
     private static final Duration COUPON_TTL = Duration.ofMinutes(10);
 
@@ -52,7 +78,7 @@ public class CouponRepository implements ICouponRepository {
 
         // Fetch from database
         Optional<CouponEntity> couponEntity = jpaCouponRepository.findByCode(code);
-        Coupon coupon = couponEntity.map(this::toDomainObject).orElse(null);
+        Coupon coupon = couponEntity.map(couponEntityMapper::toDomainObject).orElse(null);
 
         // Cache the result
         cacheService.put(cacheKey, coupon, COUPON_TTL);
@@ -64,30 +90,97 @@ public class CouponRepository implements ICouponRepository {
     public Page<Coupon> findAll(DiscountType discountType, UsageType usageType, Pageable pageable) {
         Specification<CouponEntity> spec = CouponSpecification.withFilters(discountType, usageType);
         Page<CouponEntity> entityPage = jpaCouponRepository.findAll(spec, pageable);
-        return entityPage.map(this::toDomainObject);
+        return entityPage.map(couponEntityMapper::toDomainObject);
+    }
+
+    @Override
+    public Window<Coupon> scrollAll(DiscountType discountType, UsageType usageType, Sort sort, ScrollPosition position, int size) {
+        return scroll(CouponSpecification.withFilters(discountType, usageType), sort, position, size);
+    }
+
+    @Override
+    public long countAll(DiscountType discountType, UsageType usageType) {
+        return couponCountCache.count(
+                String.join("|", "all", String.valueOf(discountType), String.valueOf(usageType)),
+                () -> jpaCouponRepository.count(CouponSpecification.withFilters(discountType, usageType))
+        );
     }
 
     @Override
     public List<Coupon> findEligibleCoupons(BigDecimal orderAmount, LocalDateTime currentTime) {
-        Specification<CouponEntity> spec = CouponSpecification.isAvailable(orderAmount, currentTime);
-        List<CouponEntity> entities = jpaCouponRepository.findAll(spec);
-        return entities.stream()
-                .map(this::toDomainObject)
-                .toList();
+        return couponIndex.findEligible(orderAmount, currentTime, null);
+    }
+
+    @Override
+    public Coupon findBestCoupon(BigDecimal orderAmount, LocalDateTime currentTime) {
+        return couponIndex.findBest(orderAmount, currentTime, null);
+    }
+
+    @Override
+    public List<Coupon> findTopEligibleCoupons(BigDecimal orderAmount, LocalDateTime currentTime, int limit) {
+        return couponIndex.findTop(orderAmount, currentTime, null, limit);
     }
 
     @Override
     public Page<Coupon> findAvailableCoupons(BigDecimal orderAmount, DiscountType discountType, LocalDateTime currentTime, Pageable pageable) {
-        Specification<CouponEntity> spec = CouponSpecification.withAvailabilityFilters(orderAmount, discountType, currentTime);
-        Page<CouponEntity> entityPage = jpaCouponRepository.findAll(spec, pageable);
-        return entityPage.map(this::toDomainObject);
+        return availableCouponCache.get(orderAmount, discountType, currentTime, "page|" + pageable, () -> {
+            Specification<CouponEntity> spec = CouponSpecification.withAvailabilityFilters(orderAmount, discountType, currentTime);
+            Page<CouponEntity> entityPage = jpaCouponRepository.findAll(spec, pageable);
+            return entityPage.map(couponEntityMapper::toDomainObject).map(CouponRepository::withoutRemainingUsage);
+        });
+    }
+
+    @Override
+    public Window<Coupon> scrollAvailableCoupons(BigDecimal orderAmount, DiscountType discountType, LocalDateTime currentTime,
+                                                 Sort sort, ScrollPosition position, int size) {
+        String query = String.join("|", "scroll", sort.toString(), position.toString(), String.valueOf(size));
+        return availableCouponCache.get(orderAmount, discountType, currentTime, query, () -> scroll(
+                CouponSpecification.withAvailabilityFilters(orderAmount, discountType, currentTime), sort, position, size)
+                .map(CouponRepository::withoutRemainingUsage));
+    }
+
+    @Override
+    public Page<Coupon> findAvailableCouponsByDiscount(BigDecimal orderAmount, DiscountType discountType, LocalDateTime currentTime,
+                                                       Sort.Direction direction, Pageable pageable) {
+        List<Coupon> content = rankByDiscount(orderAmount, discountType, currentTime, direction,
+                pageable.getOffset(), pageable.getPageSize());
+        // Not counted when the page tells the total on its own, otherwise the same cached total as the other orders
+        return PageableExecutionUtils.getPage(content, pageable, () -> countAvailableCoupons(orderAmount, discountType));
+    }
+
+    @Override
+    public Window<Coupon> scrollAvailableCouponsByDiscount(BigDecimal orderAmount, DiscountType discountType, LocalDateTime currentTime,
+                                                           Sort.Direction direction, OffsetScrollPosition position, int size) {
+        long offset = position.isInitial() ? 0 : position.getOffset() + 1;
+        // One row more than the page tells whether there is a next one
+        List<Coupon> coupons = rankByDiscount(orderAmount, discountType, currentTime, direction, offset, size + 1);
+        List<Coupon> content = coupons.size() > size ? coupons.subList(0, size) : coupons;
+        return Window.from(content, index -> ScrollPosition.offset(offset + index), coupons.size() > size);
+    }
+
+    @Override
+    public long countAvailableCoupons(BigDecimal orderAmount, DiscountType discountType) {
+        // Counted at the time of each refresh, coupons start and end meanwhile
+        return couponCountCache.count(
+                String.join("|", "available", couponCountCache.bucketOf(orderAmount), String.valueOf(discountType)),
+                () -> jpaCouponRepository.count(
+                        CouponSpecification.withAvailabilityFilters(orderAmount, discountType, LocalDateTime.now()))
+        );
     }
 
     @Override
+    @Transactional
     public Coupon save(Coupon coupon) {
-        CouponEntity couponEntity = toEntity(coupon);
+        CouponEntity couponEntity = couponEntityMapper.toEntity(coupon);
         CouponEntity savedEntity = jpaCouponRepository.save(couponEntity);
-        Coupon result = toDomainObject(savedEntity);
+        Coupon result = couponEntityMapper.toDomainObject(savedEntity);
+        usageStore.reset(result);
+        if (result.getRemainingUsage() > 0) {
+            soldOutRegistry.clear(result.getCode());
+        }
+        couponIndex.upsert(result);
+        couponCountCache.invalidate();
+        availableCouponCache.invalidate(result.getDiscountType());
 
         // Update cache with new data
         String cacheKey = CacheKey.couponByCode(result.getCode());
@@ -97,10 +190,29 @@ public class CouponRepository implements ICouponRepository {
     }
 
     @Override
-    public Coupon update(Coupon coupon) {
-        CouponEntity couponEntity = toEntity(coupon);
+    @Transactional
+    public Coupon update(Coupon coupon, boolean usageChanged) {
+        CouponEntity couponEntity = couponEntityMapper.toEntity(coupon);
+        if (!usageChanged) {
+            // The remaining usage given back was read before, possibly from a cache: keep the current one,
+            // with the row locked so that no usage is taken between this read and the save
+            jpaCouponRepository.findByIdForUpdate(coupon.getId()).ifPresent(current -> {
+                couponEntity.setRemainingUsage(current.getRemainingUsage());
+                couponEntity.setUsageShards(current.getUsageShards());
+            });
+        }
         CouponEntity updatedEntity = jpaCouponRepository.save(couponEntity);
-        Coupon result = toDomainObject(updatedEntity);
+        Coupon result = couponEntityMapper.toDomainObject(updatedEntity);
+        if (usageChanged) {
+            usageStore.reset(result);
+        }
+        if (result.getRemainingUsage() > 0) {
+            soldOutRegistry.clear(result.getCode());
+        }
+        couponIndex.upsert(result);
+        couponCountCache.invalidate();
+        // The discount type may have changed
+        availableCouponCache.invalidate(null);
 
         // Update cache with new data
         String cacheKey = CacheKey.couponByCode(result.getCode());
@@ -113,6 +225,11 @@ public class CouponRepository implements ICouponRepository {
     @Transactional
     public void delete(Coupon coupon) {
         jpaCouponRepository.deleteByCode(coupon.getCode());
+        usageStore.remove(coupon);
+        soldOutRegistry.clear(coupon.getCode());
+        couponIndex.remove(coupon.getCode());
+        couponCountCache.invalidate();
+        availableCouponCache.invalidate(coupon.getDiscountType());
 
         // Remove from cache
         String cacheKey = CacheKey.couponByCode(coupon.getCode());
@@ -120,12 +237,15 @@ public class CouponRepository implements ICouponRepository {
     }
 
     @Override
-    @Transactional
     public boolean decrementRemainingUsage(String code) {
-        int updated = jpaCouponRepository.decrementRemainingUsage(code);
-        boolean result = updated > 0;
+        boolean result = usageStore.decrement(code);
+        // A failed take may have met a sold out coupon, while listings are cached a successful one may take its last usage
+        if (!result || availableCouponCache.isActive()) {
+            markSoldOutIfExhausted(code, null);
+        }
 
-        if (result) {
+        // Write-behind stores evict the cached coupon once the decrement reaches the database, group commits once per batch
+        if (result && !usageStore.evictsCachedCoupon()) {
             // Invalidate cache for this coupon and related caches
             String cacheKey = CacheKey.couponByCode(code);
             cacheService.delete(cacheKey);
@@ -134,39 +254,173 @@ public class CouponRepository implements ICouponRepository {
         return result;
     }
 
+    @Override
+    public int decrementRemainingUsage(String code, int count) {
+        int taken = usageStore.take(code, count, 0);
+        if (taken < count || availableCouponCache.isActive()) {
+            markSoldOutIfExhausted(code, null);
+        }
 
-    private Coupon toDomainObject(CouponEntity entity) {
-        return new Coupon(
-                entity.getId(),
-                entity.getCode(),
-                entity.getTitle(),
-                entity.getDescription(),
-                entity.getDiscountType(),
-                entity.getUsageType(),
-                entity.getDiscountValue(),
-                entity.getMaxDiscountAmount(),
-                entity.getMinOrderValue(),
-                entity.getStartTime(),
-                entity.getEndTime(),
-                entity.getRemainingUsage()
-        );
+        if (taken > 0 && !usageStore.evictsCachedCoupon()) {
+            String cacheKey = CacheKey.couponByCode(code);
+            cacheService.delete(cacheKey);
+        }
+
+        return taken;
+    }
+
+    @Override
+    public boolean applyUsage(Coupon coupon, BigDecimal orderAmount, LocalDateTime appliedAt) {
+        boolean result = usageStore.apply(coupon, orderAmount, appliedAt);
+
+        // Rejected although the coupon itself is applicable to the order: it may have run out of usage
+        if (!result && isApplicable(coupon, orderAmount, appliedAt)) {
+            markSoldOutIfExhausted(coupon.getCode(), coupon.getDiscountType());
+        } else if (result && availableCouponCache.isActive()) {
+            // Cached listings are kept across takes, the one taking the last usage drops them
+            markSoldOutIfExhausted(coupon.getCode(), coupon.getDiscountType());
+        }
+
+        if (result && !usageStore.evictsCachedCoupon()) {
+            String cacheKey = CacheKey.couponByCode(coupon.getCode());
+            cacheService.delete(cacheKey);
+        }
+
+        return result;
+    }
+
+    @Override
+    public void releaseUsage(String code, int count) {
+        usageStore.giveBack(code, count);
+        boolean wasSoldOut = soldOutRegistry.isSoldOut(code);
+        soldOutRegistry.clear(code);
+        couponIndex.markAvailable(code);
+        if (wasSoldOut) {
+            availableCouponCache.invalidate(null);
+        }
+
+        if (!usageStore.evictsCachedCoupon()) {
+            String cacheKey = CacheKey.couponByCode(code);
+            cacheService.delete(cacheKey);
+        }
+    }
+
+    /**
+     * Let every instance reject the coupon upfront once the store confirms that no usage is left,
+     * a take lost to a concurrent one or failing in the store does not make the coupon sold out
+     *
+     * @param discountType discount type of the coupon, or null if unknown
+     */
+    private void markSoldOutIfExhausted(String code, DiscountType discountType) {
+        if (usageStore.isExhausted(code)) {
+            boolean wasSoldOut = soldOutRegistry.isSoldOut(code);
+            soldOutRegistry.markSoldOut(code);
+            couponIndex.markSoldOut(code);
+            // Listings leave out the remaining usage, they only change once the coupon runs out
+            if (!wasSoldOut) {
+                availableCouponCache.invalidate(discountType);
+            }
+        }
+    }
+
+    /**
+     * Cached pages of available coupons are kept across takes and only dropped once a coupon runs out,
+     * the remaining usage they hold would be stale
+     */
+    private static Coupon withoutRemainingUsage(Coupon coupon) {
+        return new Coupon(coupon.getId(), coupon.getCode(), coupon.getTitle(), coupon.getDescription(),
+                coupon.getDiscountType(), coupon.getUsageType(), coupon.getDiscountValue(),
+                coupon.getMaxDiscountAmount(), coupon.getMinOrderValue(), coupon.getStartTime(),
+                coupon.getEndTime(), null, coupon.getDiscountRules());
+    }
+
+    private Window<Coupon> scroll(Specification<CouponEntity> spec, Sort sort, ScrollPosition position, int size) {
+        if (position instanceof OffsetScrollPosition) {
+            // Spring Data fetches one row more than the page to tell whether there is a next one, no count
+            return jpaCouponRepository.findBy(spec, query -> query.sortBy(sort).limit(size).scroll(position))
+                    .map(couponEntityMapper::toDomainObject);
+        }
+
+        // Seek past the position instead of skipping rows, and fetch one row more than the page to tell
+        // whether there is a next one without counting
+        KeysetScrollPosition keyset = (KeysetScrollPosition) position;
+        List<Coupon> coupons = jpaCouponRepository.findBy(
+                        spec.and(CouponSpecification.seek(sort, keyset)),
+                        query -> query.sortBy(sort).limit(size + 1).all()
+                ).stream()
+                .map(couponEntityMapper::toDomainObject)
+                .toList();
+
+        List<Coupon> content = coupons.size() > size ? coupons.subList(0, size) : coupons;
+        return Window.from(content, index -> CouponCursor.positionOf(content.get(index), sort), coupons.size() > size);
+    }
+
+    /**
+     * Coupons at positions [offset, offset + limit) of the available coupons ranked by discount, then by id.
+     *
+     * <p>PERCENT and FIXED coupons are ranked by the database, which only hands over the rows asked for. Rule based
+     * coupons can't be priced in SQL, the few available ones are priced here and merged in: with r of them, the rows
+     * of the database ranking from offset - r on hold every coupon of the page, and the rule based coupons ranking
+     * before the first of those rows tell its position in the merged ranking.
+     */
+    private List<Coupon> rankByDiscount(BigDecimal orderAmount, DiscountType discountType, LocalDateTime currentTime,
+                                        Sort.Direction direction, long offset, int limit) {
+        Comparator<Ranked> byDiscount = Comparator.comparing(Ranked::discount);
+        Comparator<Ranked> ranking = (direction.isDescending() ? byDiscount.reversed() : byDiscount)
+                .thenComparing(ranked -> ranked.coupon().getId());
+
+        List<Ranked> rules = jpaCouponRepository.findAll(CouponSpecification.withAvailabilityFilters(orderAmount, discountType, currentTime)
+                        .and(CouponSpecification.isRuleBased())).stream()
+                .map(couponEntityMapper::toDomainObject)
+                .map(coupon -> new Ranked(coupon, coupon.calculateDiscount(orderAmount)))
+                .sorted(ranking)
+                .toList();
+
+        long from = Math.max(0, offset - rules.size());
+        List<Ranked> rows = jpaCouponRepository.findAvailableByDiscount(
+                        orderAmount,
+                        currentTime,
+                        discountType == null ? null : discountType.name(),
+                        direction.isDescending() ? 1 : -1,
+                        limit + rules.size(),
+                        from
+                ).stream()
+                .map(couponEntityMapper::toDomainObject)
+                .map(coupon -> new Ranked(coupon, coupon.calculateDiscount(orderAmount)))
+                .toList();
+
+        if (rows.isEmpty() && from > 0) {
+            // The database ran out of rows before the offset, and so does the merged ranking
+            return List.of();
+        }
+
+        // Merged from the top, or from the first row on, skipping the rule based coupons ranking before it
+        int rule = from == 0
+                ? 0
+                : (int) rules.stream().filter(ranked -> ranking.compare(ranked, rows.get(0)) < 0).count();
+        long position = from + rule;
+
+        List<Coupon> merged = new ArrayList<>();
+        int row = 0;
+        while (merged.size() < offset - position + limit && (row < rows.size() || rule < rules.size())) {
+            if (rule == rules.size() || row < rows.size() && ranking.compare(rows.get(row), rules.get(rule)) < 0) {
+                merged.add(rows.get(row++).coupon());
+            } else {
+                merged.add(rules.get(rule++).coupon());
+            }
+        }
+
+        int start = (int) Math.min(offset - position, merged.size());
+        return List.copyOf(merged.subList(start, merged.size()));
+    }
+
+    private record Ranked(Coupon coupon, BigDecimal discount) {
     }
 
-    private CouponEntity toEntity(Coupon coupon) {
-        return CouponEntity.builder()
-                .id(coupon.getId())
-                .code(coupon.getCode())
-                .title(coupon.getTitle())
-                .description(coupon.getDescription())
-                .discountType(coupon.getDiscountType())
-                .usageType(coupon.getUsageType())
-                .discountValue(coupon.getDiscountValue())
-                .maxDiscountAmount(coupon.getMaxDiscountAmount())
-                .minOrderValue(coupon.getMinOrderValue())
-                .startTime(coupon.getStartTime())
-                .endTime(coupon.getEndTime())
-                .remainingUsage(coupon.getRemainingUsage())
-                .build();
+    private boolean isApplicable(Coupon coupon, BigDecimal orderAmount, LocalDateTime appliedAt) {
+        return !coupon.getStartTime().isAfter(appliedAt)
+                && coupon.getEndTime().isAfter(appliedAt)
+                && coupon.getMinOrderValue().compareTo(orderAmount) <= 0;
     }
 
 }
@@ -1,26 +1,138 @@
 package vn.zaloppay.couponservice.infra.repository;
 
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import vn.zaloppay.couponservice.domain.model.discount.DiscountType;
 import vn.zaloppay.couponservice.infra.model.CouponEntity;
 
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface JpaCouponRepository extends JpaRepository<CouponEntity, Long>, JpaSpecificationExecutor<CouponEntity> {
 
+    // Rows fetched per round trip by the top discount query, enough for a typical top k in one go
+    int TOP_DISCOUNT_FETCH_SIZE = 16;
+
+    // Discount of a PERCENT or FIXED coupon for :orderAmount, with the same rounding as PercentDiscountStrategy
+    String DISCOUNT = "CASE WHEN c.discount_type = 'PERCENT' " +
+            "THEN LEAST(ROUND(:orderAmount * c.discount_value / 100, 2), c.max_discount_amount) " +
+            "ELSE c.discount_value END";
+
     boolean existsByCode(String code);
     
     Optional<CouponEntity> findByCode(String code);
+
+    // Holds off usage decrements of the row until the current transaction commits
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT c FROM CouponEntity c WHERE c.id = :id")
+    Optional<CouponEntity> findByIdForUpdate(@Param("id") Long id);
+
+    List<CouponEntity> findByCodeIn(Collection<String> codes);
+
+    // Same rounding as PercentDiscountStrategy, so that the ranking matches the discount actually granted.
+    // Rule based coupons can't be priced in SQL and are left out.
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "" + TOP_DISCOUNT_FETCH_SIZE))
+    @Query(value = "SELECT c.* FROM coupons c " +
+            "WHERE c.start_time <= :currentTime AND c.end_time > :currentTime " +
+            "AND c.remaining_usage > 0 AND c.min_order_value <= :orderAmount " +
+            "AND (:usageType IS NULL OR c.usage_type = :usageType) " +
+            "AND c.discount_type IN ('PERCENT', 'FIXED') " +
+            "ORDER BY " + DISCOUNT + " DESC, c.id " +
+            "LIMIT :limit",
+            nativeQuery = true)
+    List<CouponEntity> findTopByDiscount(@Param("orderAmount") BigDecimal orderAmount,
+                                         @Param("currentTime") LocalDateTime currentTime,
+                                         @Param("usageType") String usageType,
+                                         @Param("limit") int limit);
     
+    // Available coupons ranked by discount for the order amount, descending for sign 1 and ascending for sign -1.
+    // Only the rows of the page leave the database, which keeps the best limit + offset rows while sorting.
+    // Rule based coupons can't be priced in SQL and are left out.
+    @Query(value = "SELECT c.* FROM coupons c " +
+            "WHERE c.start_time <= :currentTime AND c.end_time > :currentTime " +
+            "AND c.remaining_usage > 0 AND c.min_order_value <= :orderAmount " +
+            "AND (:discountType IS NULL OR c.discount_type = :discountType) " +
+            "AND c.discount_type IN ('PERCENT', 'FIXED') " +
+            "ORDER BY :sign * " + DISCOUNT + " DESC, c.id " +
+            "LIMIT :limit OFFSET :offset",
+            nativeQuery = true)
+    List<CouponEntity> findAvailableByDiscount(@Param("orderAmount") BigDecimal orderAmount,
+                                               @Param("currentTime") LocalDateTime currentTime,
+                                               @Param("discountType") String discountType,
+                                               @Param("sign") int sign,
+                                               @Param("limit") int limit,
+                                               @Param("offset") long offset);
+
+    // Next time a coupon not ended yet starts or ends, after which coupons may come in or out of the listings
+    @Query("SELECT MIN(CASE WHEN c.startTime > :currentTime THEN c.startTime ELSE c.endTime END) " +
+            "FROM CouponEntity c " +
+            "WHERE c.endTime > :currentTime AND (:discountType IS NULL OR c.discountType = :discountType)")
+    LocalDateTime findNextStartOrEndTime(@Param("currentTime") LocalDateTime currentTime,
+                                         @Param("discountType") DiscountType discountType);
+
+    @Query("SELECT DISTINCT c.minOrderValue FROM CouponEntity c " +
+            "WHERE c.endTime > :currentTime AND (:discountType IS NULL OR c.discountType = :discountType) " +
+            "ORDER BY c.minOrderValue")
+    List<BigDecimal> findMinOrderValues(@Param("currentTime") LocalDateTime currentTime,
+                                        @Param("discountType") DiscountType discountType);
+
     void deleteByCode(String code);
 
+    @Transactional
     @Modifying
-    @Query("UPDATE CouponEntity c SET c.remainingUsage = c.remainingUsage - 1 WHERE c.code = :code AND c.remainingUsage > 0")
+    @Query("UPDATE CouponEntity c SET c.remainingUsage = c.remainingUsage - 1 " +
+            "WHERE c.code = :code AND c.remainingUsage > 0 AND c.usageShards = 0")
     int decrementRemainingUsage(@Param("code") String code);
 
+    @Transactional
+    @Modifying
+    @Query("UPDATE CouponEntity c SET c.remainingUsage = c.remainingUsage - 1 " +
+            "WHERE c.id = :id AND c.startTime <= :appliedAt AND c.endTime > :appliedAt " +
+            "AND c.minOrderValue <= :orderAmount AND c.remainingUsage > 0 AND c.usageShards = 0")
+    int applyUsage(@Param("id") Long id,
+                   @Param("orderAmount") BigDecimal orderAmount,
+                   @Param("appliedAt") LocalDateTime appliedAt);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE CouponEntity c SET c.remainingUsage = c.remainingUsage - :count " +
+            "WHERE c.code = :code AND c.remainingUsage >= :count AND c.usageShards = 0")
+    int decrementRemainingUsage(@Param("code") String code, @Param("count") Integer count);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE CouponEntity c SET c.remainingUsage = c.remainingUsage + :count " +
+            "WHERE c.code = :code AND c.usageShards = 0")
+    int incrementRemainingUsage(@Param("code") String code, @Param("count") Integer count);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE CouponEntity c SET c.remainingUsage = c.remainingUsage + :count " +
+            "WHERE c.id = :id AND c.usageShards > 0")
+    int restoreShardedRemainingUsage(@Param("id") Long id, @Param("count") Integer count);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE CouponEntity c SET c.usageShards = :usageShards WHERE c.id = :id")
+    int updateUsageShards(@Param("id") Long id, @Param("usageShards") Integer usageShards);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE CouponEntity c SET c.remainingUsage = 0 WHERE c.id = :id AND c.usageShards > 0")
+    int clearRemainingUsage(@Param("id") Long id);
+
 }
@@ -0,0 +1,58 @@
+package vn.zaloppay.couponservice.infra.repository;
+
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import vn.zaloppay.couponservice.infra.model.CouponUsageShardEntity;
+
+import java.util.List;
+
+@Repository
+public interface JpaCouponUsageShardRepository extends JpaRepository<CouponUsageShardEntity, CouponUsageShardEntity.ShardId> {
+
+    List<CouponUsageShardEntity> findByCouponId(Long couponId);
+
+    // Holds off decrements of the shards until the current transaction re-splits them
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM CouponUsageShardEntity s WHERE s.couponId = :couponId")
+    List<CouponUsageShardEntity> findByCouponIdForUpdate(@Param("couponId") Long couponId);
+
+    @Query("SELECT s.shardNo FROM CouponUsageShardEntity s WHERE s.couponId = :couponId AND s.remainingUsage > 0")
+    List<Integer> findNonEmptyShardNos(@Param("couponId") Long couponId);
+
+    @Query("SELECT COALESCE(SUM(s.remainingUsage), 0) FROM CouponUsageShardEntity s WHERE s.couponId = :couponId")
+    long sumRemainingUsage(@Param("couponId") Long couponId);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE CouponUsageShardEntity s SET s.remainingUsage = s.remainingUsage - 1 " +
+            "WHERE s.couponId = :couponId AND s.shardNo = :shardNo AND s.remainingUsage > 0")
+    int decrementRemainingUsage(@Param("couponId") Long couponId, @Param("shardNo") Integer shardNo);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE CouponUsageShardEntity s SET s.remainingUsage = s.remainingUsage - :count " +
+            "WHERE s.couponId = :couponId AND s.shardNo = :shardNo AND s.remainingUsage >= :count")
+    int decrementRemainingUsage(@Param("couponId") Long couponId,
+                                @Param("shardNo") Integer shardNo,
+                                @Param("count") Integer count);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE CouponUsageShardEntity s SET s.remainingUsage = s.remainingUsage + :count " +
+            "WHERE s.couponId = :couponId AND s.shardNo = :shardNo")
+    int incrementRemainingUsage(@Param("couponId") Long couponId,
+                                @Param("shardNo") Integer shardNo,
+                                @Param("count") Integer count);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM CouponUsageShardEntity s WHERE s.couponId = :couponId")
+    int deleteByCouponId(@Param("couponId") Long couponId);
+
+}
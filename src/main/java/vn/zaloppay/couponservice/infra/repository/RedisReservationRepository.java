@@ -0,0 +1,166 @@
+package vn.zaloppay.couponservice.infra.repository;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RScript;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.stereotype.Repository;
+import vn.zaloppay.couponservice.app.config.logging.Limer;
+import vn.zaloppay.couponservice.domain.exceptions.InternalServerErrorException;
+import vn.zaloppay.couponservice.domain.model.Reservation;
+import vn.zaloppay.couponservice.domain.repository.IReservationRepository;
+import vn.zaloppay.couponservice.domain.util.CacheKey;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reservations live in Redis hashes keyed by id, each with a sorted set indexing them by expiry time.
+ * Confirm and cancel are a single hash lookup, and the sweeper only reads the expired head of the indexes.
+ *
+ * <p>Reservations are spread over shards by id, each in its own cluster slot, so that no single node
+ * takes every reserve, confirm and cancel. Their keys carry no TTL and are never evicted (see redis/redis.conf),
+ * an evicted reservation would hold its usage forever.
+ */
+@Slf4j
+@Repository
+@RequiredArgsConstructor
+@Limer(enabledLogLatency = true)
+public class RedisReservationRepository implements IReservationRepository {
+
+    private static final String SAVE_SCRIPT = """
+            redis.call('HSET', KEYS[1], ARGV[1], ARGV[2])
+            redis.call('ZADD', KEYS[2], ARGV[3], ARGV[1])
+            return 1
+            """;
+
+    // ARGV[2] is the current time, or empty to take the reservation even if it has expired
+    private static final String TAKE_SCRIPT = """
+            local expiresAt = redis.call('ZSCORE', KEYS[2], ARGV[1])
+            if not expiresAt then
+              return false
+            end
+            if ARGV[2] ~= '' and tonumber(expiresAt) <= tonumber(ARGV[2]) then
+              return false
+            end
+            local reservation = redis.call('HGET', KEYS[1], ARGV[1])
+            redis.call('HDEL', KEYS[1], ARGV[1])
+            redis.call('ZREM', KEYS[2], ARGV[1])
+            return reservation
+            """;
+
+    private static final String TAKE_EXPIRED_SCRIPT = """
+            local ids = redis.call('ZRANGEBYSCORE', KEYS[2], '-inf', ARGV[1], 'LIMIT', 0, ARGV[2])
+            local reservations = {}
+            for _, id in ipairs(ids) do
+              local reservation = redis.call('HGET', KEYS[1], id)
+              redis.call('HDEL', KEYS[1], id)
+              redis.call('ZREM', KEYS[2], id)
+              if reservation then
+                table.insert(reservations, reservation)
+              end
+            end
+            return reservations
+            """;
+
+    // Changing it loses track of the reservations pending in the shards dropped
+    private static final int SHARDS = 16;
+
+    private final RedissonClient redissonClient;
+
+    private final ObjectMapper objectMapper;
+
+    // Shard the next sweep starts from, so that a busy shard doesn't starve the others
+    private final AtomicInteger nextSweptShard = new AtomicInteger();
+
+    @Override
+    public void save(Reservation reservation) {
+        String value;
+        try {
+            value = objectMapper.writeValueAsString(reservation);
+        } catch (JsonProcessingException e) {
+            throw new InternalServerErrorException("Cannot serialize reservation: " + reservation.getId());
+        }
+
+        script().eval(
+                RScript.Mode.READ_WRITE,
+                SAVE_SCRIPT,
+                RScript.ReturnType.INTEGER,
+                keys(shardOf(reservation.getId())),
+                reservation.getId(), value, String.valueOf(toEpochMilli(reservation.getExpiresAt()))
+        );
+    }
+
+    @Override
+    public Reservation takeActive(String id, LocalDateTime now) {
+        return take(id, String.valueOf(toEpochMilli(now)));
+    }
+
+    @Override
+    public Reservation take(String id) {
+        return take(id, "");
+    }
+
+    @Override
+    public List<Reservation> takeExpired(LocalDateTime now, int limit) {
+        List<Reservation> reservations = new ArrayList<>();
+        int firstShard = Math.floorMod(nextSweptShard.getAndIncrement(), SHARDS);
+        for (int i = 0; i < SHARDS && reservations.size() < limit; i++) {
+            List<Object> values = script().eval(
+                    RScript.Mode.READ_WRITE,
+                    TAKE_EXPIRED_SCRIPT,
+                    RScript.ReturnType.MULTI,
+                    keys((firstShard + i) % SHARDS),
+                    String.valueOf(toEpochMilli(now)), String.valueOf(limit - reservations.size())
+            );
+
+            if (values != null) {
+                values.forEach(value -> reservations.add(fromJson((String) value)));
+            }
+        }
+        return reservations;
+    }
+
+    private Reservation take(String id, String now) {
+        String value = script().eval(
+                RScript.Mode.READ_WRITE,
+                TAKE_SCRIPT,
+                RScript.ReturnType.VALUE,
+                keys(shardOf(id)),
+                id, now
+        );
+        return value == null ? null : fromJson(value);
+    }
+
+    private static int shardOf(String id) {
+        return Math.floorMod(id.hashCode(), SHARDS);
+    }
+
+    private static List<Object> keys(int shard) {
+        return Arrays.asList(CacheKey.couponReservations(shard), CacheKey.couponReservationExpiry(shard));
+    }
+
+    private RScript script() {
+        return redissonClient.getScript(StringCodec.INSTANCE);
+    }
+
+    private Reservation fromJson(String value) {
+        try {
+            return objectMapper.readValue(value, Reservation.class);
+        } catch (JsonProcessingException e) {
+            throw new InternalServerErrorException("Cannot deserialize reservation: " + value);
+        }
+    }
+
+    private long toEpochMilli(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+}
@@ -0,0 +1,165 @@
+package vn.zaloppay.couponservice.infra.repository.count;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RAtomicLong;
+import org.redisson.api.RedissonClient;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import vn.zaloppay.couponservice.domain.util.CacheKey;
+import vn.zaloppay.couponservice.infra.repository.JpaCouponRepository;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Approximate totals of the coupon listings, cached per filter so that listing a page doesn't count the
+ * whole result each time.
+ *
+ * <p>A filter is counted on its first request, then served from the cache. {@link #refresh()} counts again
+ * the filters read since the previous refresh and drops the others, so the background work follows the
+ * filters actually in use. Any write to coupons drops every total, the next request counts again: it bumps
+ * a generation counter in Redis, read on each request so that writes made on any instance are seen right away.
+ *
+ * <p>Totals of the available coupons are cached per bucket of order amounts rather than per amount: every amount
+ * between two consecutive minimum order values of the coupons not ended is eligible to the same coupons.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class CouponCountCache {
+
+    private final CouponCountProperties properties;
+
+    private final JpaCouponRepository jpaCouponRepository;
+
+    private final RedissonClient redissonClient;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    // Distinct minimum order values of the coupons not ended, ascending, loaded on first use
+    private volatile BigDecimal[] minOrderValues;
+
+    // Generation the cached totals and minimum order values were read at
+    private volatile long generation;
+
+    /**
+     * @param key     identifies the filter
+     * @param counter counts the coupons matching the filter at the time it is called
+     */
+    public long count(String key, LongSupplier counter) {
+        sync();
+        Entry entry = entries.get(key);
+        if (entry != null) {
+            entry.read = true;
+            return entry.total;
+        }
+
+        long total = counter.getAsLong();
+        if (entries.size() < properties.getMaxEntries()) {
+            entries.put(key, new Entry(counter, total));
+        }
+        return total;
+    }
+
+    /**
+     * @return the highest minimum order value the amount meets, every amount in between counts the same coupons
+     */
+    public String bucketOf(BigDecimal orderAmount) {
+        if (orderAmount == null) {
+            return "*";
+        }
+
+        sync();
+        BigDecimal[] values = minOrderValues;
+        if (values == null) {
+            values = jpaCouponRepository.findMinOrderValues(LocalDateTime.now(), null).toArray(BigDecimal[]::new);
+            minOrderValues = values;
+        }
+        int index = Arrays.binarySearch(values, orderAmount);
+        if (index < 0) {
+            index = -index - 2;
+        }
+        return index < 0 ? "-" : values[index].toPlainString();
+    }
+
+    /**
+     * Drops the totals of every instance, once the current transaction commits
+     */
+    public void invalidate() {
+        clear();
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            bump();
+            return;
+        }
+
+        // Bumped before the commit, another instance could count the rows as they were before it
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                bump();
+            }
+        });
+    }
+
+    public void refresh() {
+        // Coupons ended since leave their buckets
+        minOrderValues = null;
+        entries.forEach((key, entry) -> {
+            if (!entry.read) {
+                entries.remove(key, entry);
+                return;
+            }
+            entry.read = false;
+            entry.total = entry.counter.getAsLong();
+        });
+        log.debug("Refreshed {} cached coupon listing totals", entries.size());
+    }
+
+    private void sync() {
+        long current = generation().get();
+        if (current != generation) {
+            clear();
+            generation = current;
+        }
+    }
+
+    private void bump() {
+        try {
+            generation().incrementAndGet();
+        } catch (Exception e) {
+            // Other instances keep their totals until the next refresh
+            log.error("Error invalidating cached coupon listing totals", e);
+        }
+    }
+
+    private void clear() {
+        minOrderValues = null;
+        entries.clear();
+    }
+
+    private RAtomicLong generation() {
+        return redissonClient.getAtomicLong(CacheKey.couponCountGeneration());
+    }
+
+    private static final class Entry {
+
+        private final LongSupplier counter;
+
+        private volatile long total;
+
+        private volatile boolean read;
+
+        private Entry(LongSupplier counter, long total) {
+            this.counter = counter;
+            this.total = total;
+        }
+
+    }
+
+}
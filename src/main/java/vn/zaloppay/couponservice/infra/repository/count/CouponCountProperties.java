@@ -0,0 +1,19 @@
+package vn.zaloppay.couponservice.infra.repository.count;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Setter
+@Getter
+@Component
+@ConfigurationProperties(prefix = "coupon.count")
+public class CouponCountProperties {
+
+    // How often the cached listing totals read since the last refresh are counted again
+    private long refreshIntervalMs = 30000;
+    // Totals of further filters are counted on every request rather than cached
+    private int maxEntries = 10000;
+
+}
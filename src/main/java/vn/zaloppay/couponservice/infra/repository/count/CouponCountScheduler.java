@@ -0,0 +1,30 @@
+package vn.zaloppay.couponservice.infra.repository.count;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Periodically counts again the cached coupon listing totals still in use.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class CouponCountScheduler {
+
+    private final CouponCountCache couponCountCache;
+
+    @Scheduled(
+            initialDelayString = "#{@couponCountProperties.refreshIntervalMs}",
+            fixedDelayString = "#{@couponCountProperties.refreshIntervalMs}"
+    )
+    public void refresh() {
+        try {
+            couponCountCache.refresh();
+        } catch (Exception e) {
+            log.error("Error refreshing coupon listing totals", e);
+        }
+    }
+
+}
@@ -0,0 +1,198 @@
+package vn.zaloppay.couponservice.infra.repository.index;
+
+import vn.zaloppay.couponservice.domain.model.discount.DiscountStrategy;
+import vn.zaloppay.couponservice.domain.model.discount.DiscountTerms;
+import vn.zaloppay.couponservice.domain.model.discount.DiscountType;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Upper envelope of the discount functions of a set of coupons, answering "best coupon for this order amount"
+ * with a binary search.
+ *
+ * <p>Past its minimum order value, a fixed coupon is a constant and a percent coupon is a line through the origin
+ * up to its cap, then a constant. Cut at every minimum order value and cap point, the order amounts split into
+ * segments where each coupon is either constant or such a line, so the best coupon of a segment is either the
+ * highest constant or the steepest line. Both are kept per segment and compared at lookup time.
+ * Rule based coupons have no such shape: they are kept aside, by minimum order value, and evaluated at lookup time.
+ * Everything is computed on minor units, a lookup doesn't allocate.
+ */
+final class BestCouponEnvelope {
+
+    // Cents times hundredths of a percent give cents scaled by 10^4
+    private static final long PERCENT_SCALE = 10_000;
+
+    // Order amount each segment starts at, ascending
+    private final long[] starts;
+
+    // Highest constant discount of each segment, or null
+    private final IndexedCoupon[] constants;
+
+    // Steepest percent discount of each segment still below its cap, or null
+    private final IndexedCoupon[] slopes;
+
+    // Rule based coupons, by ascending minimum order value
+    private final IndexedCoupon[] ruleBased;
+
+    // Codes of the coupons winning at least one segment, and of every rule based coupon
+    private final Set<String> winners = new HashSet<>();
+
+    private BestCouponEnvelope(long[] starts, IndexedCoupon[] constants, IndexedCoupon[] slopes, IndexedCoupon[] ruleBased) {
+        this.starts = starts;
+        this.constants = constants;
+        this.slopes = slopes;
+        this.ruleBased = ruleBased;
+        for (IndexedCoupon coupon : ruleBased) {
+            winners.add(coupon.coupon().getCode());
+        }
+        for (int i = 0; i < starts.length; i++) {
+            if (constants[i] != null) {
+                winners.add(constants[i].coupon().getCode());
+            }
+            if (slopes[i] != null) {
+                winners.add(slopes[i].coupon().getCode());
+            }
+        }
+    }
+
+    static BestCouponEnvelope build(Collection<IndexedCoupon> coupons) {
+        List<Event> events = new ArrayList<>(coupons.size() * 2);
+        List<IndexedCoupon> ruleBased = new ArrayList<>();
+        for (IndexedCoupon coupon : coupons) {
+            DiscountTerms terms = coupon.terms();
+            long minOrderValue = terms.minOrderValue();
+
+            if (terms.discountType().isRuleBased()) {
+                ruleBased.add(coupon);
+            } else if (terms.discountType() != DiscountType.PERCENT) {
+                events.add(Event.constantAt(minOrderValue, coupon, terms.discountValue(), false));
+            } else if (terms.discountValue() <= 0) {
+                events.add(Event.constantAt(minOrderValue, coupon, 0, false));
+            } else if (terms.maxDiscountAmount() == DiscountStrategy.NO_MAX_DISCOUNT) {
+                events.add(Event.lineAt(minOrderValue, coupon));
+            } else {
+                // First order amount at which the cap applies
+                long capPoint = Math.ceilDiv(Math.multiplyExact(terms.maxDiscountAmount(), PERCENT_SCALE), terms.discountValue());
+                if (capPoint <= minOrderValue) {
+                    events.add(Event.constantAt(minOrderValue, coupon, terms.maxDiscountAmount(), false));
+                } else {
+                    events.add(Event.lineAt(minOrderValue, coupon));
+                    events.add(Event.constantAt(capPoint, coupon, terms.maxDiscountAmount(), true));
+                }
+            }
+        }
+        events.sort(Comparator.comparingLong(Event::at));
+
+        PriorityQueue<Event> constantQueue = new PriorityQueue<>(Comparator.comparingLong(Event::constant).reversed());
+        PriorityQueue<Event> slopeQueue = new PriorityQueue<>(
+                Comparator.comparingLong((Event event) -> event.coupon().terms().discountValue()).reversed());
+        Set<String> capped = new HashSet<>();
+
+        int segmentCount = 0;
+        long[] starts = new long[events.size()];
+        IndexedCoupon[] constants = new IndexedCoupon[events.size()];
+        IndexedCoupon[] slopes = new IndexedCoupon[events.size()];
+
+        int i = 0;
+        while (i < events.size()) {
+            long at = events.get(i).at();
+            for (; i < events.size() && events.get(i).at() == at; i++) {
+                Event event = events.get(i);
+                if (event.capReached()) {
+                    capped.add(event.coupon().coupon().getCode());
+                }
+                if (event.isLine()) {
+                    slopeQueue.add(event);
+                } else {
+                    constantQueue.add(event);
+                }
+            }
+
+            // Lines of coupons past their cap are dropped lazily
+            while (!slopeQueue.isEmpty() && capped.contains(slopeQueue.peek().coupon().coupon().getCode())) {
+                slopeQueue.poll();
+            }
+
+            starts[segmentCount] = at;
+            constants[segmentCount] = constantQueue.isEmpty() ? null : constantQueue.peek().coupon();
+            slopes[segmentCount] = slopeQueue.isEmpty() ? null : slopeQueue.peek().coupon();
+            segmentCount++;
+        }
+
+        return new BestCouponEnvelope(
+                Arrays.copyOf(starts, segmentCount),
+                Arrays.copyOf(constants, segmentCount),
+                Arrays.copyOf(slopes, segmentCount),
+                ruleBased.stream()
+                        .sorted(Comparator.comparingLong((IndexedCoupon coupon) -> coupon.terms().minOrderValue()))
+                        .toArray(IndexedCoupon[]::new)
+        );
+    }
+
+    /**
+     * @param orderAmount order amount in minor units
+     * @return the coupon giving the highest discount to the order amount, or null if none applies to it
+     */
+    IndexedCoupon best(long orderAmount) {
+        IndexedCoupon best = bestOfSegment(orderAmount);
+        long bestDiscount = best == null ? 0 : best.terms().calculateDiscount(orderAmount);
+        for (IndexedCoupon coupon : ruleBased) {
+            if (coupon.terms().minOrderValue() > orderAmount) {
+                break;
+            }
+            long discount = coupon.terms().calculateDiscount(orderAmount);
+            if (best == null || discount > bestDiscount) {
+                best = coupon;
+                bestDiscount = discount;
+            }
+        }
+        return best;
+    }
+
+    private IndexedCoupon bestOfSegment(long orderAmount) {
+        int index = Arrays.binarySearch(starts, orderAmount);
+        if (index < 0) {
+            // Last segment starting before the order amount
+            index = -index - 2;
+        }
+        if (index < 0) {
+            return null;
+        }
+
+        IndexedCoupon constant = constants[index];
+        IndexedCoupon slope = slopes[index];
+        if (constant == null || slope == null) {
+            return constant == null ? slope : constant;
+        }
+        return slope.terms().calculateDiscount(orderAmount) > constant.terms().calculateDiscount(orderAmount)
+                ? slope
+                : constant;
+    }
+
+    boolean isWinner(String code) {
+        return winners.contains(code);
+    }
+
+    /**
+     * A coupon entering the envelope at an order amount, either as a constant discount or as a percent line
+     */
+    private record Event(long at, IndexedCoupon coupon, boolean isLine, long constant, boolean capReached) {
+
+        private static Event lineAt(long at, IndexedCoupon coupon) {
+            return new Event(at, coupon, true, 0, false);
+        }
+
+        private static Event constantAt(long at, IndexedCoupon coupon, long constant, boolean capReached) {
+            return new Event(at, coupon, false, constant, capReached);
+        }
+
+    }
+
+}
@@ -0,0 +1,75 @@
+package vn.zaloppay.couponservice.infra.repository.index;
+
+import vn.zaloppay.couponservice.domain.model.Coupon;
+import vn.zaloppay.couponservice.domain.model.UsageType;
+import vn.zaloppay.couponservice.domain.util.TopK;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Answers which coupons an order is eligible for: active at the given time, with remaining usage
+ * and a minimum order value the order amount meets. The coupon repository keeps it up to date
+ * with every change it makes to coupons.
+ */
+public interface CouponIndex {
+
+    /**
+     * @param usageType only coupons of this usage type, or null for every usage type
+     */
+    List<Coupon> findEligible(BigDecimal orderAmount, LocalDateTime currentTime, UsageType usageType);
+
+    /**
+     * @param usageType only coupons of this usage type, or null for every usage type
+     * @return the eligible coupon giving the highest discount to the order amount, or null if there is none
+     */
+    default Coupon findBest(BigDecimal orderAmount, LocalDateTime currentTime, UsageType usageType) {
+        List<Coupon> top = findTop(orderAmount, currentTime, usageType, 1);
+        return top.isEmpty() ? null : top.get(0);
+    }
+
+    /**
+     * @param usageType only coupons of this usage type, or null for every usage type
+     * @return at most limit eligible coupons, by decreasing discount for the order amount
+     */
+    default List<Coupon> findTop(BigDecimal orderAmount, LocalDateTime currentTime, UsageType usageType, int limit) {
+        // Each discount is computed once, and only the best coupons are kept and ordered
+        TopK<Coupon> top = new TopK<>(limit);
+        for (Coupon coupon : findEligible(orderAmount, currentTime, usageType)) {
+            top.offer(coupon, coupon.calculateDiscount(orderAmount));
+        }
+        return top.toList();
+    }
+
+    /**
+     * The coupon was created or updated
+     */
+    default void upsert(Coupon coupon) {
+    }
+
+    /**
+     * The coupon was deleted
+     */
+    default void remove(String code) {
+    }
+
+    /**
+     * The coupon has no remaining usage left
+     */
+    default void markSoldOut(String code) {
+    }
+
+    /**
+     * The coupon marked sold out has remaining usage again
+     */
+    default void markAvailable(String code) {
+    }
+
+    /**
+     * Catch up with changes made by other instances
+     */
+    default void refresh() {
+    }
+
+}
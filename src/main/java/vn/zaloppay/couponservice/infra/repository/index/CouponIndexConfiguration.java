@@ -0,0 +1,63 @@
+package vn.zaloppay.couponservice.infra.repository.index;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RedissonClient;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import vn.zaloppay.couponservice.domain.service.ISoldOutRegistry;
+import vn.zaloppay.couponservice.infra.repository.CouponEntityMapper;
+import vn.zaloppay.couponservice.infra.repository.JpaCouponRepository;
+
+import java.time.Duration;
+
+@Configuration
+@Slf4j
+public class CouponIndexConfiguration {
+
+    private final CouponIndexProperties couponIndexProperties;
+
+    public CouponIndexConfiguration(CouponIndexProperties couponIndexProperties) {
+        this.couponIndexProperties = couponIndexProperties;
+    }
+
+    @Bean
+    public CouponIndex couponIndex(JpaCouponRepository jpaCouponRepository, CouponEntityMapper couponEntityMapper,
+                                   RedissonClient redissonClient, ObjectMapper objectMapper,
+                                   ISoldOutRegistry soldOutRegistry) {
+        CouponIndexProperties.Backend backend = couponIndexProperties.getBackend();
+
+        log.info("Initializing coupon eligibility index with {} backend", backend);
+
+        return switch (backend) {
+            case DATABASE -> new DatabaseCouponIndex(jpaCouponRepository, couponEntityMapper);
+            case MEMORY -> inMemoryCouponIndex(jpaCouponRepository, couponEntityMapper, soldOutRegistry, redissonClient);
+            case REDIS -> new RedisCouponIndex(
+                    redissonClient,
+                    objectMapper,
+                    jpaCouponRepository,
+                    couponEntityMapper,
+                    Duration.ofMillis(couponIndexProperties.getRefreshIntervalMs())
+            );
+        };
+    }
+
+    private static InMemoryCouponIndex inMemoryCouponIndex(JpaCouponRepository jpaCouponRepository,
+                                                           CouponEntityMapper couponEntityMapper,
+                                                           ISoldOutRegistry soldOutRegistry,
+                                                           RedissonClient redissonClient) {
+        InMemoryCouponIndex couponIndex = new InMemoryCouponIndex(jpaCouponRepository, couponEntityMapper,
+                soldOutRegistry, redissonClient);
+        // Each instance holds its own index, told of the coupons written, running out or back on the other instances
+        couponIndex.subscribe();
+        soldOutRegistry.addListener((code, soldOut) -> {
+            if (soldOut) {
+                couponIndex.markSoldOut(code);
+            } else {
+                couponIndex.markAvailable(code);
+            }
+        });
+        return couponIndex;
+    }
+
+}
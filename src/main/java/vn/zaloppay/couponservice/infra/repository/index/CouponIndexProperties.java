@@ -0,0 +1,25 @@
+package vn.zaloppay.couponservice.infra.repository.index;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Setter
+@Getter
+@Component
+@ConfigurationProperties(prefix = "coupon.index")
+public class CouponIndexProperties {
+
+    private Backend backend = Backend.DATABASE;
+    // How often the in-memory index is reloaded to pick up changes made by other instances,
+    // and the Redis index rebuilt from the database by one of the instances
+    private long refreshIntervalMs = 30000;
+
+    public enum Backend {
+        DATABASE,
+        MEMORY,
+        REDIS
+    }
+
+}
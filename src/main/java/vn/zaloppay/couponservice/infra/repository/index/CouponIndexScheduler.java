@@ -0,0 +1,30 @@
+package vn.zaloppay.couponservice.infra.repository.index;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Periodically reloads the coupon index so that it catches up with changes made by other instances.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class CouponIndexScheduler {
+
+    private final CouponIndex couponIndex;
+
+    @Scheduled(
+            initialDelayString = "#{@couponIndexProperties.refreshIntervalMs}",
+            fixedDelayString = "#{@couponIndexProperties.refreshIntervalMs}"
+    )
+    public void refresh() {
+        try {
+            couponIndex.refresh();
+        } catch (Exception e) {
+            log.error("Error refreshing the coupon index", e);
+        }
+    }
+
+}
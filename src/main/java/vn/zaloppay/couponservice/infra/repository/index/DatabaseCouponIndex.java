@@ -0,0 +1,64 @@
+package vn.zaloppay.couponservice.infra.repository.index;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.jpa.domain.Specification;
+import vn.zaloppay.couponservice.domain.model.Coupon;
+import vn.zaloppay.couponservice.domain.model.UsageType;
+import vn.zaloppay.couponservice.domain.util.TopK;
+import vn.zaloppay.couponservice.infra.model.CouponEntity;
+import vn.zaloppay.couponservice.infra.repository.CouponEntityMapper;
+import vn.zaloppay.couponservice.infra.repository.JpaCouponRepository;
+import vn.zaloppay.couponservice.infra.repository.specifications.CouponSpecification;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Default coupon index: every lookup is a query on the coupons table.
+ * Best coupon lookups let the database rank the eligible coupons by discount and return the top rows only.
+ * Rule based coupons are priced here instead, they are expected to be few.
+ */
+@RequiredArgsConstructor
+public class DatabaseCouponIndex implements CouponIndex {
+
+    private final JpaCouponRepository jpaCouponRepository;
+
+    private final CouponEntityMapper couponEntityMapper;
+
+    @Override
+    public List<Coupon> findEligible(BigDecimal orderAmount, LocalDateTime currentTime, UsageType usageType) {
+        Specification<CouponEntity> spec = CouponSpecification.isAvailable(orderAmount, currentTime)
+                .and(CouponSpecification.hasUsageType(usageType));
+        return jpaCouponRepository.findAll(spec).stream()
+                .map(couponEntityMapper::toDomainObject)
+                .toList();
+    }
+
+    @Override
+    public List<Coupon> findTop(BigDecimal orderAmount, LocalDateTime currentTime, UsageType usageType, int limit) {
+        // Discounts are computed and ranked by the database, only the top rows are transferred
+        List<Coupon> top = jpaCouponRepository.findTopByDiscount(
+                        orderAmount, currentTime, usageType == null ? null : usageType.name(), limit
+                ).stream()
+                .map(couponEntityMapper::toDomainObject)
+                .toList();
+
+        Specification<CouponEntity> ruleBasedSpec = CouponSpecification.isAvailable(orderAmount, currentTime)
+                .and(CouponSpecification.hasUsageType(usageType))
+                .and(CouponSpecification.isRuleBased());
+        List<Coupon> ruleBased = jpaCouponRepository.findAll(ruleBasedSpec).stream()
+                .map(couponEntityMapper::toDomainObject)
+                .toList();
+        if (ruleBased.isEmpty()) {
+            return top;
+        }
+
+        TopK<Coupon> merged = new TopK<>(limit);
+        Stream.concat(top.stream(), ruleBased.stream())
+                .forEach(coupon -> merged.offer(coupon, coupon.calculateDiscount(orderAmount)));
+        return merged.toList();
+    }
+
+}
@@ -0,0 +1,491 @@
+package vn.zaloppay.couponservice.infra.repository.index;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RTopic;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import vn.zaloppay.couponservice.domain.model.Coupon;
+import vn.zaloppay.couponservice.domain.model.UsageType;
+import vn.zaloppay.couponservice.domain.model.discount.DiscountCatalogue;
+import vn.zaloppay.couponservice.domain.service.ISoldOutRegistry;
+import vn.zaloppay.couponservice.domain.util.CacheKey;
+import vn.zaloppay.couponservice.domain.util.MinorUnits;
+import vn.zaloppay.couponservice.domain.util.TopK;
+import vn.zaloppay.couponservice.infra.model.CouponEntity;
+import vn.zaloppay.couponservice.infra.repository.CouponEntityMapper;
+import vn.zaloppay.couponservice.infra.repository.JpaCouponRepository;
+import vn.zaloppay.couponservice.infra.repository.specifications.CouponSpecification;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Consumer;
+
+/**
+ * Coupon index held in the JVM, answering eligibility lookups without a database query.
+ *
+ * <p>Coupons that are currently active and have remaining usage are kept per usage type in a skip list
+ * sorted by minimum order value, so a lookup is a head map walk returning exactly the eligible coupons.
+ * Start and end times are turned into a queue of events, swept as time goes by to move coupons
+ * in and out of the active lists. Changes made by this instance are applied right away. Coupons written on other
+ * instances are read back as a Redis topic tells of them, and coupons running out of usage or getting usage back
+ * as the sold-out registry hears of them. Both topics are fire-and-forget, the periodic refresh reloads the index
+ * from the database to catch up with any message lost. Remaining usages taken meanwhile are not tracked,
+ * only whether some is left.
+ *
+ * <p>Best coupon lookups are answered from the {@link BestCouponEnvelope} of each partition. It is built on first
+ * use and only rebuilt once a coupon is added to the partition or a coupon winning part of it leaves.
+ * Top k lookups evaluate the {@link DiscountCatalogue} of each partition, rebuilt on first use after any change to it.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class InMemoryCouponIndex implements CouponIndex {
+
+    private final JpaCouponRepository jpaCouponRepository;
+
+    private final CouponEntityMapper couponEntityMapper;
+
+    private final ISoldOutRegistry soldOutRegistry;
+
+    private final RedissonClient redissonClient;
+
+    private final Object writeLock = new Object();
+
+    private final Object refreshLock = new Object();
+
+    private volatile State state;
+
+    // Changes made while a refresh is loading, replayed in order on the reloaded index (guarded by writeLock)
+    private List<Consumer<State>> changesDuringRefresh;
+
+    @Override
+    public List<Coupon> findEligible(BigDecimal orderAmount, LocalDateTime currentTime, UsageType usageType) {
+        List<Coupon> eligible = new ArrayList<>();
+        forEachEligible(orderAmount, currentTime, usageType, candidate -> eligible.add(candidate.coupon()));
+        return eligible;
+    }
+
+    @Override
+    public Coupon findBest(BigDecimal orderAmount, LocalDateTime currentTime, UsageType usageType) {
+        if (!MinorUnits.isExact(orderAmount)) {
+            return CouponIndex.super.findBest(orderAmount, currentTime, usageType);
+        }
+        long amount = MinorUnits.toMinorUnits(orderAmount);
+
+        State current = currentState();
+        current.advance(currentTime);
+
+        IndexedCoupon best = null;
+        for (UsageType partitionUsageType : UsageType.values()) {
+            if (usageType != null && partitionUsageType != usageType) {
+                continue;
+            }
+
+            IndexedCoupon candidate = current.envelope(partitionUsageType).best(amount);
+            if (candidate == null) {
+                continue;
+            }
+            if (!isActive(candidate.coupon(), currentTime)) {
+                // The sweep is already ahead of a lookup made for an earlier time, the envelope doesn't fit it
+                return CouponIndex.super.findBest(orderAmount, currentTime, usageType);
+            }
+            if (best == null || candidate.terms().calculateDiscount(amount) > best.terms().calculateDiscount(amount)) {
+                best = candidate;
+            }
+        }
+        return best == null ? null : best.coupon();
+    }
+
+    @Override
+    public List<Coupon> findTop(BigDecimal orderAmount, LocalDateTime currentTime, UsageType usageType, int limit) {
+        if (!MinorUnits.isExact(orderAmount)) {
+            // Straight from the skip lists to a bounded heap, the eligible coupons are never collected
+            TopK<Coupon> top = new TopK<>(limit);
+            forEachEligible(orderAmount, currentTime, usageType,
+                    candidate -> top.offer(candidate.coupon(), candidate.coupon().calculateDiscount(orderAmount)));
+            return top.toList();
+        }
+        long amount = MinorUnits.toMinorUnits(orderAmount);
+
+        State current = currentState();
+        current.advance(currentTime);
+
+        // Best of each partition from one pass over its catalogue, then merged
+        List<Map.Entry<Coupon, Long>> candidates = new ArrayList<>();
+        for (UsageType partitionUsageType : UsageType.values()) {
+            if (usageType != null && partitionUsageType != usageType) {
+                continue;
+            }
+
+            DiscountCatalogue catalogue = current.catalogue(partitionUsageType);
+            long[] discounts = catalogue.eligibleDiscounts(amount, currentTime);
+            for (int index : DiscountCatalogue.top(discounts, limit)) {
+                candidates.add(Map.entry(catalogue.coupon(index), discounts[index]));
+            }
+        }
+        return candidates.stream()
+                .sorted(Map.Entry.<Coupon, Long>comparingByValue().reversed())
+                .limit(limit)
+                .map(Map.Entry::getKey)
+                .toList();
+    }
+
+    @Override
+    public void upsert(Coupon coupon) {
+        change(current -> current.change(coupon.getCode(), coupon));
+        publish(coupon.getCode());
+    }
+
+    @Override
+    public void remove(String code) {
+        change(current -> current.change(code, null));
+        publish(code);
+    }
+
+    /**
+     * Listen to the coupons written on every instance, this one included
+     */
+    public void subscribe() {
+        topic().addListener(String.class, (channel, code) -> {
+            try {
+                reload(code);
+            } catch (Exception e) {
+                log.error("Error reloading indexed coupon: {}", code, e);
+            }
+        });
+    }
+
+    /**
+     * Apply a coupon created, updated or deleted on any instance, as its row reads now
+     */
+    void reload(String code) {
+        Coupon coupon = jpaCouponRepository.findByCode(code)
+                .map(couponEntityMapper::toDomainObject)
+                .orElse(null);
+        boolean soldOut = coupon != null && soldOutRegistry.isSoldOut(code);
+        change(current -> {
+            current.change(code, coupon);
+            // The rows of write-behind usage stores lag behind the coupons running out
+            if (soldOut) {
+                current.markSoldOut(code, true);
+            }
+        });
+    }
+
+    @Override
+    public void markSoldOut(String code) {
+        // Kept aside rather than dropped, usages given back bring the coupon back as it was
+        change(current -> current.markSoldOut(code, true));
+    }
+
+    @Override
+    public void markAvailable(String code) {
+        change(current -> current.markSoldOut(code, false));
+    }
+
+    @Override
+    public void refresh() {
+        synchronized (refreshLock) {
+            List<Consumer<State>> changes = new ArrayList<>();
+            synchronized (writeLock) {
+                changesDuringRefresh = changes;
+            }
+
+            try {
+                LocalDateTime now = LocalDateTime.now();
+                Specification<CouponEntity> spec = CouponSpecification.hasRemainingUsage()
+                        .and(CouponSpecification.hasNotEnded(now));
+                List<Coupon> coupons = jpaCouponRepository.findAll(spec).stream()
+                        .map(couponEntityMapper::toDomainObject)
+                        .toList();
+
+                State reloaded = new State(now);
+                coupons.forEach(reloaded::upsert);
+                // The rows of write-behind usage stores lag behind the coupons running out
+                coupons.stream()
+                        .filter(coupon -> soldOutRegistry.isSoldOut(coupon.getCode()))
+                        .forEach(coupon -> reloaded.markSoldOut(coupon.getCode(), true));
+
+                synchronized (writeLock) {
+                    changes.forEach(change -> change.accept(reloaded));
+                    state = reloaded;
+                }
+                log.debug("Indexed {} coupons with remaining usage", coupons.size());
+            } finally {
+                synchronized (writeLock) {
+                    changesDuringRefresh = null;
+                }
+            }
+        }
+    }
+
+    private void forEachEligible(BigDecimal orderAmount, LocalDateTime currentTime, UsageType usageType,
+                                 Consumer<IndexedCoupon> action) {
+        State current = currentState();
+        current.advance(currentTime);
+
+        current.active.forEach((partitionUsageType, partition) -> {
+            if (usageType != null && partitionUsageType != usageType) {
+                return;
+            }
+
+            Collection<IndexedCoupon> candidates = orderAmount == null
+                    ? partition.values()
+                    : partition.headMap(IndexKey.upperBound(orderAmount), true).values();
+            for (IndexedCoupon candidate : candidates) {
+                // The sweep may already be ahead of a lookup made for an earlier time
+                if (isActive(candidate.coupon(), currentTime)) {
+                    action.accept(candidate);
+                }
+            }
+        });
+    }
+
+    private State currentState() {
+        State current = state;
+        if (current == null) {
+            refresh();
+            current = state;
+        }
+        return current;
+    }
+
+    private void change(Consumer<State> change) {
+        synchronized (writeLock) {
+            if (state != null) {
+                change.accept(state);
+            }
+            if (changesDuringRefresh != null) {
+                changesDuringRefresh.add(change);
+            }
+        }
+    }
+
+    private void publish(String code) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            send(code);
+            return;
+        }
+
+        // Sent before the commit, other instances could read the row as it was before it
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                send(code);
+            }
+        });
+    }
+
+    private void send(String code) {
+        try {
+            topic().publish(code);
+        } catch (Exception e) {
+            log.error("Error publishing indexed coupon change: {}", code, e);
+        }
+    }
+
+    private RTopic topic() {
+        return redissonClient.getTopic(CacheKey.couponIndexTopic(), StringCodec.INSTANCE);
+    }
+
+    private static boolean isActive(Coupon coupon, LocalDateTime time) {
+        return !coupon.getStartTime().isAfter(time)
+                && coupon.getEndTime().isAfter(time)
+                && coupon.getRemainingUsage() != null
+                && coupon.getRemainingUsage() > 0;
+    }
+
+    private static final class State {
+
+        // Active coupons per usage type, sorted by minimum order value
+        private final Map<UsageType, NavigableMap<IndexKey, IndexedCoupon>> active = new EnumMap<>(UsageType.class);
+
+        // Every indexed coupon that has not ended yet, active or not (guarded by this)
+        private final Map<String, Coupon> coupons = new HashMap<>();
+
+        // Best coupon envelope of each partition, built on first use
+        private final Map<UsageType, BestCouponEnvelope> envelopes = new ConcurrentHashMap<>();
+
+        // Discount catalogue of each partition, built on first use
+        private final Map<UsageType, DiscountCatalogue> catalogues = new ConcurrentHashMap<>();
+
+        // Coupons out of usage, kept out of the active partitions until usage is back (guarded by this)
+        private final Set<String> soldOut = new HashSet<>();
+
+        // Position of each active coupon in its partition (guarded by this)
+        private final Map<String, IndexKey> activeKeys = new HashMap<>();
+
+        // Coupons to re-place at each start or end time (guarded by this)
+        private final TreeMap<LocalDateTime, Set<String>> events = new TreeMap<>();
+
+        private volatile LocalDateTime nextEventAt = LocalDateTime.MAX;
+
+        private LocalDateTime sweptUntil;
+
+        private State(LocalDateTime now) {
+            this.sweptUntil = now;
+            for (UsageType usageType : UsageType.values()) {
+                active.put(usageType, new ConcurrentSkipListMap<>());
+            }
+        }
+
+        /**
+         * Apply the start and end events due at the given time, lookups only lock when one is due
+         */
+        private void advance(LocalDateTime time) {
+            if (time.isBefore(nextEventAt)) {
+                return;
+            }
+
+            synchronized (this) {
+                if (time.isAfter(sweptUntil)) {
+                    sweptUntil = time;
+                }
+
+                Map.Entry<LocalDateTime, Set<String>> due;
+                while ((due = events.firstEntry()) != null && !due.getKey().isAfter(time)) {
+                    events.pollFirstEntry();
+                    due.getValue().forEach(this::place);
+                }
+                nextEventAt = events.isEmpty() ? LocalDateTime.MAX : events.firstKey();
+            }
+        }
+
+        private BestCouponEnvelope envelope(UsageType usageType) {
+            BestCouponEnvelope envelope = envelopes.get(usageType);
+            if (envelope != null) {
+                return envelope;
+            }
+
+            // Built under the lock so that the partition doesn't change meanwhile
+            synchronized (this) {
+                return envelopes.computeIfAbsent(usageType, key -> BestCouponEnvelope.build(active.get(key).values()));
+            }
+        }
+
+        private DiscountCatalogue catalogue(UsageType usageType) {
+            DiscountCatalogue catalogue = catalogues.get(usageType);
+            if (catalogue != null) {
+                return catalogue;
+            }
+
+            synchronized (this) {
+                return catalogues.computeIfAbsent(usageType, key -> DiscountCatalogue.of(
+                        active.get(key).values().stream().map(IndexedCoupon::coupon).toList()));
+            }
+        }
+
+        private synchronized void upsert(Coupon coupon) {
+            change(coupon.getCode(), coupon);
+        }
+
+        /**
+         * @param coupon the new state of the coupon, or null to drop it from the index
+         */
+        private synchronized void change(String code, Coupon coupon) {
+            // The coupon written comes with its current remaining usage
+            soldOut.remove(code);
+            if (coupon == null) {
+                coupons.remove(code);
+            } else {
+                coupons.put(code, coupon);
+                schedule(coupon.getStartTime(), code);
+                schedule(coupon.getEndTime(), code);
+            }
+            place(code);
+        }
+
+        private synchronized void markSoldOut(String code, boolean isSoldOut) {
+            if (isSoldOut ? soldOut.add(code) : soldOut.remove(code)) {
+                place(code);
+            }
+        }
+
+        private void schedule(LocalDateTime time, String code) {
+            if (!time.isAfter(sweptUntil)) {
+                return;
+            }
+            events.computeIfAbsent(time, key -> new HashSet<>()).add(code);
+            if (time.isBefore(nextEventAt)) {
+                nextEventAt = time;
+            }
+        }
+
+        /**
+         * Put the coupon in or out of its active partition according to the swept time
+         */
+        private void place(String code) {
+            Coupon coupon = coupons.get(code);
+            IndexKey key = coupon != null && isActive(coupon, sweptUntil) && !soldOut.contains(code)
+                    ? new IndexKey(coupon.getUsageType(), coupon.getMinOrderValue(), code)
+                    : null;
+
+            // The new position is added before the old one is removed, so lookups never miss the coupon
+            IndexKey previous = key == null ? activeKeys.remove(code) : activeKeys.put(code, key);
+            if (key != null) {
+                active.get(key.usageType()).put(key, IndexedCoupon.of(coupon));
+            }
+            if (previous != null && (key == null || previous.usageType() != key.usageType() || previous.compareTo(key) != 0)) {
+                active.get(previous.usageType()).remove(previous);
+            }
+
+            // Losing coupons can leave without reshaping the envelope, any added coupon may win somewhere
+            if (key != null) {
+                envelopes.remove(key.usageType());
+                catalogues.remove(key.usageType());
+            }
+            if (previous != null) {
+                catalogues.remove(previous.usageType());
+                BestCouponEnvelope envelope = envelopes.get(previous.usageType());
+                if (envelope != null && envelope.isWinner(code)) {
+                    envelopes.remove(previous.usageType());
+                }
+            }
+
+            if (coupon != null && !coupon.getEndTime().isAfter(sweptUntil)) {
+                coupons.remove(code);
+                soldOut.remove(code);
+            }
+        }
+
+    }
+
+    /**
+     * Sorts by minimum order value then code. A key without code is the upper bound of all keys of its value.
+     */
+    private record IndexKey(UsageType usageType, BigDecimal minOrderValue, String code) implements Comparable<IndexKey> {
+
+        private static IndexKey upperBound(BigDecimal orderAmount) {
+            return new IndexKey(null, orderAmount, null);
+        }
+
+        @Override
+        public int compareTo(IndexKey other) {
+            int result = minOrderValue.compareTo(other.minOrderValue);
+            if (result != 0) {
+                return result;
+            }
+            if (code == null || other.code == null) {
+                return code == null ? (other.code == null ? 0 : 1) : -1;
+            }
+            return code.compareTo(other.code);
+        }
+
+    }
+
+}
@@ -0,0 +1,15 @@
+package vn.zaloppay.couponservice.infra.repository.index;
+
+import vn.zaloppay.couponservice.domain.model.Coupon;
+import vn.zaloppay.couponservice.domain.model.discount.DiscountTerms;
+
+/**
+ * A coupon held by the in-memory index, with its pricing converted to minor units once.
+ */
+record IndexedCoupon(Coupon coupon, DiscountTerms terms) {
+
+    static IndexedCoupon of(Coupon coupon) {
+        return new IndexedCoupon(coupon, DiscountTerms.of(coupon));
+    }
+
+}
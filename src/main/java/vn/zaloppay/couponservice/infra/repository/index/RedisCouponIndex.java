@@ -0,0 +1,494 @@
+package vn.zaloppay.couponservice.infra.repository.index;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RBatch;
+import org.redisson.api.RScript;
+import org.redisson.api.RScriptAsync;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.data.jpa.domain.Specification;
+import vn.zaloppay.couponservice.domain.exceptions.InternalServerErrorException;
+import vn.zaloppay.couponservice.domain.model.Coupon;
+import vn.zaloppay.couponservice.domain.model.UsageType;
+import vn.zaloppay.couponservice.domain.model.discount.DiscountTerms;
+import vn.zaloppay.couponservice.domain.model.discount.DiscountType;
+import vn.zaloppay.couponservice.domain.util.CacheKey;
+import vn.zaloppay.couponservice.domain.util.MinorUnits;
+import vn.zaloppay.couponservice.domain.util.TopK;
+import vn.zaloppay.couponservice.infra.model.CouponEntity;
+import vn.zaloppay.couponservice.infra.repository.CouponEntityMapper;
+import vn.zaloppay.couponservice.infra.repository.JpaCouponRepository;
+import vn.zaloppay.couponservice.infra.repository.specifications.CouponSpecification;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Coupon index shared by every instance through Redis, answering eligibility lookups without a database query.
+ *
+ * <p>Coupons that have not ended and have remaining usage are kept in a hash by code, with their discount terms
+ * in minor units in another, indexed per usage type by a sorted set scored by minimum order value and by one sorted
+ * set scored by end time. A lookup is one script reading the head of the minimum order value sets and the matching
+ * coupons; start and end times are checked on the coupons returned. Top k lookups rank the eligible coupons on their
+ * terms within the script and only return the best ones, along with the rule based coupons it cannot price.
+ *
+ * <p>Changes made by any instance are applied right away, and the periodic refresh prunes ended coupons and, once
+ * per refresh interval across all instances, rebuilds the index from the database. Coupons changed while the rows
+ * are read and written back are recorded, so the rebuild doesn't overwrite them with the rows read before.
+ * The keys carry no TTL and are kept by the volatile-lru eviction policy; were the index lost anyway, lookups are
+ * answered by the database until the next rebuild, rather than finding no coupon.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class RedisCouponIndex implements CouponIndex {
+
+    // Order amounts in minor units up to which the scripts price percent coupons exactly on doubles
+    static final long MAX_SCRIPT_AMOUNT = (1L << 49) / 10_000;
+
+    // KEYS[1] is the data hash, KEYS[2] the built marker, the others are the minimum order value sets to read.
+    // Returns nil if the index is missing
+    private static final String FIND_SCRIPT = """
+            if redis.call('EXISTS', KEYS[2]) == 0 then
+              return false
+            end
+            local codes = {}
+            for i = 3, #KEYS do
+              for _, code in ipairs(redis.call('ZRANGEBYSCORE', KEYS[i], '-inf', ARGV[1])) do
+                table.insert(codes, code)
+              end
+            end
+            local coupons = {}
+            for i = 1, #codes, 1000 do
+              local values = redis.call('HMGET', KEYS[1], unpack(codes, i, math.min(i + 999, #codes)))
+              for _, value in ipairs(values) do
+                if value then
+                  table.insert(coupons, value)
+                end
+              end
+            end
+            return coupons
+            """;
+
+    // KEYS[1] is the data hash, KEYS[2] the terms hash, KEYS[3] the built marker, the others are the minimum order
+    // value sets to read. ARGV are the order amount, in minor units too, the current time and the limit.
+    // Returns nil if the index is missing
+    private static final String TOP_SCRIPT = """
+            if redis.call('EXISTS', KEYS[3]) == 0 then
+              return false
+            end
+            local amount = tonumber(ARGV[2])
+            local now = tonumber(ARGV[3])
+            local limit = tonumber(ARGV[4])
+            local top = {}
+            local discounts = {}
+            local ruleBased = {}
+            for i = 4, #KEYS do
+              local codes = redis.call('ZRANGEBYSCORE', KEYS[i], '-inf', ARGV[1])
+              for j = 1, #codes, 1000 do
+                local terms = redis.call('HMGET', KEYS[2], unpack(codes, j, math.min(j + 999, #codes)))
+                for k, value in ipairs(terms) do
+                  local kind, startTime, endTime, minOrder, discount, cap
+                  if value then
+                    kind, startTime, endTime, minOrder, discount, cap =
+                      string.match(value, '^(%a):(%-?%d+):(%-?%d+):(%d+):(%d+):(%d+)$')
+                  end
+                  if kind and tonumber(startTime) <= now and tonumber(endTime) > now and tonumber(minOrder) <= amount then
+                    local code = codes[j + k - 1]
+                    if kind == 'R' then
+                      table.insert(ruleBased, code)
+                    else
+                      discount = tonumber(discount)
+                      if kind == 'P' then
+                        discount = math.min(math.floor((amount * discount + 5000) / 10000), tonumber(cap))
+                      end
+                      local position = #top + 1
+                      while position > 1 and discounts[position - 1] < discount do
+                        position = position - 1
+                      end
+                      if position <= limit then
+                        table.insert(top, position, code)
+                        table.insert(discounts, position, discount)
+                        if #top > limit then
+                          table.remove(top)
+                          table.remove(discounts)
+                        end
+                      end
+                    end
+                  end
+                end
+              end
+            end
+            for _, code in ipairs(ruleBased) do
+              table.insert(top, code)
+            end
+            local coupons = {}
+            for i = 1, #top, 1000 do
+              local values = redis.call('HMGET', KEYS[1], unpack(top, i, math.min(i + 999, #top)))
+              for _, value in ipairs(values) do
+                if value then
+                  table.insert(coupons, value)
+                end
+              end
+            end
+            return coupons
+            """;
+
+    // Prefix of the scripts writing a coupon, over the keys of ALL_KEYS. The last ARGV is 1 for the writes of a
+    // rebuild, skipped for the coupons changed meanwhile, which the other writes record while a rebuild runs
+    private static final String GUARD = """
+            if ARGV[#ARGV] == '1' then
+              if redis.call('SISMEMBER', KEYS[3], ARGV[1]) == 1 then
+                return 0
+              end
+            elseif redis.call('EXISTS', KEYS[3]) == 1 then
+              redis.call('SADD', KEYS[3], ARGV[1])
+            end
+            """;
+
+    // KEYS[1] is the data hash, KEYS[2] the terms hash, KEYS[3] the changes set, KEYS[4] the end time set,
+    // then the minimum order value sets of every usage type. ARGV[6] is the position of the set of the coupon among them
+    private static final String SAVE_SCRIPT = GUARD + """
+            for i = 4, #KEYS do
+              redis.call('ZREM', KEYS[i], ARGV[1])
+            end
+            redis.call('HSET', KEYS[1], ARGV[1], ARGV[2])
+            redis.call('HSET', KEYS[2], ARGV[1], ARGV[3])
+            redis.call('ZADD', KEYS[4], ARGV[5], ARGV[1])
+            redis.call('ZADD', KEYS[4 + tonumber(ARGV[6])], ARGV[4], ARGV[1])
+            return 1
+            """;
+
+    private static final String REMOVE_SCRIPT = GUARD + """
+            redis.call('HDEL', KEYS[1], ARGV[1])
+            redis.call('HDEL', KEYS[2], ARGV[1])
+            for i = 4, #KEYS do
+              redis.call('ZREM', KEYS[i], ARGV[1])
+            end
+            return 1
+            """;
+
+    private static final String PRUNE_SCRIPT = """
+            local codes = redis.call('ZRANGEBYSCORE', KEYS[4], '-inf', ARGV[1])
+            for _, code in ipairs(codes) do
+              redis.call('HDEL', KEYS[1], code)
+              redis.call('HDEL', KEYS[2], code)
+              for i = 4, #KEYS do
+                redis.call('ZREM', KEYS[i], code)
+              end
+            end
+            return #codes
+            """;
+
+    // KEYS[1] is the changes set, created with an empty code so that it exists, expiring if the rebuild never ends
+    private static final String BEGIN_REBUILD_SCRIPT = """
+            redis.call('DEL', KEYS[1])
+            redis.call('SADD', KEYS[1], '')
+            redis.call('PEXPIRE', KEYS[1], ARGV[1])
+            return 1
+            """;
+
+    // KEYS[1] is the changes set, KEYS[2] the built marker
+    private static final String END_REBUILD_SCRIPT = """
+            redis.call('DEL', KEYS[1])
+            redis.call('SET', KEYS[2], ARGV[1])
+            return 1
+            """;
+
+    private static final String WRITE = "0";
+
+    private static final String REBUILD_WRITE = "1";
+
+    static final List<Object> ALL_KEYS = allKeys();
+
+    private final RedissonClient redissonClient;
+
+    private final ObjectMapper objectMapper;
+
+    private final JpaCouponRepository jpaCouponRepository;
+
+    private final CouponEntityMapper couponEntityMapper;
+
+    private final Duration rebuildInterval;
+
+    private volatile boolean loaded;
+
+    @Override
+    public List<Coupon> findEligible(BigDecimal orderAmount, LocalDateTime currentTime, UsageType usageType) {
+        if (!loaded) {
+            refresh();
+        }
+
+        List<Object> keys = new ArrayList<>();
+        keys.add(CacheKey.couponIndexData());
+        keys.add(CacheKey.couponIndexBuilt());
+        keys.addAll(minOrderKeys(usageType));
+
+        List<Object> values = script().eval(
+                RScript.Mode.READ_ONLY,
+                FIND_SCRIPT,
+                RScript.ReturnType.MULTI,
+                keys,
+                orderAmount == null ? "+inf" : orderAmount.toPlainString()
+        );
+        if (values == null) {
+            log.warn("Coupon index missing from Redis, looking up eligible coupons in the database until it is rebuilt");
+            return database().findEligible(orderAmount, currentTime, usageType);
+        }
+
+        List<Coupon> eligible = new ArrayList<>();
+        for (Object value : values) {
+            Coupon coupon = fromJson((String) value);
+            if (isEligible(coupon, orderAmount, currentTime)) {
+                eligible.add(coupon);
+            }
+        }
+        return eligible;
+    }
+
+    @Override
+    public List<Coupon> findTop(BigDecimal orderAmount, LocalDateTime currentTime, UsageType usageType, int limit) {
+        if (orderAmount == null || !MinorUnits.isExact(orderAmount)
+                || Math.abs(MinorUnits.toMinorUnits(orderAmount)) > MAX_SCRIPT_AMOUNT) {
+            return CouponIndex.super.findTop(orderAmount, currentTime, usageType, limit);
+        }
+        if (!loaded) {
+            refresh();
+        }
+
+        List<Object> keys = new ArrayList<>();
+        keys.add(CacheKey.couponIndexData());
+        keys.add(CacheKey.couponIndexTerms());
+        keys.add(CacheKey.couponIndexBuilt());
+        keys.addAll(minOrderKeys(usageType));
+
+        List<Object> values = script().eval(
+                RScript.Mode.READ_ONLY,
+                TOP_SCRIPT,
+                RScript.ReturnType.MULTI,
+                keys,
+                orderAmount.toPlainString(),
+                String.valueOf(MinorUnits.toMinorUnits(orderAmount)),
+                String.valueOf(toEpochMilli(currentTime)),
+                String.valueOf(limit)
+        );
+        if (values == null) {
+            log.warn("Coupon index missing from Redis, looking up the best coupons in the database until it is rebuilt");
+            return database().findTop(orderAmount, currentTime, usageType, limit);
+        }
+
+        // Ranked again on the exact discounts, along with the rule based coupons
+        TopK<Coupon> top = new TopK<>(limit);
+        for (Object value : values) {
+            Coupon coupon = fromJson((String) value);
+            if (isEligible(coupon, orderAmount, currentTime)) {
+                top.offer(coupon, coupon.calculateDiscount(orderAmount));
+            }
+        }
+        return top.toList();
+    }
+
+    @Override
+    public void upsert(Coupon coupon) {
+        if (isIndexed(coupon, LocalDateTime.now())) {
+            save(coupon);
+        } else {
+            remove(coupon.getCode());
+        }
+    }
+
+    @Override
+    public void remove(String code) {
+        script().eval(RScript.Mode.READ_WRITE, REMOVE_SCRIPT, RScript.ReturnType.INTEGER, ALL_KEYS, code, WRITE);
+    }
+
+    @Override
+    public void markSoldOut(String code) {
+        remove(code);
+    }
+
+    @Override
+    public void markAvailable(String code) {
+        // Sold-out coupons were dropped, they are read back. Rows of write-behind usage stores may still show none
+        // left, those coupons come back with the next rebuild
+        jpaCouponRepository.findByCode(code)
+                .map(couponEntityMapper::toDomainObject)
+                .ifPresent(this::upsert);
+    }
+
+    @Override
+    public void refresh() {
+        LocalDateTime now = LocalDateTime.now();
+        Long pruned = script().eval(
+                RScript.Mode.READ_WRITE,
+                PRUNE_SCRIPT,
+                RScript.ReturnType.INTEGER,
+                ALL_KEYS,
+                String.valueOf(toEpochMilli(now))
+        );
+        if (pruned != null && pruned > 0) {
+            log.debug("Pruned {} ended coupons from the coupon index", pruned);
+        }
+
+        // One instance rebuilds per interval, the others share its result
+        boolean claimed = redissonClient.getBucket(CacheKey.couponIndexRebuilt(), StringCodec.INSTANCE)
+                .setIfAbsent(String.valueOf(toEpochMilli(now)), rebuildInterval);
+        if (claimed) {
+            rebuild(now);
+        }
+        loaded = true;
+    }
+
+    private void rebuild(LocalDateTime now) {
+        // Coupons written from here on are newer than the rows about to be read, the rebuild leaves them as they are
+        script().eval(
+                RScript.Mode.READ_WRITE,
+                BEGIN_REBUILD_SCRIPT,
+                RScript.ReturnType.INTEGER,
+                List.of(CacheKey.couponIndexChanges()),
+                String.valueOf(rebuildInterval.toMillis())
+        );
+
+        Specification<CouponEntity> spec = CouponSpecification.hasRemainingUsage()
+                .and(CouponSpecification.hasNotEnded(now));
+        List<Coupon> coupons = jpaCouponRepository.findAll(spec).stream()
+                .map(couponEntityMapper::toDomainObject)
+                .toList();
+
+        Set<String> stale = new HashSet<>(redissonClient.<String, String>getMap(CacheKey.couponIndexData(), StringCodec.INSTANCE)
+                .readAllKeySet());
+
+        // Every coupon written in one round trip
+        RBatch batch = redissonClient.createBatch();
+        RScriptAsync writes = batch.getScript(StringCodec.INSTANCE);
+        for (Coupon coupon : coupons) {
+            stale.remove(coupon.getCode());
+            writes.evalAsync(RScript.Mode.READ_WRITE, SAVE_SCRIPT, RScript.ReturnType.INTEGER, ALL_KEYS,
+                    saveArgs(coupon, REBUILD_WRITE));
+        }
+        for (String code : stale) {
+            writes.evalAsync(RScript.Mode.READ_WRITE, REMOVE_SCRIPT, RScript.ReturnType.INTEGER, ALL_KEYS,
+                    code, REBUILD_WRITE);
+        }
+        batch.execute();
+
+        // Left to expire if the rebuild failed, the index stays missing until the next one
+        script().eval(
+                RScript.Mode.READ_WRITE,
+                END_REBUILD_SCRIPT,
+                RScript.ReturnType.INTEGER,
+                List.of(CacheKey.couponIndexChanges(), CacheKey.couponIndexBuilt()),
+                String.valueOf(toEpochMilli(now))
+        );
+
+        log.debug("Indexed {} coupons with remaining usage in Redis, dropped {}", coupons.size(), stale.size());
+    }
+
+    private void save(Coupon coupon) {
+        script().eval(RScript.Mode.READ_WRITE, SAVE_SCRIPT, RScript.ReturnType.INTEGER, ALL_KEYS, saveArgs(coupon, WRITE));
+    }
+
+    private Object[] saveArgs(Coupon coupon, String write) {
+        return new Object[]{
+                coupon.getCode(),
+                toJson(coupon),
+                termsOf(coupon),
+                coupon.getMinOrderValue().toPlainString(),
+                String.valueOf(toEpochMilli(coupon.getEndTime())),
+                String.valueOf(coupon.getUsageType().ordinal() + 1),
+                write
+        };
+    }
+
+    /**
+     * @return the kind of discount, P for percent, F for fixed and R for rule based, then start and end times
+     * in epoch milliseconds and the minimum order value, discount value and max discount amount in minor units
+     */
+    static String termsOf(Coupon coupon) {
+        DiscountTerms terms = DiscountTerms.of(coupon);
+        String kind = coupon.getDiscountType().isRuleBased() ? "R"
+                : coupon.getDiscountType() == DiscountType.PERCENT ? "P" : "F";
+        return String.join(":",
+                kind,
+                String.valueOf(toEpochMilli(coupon.getStartTime())),
+                String.valueOf(toEpochMilli(coupon.getEndTime())),
+                String.valueOf(terms.minOrderValue()),
+                String.valueOf(terms.discountValue()),
+                String.valueOf(terms.maxDiscountAmount())
+        );
+    }
+
+    private DatabaseCouponIndex database() {
+        return new DatabaseCouponIndex(jpaCouponRepository, couponEntityMapper);
+    }
+
+    private static List<Object> minOrderKeys(UsageType usageType) {
+        List<Object> keys = new ArrayList<>();
+        for (UsageType partitionUsageType : UsageType.values()) {
+            if (usageType == null || partitionUsageType == usageType) {
+                keys.add(CacheKey.couponIndexMinOrder(partitionUsageType.name()));
+            }
+        }
+        return keys;
+    }
+
+    private RScript script() {
+        return redissonClient.getScript(StringCodec.INSTANCE);
+    }
+
+    private static List<Object> allKeys() {
+        List<Object> keys = new ArrayList<>();
+        keys.add(CacheKey.couponIndexData());
+        keys.add(CacheKey.couponIndexTerms());
+        keys.add(CacheKey.couponIndexChanges());
+        keys.add(CacheKey.couponIndexEndTime());
+        Arrays.stream(UsageType.values()).forEach(usageType -> keys.add(CacheKey.couponIndexMinOrder(usageType.name())));
+        return keys;
+    }
+
+    private String toJson(Coupon coupon) {
+        try {
+            return objectMapper.writeValueAsString(coupon);
+        } catch (JsonProcessingException e) {
+            throw new InternalServerErrorException("Cannot serialize coupon: " + coupon.getCode());
+        }
+    }
+
+    private Coupon fromJson(String value) {
+        try {
+            return objectMapper.readValue(value, Coupon.class);
+        } catch (JsonProcessingException e) {
+            throw new InternalServerErrorException("Cannot deserialize coupon: " + value);
+        }
+    }
+
+    private static boolean isIndexed(Coupon coupon, LocalDateTime time) {
+        return coupon.getEndTime().isAfter(time)
+                && coupon.getRemainingUsage() != null
+                && coupon.getRemainingUsage() > 0;
+    }
+
+    // Scores are doubles, the minimum order value is checked again on the exact amount
+    private static boolean isEligible(Coupon coupon, BigDecimal orderAmount, LocalDateTime time) {
+        return isActive(coupon, time)
+                && (orderAmount == null || coupon.getMinOrderValue().compareTo(orderAmount) <= 0);
+    }
+
+    private static boolean isActive(Coupon coupon, LocalDateTime time) {
+        return !coupon.getStartTime().isAfter(time) && isIndexed(coupon, time);
+    }
+
+    private static long toEpochMilli(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+}
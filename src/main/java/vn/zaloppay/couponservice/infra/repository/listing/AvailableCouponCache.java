@@ -0,0 +1,179 @@
+package vn.zaloppay.couponservice.infra.repository.listing;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RBatch;
+import org.redisson.api.RedissonClient;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import vn.zaloppay.couponservice.domain.model.discount.DiscountType;
+import vn.zaloppay.couponservice.domain.util.CacheKey;
+import vn.zaloppay.couponservice.infra.repository.JpaCouponRepository;
+import vn.zaloppay.couponservice.infra.repository.usage.UsageStore;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Pages of the available coupons listing, cached by this instance without ever serving a stale one.
+ *
+ * <p>The listing changes when a coupon is written, runs out of usage or gets usage back after running out, and
+ * when a coupon starts or ends. Listed coupons leave out their remaining usage, so usages taken otherwise don't
+ * change the pages. Each change bumps a generation counter in Redis, for the discount type of the coupon and for
+ * all of them, which is read on each lookup so that changes made on any instance are seen right away. While pages
+ * are cached, each take checks whether it took the last usage and marks the coupon sold out then, so that it leaves
+ * the listing right away. Between two changes, the coupons available to an order amount are the same for every
+ * amount between two consecutive minimum order values, so pages are cached per such bucket of amounts, until
+ * a coupon of the scope starts or ends.
+ *
+ * <p>Write-behind usage stores update the rows after the coupon is marked sold out, the pages are not cached then.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class AvailableCouponCache {
+
+    // Scope of the listing across every discount type
+    private static final String ALL = "ALL";
+
+    private final AvailableCouponCacheProperties properties;
+
+    private final RedissonClient redissonClient;
+
+    private final JpaCouponRepository jpaCouponRepository;
+
+    private final UsageStore usageStore;
+
+    private final Map<String, Scope> scopes = new ConcurrentHashMap<>();
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * @param query  identifies the page within the filters, such as its number, size and sort
+     * @param loader reads the page from the database at the current time
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(BigDecimal orderAmount, DiscountType discountType, LocalDateTime currentTime,
+                     String query, Supplier<T> loader) {
+        if (!isActive()) {
+            return loader.get();
+        }
+
+        String scopeName = discountType == null ? ALL : discountType.name();
+        long generation = redissonClient.getAtomicLong(CacheKey.couponAvailableGeneration(scopeName)).get();
+        Scope scope = scopes.get(scopeName);
+        if (scope == null || scope.generation() != generation || !scope.covers(currentTime)) {
+            scope = load(discountType, generation, currentTime);
+            scopes.put(scopeName, scope);
+        }
+        if (!scope.covers(currentTime)) {
+            // Another request loaded the scope at a later time
+            return loader.get();
+        }
+
+        String key = String.join("|", scopeName, scope.bucketOf(orderAmount), query);
+        Entry entry = entries.get(key);
+        if (entry != null && entry.generation() == generation
+                && !currentTime.isBefore(entry.from()) && currentTime.isBefore(entry.until())) {
+            return (T) entry.value();
+        }
+
+        T value = loader.get();
+        if (entries.size() >= properties.getMaxEntries()) {
+            entries.clear();
+        }
+        entries.put(key, new Entry(generation, currentTime, scope.until(), value));
+        return value;
+    }
+
+    /**
+     * @return whether pages are cached, takes then have to tell when they take the last usage of a coupon
+     */
+    public boolean isActive() {
+        // Write-behind stores update the remaining usage of the rows after the coupon is marked sold out
+        return properties.isEnabled() && !usageStore.isWriteBehind();
+    }
+
+    /**
+     * Drops the cached pages listing coupons of the discount type, once the current transaction commits
+     *
+     * @param discountType discount type of the coupon changed, or null to drop the pages of every discount type
+     */
+    public void invalidate(DiscountType discountType) {
+        if (usageStore.isWriteBehind()) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            bump(discountType);
+            return;
+        }
+
+        // Bumped before the commit, another instance could cache the rows as they were before it
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                bump(discountType);
+            }
+        });
+    }
+
+    private void bump(DiscountType discountType) {
+        try {
+            RBatch batch = redissonClient.createBatch();
+            batch.getAtomicLong(CacheKey.couponAvailableGeneration(ALL)).incrementAndGetAsync();
+            for (DiscountType type : DiscountType.values()) {
+                if (discountType == null || type == discountType) {
+                    batch.getAtomicLong(CacheKey.couponAvailableGeneration(type.name())).incrementAndGetAsync();
+                }
+            }
+            batch.execute();
+        } catch (Exception e) {
+            // Other instances keep their pages until the next start or end of a coupon
+            log.error("Error invalidating available coupons of discount type {}", discountType, e);
+            entries.clear();
+        }
+    }
+
+    private Scope load(DiscountType discountType, long generation, LocalDateTime currentTime) {
+        LocalDateTime next = jpaCouponRepository.findNextStartOrEndTime(currentTime, discountType);
+        BigDecimal[] minOrderValues = jpaCouponRepository.findMinOrderValues(currentTime, discountType)
+                .toArray(BigDecimal[]::new);
+        return new Scope(generation, currentTime, next == null ? LocalDateTime.MAX : next, minOrderValues);
+    }
+
+    /**
+     * Coupons of a discount type, or of all of them, as of a generation and until the next one starts or ends.
+     *
+     * @param minOrderValues distinct minimum order values of the coupons not ended, ascending
+     */
+    private record Scope(long generation, LocalDateTime from, LocalDateTime until, BigDecimal[] minOrderValues) {
+
+        boolean covers(LocalDateTime time) {
+            return !time.isBefore(from) && time.isBefore(until);
+        }
+
+        /**
+         * @return the highest minimum order value the amount meets, every amount in between gets the same coupons
+         */
+        String bucketOf(BigDecimal orderAmount) {
+            if (orderAmount == null) {
+                return "*";
+            }
+            int index = Arrays.binarySearch(minOrderValues, orderAmount);
+            if (index < 0) {
+                index = -index - 2;
+            }
+            return index < 0 ? "-" : minOrderValues[index].toPlainString();
+        }
+
+    }
+
+    private record Entry(long generation, LocalDateTime from, LocalDateTime until, Object value) {
+    }
+
+}
@@ -0,0 +1,18 @@
+package vn.zaloppay.couponservice.infra.repository.listing;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Setter
+@Getter
+@Component
+@ConfigurationProperties(prefix = "coupon.available-cache")
+public class AvailableCouponCacheProperties {
+
+    private boolean enabled = true;
+    // Pages cached by this instance, all of them are dropped when it is exceeded
+    private int maxEntries = 10000;
+
+}
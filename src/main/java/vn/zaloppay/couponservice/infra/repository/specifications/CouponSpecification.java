@@ -1,5 +1,9 @@
 package vn.zaloppay.couponservice.infra.repository.specifications;
 
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Predicate;
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
 import vn.zaloppay.couponservice.domain.model.UsageType;
 import vn.zaloppay.couponservice.domain.model.discount.DiscountType;
@@ -7,6 +11,9 @@ import vn.zaloppay.couponservice.infra.model.CouponEntity;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 public class CouponSpecification {
 
@@ -21,6 +28,11 @@ public class CouponSpecification {
         };
     }
 
+    public static Specification<CouponEntity> isRuleBased() {
+        return (root, query, criteriaBuilder) -> root.get("discountType").in(
+                Arrays.stream(DiscountType.values()).filter(DiscountType::isRuleBased).toList());
+    }
+
     public static Specification<CouponEntity> hasUsageType(UsageType usageType) {
         return (root, query, criteriaBuilder) -> {
             if (usageType == null) {
@@ -37,6 +49,11 @@ public class CouponSpecification {
         );
     }
 
+    public static Specification<CouponEntity> hasNotEnded(LocalDateTime currentTime) {
+        return (root, query, criteriaBuilder) ->
+                criteriaBuilder.greaterThan(root.get("endTime"), currentTime);
+    }
+
     public static Specification<CouponEntity> hasRemainingUsage() {
         return (root, query, criteriaBuilder) -> 
                 criteriaBuilder.greaterThan(root.get("remainingUsage"), 0);
@@ -68,4 +85,40 @@ public class CouponSpecification {
         return Specification.where(isAvailable(orderAmount, currentTime))
                 .and(hasDiscountType(discountType));
     }
-} 
\ No newline at end of file
+
+    /**
+     * Rows after the position in the given sort, as a disjunction of row value comparisons:
+     * {@code (a > ?) OR (a = ? AND b > ?) ...}, each in the direction of its sort order.
+     * Nulls sort first in ascending order and last in descending order, as on MySQL and TiDB.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public static Specification<CouponEntity> seek(Sort sort, KeysetScrollPosition position) {
+        return (root, query, criteriaBuilder) -> {
+            if (position.isInitial()) {
+                return criteriaBuilder.conjunction();
+            }
+
+            List<Predicate> after = new ArrayList<>();
+            List<Predicate> equalBefore = new ArrayList<>();
+            for (Sort.Order order : sort) {
+                Expression<Comparable> path = root.get(order.getProperty());
+                Comparable value = (Comparable) position.getKeys().get(order.getProperty());
+
+                Predicate beyond;
+                if (order.isAscending()) {
+                    beyond = value == null ? criteriaBuilder.isNotNull(path) : criteriaBuilder.greaterThan(path, value);
+                } else {
+                    beyond = value == null ? criteriaBuilder.disjunction()
+                            : criteriaBuilder.or(criteriaBuilder.lessThan(path, value), criteriaBuilder.isNull(path));
+                }
+
+                List<Predicate> branch = new ArrayList<>(equalBefore);
+                branch.add(beyond);
+                after.add(criteriaBuilder.and(branch.toArray(Predicate[]::new)));
+
+                equalBefore.add(value == null ? criteriaBuilder.isNull(path) : criteriaBuilder.equal(path, value));
+            }
+            return criteriaBuilder.or(after.toArray(Predicate[]::new));
+        };
+    }
+}
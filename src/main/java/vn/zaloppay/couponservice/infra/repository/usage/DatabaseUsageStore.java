@@ -0,0 +1,329 @@
+package vn.zaloppay.couponservice.infra.repository.usage;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import vn.zaloppay.couponservice.domain.model.Coupon;
+import vn.zaloppay.couponservice.infra.model.CouponEntity;
+import vn.zaloppay.couponservice.infra.model.CouponUsageShardEntity;
+import vn.zaloppay.couponservice.infra.repository.JpaCouponRepository;
+import vn.zaloppay.couponservice.infra.repository.JpaCouponUsageShardRepository;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Default usage store: the remaining usage column of the coupons row is the counter.
+ * With sharding enabled, coupons with a large remaining usage keep it in coupon_usage_shards
+ * instead, and each apply decrements a random non-empty shard.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class DatabaseUsageStore implements UsageStore {
+
+    private final JpaCouponRepository jpaCouponRepository;
+
+    private final JpaCouponUsageShardRepository jpaCouponUsageShardRepository;
+
+    private final UsageStoreProperties.Sharding sharding;
+
+    // Shard layout per coupon code, refreshed whenever a decrement disagrees with it
+    private final Map<String, ShardLayout> layouts = new ConcurrentHashMap<>();
+
+    // Summed remaining usage of sharded coupons per coupon id
+    private final Map<Long, CachedTotal> totals = new ConcurrentHashMap<>();
+
+    @Override
+    public boolean decrement(String code) {
+        return takeUsage(code, () -> jpaCouponRepository.decrementRemainingUsage(code) > 0, () -> true);
+    }
+
+    @Override
+    public boolean apply(Coupon coupon, BigDecimal orderAmount, LocalDateTime appliedAt) {
+        // Single conditional update by primary key, the affected row count is the verdict
+        return takeUsage(
+                coupon.getCode(),
+                () -> jpaCouponRepository.applyUsage(coupon.getId(), orderAmount, appliedAt) > 0,
+                () -> !coupon.getStartTime().isAfter(appliedAt)
+                        && coupon.getEndTime().isAfter(appliedAt)
+                        && coupon.getMinOrderValue().compareTo(orderAmount) <= 0
+        );
+    }
+
+    @Override
+    public int take(String code, int count, int minRemainingUsage) {
+        ShardLayout layout = layouts.computeIfAbsent(code, this::loadLayout);
+        if (layout == null || count <= 0) {
+            return 0;
+        }
+
+        return layout.isSharded()
+                ? takeFromShards(layout, count, minRemainingUsage)
+                : takeFromRow(code, count, minRemainingUsage);
+    }
+
+    @Override
+    public void giveBack(String code, int count) {
+        ShardLayout layout = layouts.computeIfAbsent(code, this::loadLayout);
+        if (layout == null || count <= 0) {
+            return;
+        }
+
+        if (!layout.isSharded()) {
+            if (jpaCouponRepository.incrementRemainingUsage(code, count) > 0) {
+                return;
+            }
+            layout = refreshLayout(code);
+            if (layout == null || !layout.isSharded()) {
+                return;
+            }
+        }
+
+        int shardNo = ThreadLocalRandom.current().nextInt(layout.shardCount());
+        jpaCouponUsageShardRepository.incrementRemainingUsage(layout.couponId(), shardNo, count);
+        // The row may have been zeroed at sell-out, make the coupon listable again
+        jpaCouponRepository.restoreShardedRemainingUsage(layout.couponId(), count);
+        totals.remove(layout.couponId());
+    }
+
+    /**
+     * Split the remaining usage set by the admin over the shards, in place: the current shards are locked
+     * until the admin update commits, so that concurrent applies wait for the new split rather than failing
+     * on shards deleted under them. Must run in the transaction of the update.
+     */
+    @Override
+    public void reset(Coupon coupon) {
+        int remainingUsage = coupon.getRemainingUsage();
+        int shardCount = sharding.isEnabled() && remainingUsage >= sharding.getMinRemainingUsage()
+                ? Math.max(sharding.getShardCount(), 1)
+                : 0;
+
+        List<CouponUsageShardEntity> current = jpaCouponUsageShardRepository.findByCouponIdForUpdate(coupon.getId());
+        if (shardCount > 0) {
+            jpaCouponUsageShardRepository.saveAll(split(coupon.getId(), remainingUsage, shardCount));
+        }
+        List<CouponUsageShardEntity> dropped = current.stream()
+                .filter(shard -> shard.getShardNo() >= shardCount)
+                .toList();
+        if (!dropped.isEmpty()) {
+            jpaCouponUsageShardRepository.deleteAll(dropped);
+        }
+        jpaCouponRepository.updateUsageShards(coupon.getId(), shardCount);
+
+        layouts.put(coupon.getCode(), new ShardLayout(coupon.getId(), shardCount));
+        totals.remove(coupon.getId());
+    }
+
+    @Override
+    public void remove(Coupon coupon) {
+        jpaCouponUsageShardRepository.deleteByCouponId(coupon.getId());
+        layouts.remove(coupon.getCode());
+        totals.remove(coupon.getId());
+    }
+
+    @Override
+    public boolean isExhausted(String code) {
+        Optional<CouponEntity> couponEntity = jpaCouponRepository.findByCode(code);
+        if (couponEntity.isEmpty()) {
+            return false;
+        }
+
+        CouponEntity entity = couponEntity.get();
+        if (entity.getUsageShards() == null || entity.getUsageShards() == 0) {
+            return entity.getRemainingUsage() <= 0;
+        }
+        // Not through the cached total, which lags behind the shards
+        return jpaCouponUsageShardRepository.sumRemainingUsage(entity.getId()) <= 0;
+    }
+
+    @Override
+    public int remainingUsage(CouponEntity entity) {
+        if (entity.getUsageShards() == null || entity.getUsageShards() == 0) {
+            return entity.getRemainingUsage();
+        }
+
+        long now = System.currentTimeMillis();
+        CachedTotal cached = totals.get(entity.getId());
+        if (cached != null && cached.expiresAt() > now) {
+            return cached.remainingUsage();
+        }
+
+        int remainingUsage = (int) jpaCouponUsageShardRepository.sumRemainingUsage(entity.getId());
+        totals.put(entity.getId(), new CachedTotal(remainingUsage, now + sharding.getTotalCacheTtlMs()));
+        return remainingUsage;
+    }
+
+    @Override
+    public boolean isWriteBehind() {
+        return false;
+    }
+
+    /**
+     * Take one usage either from the coupons row or from a shard, depending on the coupon's layout.
+     * The layout is cached per instance, so a disagreement with the database (the coupon was
+     * re-sharded by an admin update on another instance) triggers a reload before giving up.
+     */
+    private boolean takeUsage(String code, BooleanSupplier rowAttempt, BooleanSupplier applicable) {
+        ShardLayout layout = layouts.computeIfAbsent(code, this::loadLayout);
+        if (layout == null) {
+            return false;
+        }
+
+        if (!layout.isSharded()) {
+            if (rowAttempt.getAsBoolean()) {
+                return true;
+            }
+            layout = refreshLayout(code);
+            if (layout == null || !layout.isSharded()) {
+                return false;
+            }
+        }
+
+        if (!applicable.getAsBoolean()) {
+            return false;
+        }
+
+        if (decrementShard(layout)) {
+            return true;
+        }
+
+        ShardLayout current = refreshLayout(code);
+        return current != null && !current.isSharded() && rowAttempt.getAsBoolean();
+    }
+
+    private boolean decrementShard(ShardLayout layout) {
+        // Blind attempt on a random shard first, it only misses once shards start running dry
+        int shardNo = ThreadLocalRandom.current().nextInt(layout.shardCount());
+        if (jpaCouponUsageShardRepository.decrementRemainingUsage(layout.couponId(), shardNo) > 0) {
+            return true;
+        }
+
+        // Shards listed non-empty may be drained concurrently, list them again until none is left
+        List<Integer> candidates = new ArrayList<>(jpaCouponUsageShardRepository.findNonEmptyShardNos(layout.couponId()));
+        while (!candidates.isEmpty()) {
+            Collections.shuffle(candidates);
+            for (Integer candidate : candidates) {
+                if (jpaCouponUsageShardRepository.decrementRemainingUsage(layout.couponId(), candidate) > 0) {
+                    return true;
+                }
+            }
+            candidates = new ArrayList<>(jpaCouponUsageShardRepository.findNonEmptyShardNos(layout.couponId()));
+        }
+
+        // Every shard is empty: zero the coupons row so that availability queries stop listing it
+        if (jpaCouponRepository.clearRemainingUsage(layout.couponId()) > 0) {
+            log.info("Sharded coupon {} has no remaining usage", layout.couponId());
+        }
+        totals.remove(layout.couponId());
+        return false;
+    }
+
+    private int takeFromRow(String code, int count, int minRemainingUsage) {
+        // Single "remaining_usage >= count" statement when the whole block is available
+        if (minRemainingUsage <= count && jpaCouponRepository.decrementRemainingUsage(code, count) > 0) {
+            return count;
+        }
+
+        // Otherwise read then conditionally decrement, again whenever a concurrent apply wins the race: each lost
+        // race took usage, so this ends once the read shows too little usage, which only then is reported as such
+        while (true) {
+            Optional<CouponEntity> couponEntity = jpaCouponRepository.findByCode(code);
+            if (couponEntity.isEmpty()) {
+                return 0;
+            }
+
+            CouponEntity entity = couponEntity.get();
+            if (entity.getUsageShards() != null && entity.getUsageShards() > 0) {
+                ShardLayout layout = refreshLayout(code);
+                return layout == null ? 0 : takeFromShards(layout, count, minRemainingUsage);
+            }
+
+            int remainingUsage = entity.getRemainingUsage();
+            if (remainingUsage <= 0 || remainingUsage < minRemainingUsage) {
+                return 0;
+            }
+
+            int taken = Math.min(count, remainingUsage);
+            if (jpaCouponRepository.decrementRemainingUsage(code, taken) > 0) {
+                return taken;
+            }
+        }
+    }
+
+    private int takeFromShards(ShardLayout layout, int count, int minRemainingUsage) {
+        int taken = 0;
+        // Shards left with usage at the last read, less what was taken from them since
+        int left = 0;
+        // Read the shards again after a round lost to concurrent applies, until the count is taken or none is left
+        while (taken < count) {
+            List<CouponUsageShardEntity> shards = new ArrayList<>(jpaCouponUsageShardRepository.findByCouponId(layout.couponId()));
+            left = shards.stream().mapToInt(CouponUsageShardEntity::getRemainingUsage).sum();
+            if (left <= 0 || (taken == 0 && left < minRemainingUsage)) {
+                break;
+            }
+
+            Collections.shuffle(shards);
+            for (CouponUsageShardEntity shard : shards) {
+                int shardTake = Math.min(count - taken, shard.getRemainingUsage());
+                if (shardTake > 0
+                        && jpaCouponUsageShardRepository.decrementRemainingUsage(layout.couponId(), shard.getShardNo(), shardTake) > 0) {
+                    taken += shardTake;
+                    left -= shardTake;
+                }
+                if (taken == count) {
+                    break;
+                }
+            }
+        }
+
+        // Drained, as far as this take knows: zero the coupons row like decrementShard once the shards confirm it
+        if (left <= 0 && jpaCouponUsageShardRepository.sumRemainingUsage(layout.couponId()) <= 0
+                && jpaCouponRepository.clearRemainingUsage(layout.couponId()) > 0) {
+            log.info("Sharded coupon {} has no remaining usage", layout.couponId());
+        }
+        totals.remove(layout.couponId());
+        return taken;
+    }
+
+    private ShardLayout refreshLayout(String code) {
+        layouts.remove(code);
+        return layouts.computeIfAbsent(code, this::loadLayout);
+    }
+
+    private ShardLayout loadLayout(String code) {
+        return jpaCouponRepository.findByCode(code)
+                .map(entity -> new ShardLayout(entity.getId(), entity.getUsageShards() == null ? 0 : entity.getUsageShards()))
+                .orElse(null);
+    }
+
+    private List<CouponUsageShardEntity> split(Long couponId, int remainingUsage, int shardCount) {
+        List<CouponUsageShardEntity> shards = new ArrayList<>(shardCount);
+        for (int shardNo = 0; shardNo < shardCount; shardNo++) {
+            // Spread the remainder over the first shards
+            int shardUsage = remainingUsage / shardCount + (shardNo < remainingUsage % shardCount ? 1 : 0);
+            shards.add(CouponUsageShardEntity.builder()
+                    .couponId(couponId)
+                    .shardNo(shardNo)
+                    .remainingUsage(shardUsage)
+                    .build());
+        }
+        return shards;
+    }
+
+    private record ShardLayout(Long couponId, int shardCount) {
+        boolean isSharded() {
+            return shardCount > 0;
+        }
+    }
+
+    private record CachedTotal(int remainingUsage, long expiresAt) {
+    }
+
+}
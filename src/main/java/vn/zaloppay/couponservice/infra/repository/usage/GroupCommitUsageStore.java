@@ -0,0 +1,206 @@
+package vn.zaloppay.couponservice.infra.repository.usage;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import vn.zaloppay.couponservice.domain.model.Coupon;
+import vn.zaloppay.couponservice.domain.service.ICacheService;
+import vn.zaloppay.couponservice.domain.util.CacheKey;
+import vn.zaloppay.couponservice.infra.model.CouponEntity;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Usage store decorator coalescing concurrent decrements of the same coupon (group commit).
+ * The first caller of a batch becomes its leader: it waits for the batch window or until the batch
+ * is full, takes all usages of the batch with one statement, and hands each caller its share.
+ *
+ * <p>Only concurrent decrements of a coupon are coalesced. In the LOCK apply mode the per-coupon lock already
+ * serializes them, so every batch holds a single decrement and only waits out the window: use it with the
+ * LOCK_FREE mode.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class GroupCommitUsageStore implements UsageStore {
+
+    private final UsageStore delegate;
+
+    private final ICacheService cacheService;
+
+    private final UsageStoreProperties.GroupCommit properties;
+
+    // Batch of each coupon still accepting callers
+    private final Map<String, Batch> openBatches = new ConcurrentHashMap<>();
+
+    @Override
+    public boolean decrement(String code) {
+        CompletableFuture<Boolean> result = new CompletableFuture<>();
+        Batch batch = join(code, result);
+
+        if (batch.leader == result) {
+            commit(code, batch);
+        }
+
+        try {
+            return result.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public boolean apply(Coupon coupon, BigDecimal orderAmount, LocalDateTime appliedAt) {
+        // Only the usage is shared by a batch, the coupon itself is checked per caller
+        boolean applicable = !coupon.getStartTime().isAfter(appliedAt)
+                && coupon.getEndTime().isAfter(appliedAt)
+                && coupon.getMinOrderValue().compareTo(orderAmount) <= 0;
+
+        return applicable && decrement(coupon.getCode());
+    }
+
+    @Override
+    public int take(String code, int count, int minRemainingUsage) {
+        // The repository leaves the eviction of the cached coupon to this store
+        int taken = delegate.take(code, count, minRemainingUsage);
+        if (taken > 0) {
+            cacheService.delete(CacheKey.couponByCode(code));
+        }
+        return taken;
+    }
+
+    @Override
+    public void giveBack(String code, int count) {
+        delegate.giveBack(code, count);
+        cacheService.delete(CacheKey.couponByCode(code));
+    }
+
+    @Override
+    public void reset(Coupon coupon) {
+        delegate.reset(coupon);
+    }
+
+    @Override
+    public void remove(Coupon coupon) {
+        delegate.remove(coupon);
+    }
+
+    @Override
+    public boolean isExhausted(String code) {
+        return delegate.isExhausted(code);
+    }
+
+    @Override
+    public int remainingUsage(CouponEntity entity) {
+        return delegate.remainingUsage(entity);
+    }
+
+    @Override
+    public boolean isWriteBehind() {
+        return delegate.isWriteBehind();
+    }
+
+    @Override
+    public boolean evictsCachedCoupon() {
+        // The cached coupon is evicted once per batch rather than once per caller
+        return true;
+    }
+
+    @Override
+    public void flush() {
+        delegate.flush();
+    }
+
+    @Override
+    public void reconcile() {
+        delegate.reconcile();
+    }
+
+    @Override
+    public void shutdown() {
+        delegate.shutdown();
+    }
+
+    private Batch join(String code, CompletableFuture<Boolean> result) {
+        while (true) {
+            Batch batch = openBatches.computeIfAbsent(code, key -> new Batch());
+            synchronized (batch) {
+                if (batch.closed) {
+                    // Closed by its leader meanwhile, a new batch is opened on the next round
+                    openBatches.remove(code, batch);
+                    continue;
+                }
+
+                batch.waiters.add(result);
+                if (batch.leader == null) {
+                    batch.leader = result;
+                }
+                if (batch.waiters.size() >= properties.getMaxBatchSize()) {
+                    close(code, batch);
+                }
+                return batch;
+            }
+        }
+    }
+
+    private void commit(String code, Batch batch) {
+        List<CompletableFuture<Boolean>> waiters;
+        synchronized (batch) {
+            long remainingNanos = TimeUnit.MILLISECONDS.toNanos(properties.getWindowMs());
+            long deadline = System.nanoTime() + remainingNanos;
+            while (!batch.closed && remainingNanos > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.timedWait(batch, remainingNanos);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                remainingNanos = deadline - System.nanoTime();
+            }
+            close(code, batch);
+            waiters = new ArrayList<>(batch.waiters);
+        }
+
+        try {
+            int taken = delegate.take(code, waiters.size(), 0);
+            for (int i = 0; i < waiters.size(); i++) {
+                waiters.get(i).complete(i < taken);
+            }
+
+            if (taken > 0) {
+                cacheService.delete(CacheKey.couponByCode(code));
+            }
+            log.debug("Group committed {} of {} decrements of coupon {}", taken, waiters.size(), code);
+        } catch (RuntimeException e) {
+            waiters.forEach(waiter -> waiter.completeExceptionally(e));
+        }
+    }
+
+    private void close(String code, Batch batch) {
+        if (!batch.closed) {
+            batch.closed = true;
+            openBatches.remove(code, batch);
+            batch.notifyAll();
+        }
+    }
+
+    private static final class Batch {
+
+        private final List<CompletableFuture<Boolean>> waiters = new ArrayList<>();
+
+        private CompletableFuture<Boolean> leader;
+
+        private boolean closed;
+
+    }
+
+}
@@ -0,0 +1,251 @@
+package vn.zaloppay.couponservice.infra.repository.usage;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import vn.zaloppay.couponservice.domain.model.Coupon;
+import vn.zaloppay.couponservice.domain.service.ICacheService;
+import vn.zaloppay.couponservice.domain.service.ISoldOutRegistry;
+import vn.zaloppay.couponservice.domain.util.CacheKey;
+import vn.zaloppay.couponservice.infra.model.CouponEntity;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Usage store decorator serving applies of high-volume coupons from node-local leases.
+ * Each instance takes a block of usages at once from the shared store and hands them out
+ * with a CAS on an in-memory counter. Unused usages are given back when the lease expires,
+ * when another instance finds the coupon sold out, or when the instance shuts down, and the block
+ * size follows the observed apply rate of the node.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class LeasingUsageStore implements UsageStore {
+
+    private final UsageStore delegate;
+
+    private final ICacheService cacheService;
+
+    private final ISoldOutRegistry soldOutRegistry;
+
+    private final UsageStoreProperties.Lease properties;
+
+    private final Map<String, Lease> leases = new ConcurrentHashMap<>();
+
+    @Override
+    public boolean decrement(String code) {
+        return takeUsage(code, () -> delegate.decrement(code));
+    }
+
+    @Override
+    public boolean apply(Coupon coupon, BigDecimal orderAmount, LocalDateTime appliedAt) {
+        // Leased usages are already taken from the shared store, only the coupon itself is checked here
+        boolean applicable = !coupon.getStartTime().isAfter(appliedAt)
+                && coupon.getEndTime().isAfter(appliedAt)
+                && coupon.getMinOrderValue().compareTo(orderAmount) <= 0;
+
+        return applicable && takeUsage(coupon.getCode(), () -> delegate.apply(coupon, orderAmount, appliedAt));
+    }
+
+    @Override
+    public int take(String code, int count, int minRemainingUsage) {
+        return delegate.take(code, count, minRemainingUsage);
+    }
+
+    @Override
+    public void giveBack(String code, int count) {
+        delegate.giveBack(code, count);
+    }
+
+    @Override
+    public void reset(Coupon coupon) {
+        // The counter is overwritten by the admin, usages leased before the reset are dropped
+        retire(coupon.getCode());
+        delegate.reset(coupon);
+    }
+
+    @Override
+    public void remove(Coupon coupon) {
+        retire(coupon.getCode());
+        delegate.remove(coupon);
+    }
+
+    @Override
+    public boolean isExhausted(String code) {
+        // Usages leased by this instance are no longer counted by the shared store
+        Lease lease = leases.get(code);
+        return (lease == null || lease.available.get() <= 0) && delegate.isExhausted(code);
+    }
+
+    @Override
+    public int remainingUsage(CouponEntity entity) {
+        return delegate.remainingUsage(entity);
+    }
+
+    @Override
+    public boolean isWriteBehind() {
+        // Leased usages are taken from the store before they are served, the row never lags behind
+        return delegate.isWriteBehind();
+    }
+
+    @Override
+    public boolean evictsCachedCoupon() {
+        return delegate.evictsCachedCoupon();
+    }
+
+    @Override
+    public void flush() {
+        long now = System.currentTimeMillis();
+        leases.forEach((code, lease) -> {
+            // Another instance ran out of the coupon, which it rejects until these usages are back
+            if (lease.expiresAt <= now || (lease.available.get() > 0 && soldOutRegistry.isSoldOut(code))) {
+                release(code, lease);
+            }
+        });
+        delegate.flush();
+    }
+
+    @Override
+    public void reconcile() {
+        delegate.reconcile();
+    }
+
+    @Override
+    public void shutdown() {
+        leases.forEach(this::release);
+        delegate.shutdown();
+    }
+
+    private boolean takeUsage(String code, BooleanSupplier centralAttempt) {
+        Lease lease = leases.computeIfAbsent(code, key -> new Lease(properties.getInitialBlockSize()));
+        if (lease.tryAcquire()) {
+            return true;
+        }
+
+        long now = System.currentTimeMillis();
+        if (lease.centralUntil <= now) {
+            synchronized (lease) {
+                if (lease.retired) {
+                    // Reset by an admin meanwhile, lease again against the new counter
+                    return takeUsage(code, centralAttempt);
+                }
+                if (lease.tryAcquire()) {
+                    return true;
+                }
+                if (lease.centralUntil <= now && refill(code, lease, now)) {
+                    return lease.tryAcquire() || centralAttempt.getAsBoolean();
+                }
+            }
+        }
+
+        return centralAttempt.getAsBoolean();
+    }
+
+    private boolean refill(String code, Lease lease, long now) {
+        int blockSize = lease.nextBlockSize(now, properties);
+        int taken = delegate.take(code, blockSize, properties.getMinRemainingUsage());
+
+        if (taken == 0) {
+            // Too little usage left to lease it out, serve the coupon from the shared store for a while
+            lease.centralUntil = now + properties.getTtlMs();
+            return false;
+        }
+
+        lease.available.addAndGet(taken);
+        lease.expiresAt = now + properties.getTtlMs();
+        cacheService.delete(CacheKey.couponByCode(code));
+        log.debug("Leased {} usages of coupon {}", taken, code);
+        return true;
+    }
+
+    /**
+     * Stop serving the usages leased from a counter about to be overwritten, including from threads
+     * already holding the lease
+     */
+    private void retire(String code) {
+        Lease lease = leases.remove(code);
+        if (lease != null) {
+            synchronized (lease) {
+                lease.retired = true;
+                lease.available.set(0);
+            }
+        }
+    }
+
+    private void release(String code, Lease lease) {
+        int unused;
+        synchronized (lease) {
+            unused = lease.available.getAndSet(0);
+        }
+
+        if (unused > 0) {
+            delegate.giveBack(code, unused);
+            cacheService.delete(CacheKey.couponByCode(code));
+            // Other instances may have seen the coupon run out while this one held the lease
+            soldOutRegistry.clear(code);
+            log.debug("Returned {} unused leased usages of coupon {}", unused, code);
+        }
+    }
+
+    private static final class Lease {
+
+        private final AtomicInteger available = new AtomicInteger();
+
+        // Usages handed out locally since the last refill
+        private final LongAdder served = new LongAdder();
+
+        private volatile long expiresAt;
+
+        private volatile long centralUntil;
+
+        // Dropped by a reset, no longer refilled
+        private boolean retired;
+
+        private long refilledAt;
+
+        private int blockSize;
+
+        // Smoothed apply rate of this node, per second
+        private double rate;
+
+        private Lease(int initialBlockSize) {
+            this.blockSize = initialBlockSize;
+        }
+
+        private boolean tryAcquire() {
+            int current;
+            do {
+                current = available.get();
+                if (current <= 0) {
+                    return false;
+                }
+            } while (!available.compareAndSet(current, current - 1));
+
+            served.increment();
+            return true;
+        }
+
+        /**
+         * Size the next block so that it lasts about the target lease duration at the recent apply rate
+         */
+        private int nextBlockSize(long now, UsageStoreProperties.Lease properties) {
+            if (refilledAt > 0 && now > refilledAt) {
+                double observedRate = served.sumThenReset() * 1000.0 / (now - refilledAt);
+                rate = rate == 0
+                        ? observedRate
+                        : properties.getRateSmoothing() * observedRate + (1 - properties.getRateSmoothing()) * rate;
+                int targetSize = (int) Math.ceil(rate * properties.getTargetLeaseMs() / 1000.0);
+                blockSize = Math.max(properties.getMinBlockSize(), Math.min(properties.getMaxBlockSize(), targetSize));
+            }
+            refilledAt = now;
+            return blockSize;
+        }
+
+    }
+
+}
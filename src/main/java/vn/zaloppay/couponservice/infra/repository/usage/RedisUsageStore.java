@@ -0,0 +1,393 @@
+package vn.zaloppay.couponservice.infra.repository.usage;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RBatch;
+import org.redisson.api.RFuture;
+import org.redisson.api.RScript;
+import org.redisson.api.RSet;
+import org.redisson.api.RedissonClient;
+import org.redisson.api.options.KeysScanOptions;
+import org.redisson.client.codec.LongCodec;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.jdbc.core.JdbcTemplate;
+import vn.zaloppay.couponservice.domain.model.Coupon;
+import vn.zaloppay.couponservice.domain.exceptions.ConflictException;
+import vn.zaloppay.couponservice.domain.service.ICacheService;
+import vn.zaloppay.couponservice.domain.service.IDistributedLockService;
+import vn.zaloppay.couponservice.domain.util.CacheKey;
+import vn.zaloppay.couponservice.infra.model.CouponEntity;
+import vn.zaloppay.couponservice.infra.repository.JpaCouponRepository;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Redis-authoritative usage store.
+ * The remaining usage of a coupon is a Redis counter checked and decremented by one Lua script,
+ * and the coupons row is brought up to date asynchronously by {@link #flush()}.
+ *
+ * <p>Counters are persistent keys: Redis must run with a {@code volatile-*} eviction policy (see redis/redis.conf)
+ * so that only cached entries, which all carry a TTL, are ever evicted. A counter is seeded from the database
+ * once, and a counter that goes missing afterwards is never seeded again, since the row lags behind it and
+ * would hand out usages a second time. Writes of the counters to the database, and their resets by an admin,
+ * are serialized across instances so that the row only ever moves forward.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class RedisUsageStore implements UsageStore {
+
+    private static final String DECREMENT_SCRIPT = """
+            local remaining = redis.call('GET', KEYS[1])
+            if not remaining then
+              return -1
+            end
+            if tonumber(remaining) <= 0 then
+              return 0
+            end
+            redis.call('DECR', KEYS[1])
+            return 1
+            """;
+
+    private static final String TAKE_SCRIPT = """
+            local remaining = redis.call('GET', KEYS[1])
+            if not remaining then
+              return -1
+            end
+            remaining = tonumber(remaining)
+            if remaining <= 0 or remaining < tonumber(ARGV[2]) then
+              return 0
+            end
+            local taken = math.min(remaining, tonumber(ARGV[1]))
+            redis.call('DECRBY', KEYS[1], taken)
+            return taken
+            """;
+
+    private static final String GIVE_BACK_SCRIPT = """
+            if redis.call('EXISTS', KEYS[1]) == 0 then
+              return 0
+            end
+            redis.call('INCRBY', KEYS[1], ARGV[1])
+            return 1
+            """;
+
+    private static final long NOT_INITIALIZED = -1;
+
+    private static final Duration FLUSH_LOCK_WAIT_TIME = Duration.ofMillis(200);
+
+    private static final Duration RESET_LOCK_WAIT_TIME = Duration.ofSeconds(5);
+
+    private static final Duration FLUSH_LOCK_LEASE_TIME = Duration.ofSeconds(30);
+
+    private static final String UPDATE_REMAINING_USAGE_SQL = "UPDATE coupons SET remaining_usage = ? WHERE code = ?";
+
+    private final RedissonClient redissonClient;
+
+    private final JpaCouponRepository jpaCouponRepository;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final ICacheService cacheService;
+
+    private final IDistributedLockService lockService;
+
+    // Codes decremented on this instance since the last flush
+    private final Set<String> dirtyCodes = ConcurrentHashMap.newKeySet();
+
+    @Override
+    public boolean decrement(String code) {
+        long result = evalDecrement(code);
+
+        // Lazily seed the counter from the database the first time a coupon is applied
+        if (result == NOT_INITIALIZED) {
+            if (!seed(code)) {
+                return false;
+            }
+            result = evalDecrement(code);
+        }
+
+        if (result > 0) {
+            dirtyCodes.add(code);
+            return true;
+        }
+
+        return false;
+    }
+
+    @Override
+    public int take(String code, int count, int minRemainingUsage) {
+        if (count <= 0) {
+            return 0;
+        }
+
+        long result = evalTake(code, count, minRemainingUsage);
+        if (result == NOT_INITIALIZED) {
+            if (!seed(code)) {
+                return 0;
+            }
+            result = evalTake(code, count, minRemainingUsage);
+        }
+
+        if (result > 0) {
+            dirtyCodes.add(code);
+            return (int) result;
+        }
+
+        return 0;
+    }
+
+    @Override
+    public void giveBack(String code, int count) {
+        if (count <= 0) {
+            return;
+        }
+
+        RScript script = redissonClient.getScript(LongCodec.INSTANCE);
+        Long result = script.eval(
+                RScript.Mode.READ_WRITE,
+                GIVE_BACK_SCRIPT,
+                RScript.ReturnType.INTEGER,
+                Collections.singletonList(CacheKey.couponUsage(code)),
+                count
+        );
+
+        // A missing counter means the coupon was deleted or reset meanwhile, nothing to return to
+        if (result != null && result > 0) {
+            dirtyCodes.add(code);
+        }
+    }
+
+    @Override
+    public boolean apply(Coupon coupon, BigDecimal orderAmount, LocalDateTime appliedAt) {
+        // Validity window and minimum order value never change between applies, only the counter does
+        boolean applicable = !coupon.getStartTime().isAfter(appliedAt)
+                && coupon.getEndTime().isAfter(appliedAt)
+                && coupon.getMinOrderValue().compareTo(orderAmount) <= 0;
+
+        return applicable && decrement(coupon.getCode());
+    }
+
+    @Override
+    public void reset(Coupon coupon) {
+        // Under the flush lock, so that no flush or reconciliation holding the previous counter writes it afterwards
+        lockService.executeWithLock(CacheKey.couponUsageFlushLock(), RESET_LOCK_WAIT_TIME, FLUSH_LOCK_LEASE_TIME, () -> {
+            dirtyCodes.remove(coupon.getCode());
+            redissonClient.getBucket(CacheKey.couponUsage(coupon.getCode()), LongCodec.INSTANCE)
+                    .set(coupon.getRemainingUsage().longValue());
+            counterCodes().add(coupon.getCode());
+            return null;
+        });
+    }
+
+    @Override
+    public void remove(Coupon coupon) {
+        removeCounter(coupon.getCode());
+    }
+
+    @Override
+    public boolean isExhausted(String code) {
+        // A missing counter is unknown rather than exhausted
+        Long remainingUsage = redissonClient.<Long>getBucket(CacheKey.couponUsage(code), LongCodec.INSTANCE).get();
+        return remainingUsage != null && remainingUsage <= 0;
+    }
+
+    @Override
+    public boolean isWriteBehind() {
+        return true;
+    }
+
+    /**
+     * Write the current counter of every coupon decremented since the last flush to the database.
+     * Absolute values are written rather than deltas, so concurrent flushes from several instances
+     * and the reconciliation job never count a decrement twice. Flushes are serialized across instances,
+     * each one reading the counters after the previous one wrote them, so a row never goes back to an older value.
+     */
+    @Override
+    public void flush() {
+        if (dirtyCodes.isEmpty()) {
+            return;
+        }
+
+        // Unmark before reading so that decrements racing with the flush are picked up by the next one
+        List<String> codes = new ArrayList<>(dirtyCodes);
+        codes.forEach(dirtyCodes::remove);
+
+        try {
+            int flushed = lockService.executeWithLock(CacheKey.couponUsageFlushLock(), FLUSH_LOCK_WAIT_TIME, FLUSH_LOCK_LEASE_TIME, () -> {
+                Map<String, Long> counters = readCounters(codes);
+                writeRemainingUsage(counters);
+                return counters.size();
+            });
+            log.debug("Flushed remaining usage of {} coupons to the database", flushed);
+        } catch (ConflictException e) {
+            // Another instance is flushing, the codes are written by the next flush
+            dirtyCodes.addAll(codes);
+        } catch (RuntimeException e) {
+            dirtyCodes.addAll(codes);
+            throw e;
+        }
+    }
+
+    /**
+     * Compare every Redis counter with its coupons row and repair the row when they drift apart,
+     * e.g. after an instance died with unflushed decrements. Redis is authoritative.
+     * Counters lost by Redis are reported, they are only recreated by an admin update of their coupon.
+     */
+    @Override
+    public void reconcile() {
+        flush();
+
+        try {
+            lockService.executeWithLock(CacheKey.couponUsageFlushLock(), RESET_LOCK_WAIT_TIME, FLUSH_LOCK_LEASE_TIME, () -> {
+                reconcileCounters();
+                return null;
+            });
+        } catch (ConflictException e) {
+            log.warn("Skipping remaining usage reconciliation, the counters are being written by another instance");
+        }
+    }
+
+    private void reconcileCounters() {
+        Set<String> codes = new HashSet<>();
+        String prefix = CacheKey.couponUsage("");
+        KeysScanOptions options = KeysScanOptions.defaults().pattern(CacheKey.couponUsage("*"));
+        redissonClient.getKeys().getKeys(options).forEach(key -> codes.add(key.substring(prefix.length())));
+
+        Set<String> counterCodes = counterCodes().readAll();
+        Set<String> lost = new HashSet<>(counterCodes);
+        lost.removeAll(codes);
+        if (!lost.isEmpty()) {
+            log.error("Remaining usage counters lost by Redis, the coupons are rejected until updated by an admin: {}", lost);
+        }
+
+        // Counters created before they were registered
+        codes.removeAll(counterCodes);
+        if (!codes.isEmpty()) {
+            counterCodes().addAll(codes);
+        }
+        codes.addAll(counterCodes);
+        codes.removeAll(lost);
+
+        if (codes.isEmpty()) {
+            return;
+        }
+
+        Map<String, Long> counters = readCounters(codes);
+        Map<String, Integer> persisted = new HashMap<>();
+        jpaCouponRepository.findByCodeIn(codes)
+                .forEach(entity -> persisted.put(entity.getCode(), entity.getRemainingUsage()));
+
+        Map<String, Long> drifted = new HashMap<>();
+        for (Map.Entry<String, Long> counter : counters.entrySet()) {
+            String code = counter.getKey();
+            Integer remainingUsage = persisted.get(code);
+
+            if (remainingUsage == null) {
+                // Coupon no longer exists in the database
+                removeCounter(code);
+            } else if (remainingUsage.longValue() != counter.getValue() && !dirtyCodes.contains(code)) {
+                drifted.put(code, counter.getValue());
+            }
+        }
+
+        if (!drifted.isEmpty()) {
+            log.warn("Repairing remaining usage drift between Redis and database for coupons: {}", drifted.keySet());
+            writeRemainingUsage(drifted);
+        }
+    }
+
+    private void removeCounter(String code) {
+        dirtyCodes.remove(code);
+        redissonClient.getBucket(CacheKey.couponUsage(code), LongCodec.INSTANCE).delete();
+        counterCodes().remove(code);
+    }
+
+    private long evalDecrement(String code) {
+        RScript script = redissonClient.getScript(LongCodec.INSTANCE);
+        Long result = script.eval(
+                RScript.Mode.READ_WRITE,
+                DECREMENT_SCRIPT,
+                RScript.ReturnType.INTEGER,
+                Collections.singletonList(CacheKey.couponUsage(code))
+        );
+        return result == null ? 0 : result;
+    }
+
+    private long evalTake(String code, int count, int minRemainingUsage) {
+        RScript script = redissonClient.getScript(LongCodec.INSTANCE);
+        Long result = script.eval(
+                RScript.Mode.READ_WRITE,
+                TAKE_SCRIPT,
+                RScript.ReturnType.INTEGER,
+                Collections.singletonList(CacheKey.couponUsage(code)),
+                count, minRemainingUsage
+        );
+        return result == null ? 0 : result;
+    }
+
+    private boolean seed(String code) {
+        if (counterCodes().contains(code)) {
+            // The row misses the decrements not flushed yet, seeding from it again would oversell
+            log.error("Remaining usage counter of coupon {} was lost, rejecting it until it is updated by an admin", code);
+            return false;
+        }
+
+        Optional<CouponEntity> couponEntity = jpaCouponRepository.findByCode(code);
+        if (couponEntity.isEmpty()) {
+            return false;
+        }
+
+        long remainingUsage = couponEntity.get().getRemainingUsage();
+        redissonClient.getBucket(CacheKey.couponUsage(code), LongCodec.INSTANCE).setIfAbsent(remainingUsage);
+        counterCodes().add(code);
+        return true;
+    }
+
+    private RSet<String> counterCodes() {
+        return redissonClient.getSet(CacheKey.couponUsageCounters(), StringCodec.INSTANCE);
+    }
+
+    private Map<String, Long> readCounters(Collection<String> codes) {
+        RBatch batch = redissonClient.createBatch();
+        Map<String, RFuture<Long>> futures = new HashMap<>();
+        for (String code : codes) {
+            futures.put(code, batch.<Long>getBucket(CacheKey.couponUsage(code), LongCodec.INSTANCE).getAsync());
+        }
+        batch.execute();
+
+        Map<String, Long> counters = new HashMap<>();
+        futures.forEach((code, future) -> {
+            Long value = future.toCompletableFuture().join();
+            if (value != null) {
+                counters.put(code, value);
+            }
+        });
+        return counters;
+    }
+
+    private void writeRemainingUsage(Map<String, Long> counters) {
+        if (counters.isEmpty()) {
+            return;
+        }
+
+        List<Object[]> batchArgs = counters.entrySet().stream()
+                .map(counter -> new Object[]{counter.getValue(), counter.getKey()})
+                .toList();
+        jdbcTemplate.batchUpdate(UPDATE_REMAINING_USAGE_SQL, batchArgs);
+
+        // Cached coupons carry the remaining usage too
+        counters.keySet().forEach(code -> cacheService.delete(CacheKey.couponByCode(code)));
+    }
+
+}
@@ -0,0 +1,112 @@
+package vn.zaloppay.couponservice.infra.repository.usage;
+
+import vn.zaloppay.couponservice.domain.model.Coupon;
+import vn.zaloppay.couponservice.infra.model.CouponEntity;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Backing store of coupon remaining usage counters.
+ * The coupon catalogue always lives in the database, but where the remaining usage is
+ * checked and decremented is selected per profile (see {@link UsageStoreProperties}).
+ */
+public interface UsageStore {
+
+    /**
+     * Atomically takes one usage of a coupon if any remain
+     * @param code coupon code
+     * @return true if a usage was taken, false if the coupon has no remaining usage or doesn't exist
+     */
+    boolean decrement(String code);
+
+    /**
+     * Atomically takes a block of usages of a coupon at once
+     * @param code coupon code
+     * @param count maximum number of usages to take
+     * @param minRemainingUsage take nothing unless at least this many usages remain
+     * @return number of usages taken, between 0 and count
+     */
+    int take(String code, int count, int minRemainingUsage);
+
+    /**
+     * Return usages previously taken with {@link #take(String, int, int)} but never used
+     * @param code coupon code
+     * @param count number of usages to return
+     */
+    void giveBack(String code, int count);
+
+    /**
+     * Atomically takes one usage of a coupon if it is applicable to the order:
+     * active at the given time, minimum order value met and usage remaining
+     * @param coupon coupon to apply, as last read by the caller
+     * @param orderAmount order amount
+     * @param appliedAt time of the order
+     * @return true if a usage was taken
+     */
+    boolean apply(Coupon coupon, BigDecimal orderAmount, LocalDateTime appliedAt);
+
+    /**
+     * Overwrite the counter after the coupon was created, or its remaining usage set by an admin.
+     * Runs in the transaction writing the coupon.
+     * @param coupon coupon as persisted in the database
+     */
+    void reset(Coupon coupon);
+
+    /**
+     * Drop the counter of a deleted coupon
+     * @param coupon deleted coupon
+     */
+    void remove(Coupon coupon);
+
+    /**
+     * Check whether a coupon has no usage left at all, as opposed to a take lost to a concurrent one
+     * or a counter the store cannot read. Only then is the coupon marked sold out.
+     * @param code coupon code
+     * @return true if the store holds the coupon with no remaining usage
+     */
+    boolean isExhausted(String code);
+
+    /**
+     * Resolve the remaining usage of a coupon row read from the database
+     * @param entity coupon row
+     * @return remaining usage to expose on the domain object
+     */
+    default int remainingUsage(CouponEntity entity) {
+        return entity.getRemainingUsage();
+    }
+
+    /**
+     * Check whether decrements reach the database asynchronously
+     * @return true if the database row lags behind the store
+     */
+    boolean isWriteBehind();
+
+    /**
+     * Check whether the store evicts the cached coupon itself once its usages are taken or given back
+     * @return true if callers must leave the eviction to the store
+     */
+    default boolean evictsCachedCoupon() {
+        return isWriteBehind();
+    }
+
+    /**
+     * Persist pending decrements to the database
+     */
+    default void flush() {
+    }
+
+    /**
+     * Compare the store with the database and repair drift
+     */
+    default void reconcile() {
+    }
+
+    /**
+     * Hand everything held by this instance back to the shared store before it stops
+     */
+    default void shutdown() {
+        flush();
+    }
+
+}
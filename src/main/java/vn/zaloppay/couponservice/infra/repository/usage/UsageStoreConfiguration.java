@@ -0,0 +1,66 @@
+package vn.zaloppay.couponservice.infra.repository.usage;
+
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RedissonClient;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import vn.zaloppay.couponservice.domain.service.ICacheService;
+import vn.zaloppay.couponservice.domain.service.IDistributedLockService;
+import vn.zaloppay.couponservice.domain.service.ISoldOutRegistry;
+import vn.zaloppay.couponservice.domain.model.ApplyMode;
+import vn.zaloppay.couponservice.domain.usecase.coupon.ApplyCouponProperties;
+import vn.zaloppay.couponservice.infra.repository.JpaCouponRepository;
+import vn.zaloppay.couponservice.infra.repository.JpaCouponUsageShardRepository;
+
+@Configuration
+@Slf4j
+public class UsageStoreConfiguration {
+
+    private final UsageStoreProperties usageStoreProperties;
+
+    public UsageStoreConfiguration(UsageStoreProperties usageStoreProperties) {
+        this.usageStoreProperties = usageStoreProperties;
+    }
+
+    @Bean
+    public UsageStore usageStore(JpaCouponRepository jpaCouponRepository,
+                                 JpaCouponUsageShardRepository jpaCouponUsageShardRepository,
+                                 RedissonClient redissonClient,
+                                 JdbcTemplate jdbcTemplate,
+                                 ICacheService cacheService,
+                                 IDistributedLockService lockService,
+                                 ISoldOutRegistry soldOutRegistry,
+                                 ApplyCouponProperties applyProperties) {
+        UsageStoreProperties.Store store = usageStoreProperties.getStore();
+
+        log.info("Initializing coupon usage store in {} mode", store);
+
+        if (store != UsageStoreProperties.Store.DATABASE && usageStoreProperties.getSharding().isEnabled()) {
+            log.warn("Sharded inventory only applies to the database usage store, ignoring it in {} mode", store);
+        }
+
+        UsageStore usageStore = switch (store) {
+            case DATABASE -> new DatabaseUsageStore(
+                    jpaCouponRepository, jpaCouponUsageShardRepository, usageStoreProperties.getSharding());
+            case REDIS -> new RedisUsageStore(
+                    redissonClient, jpaCouponRepository, jdbcTemplate, cacheService, lockService);
+        };
+
+        if (usageStoreProperties.getGroupCommit().isEnabled()) {
+            log.info("Coalescing concurrent decrements of the same coupon into group commits");
+            if (applyProperties.getMode() == ApplyMode.LOCK) {
+                log.warn("Applies of a coupon are serialized by its lock in LOCK mode, group commits only add latency");
+            }
+            usageStore = new GroupCommitUsageStore(usageStore, cacheService, usageStoreProperties.getGroupCommit());
+        }
+
+        if (usageStoreProperties.getLease().isEnabled()) {
+            log.info("Serving high-volume coupons from node-local usage leases");
+            usageStore = new LeasingUsageStore(usageStore, cacheService, soldOutRegistry, usageStoreProperties.getLease());
+        }
+
+        return usageStore;
+    }
+
+}
@@ -0,0 +1,78 @@
+package vn.zaloppay.couponservice.infra.repository.usage;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Setter
+@Getter
+@Component
+@ConfigurationProperties(prefix = "coupon.usage")
+public class UsageStoreProperties {
+
+    private Store store = Store.DATABASE;
+    private long flushIntervalMs = 1000;
+    private long reconcileIntervalMs = 60000;
+    private Sharding sharding = new Sharding();
+    private GroupCommit groupCommit = new GroupCommit();
+    private Lease lease = new Lease();
+
+    public enum Store {
+        DATABASE,
+        REDIS
+    }
+
+    /**
+     * Sharded inventory of the database store: the remaining usage of a hot coupon is split
+     * across coupon_usage_shards rows so that concurrent applies don't contend on one row
+     */
+    @Setter
+    @Getter
+    public static class Sharding {
+        private boolean enabled = false;
+        // Number of shard rows per sharded coupon
+        private int shardCount = 8;
+        // Coupons created or updated with at least this remaining usage are sharded
+        private int minRemainingUsage = 1000;
+        // How long the summed remaining usage of a sharded coupon is reused for reads
+        private long totalCacheTtlMs = 1000;
+    }
+
+    /**
+     * Group commit: concurrent decrements of the same coupon arriving within a short window
+     * are merged into one decrement by the batch size
+     */
+    @Setter
+    @Getter
+    public static class GroupCommit {
+        private boolean enabled = false;
+        // How long the first decrement of a batch waits for others to join it
+        private long windowMs = 2;
+        // A batch is committed right away once this many decrements joined it
+        private int maxBatchSize = 100;
+    }
+
+    /**
+     * Node-local usage leases: each instance takes blocks of usages of a coupon from the store
+     * and serves applies from memory until the block is used up or the lease expires
+     */
+    @Setter
+    @Getter
+    public static class Lease {
+        private boolean enabled = false;
+        // Block size of the first lease of a coupon, before any apply rate is known
+        private int initialBlockSize = 50;
+        private int minBlockSize = 5;
+        private int maxBlockSize = 1000;
+        // Coupons are only leased while at least this many usages remain in the store
+        private int minRemainingUsage = 1000;
+        // Unused usages are given back to the store after this long
+        private long ttlMs = 5000;
+        // A block is sized to last about this long at the node's recent apply rate
+        private long targetLeaseMs = 1000;
+        // Weight of the latest observation in the smoothed apply rate
+        private double rateSmoothing = 0.3;
+    }
+
+}
@@ -0,0 +1,50 @@
+package vn.zaloppay.couponservice.infra.repository.usage;
+
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Drives the background work of the usage store: write-behind flushes and reconciliation.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class UsageStoreScheduler {
+
+    private final UsageStore usageStore;
+
+    @Scheduled(fixedDelayString = "#{@usageStoreProperties.flushIntervalMs}")
+    public void flush() {
+        try {
+            usageStore.flush();
+        } catch (Exception e) {
+            log.error("Error flushing coupon usage to the database", e);
+        }
+    }
+
+    @Scheduled(
+            initialDelayString = "#{@usageStoreProperties.reconcileIntervalMs}",
+            fixedDelayString = "#{@usageStoreProperties.reconcileIntervalMs}"
+    )
+    public void reconcile() {
+        try {
+            usageStore.reconcile();
+        } catch (Exception e) {
+            log.error("Error reconciling coupon usage with the database", e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        log.info("Flushing coupon usage before shutdown");
+        try {
+            usageStore.shutdown();
+        } catch (Exception e) {
+            log.error("Error flushing coupon usage before shutdown", e);
+        }
+    }
+
+}
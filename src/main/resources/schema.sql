@@ -11,9 +11,44 @@ CREATE TABLE IF NOT EXISTS coupons (
     start_time DATETIME NOT NULL,
     end_time DATETIME NOT NULL,
     remaining_usage INT NOT NULL,
+    usage_shards INT NOT NULL DEFAULT 0,
+    discount_rules VARCHAR(1000) NULL,
     created_at DATETIME DEFAULT CURRENT_TIMESTAMP,
     updated_at DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
     PRIMARY KEY (id)
 );
 
-CREATE UNIQUE INDEX IF NOT EXISTS idx_coupons_code ON coupons(code); 
\ No newline at end of file
+CREATE UNIQUE INDEX IF NOT EXISTS idx_coupons_code ON coupons(code);
+
+-- Indexes named idx_coupons_* are managed by DatabaseInitializer: one whose columns changed here is rebuilt,
+-- one no longer declared here is dropped. remaining_usage is left out of every index, so that taking a usage
+-- never rewrites index entries, it is checked on the rows the index narrowed down to.
+
+-- Available coupons of every discount type: not ended, started, meeting the order amount. The discount type
+-- is covered for the estimated discount ranking, which only prices PERCENT and FIXED coupons in SQL.
+-- Also serves the endTime ordering, the next start or end time and the coupon index rebuilds
+CREATE INDEX IF NOT EXISTS idx_coupons_availability ON coupons(end_time, start_time, min_order_value, discount_type);
+
+-- Available coupons of one discount type, and the admin listing filtered by discount type only
+CREATE INDEX IF NOT EXISTS idx_coupons_type_availability ON coupons(discount_type, end_time, start_time, min_order_value);
+
+-- Admin listing filtered by usage type, with or without a discount type
+CREATE INDEX IF NOT EXISTS idx_coupons_usage_type ON coupons(usage_type, discount_type, end_time);
+
+-- Orderings of the coupon listings, the primary key every secondary index ends with breaks the ties
+CREATE INDEX IF NOT EXISTS idx_coupons_discount_value ON coupons(discount_value);
+
+CREATE INDEX IF NOT EXISTS idx_coupons_max_discount_amount ON coupons(max_discount_amount);
+
+CREATE INDEX IF NOT EXISTS idx_coupons_title ON coupons(title);
+
+ALTER TABLE coupons ADD COLUMN IF NOT EXISTS usage_shards INT NOT NULL DEFAULT 0;
+
+ALTER TABLE coupons ADD COLUMN IF NOT EXISTS discount_rules VARCHAR(1000) NULL;
+
+CREATE TABLE IF NOT EXISTS coupon_usage_shards (
+    coupon_id BIGINT NOT NULL,
+    shard_no INT NOT NULL,
+    remaining_usage INT NOT NULL,
+    PRIMARY KEY (coupon_id, shard_no)
+);
@@ -0,0 +1,127 @@
+package vn.zaloppay.couponservice.app.config;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * Checks that every query shape of the coupon listings and lookups is served by an index of schema.sql.
+ *
+ * <p>Runs against the TiDB database of {@code COUPON_EXPLAIN_DB_URL} (with {@code COUPON_EXPLAIN_DB_USERNAME} and
+ * {@code COUPON_EXPLAIN_DB_PASSWORD}), which should be a scratch one: the schema is applied through
+ * {@link DatabaseInitializer}, and coupons mostly ended, as in production, are added and removed around the tests.
+ */
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+@EnabledIfEnvironmentVariable(named = "COUPON_EXPLAIN_DB_URL", matches = ".+")
+class CouponIndexExplainTest {
+
+    private static final String CODE_PREFIX = "XPL";
+
+    private static final int COUPONS = 2000;
+
+    // Replaced with the time the tests run at
+    private static final String NOW = ":now";
+
+    private static final String AVAILABLE = "start_time <= " + NOW + " AND end_time > " + NOW +
+            " AND remaining_usage > 0 AND min_order_value <= 500000";
+
+    private final LocalDateTime now = LocalDateTime.now().withNano(0);
+
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeAll
+    void setUp() throws Exception {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                System.getenv("COUPON_EXPLAIN_DB_URL"),
+                System.getenv().getOrDefault("COUPON_EXPLAIN_DB_USERNAME", "root"),
+                System.getenv().getOrDefault("COUPON_EXPLAIN_DB_PASSWORD", "")
+        );
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        new DatabaseInitializer(jdbcTemplate).run(null);
+
+        // Given: one coupon in ten still running, few STEP and MANUAL ones
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 0; i < COUPONS; i++) {
+            boolean running = i % 10 == 0;
+            rows.add(new Object[]{
+                    CODE_PREFIX + String.format("%07d", i),
+                    i % 50 == 0 ? "STEP" : i % 2 == 0 ? "PERCENT" : "FIXED",
+                    i % 40 == 0 ? "MANUAL" : "AUTO",
+                    (i % 20) + 1,
+                    (i % 7) * 10000,
+                    now.minusDays(30 + i % 5),
+                    running ? now.plusDays(1 + i % 30) : now.minusDays(1 + i % 29),
+                    i % 3
+            });
+        }
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO coupons (code, title, description, discount_type, usage_type, discount_value, " +
+                        "max_discount_amount, min_order_value, start_time, end_time, remaining_usage) " +
+                        "VALUES (?, 'Explain', 'Explain', ?, ?, ?, 50000, ?, ?, ?, ?)",
+                rows
+        );
+        jdbcTemplate.execute("ANALYZE TABLE coupons");
+    }
+
+    @AfterAll
+    void tearDown() {
+        if (jdbcTemplate != null) {
+            jdbcTemplate.update("DELETE FROM coupons WHERE code LIKE ?", CODE_PREFIX + "%");
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            // Available coupons, every CouponSortField ordering, with and without a discount type
+            "SELECT * FROM coupons WHERE " + AVAILABLE + " ORDER BY discount_value DESC, id LIMIT 10",
+            "SELECT * FROM coupons WHERE " + AVAILABLE + " ORDER BY max_discount_amount DESC, id LIMIT 10",
+            "SELECT * FROM coupons WHERE " + AVAILABLE + " ORDER BY end_time, id LIMIT 10",
+            "SELECT * FROM coupons WHERE " + AVAILABLE + " ORDER BY title, id LIMIT 10",
+            "SELECT * FROM coupons WHERE " + AVAILABLE + " AND discount_type = 'PERCENT' ORDER BY discount_value DESC, id LIMIT 10",
+            "SELECT COUNT(*) FROM coupons WHERE " + AVAILABLE,
+            "SELECT COUNT(*) FROM coupons WHERE " + AVAILABLE + " AND discount_type = 'FIXED'",
+            // Ranking by estimated discount, and the rule based coupons merged into it
+            "SELECT * FROM coupons WHERE " + AVAILABLE + " AND discount_type IN ('PERCENT', 'FIXED') " +
+                    "ORDER BY CASE WHEN discount_type = 'PERCENT' THEN LEAST(ROUND(500000 * discount_value / 100, 2), " +
+                    "max_discount_amount) ELSE discount_value END DESC, id LIMIT 10",
+            "SELECT * FROM coupons WHERE " + AVAILABLE + " AND discount_type IN ('TIERED', 'STEP')",
+            // Admin listing filters and orderings
+            "SELECT * FROM coupons WHERE discount_type = 'STEP' ORDER BY discount_value, id LIMIT 10",
+            "SELECT * FROM coupons WHERE usage_type = 'MANUAL' ORDER BY end_time DESC, id DESC LIMIT 10",
+            "SELECT * FROM coupons WHERE discount_type = 'STEP' AND usage_type = 'MANUAL' ORDER BY title, id LIMIT 10",
+            "SELECT * FROM coupons ORDER BY discount_value DESC, id DESC LIMIT 10",
+            "SELECT * FROM coupons ORDER BY max_discount_amount, id LIMIT 10",
+            "SELECT * FROM coupons ORDER BY title, id LIMIT 10",
+            "SELECT * FROM coupons WHERE discount_value < 10 OR (discount_value = 10 AND id > 5) ORDER BY discount_value, id LIMIT 10",
+            // Coupon index rebuilds, and the buckets and boundaries of the available coupons cache
+            "SELECT * FROM coupons WHERE remaining_usage > 0 AND end_time > " + NOW,
+            "SELECT DISTINCT min_order_value FROM coupons WHERE end_time > " + NOW + " ORDER BY min_order_value",
+            "SELECT MIN(CASE WHEN start_time > " + NOW + " THEN start_time ELSE end_time END) FROM coupons " +
+                    "WHERE end_time > " + NOW + " AND discount_type = 'PERCENT'"
+    })
+    void query_ShouldNotScanTheWholeTable(String query) {
+        // When
+        List<Map<String, Object>> plan = jdbcTemplate.queryForList("EXPLAIN " + query.replace(NOW, "'" + now + "'"));
+
+        // Then
+        assertFalse(plan.stream().anyMatch(CouponIndexExplainTest::isTableScan), () -> query + " scans the table: " + plan);
+    }
+
+    // TableFullScan on TiDB, access type ALL on MySQL
+    private static boolean isTableScan(Map<String, Object> step) {
+        return String.valueOf(step.get("id")).contains("TableFullScan") || "ALL".equals(step.get("type"));
+    }
+
+}
@@ -0,0 +1,133 @@
+package vn.zaloppay.couponservice.domain.model.discount;
+
+import org.junit.jupiter.api.Test;
+import vn.zaloppay.couponservice.domain.model.Coupon;
+import vn.zaloppay.couponservice.domain.model.UsageType;
+import vn.zaloppay.couponservice.domain.util.MinorUnits;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The branch and bound must find the same total discount as trying every combination.
+ */
+class CouponStackerTest {
+
+    private final LocalDateTime now = LocalDateTime.now();
+
+    @Test
+    void stack_ShouldMatchExhaustiveSearch() {
+        // Given
+        Random random = new Random(17L);
+
+        for (int round = 0; round < 2_000; round++) {
+            List<Coupon> candidates = new ArrayList<>();
+            for (int i = 0, n = random.nextInt(9); i < n; i++) {
+                candidates.add(randomCoupon(random, "C" + i));
+            }
+            Coupon required = random.nextBoolean() ? randomCoupon(random, "REQUIRED") : null;
+            BigDecimal orderAmount = MinorUnits.toAmount(random.nextLong(1, 100_000));
+            int maxCoupons = random.nextInt(1, 5);
+            Set<UsageType> exclusive = switch (random.nextInt(3)) {
+                case 0 -> EnumSet.noneOf(UsageType.class);
+                case 1 -> EnumSet.of(UsageType.MANUAL);
+                default -> EnumSet.allOf(UsageType.class);
+            };
+
+            // When
+            List<Coupon> stack = CouponStacker.stack(orderAmount, required, candidates, maxCoupons, exclusive);
+
+            // Then
+            BigDecimal expected = exhaustive(orderAmount, required, candidates, maxCoupons, exclusive);
+            assertTrue(isValid(stack, required, maxCoupons, exclusive));
+            assertEquals(0, expected.compareTo(total(orderAmount, stack)));
+        }
+    }
+
+    @Test
+    void stack_WithHundredsOfCandidates_ShouldKeepOneCouponPerExclusiveType() {
+        // Given
+        Random random = new Random(3L);
+        List<Coupon> candidates = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            candidates.add(randomCoupon(random, "C" + i));
+        }
+
+        // When
+        List<Coupon> stack = CouponStacker.stack(
+                new BigDecimal("5000"), null, candidates, 2, EnumSet.allOf(UsageType.class));
+
+        // Then
+        assertEquals(2, stack.size());
+        assertTrue(stack.get(0).getUsageType() != stack.get(1).getUsageType());
+    }
+
+    private Coupon randomCoupon(Random random, String code) {
+        boolean percent = random.nextBoolean();
+        return new Coupon(
+                1L,
+                code,
+                "Title",
+                "Description",
+                percent ? DiscountType.PERCENT : DiscountType.FIXED,
+                random.nextBoolean() ? UsageType.AUTO : UsageType.MANUAL,
+                MinorUnits.toAmount(percent ? random.nextInt(10_001) : random.nextLong(50_000)),
+                random.nextBoolean() ? null : MinorUnits.toAmount(random.nextLong(50_000)),
+                BigDecimal.ZERO,
+                now.minusHours(1),
+                now.plusHours(1),
+                10
+        );
+    }
+
+    private BigDecimal exhaustive(BigDecimal orderAmount, Coupon required, List<Coupon> candidates,
+                                  int maxCoupons, Set<UsageType> exclusive) {
+        BigDecimal best = BigDecimal.ZERO;
+        for (int mask = 0; mask < 1 << candidates.size(); mask++) {
+            List<Coupon> stack = new ArrayList<>();
+            if (required != null) {
+                stack.add(required);
+            }
+            for (int i = 0; i < candidates.size(); i++) {
+                if ((mask & 1 << i) != 0) {
+                    stack.add(candidates.get(i));
+                }
+            }
+            if (isValid(stack, required, maxCoupons, exclusive)) {
+                best = best.max(total(orderAmount, stack));
+            }
+        }
+        return best;
+    }
+
+    private boolean isValid(List<Coupon> stack, Coupon required, int maxCoupons, Set<UsageType> exclusive) {
+        if (stack.size() > Math.max(maxCoupons, required == null ? 0 : 1)) {
+            return false;
+        }
+        if (required != null && (stack.isEmpty() || stack.get(0) != required)) {
+            return false;
+        }
+        for (UsageType usageType : exclusive) {
+            if (stack.stream().filter(coupon -> coupon.getUsageType() == usageType).count() > 1) {
+                return false;
+            }
+        }
+        return stack.stream().map(Coupon::getCode).distinct().count() == stack.size();
+    }
+
+    private BigDecimal total(BigDecimal orderAmount, List<Coupon> stack) {
+        return stack.stream()
+                .map(coupon -> coupon.calculateDiscount(orderAmount))
+                .reduce(BigDecimal.ZERO, BigDecimal::add)
+                .min(orderAmount);
+    }
+
+}
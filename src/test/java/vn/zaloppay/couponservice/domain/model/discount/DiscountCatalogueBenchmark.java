@@ -0,0 +1,75 @@
+package vn.zaloppay.couponservice.domain.model.discount;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import vn.zaloppay.couponservice.domain.model.Coupon;
+import vn.zaloppay.couponservice.domain.model.UsageType;
+import vn.zaloppay.couponservice.domain.util.MinorUnits;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Discounts of a list of coupons for one order amount, priced coupon by coupon or through a catalogue built
+ * for the list. Tells whether a catalogue evaluated once, as a page of the available coupons listing would be,
+ * pays off for its build.
+ *
+ * <p>Not run by the build, run it with {@code mvn -Pbenchmark test-compile exec:exec -Dbenchmark=DiscountCatalogue}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DiscountCatalogueBenchmark {
+
+    private static final BigDecimal ORDER_AMOUNT = new BigDecimal("350000.00");
+
+    @Param({"10", "20", "50", "100", "1000"})
+    private int size;
+
+    private List<Coupon> coupons;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        LocalDateTime now = LocalDateTime.now();
+        coupons = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            boolean percent = random.nextBoolean();
+            coupons.add(new Coupon((long) i, "C" + i, "Coupon", "Coupon",
+                    percent ? DiscountType.PERCENT : DiscountType.FIXED, UsageType.AUTO,
+                    MinorUnits.toAmount(percent ? 1 + random.nextInt(5_000) : random.nextInt(5_000_000)),
+                    percent && random.nextBoolean() ? MinorUnits.toAmount(random.nextInt(10_000_000)) : null,
+                    MinorUnits.toAmount(random.nextInt(50_000_000)),
+                    now.minusDays(1), now.plusDays(1), 100));
+        }
+    }
+
+    @Benchmark
+    public List<BigDecimal> perCoupon() {
+        return coupons.stream().map(coupon -> coupon.calculateDiscount(ORDER_AMOUNT)).toList();
+    }
+
+    @Benchmark
+    public List<BigDecimal> catalogue() {
+        long[] discounts = DiscountCatalogue.of(coupons).discounts(MinorUnits.toMinorUnits(ORDER_AMOUNT));
+        return Arrays.stream(discounts).mapToObj(MinorUnits::toAmount).toList();
+    }
+
+}
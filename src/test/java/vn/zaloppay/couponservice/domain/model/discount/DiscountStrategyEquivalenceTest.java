@@ -0,0 +1,312 @@
+package vn.zaloppay.couponservice.domain.model.discount;
+
+import org.junit.jupiter.api.Test;
+import vn.zaloppay.couponservice.domain.model.Coupon;
+import vn.zaloppay.couponservice.domain.model.UsageType;
+import vn.zaloppay.couponservice.domain.util.MinorUnits;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The minor unit discount computations must give exactly the BigDecimal results, rounding included.
+ */
+class DiscountStrategyEquivalenceTest {
+
+    // Largest amount of a DECIMAL(10,2) column, in cents
+    private static final long MAX_AMOUNT = 9_999_999_999L;
+
+    // 100.00% in hundredths of a percent
+    private static final int MAX_PERCENT = 10_000;
+
+    private final PercentDiscountStrategy percentStrategy = new PercentDiscountStrategy();
+
+    private final FixedDiscountStrategy fixedStrategy = new FixedDiscountStrategy();
+
+    @Test
+    void percentDiscount_ForEverySmallAmountAndEveryPercent_ShouldMatchBigDecimal() {
+        // Given every amount up to 20.00 and every percent value from 0.00% to 100.00%
+        BigDecimal[] percents = new BigDecimal[MAX_PERCENT + 1];
+        for (int percent = 0; percent <= MAX_PERCENT; percent++) {
+            percents[percent] = MinorUnits.toAmount(percent);
+        }
+
+        for (long amount = 0; amount <= 2_000; amount++) {
+            BigDecimal orderAmount = MinorUnits.toAmount(amount);
+            for (int percent = 0; percent <= MAX_PERCENT; percent++) {
+                BigDecimal discountValue = percents[percent];
+
+                // When
+                BigDecimal expected = percentStrategy.calculateDiscount(orderAmount, discountValue, null);
+                long actual = percentStrategy.calculateDiscount(amount, percent, DiscountStrategy.NO_MAX_DISCOUNT);
+
+                // Then
+                assertEquals(MinorUnits.toMinorUnits(expected), actual, () -> orderAmount + " at " + discountValue + "%");
+            }
+        }
+    }
+
+    @Test
+    void percentDiscount_WithCapAroundTheUncappedDiscount_ShouldMatchBigDecimal() {
+        // Given amounts and percents whose uncapped discount lands on, just below and just above the cap
+        for (long amount = 0; amount <= 5_000; amount += 7) {
+            BigDecimal orderAmount = MinorUnits.toAmount(amount);
+            for (int percent = 0; percent <= MAX_PERCENT; percent += 13) {
+                BigDecimal discountValue = MinorUnits.toAmount(percent);
+                long uncapped = percentStrategy.calculateDiscount(amount, percent, DiscountStrategy.NO_MAX_DISCOUNT);
+
+                for (long cap = Math.max(0, uncapped - 1); cap <= uncapped + 1; cap++) {
+                    // When
+                    BigDecimal expected = percentStrategy.calculateDiscount(orderAmount, discountValue, MinorUnits.toAmount(cap));
+                    long actual = percentStrategy.calculateDiscount(amount, percent, cap);
+
+                    // Then
+                    assertEquals(MinorUnits.toMinorUnits(expected), actual);
+                }
+            }
+        }
+    }
+
+    @Test
+    void percentDiscount_ForRandomAmountsUpToTheColumnLimit_ShouldMatchBigDecimal() {
+        // Given
+        Random random = new Random(20_240_601L);
+
+        for (int i = 0; i < 1_000_000; i++) {
+            long amount = random.nextLong(MAX_AMOUNT + 1);
+            int percent = random.nextInt(MAX_PERCENT + 1);
+            long cap = random.nextBoolean() ? DiscountStrategy.NO_MAX_DISCOUNT : random.nextLong(MAX_AMOUNT + 1);
+            BigDecimal maxDiscountAmount = cap == DiscountStrategy.NO_MAX_DISCOUNT ? null : MinorUnits.toAmount(cap);
+
+            // When
+            BigDecimal expected = percentStrategy.calculateDiscount(
+                    MinorUnits.toAmount(amount), MinorUnits.toAmount(percent), maxDiscountAmount);
+            long actual = percentStrategy.calculateDiscount(amount, percent, cap);
+
+            // Then
+            assertEquals(MinorUnits.toMinorUnits(expected), actual);
+        }
+    }
+
+    @Test
+    void fixedDiscount_ShouldMatchBigDecimal() {
+        // Given
+        Random random = new Random(7L);
+
+        for (int i = 0; i < 100_000; i++) {
+            long amount = random.nextLong(MAX_AMOUNT + 1);
+            long value = random.nextLong(MAX_AMOUNT + 1);
+            long cap = random.nextLong(MAX_AMOUNT + 1);
+
+            // When
+            BigDecimal expected = fixedStrategy.calculateDiscount(
+                    MinorUnits.toAmount(amount), MinorUnits.toAmount(value), MinorUnits.toAmount(cap));
+            long actual = fixedStrategy.calculateDiscount(amount, value, cap);
+
+            // Then
+            assertEquals(MinorUnits.toMinorUnits(expected), actual);
+        }
+    }
+
+    @Test
+    void divideHalfUp_ShouldRoundLikeBigDecimalHalfUp() {
+        // Given dividends of both signs, including every remainder of small divisors
+        for (long divisor = 1; divisor <= 200; divisor++) {
+            for (long dividend = -1_000; dividend <= 1_000; dividend++) {
+                // When
+                long expected = BigDecimal.valueOf(dividend)
+                        .divide(BigDecimal.valueOf(divisor), 0, RoundingMode.HALF_UP)
+                        .longValueExact();
+
+                // Then
+                assertEquals(expected, MinorUnits.divideHalfUp(dividend, divisor));
+            }
+        }
+    }
+
+    @Test
+    void discountTerms_ShouldEvaluateLikeTheCoupon() {
+        // Given
+        Random random = new Random(42L);
+        LocalDateTime now = LocalDateTime.now();
+
+        for (int i = 0; i < 100_000; i++) {
+            boolean percent = random.nextBoolean();
+            Coupon coupon = new Coupon(
+                    1L,
+                    "CODE",
+                    "Title",
+                    "Description",
+                    percent ? DiscountType.PERCENT : DiscountType.FIXED,
+                    UsageType.AUTO,
+                    MinorUnits.toAmount(percent ? random.nextInt(MAX_PERCENT + 1) : random.nextLong(1_000_000)),
+                    random.nextInt(4) == 0 ? null : MinorUnits.toAmount(random.nextLong(1_000_000)),
+                    MinorUnits.toAmount(random.nextLong(1_000_000)),
+                    now.minusHours(1),
+                    now.plusHours(1),
+                    10
+            );
+            long amount = random.nextLong(10_000_000);
+
+            // When
+            long actual = DiscountTerms.of(coupon).calculateDiscount(amount);
+
+            // Then
+            assertEquals(MinorUnits.toMinorUnits(coupon.calculateDiscount(MinorUnits.toAmount(amount))), actual);
+        }
+    }
+
+    @Test
+    void discountCatalogue_AboveTheParallelThreshold_ShouldEvaluateLikeTheCoupons() {
+        // Given coupons of both types, some not eligible by time, usage or minimum order value
+        Random random = new Random(99L);
+        LocalDateTime now = LocalDateTime.now();
+        List<Coupon> coupons = new ArrayList<>();
+        for (int i = 0; i < DiscountCatalogue.PARALLEL_THRESHOLD * 2 + 17; i++) {
+            boolean percent = random.nextBoolean();
+            coupons.add(new Coupon(
+                    (long) i,
+                    "CODE" + i,
+                    "Title",
+                    "Description",
+                    percent ? DiscountType.PERCENT : DiscountType.FIXED,
+                    UsageType.AUTO,
+                    MinorUnits.toAmount(percent ? random.nextInt(MAX_PERCENT + 1) : random.nextLong(1_000_000)),
+                    random.nextInt(4) == 0 ? null : MinorUnits.toAmount(random.nextLong(1_000_000)),
+                    MinorUnits.toAmount(random.nextLong(1_000_000)),
+                    now.minusHours(random.nextInt(10) == 0 ? -1 : 1),
+                    now.plusHours(1),
+                    random.nextInt(10)
+            ));
+        }
+        DiscountCatalogue catalogue = DiscountCatalogue.of(coupons);
+        long amount = 500_000;
+
+        // When
+        long[] discounts = catalogue.discounts(amount);
+        long[] eligibleDiscounts = catalogue.eligibleDiscounts(amount, now);
+        int[] top = DiscountCatalogue.top(eligibleDiscounts, 5);
+
+        // Then
+        for (int i = 0; i < coupons.size(); i++) {
+            Coupon coupon = coupons.get(i);
+            long expected = MinorUnits.toMinorUnits(coupon.calculateDiscount(MinorUnits.toAmount(amount)));
+            boolean eligible = coupon.getMinOrderValue().compareTo(MinorUnits.toAmount(amount)) <= 0
+                    && !coupon.getStartTime().isAfter(now)
+                    && coupon.getRemainingUsage() > 0;
+
+            assertEquals(expected, discounts[i]);
+            assertEquals(eligible ? expected : DiscountCatalogue.NOT_ELIGIBLE, eligibleDiscounts[i]);
+        }
+        long best = Arrays.stream(eligibleDiscounts).max().orElseThrow();
+        assertEquals(5, top.length);
+        assertEquals(best, eligibleDiscounts[top[0]]);
+        for (int i = 1; i < top.length; i++) {
+            assertTrue(eligibleDiscounts[top[i - 1]] >= eligibleDiscounts[top[i]]);
+        }
+    }
+
+    @Test
+    void ruleDiscount_ForRandomRulesAndAmounts_ShouldMatchBigDecimal() {
+        // Given
+        Random random = new Random(11L);
+
+        for (int i = 0; i < 20_000; i++) {
+            DiscountType discountType = random.nextBoolean() ? DiscountType.TIERED : DiscountType.STEP;
+            StringBuilder rules = new StringBuilder();
+            long from = random.nextInt(3) == 0 ? 0 : random.nextLong(100_000);
+            for (int tier = 0, tiers = random.nextInt(1, 6); tier < tiers; tier++) {
+                boolean percent = discountType == DiscountType.TIERED || random.nextBoolean();
+                rules.append(tier == 0 ? "" : ";")
+                        .append(MinorUnits.toAmount(from))
+                        .append(':')
+                        .append(MinorUnits.toAmount(percent ? random.nextInt(MAX_PERCENT + 1) : random.nextLong(100_000)))
+                        .append(percent ? "%" : "");
+                from += random.nextLong(1, 1_000_000);
+            }
+            DiscountStrategy strategy = DiscountRules.compile(discountType, rules.toString());
+            long amount = random.nextLong(10_000_000);
+            long cap = random.nextBoolean() ? DiscountStrategy.NO_MAX_DISCOUNT : random.nextLong(1_000_000);
+            BigDecimal maxDiscountAmount = cap == DiscountStrategy.NO_MAX_DISCOUNT ? null : MinorUnits.toAmount(cap);
+
+            // When
+            BigDecimal expected = strategy.calculateDiscount(MinorUnits.toAmount(amount), BigDecimal.ZERO, maxDiscountAmount);
+            long actual = strategy.calculateDiscount(amount, 0, cap);
+
+            // Then
+            assertEquals(MinorUnits.toMinorUnits(expected), actual, () -> rules + " at " + amount);
+        }
+    }
+
+    @Test
+    void ruleDiscount_ShouldApplyTiersProgressivelyOrByStep() {
+        // Given
+        DiscountStrategy tiered = DiscountRules.compile(DiscountType.TIERED, "0:10%;200000:15%");
+        DiscountStrategy step = DiscountRules.compile(DiscountType.STEP, "100000:20000; 500000:10%");
+
+        // Then: 10% of the first 200000, 15% of the rest
+        assertEquals(0, new BigDecimal("35000").compareTo(
+                tiered.calculateDiscount(new BigDecimal("300000"), BigDecimal.ZERO, null)));
+        assertEquals(0, new BigDecimal("30000").compareTo(
+                tiered.calculateDiscount(new BigDecimal("300000"), BigDecimal.ZERO, new BigDecimal("30000"))));
+        assertEquals(0, BigDecimal.ZERO.compareTo(step.calculateDiscount(new BigDecimal("99999"), BigDecimal.ZERO, null)));
+        assertEquals(0, new BigDecimal("20000").compareTo(step.calculateDiscount(new BigDecimal("100000"), BigDecimal.ZERO, null)));
+        assertEquals(0, new BigDecimal("20000").compareTo(step.calculateDiscount(new BigDecimal("100000.00"), BigDecimal.ZERO, null)));
+        assertEquals(0, new BigDecimal("20000").compareTo(step.calculateDiscount(new BigDecimal("499999.99"), BigDecimal.ZERO, null)));
+        assertEquals(0, new BigDecimal("60000").compareTo(step.calculateDiscount(new BigDecimal("600000"), BigDecimal.ZERO, null)));
+    }
+
+    @Test
+    void discountRules_WhenMalformed_ShouldBeRejected() {
+        assertThrows(IllegalArgumentException.class, () -> DiscountRules.validate(DiscountType.TIERED, null));
+        assertThrows(IllegalArgumentException.class, () -> DiscountRules.validate(DiscountType.TIERED, "0:10%;0:15%"));
+        assertThrows(IllegalArgumentException.class, () -> DiscountRules.validate(DiscountType.TIERED, "0:5000"));
+        assertThrows(IllegalArgumentException.class, () -> DiscountRules.validate(DiscountType.STEP, "0:150%"));
+        assertThrows(IllegalArgumentException.class, () -> DiscountRules.validate(DiscountType.STEP, "abc"));
+        assertThrows(IllegalArgumentException.class, () -> DiscountRules.validate(DiscountType.PERCENT, "0:10%"));
+    }
+
+    @Test
+    void strategyFor_WithMalformedStoredRules_ShouldGiveNoDiscount() {
+        // Given: rules written before validation, or edited in the database
+        DiscountStrategy strategy = DiscountType.STEP.strategyFor("100000:20000;abc");
+
+        // Then
+        assertEquals(0, BigDecimal.ZERO.compareTo(strategy.calculateDiscount(new BigDecimal("200000"), BigDecimal.ZERO, null)));
+        assertEquals(0, strategy.calculateDiscount(20_000_000, 0, DiscountStrategy.NO_MAX_DISCOUNT));
+        assertEquals(0, BigDecimal.ZERO.compareTo(DiscountType.TIERED.strategyFor(null)
+                .calculateDiscount(new BigDecimal("200000"), BigDecimal.ZERO, null)));
+    }
+
+    @Test
+    void discountTerms_ShouldReuseTheStrategyCompiledWithTheCoupon() {
+        // Given
+        LocalDateTime now = LocalDateTime.now();
+        Coupon coupon = new Coupon(1L, "STEP", "Title", "Description", DiscountType.STEP, UsageType.AUTO,
+                BigDecimal.ZERO, null, BigDecimal.ZERO, now.minusHours(1), now.plusHours(1), 10, "0:5%;100000:10%");
+
+        // Then
+        assertSame(coupon.discountStrategy(), DiscountTerms.of(coupon).strategy());
+    }
+
+    @Test
+    void isExact_ShouldAcceptOnlyAmountsWithAtMostTwoSignificantDecimals() {
+        assertTrue(MinorUnits.isExact(new BigDecimal("199.99")));
+        assertTrue(MinorUnits.isExact(new BigDecimal("200")));
+        assertTrue(MinorUnits.isExact(new BigDecimal("200.5000")));
+        assertFalse(MinorUnits.isExact(new BigDecimal("200.005")));
+        assertFalse(MinorUnits.isExact(null));
+    }
+
+}
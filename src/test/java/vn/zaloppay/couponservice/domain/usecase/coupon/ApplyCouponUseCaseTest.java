@@ -5,23 +5,31 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import vn.zaloppay.couponservice.domain.model.ApplyMode;
 import vn.zaloppay.couponservice.domain.model.Coupon;
 import vn.zaloppay.couponservice.domain.model.UsageType;
 import vn.zaloppay.couponservice.domain.model.discount.DiscountType;
 import vn.zaloppay.couponservice.domain.exceptions.BadRequestException;
+import vn.zaloppay.couponservice.domain.exceptions.ConflictException;
+import vn.zaloppay.couponservice.domain.exceptions.InternalServerErrorException;
 import vn.zaloppay.couponservice.domain.exceptions.ResourceNotFoundException;
 import vn.zaloppay.couponservice.domain.repository.ICouponRepository;
+import vn.zaloppay.couponservice.domain.service.ICacheService;
 import vn.zaloppay.couponservice.domain.service.IDistributedLockService;
+import vn.zaloppay.couponservice.domain.service.ISoldOutRegistry;
 import vn.zaloppay.couponservice.domain.util.CacheKey;
 
 import java.math.BigDecimal;
 import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.Arrays;
-import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
 import java.util.function.Supplier;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -37,6 +45,15 @@ class ApplyCouponUseCaseTest {
     @Mock
     private IDistributedLockService distributedLockService;
 
+    @Mock
+    private ICacheService cacheService;
+
+    @Mock
+    private ISoldOutRegistry soldOutRegistry;
+
+    @Spy
+    private ApplyCouponProperties applyProperties = new ApplyCouponProperties();
+
     @InjectMocks
     private ApplyCouponUseCase applyCouponUseCase;
 
@@ -83,6 +100,7 @@ class ApplyCouponUseCaseTest {
         )).thenAnswer(invocation -> {
             Supplier<ApplyCouponUseCase.OutputValues> supplier = invocation.getArgument(5);
             when(couponRepository.findByCode("DISCOUNT10")).thenReturn(validCoupon);
+            when(couponRepository.decrementRemainingUsage("DISCOUNT10")).thenReturn(true);
             return supplier.get();
         });
 
@@ -120,11 +138,9 @@ class ApplyCouponUseCaseTest {
                 10
         );
 
-        List<Coupon> eligibleCoupons = Arrays.asList(validCoupon, lesserCoupon);
         String lockKey = CacheKey.couponLockKey("DISCOUNT10");
 
-        when(couponRepository.findEligibleCoupons(new BigDecimal("200"), now))
-                .thenReturn(eligibleCoupons);
+        when(couponRepository.findBestCoupon(new BigDecimal("200"), now)).thenReturn(validCoupon);
 
         when(distributedLockService.executeWithLockAndRetry(
                 eq(lockKey),
@@ -136,6 +152,7 @@ class ApplyCouponUseCaseTest {
         )).thenAnswer(invocation -> {
             Supplier<ApplyCouponUseCase.OutputValues> supplier = invocation.getArgument(5);
             when(couponRepository.findByCode("DISCOUNT10")).thenReturn(validCoupon);
+            when(couponRepository.decrementRemainingUsage("DISCOUNT10")).thenReturn(true);
             return supplier.get();
         });
 
@@ -147,10 +164,11 @@ class ApplyCouponUseCaseTest {
         assertEquals(0, new BigDecimal("20").compareTo(result.getDiscountAmount()));
         assertEquals("DISCOUNT10", result.getCoupon().getCode());
         verify(couponRepository).decrementRemainingUsage("DISCOUNT10");
+        verify(couponRepository, never()).findTopEligibleCoupons(any(), any(), anyInt());
     }
 
     @Test
-    void execute_WithoutCouponCodeAndNoEligibleCoupons_ShouldReturnNull() {
+    void execute_WithoutCouponCodeAndNoEligibleCoupons_ShouldThrowBadRequestException() {
         // Given
         ApplyCouponUseCase.InputValues input = new ApplyCouponUseCase.InputValues(
                 new BigDecimal("50"),
@@ -158,14 +176,15 @@ class ApplyCouponUseCaseTest {
                 null
         );
 
-        when(couponRepository.findEligibleCoupons(new BigDecimal("50"), now))
-                .thenReturn(Collections.emptyList());
-
-        // When
-        ApplyCouponUseCase.OutputValues result = applyCouponUseCase.execute(input);
+        when(couponRepository.findBestCoupon(new BigDecimal("50"), now)).thenReturn(null);
 
-        // Then
-        assertNull(result);
+        // When & Then
+        BadRequestException exception = assertThrows(
+                BadRequestException.class,
+                () -> applyCouponUseCase.execute(input)
+        );
+        assertEquals("No eligible coupon found", exception.getMessage());
+        verify(couponRepository, never()).findTopEligibleCoupons(any(), any(), anyInt());
         verify(distributedLockService, never()).executeWithLockAndRetry(anyString(), any(), any(), anyInt(), any(), any());
     }
 
@@ -327,6 +346,40 @@ class ApplyCouponUseCaseTest {
         assertEquals("Coupon has no remaining usage", exception.getMessage());
     }
 
+    @Test
+    void execute_InLockModeAfterCouponRanOut_ShouldRejectNextApplyWithoutLock() {
+        // Given: the cached coupon still shows usage, the store takes the last one on another instance
+        ApplyCouponUseCase.InputValues input = new ApplyCouponUseCase.InputValues(
+                new BigDecimal("200"),
+                now,
+                "DISCOUNT10"
+        );
+        Set<String> soldOut = new HashSet<>();
+
+        when(soldOutRegistry.isSoldOut("DISCOUNT10")).thenAnswer(invocation -> soldOut.contains("DISCOUNT10"));
+        when(distributedLockService.executeWithLockAndRetry(
+                eq(CacheKey.couponLockKey("DISCOUNT10")),
+                any(Duration.class),
+                any(Duration.class),
+                anyInt(),
+                any(Duration.class),
+                any(Supplier.class)
+        )).thenAnswer(invocation -> invocation.<Supplier<ApplyCouponUseCase.OutputValues>>getArgument(5).get());
+        when(couponRepository.findByCode("DISCOUNT10")).thenReturn(validCoupon);
+        // The repository marks the coupon sold out once the store confirms it ran out
+        when(couponRepository.decrementRemainingUsage("DISCOUNT10")).thenAnswer(invocation -> soldOut.add("DISCOUNT10") && false);
+
+        // When
+        BadRequestException first = assertThrows(BadRequestException.class, () -> applyCouponUseCase.execute(input));
+        BadRequestException second = assertThrows(BadRequestException.class, () -> applyCouponUseCase.execute(input));
+
+        // Then
+        assertEquals("Coupon has no remaining usage", first.getMessage());
+        assertEquals("Coupon has no remaining usage", second.getMessage());
+        verify(distributedLockService, times(1)).executeWithLockAndRetry(anyString(), any(), any(), anyInt(), any(), any());
+        verify(couponRepository, times(1)).decrementRemainingUsage("DISCOUNT10");
+    }
+
     @Test
     void execute_WithDiscountCapping_ShouldCapAtMaximum() {
         // Given - Test both discount calculation and capping
@@ -363,6 +416,7 @@ class ApplyCouponUseCaseTest {
         )).thenAnswer(invocation -> {
             Supplier<ApplyCouponUseCase.OutputValues> supplier = invocation.getArgument(5);
             when(couponRepository.findByCode("CAPPED20")).thenReturn(cappedCoupon);
+            when(couponRepository.decrementRemainingUsage("CAPPED20")).thenReturn(true);
             return supplier.get();
         });
 
@@ -411,6 +465,7 @@ class ApplyCouponUseCaseTest {
         )).thenAnswer(invocation -> {
             Supplier<ApplyCouponUseCase.OutputValues> supplier = invocation.getArgument(5);
             when(couponRepository.findByCode("FIXED50")).thenReturn(fixedCoupon);
+            when(couponRepository.decrementRemainingUsage("FIXED50")).thenReturn(true);
             return supplier.get();
         });
 
@@ -454,4 +509,306 @@ class ApplyCouponUseCaseTest {
         verify(couponRepository, never()).decrementRemainingUsage("DISCOUNT10");
     }
 
-} 
\ No newline at end of file
+    @Test
+    void execute_WhenUsageStoreRejectsDecrement_ShouldThrowBadRequestException() {
+        // Given - the coupon looked applicable but was sold out concurrently
+        ApplyCouponUseCase.InputValues input = new ApplyCouponUseCase.InputValues(
+                new BigDecimal("200"),
+                now,
+                "DISCOUNT10"
+        );
+
+        String lockKey = CacheKey.couponLockKey("DISCOUNT10");
+
+        when(distributedLockService.executeWithLockAndRetry(
+                eq(lockKey),
+                any(Duration.class),
+                any(Duration.class),
+                anyInt(),
+                any(Duration.class),
+                any(Supplier.class)
+        )).thenAnswer(invocation -> {
+            Supplier<ApplyCouponUseCase.OutputValues> supplier = invocation.getArgument(5);
+            when(couponRepository.findByCode("DISCOUNT10")).thenReturn(validCoupon);
+            when(couponRepository.decrementRemainingUsage("DISCOUNT10")).thenReturn(false);
+            return supplier.get();
+        });
+
+        // When & Then
+        BadRequestException exception = assertThrows(
+                BadRequestException.class,
+                () -> applyCouponUseCase.execute(input)
+        );
+        assertEquals("Coupon has no remaining usage", exception.getMessage());
+    }
+
+    @Test
+    void execute_InLockFreeMode_ShouldApplyWithoutDistributedLock() {
+        // Given
+        applyProperties.setMode(ApplyMode.LOCK_FREE);
+
+        ApplyCouponUseCase.InputValues input = new ApplyCouponUseCase.InputValues(
+                new BigDecimal("200"),
+                now,
+                "DISCOUNT10"
+        );
+
+        when(couponRepository.findByCode("DISCOUNT10")).thenReturn(validCoupon);
+        when(couponRepository.decrementRemainingUsage("DISCOUNT10")).thenReturn(true);
+
+        // When
+        ApplyCouponUseCase.OutputValues result = applyCouponUseCase.execute(input);
+
+        // Then
+        assertNotNull(result);
+        assertEquals(0, new BigDecimal("20").compareTo(result.getDiscountAmount()));
+        verify(couponRepository).decrementRemainingUsage("DISCOUNT10");
+        verify(distributedLockService, never()).executeWithLockAndRetry(anyString(), any(), any(), anyInt(), any(), any());
+    }
+
+    @Test
+    void execute_InConditionalMode_ShouldApplyWithSingleConditionalUpdate() {
+        // Given
+        applyProperties.setMode(ApplyMode.CONDITIONAL);
+
+        ApplyCouponUseCase.InputValues input = new ApplyCouponUseCase.InputValues(
+                new BigDecimal("200"),
+                now,
+                "DISCOUNT10"
+        );
+
+        when(couponRepository.findByCode("DISCOUNT10")).thenReturn(validCoupon);
+        when(couponRepository.applyUsage(validCoupon, new BigDecimal("200"), now)).thenReturn(true);
+
+        // When
+        ApplyCouponUseCase.OutputValues result = applyCouponUseCase.execute(input);
+
+        // Then
+        assertNotNull(result);
+        assertEquals(0, new BigDecimal("20").compareTo(result.getDiscountAmount()));
+        verify(couponRepository, never()).decrementRemainingUsage(anyString());
+        verify(distributedLockService, never()).executeWithLockAndRetry(anyString(), any(), any(), anyInt(), any(), any());
+    }
+
+    @Test
+    void execute_InConditionalModeWhenUpdateRejected_ShouldExplainRejection() {
+        // Given
+        applyProperties.setMode(ApplyMode.CONDITIONAL);
+
+        ApplyCouponUseCase.InputValues belowMinimum = new ApplyCouponUseCase.InputValues(
+                new BigDecimal("50"),
+                now,
+                "DISCOUNT10"
+        );
+        ApplyCouponUseCase.InputValues soldOut = new ApplyCouponUseCase.InputValues(
+                new BigDecimal("200"),
+                now,
+                "DISCOUNT10"
+        );
+
+        when(couponRepository.findByCode("DISCOUNT10")).thenReturn(validCoupon);
+        when(couponRepository.applyUsage(eq(validCoupon), any(BigDecimal.class), eq(now))).thenReturn(false);
+
+        // When & Then
+        BadRequestException belowMinimumException = assertThrows(
+                BadRequestException.class,
+                () -> applyCouponUseCase.execute(belowMinimum)
+        );
+        assertEquals("The minimum order value of the coupon is greater than the order amount", belowMinimumException.getMessage());
+
+        BadRequestException soldOutException = assertThrows(
+                BadRequestException.class,
+                () -> applyCouponUseCase.execute(soldOut)
+        );
+        assertEquals("Coupon has no remaining usage", soldOutException.getMessage());
+    }
+
+    @Test
+    void execute_WithOrderIdAlreadyApplied_ShouldReplayPreviousResult() {
+        // Given
+        ApplyCouponUseCase.InputValues input = new ApplyCouponUseCase.InputValues(
+                new BigDecimal("200"),
+                now,
+                "DISCOUNT10",
+                "ORDER-1"
+        );
+        ApplyCouponUseCase.OutputValues previousResult = new ApplyCouponUseCase.OutputValues(new BigDecimal("20"), validCoupon);
+
+        when(cacheService.get(CacheKey.couponApplyResult("ORDER-1"), ApplyCouponUseCase.AppliedOrder.class))
+                .thenReturn(Optional.of(new ApplyCouponUseCase.AppliedOrder("DISCOUNT10|200", previousResult)));
+
+        // When
+        ApplyCouponUseCase.OutputValues result = applyCouponUseCase.execute(input);
+
+        // Then
+        assertSame(previousResult, result);
+        verify(distributedLockService, never()).executeWithLockAndRetry(anyString(), any(), any(), anyInt(), any(), any());
+        verify(couponRepository, never()).decrementRemainingUsage(anyString());
+    }
+
+    @Test
+    void execute_WithOrderIdAppliedToAnotherAmount_ShouldThrowConflictException() {
+        // Given
+        ApplyCouponUseCase.InputValues input = new ApplyCouponUseCase.InputValues(
+                new BigDecimal("500"),
+                now,
+                "DISCOUNT10",
+                "ORDER-1"
+        );
+        ApplyCouponUseCase.OutputValues previousResult = new ApplyCouponUseCase.OutputValues(new BigDecimal("20"), validCoupon);
+
+        when(cacheService.get(CacheKey.couponApplyResult("ORDER-1"), ApplyCouponUseCase.AppliedOrder.class))
+                .thenReturn(Optional.of(new ApplyCouponUseCase.AppliedOrder("DISCOUNT10|200", previousResult)));
+
+        // When & Then
+        ConflictException exception = assertThrows(ConflictException.class, () -> applyCouponUseCase.execute(input));
+        assertEquals("Order was already applied with another coupon code or order amount", exception.getMessage());
+        verify(couponRepository, never()).findByCode(anyString());
+    }
+
+    @Test
+    void execute_WithOrderIdWhenClaimCannotBeWritten_ShouldFailWithoutConflict() {
+        // Given
+        ApplyCouponUseCase.InputValues input = new ApplyCouponUseCase.InputValues(
+                new BigDecimal("200"),
+                now,
+                "DISCOUNT10",
+                "ORDER-1"
+        );
+
+        when(cacheService.get(CacheKey.couponApplyResult("ORDER-1"), ApplyCouponUseCase.AppliedOrder.class))
+                .thenReturn(Optional.empty());
+        when(cacheService.putIfAbsent(eq(CacheKey.couponApplyClaim("ORDER-1")), anyString(), any(Duration.class)))
+                .thenThrow(new InternalServerErrorException("Cache is unavailable, please try again"));
+
+        // When & Then
+        assertThrows(InternalServerErrorException.class, () -> applyCouponUseCase.execute(input));
+        verify(couponRepository, never()).findByCode(anyString());
+    }
+
+    @Test
+    void execute_WithNewOrderId_ShouldApplyAndRememberResult() {
+        // Given
+        applyProperties.setMode(ApplyMode.LOCK_FREE);
+
+        ApplyCouponUseCase.InputValues input = new ApplyCouponUseCase.InputValues(
+                new BigDecimal("200"),
+                now,
+                "DISCOUNT10",
+                "ORDER-1"
+        );
+        String resultKey = CacheKey.couponApplyResult("ORDER-1");
+        String claimKey = CacheKey.couponApplyClaim("ORDER-1");
+
+        when(cacheService.get(resultKey, ApplyCouponUseCase.AppliedOrder.class)).thenReturn(Optional.empty());
+        when(cacheService.putIfAbsent(claimKey, "DISCOUNT10|200", applyProperties.getIdempotencyClaimTtl())).thenReturn(true);
+        when(couponRepository.findByCode("DISCOUNT10")).thenReturn(validCoupon);
+        when(couponRepository.decrementRemainingUsage("DISCOUNT10")).thenReturn(true);
+
+        // When
+        ApplyCouponUseCase.OutputValues result = applyCouponUseCase.execute(input);
+
+        // Then
+        assertEquals(0, new BigDecimal("20").compareTo(result.getDiscountAmount()));
+        verify(cacheService).put(resultKey, new ApplyCouponUseCase.AppliedOrder("DISCOUNT10|200", result),
+                applyProperties.getIdempotencyTtl());
+        verify(cacheService).delete(claimKey);
+    }
+
+    @Test
+    void execute_WithOrderIdBeingApplied_ShouldThrowConflictException() {
+        // Given
+        ApplyCouponUseCase.InputValues input = new ApplyCouponUseCase.InputValues(
+                new BigDecimal("200"),
+                now,
+                "DISCOUNT10",
+                "ORDER-1"
+        );
+
+        when(cacheService.get(CacheKey.couponApplyResult("ORDER-1"), ApplyCouponUseCase.AppliedOrder.class))
+                .thenReturn(Optional.empty());
+        when(cacheService.putIfAbsent(eq(CacheKey.couponApplyClaim("ORDER-1")), eq("DISCOUNT10|200"), any(Duration.class)))
+                .thenReturn(false);
+
+        // When & Then
+        assertThrows(ConflictException.class, () -> applyCouponUseCase.execute(input));
+        verify(couponRepository, never()).findByCode(anyString());
+        verify(cacheService, never()).delete(anyString());
+    }
+
+    @Test
+    void execute_WithSoldOutCoupon_ShouldRejectBeforeLockOrLookup() {
+        // Given
+        ApplyCouponUseCase.InputValues input = new ApplyCouponUseCase.InputValues(
+                new BigDecimal("200"),
+                now,
+                "DISCOUNT10"
+        );
+
+        when(soldOutRegistry.isSoldOut("DISCOUNT10")).thenReturn(true);
+
+        // When & Then
+        BadRequestException exception = assertThrows(
+                BadRequestException.class,
+                () -> applyCouponUseCase.execute(input)
+        );
+        assertEquals("Coupon has no remaining usage", exception.getMessage());
+        verify(distributedLockService, never()).executeWithLockAndRetry(anyString(), any(), any(), anyInt(), any(), any());
+        verify(couponRepository, never()).findByCode(anyString());
+    }
+
+    @Test
+    void execute_WithoutCouponCodeWhenBestCouponSellsOut_ShouldFallBackToNextBest() {
+        // Given
+        ApplyCouponUseCase.InputValues input = new ApplyCouponUseCase.InputValues(
+                new BigDecimal("200"),
+                now,
+                null
+        );
+
+        Coupon lesserCoupon = new Coupon(
+                2L,
+                "DISCOUNT5",
+                "5% Discount",
+                "Get 5% off",
+                DiscountType.PERCENT,
+                UsageType.AUTO,
+                new BigDecimal("5"),
+                new BigDecimal("25"),
+                new BigDecimal("100"),
+                now.minusHours(1),
+                now.plusHours(1),
+                10
+        );
+
+        when(couponRepository.findBestCoupon(new BigDecimal("200"), now)).thenReturn(validCoupon);
+        when(couponRepository.findTopEligibleCoupons(new BigDecimal("200"), now, 10))
+                .thenReturn(Arrays.asList(validCoupon, lesserCoupon));
+        when(distributedLockService.executeWithLockAndRetry(
+                anyString(),
+                any(Duration.class),
+                any(Duration.class),
+                eq(0),
+                any(Duration.class),
+                any(Supplier.class)
+        )).thenAnswer(invocation -> {
+            Supplier<ApplyCouponUseCase.OutputValues> supplier = invocation.getArgument(5);
+            return supplier.get();
+        });
+        when(couponRepository.findByCode("DISCOUNT10")).thenReturn(validCoupon);
+        when(couponRepository.decrementRemainingUsage("DISCOUNT10")).thenReturn(false);
+        when(couponRepository.findByCode("DISCOUNT5")).thenReturn(lesserCoupon);
+        when(couponRepository.decrementRemainingUsage("DISCOUNT5")).thenReturn(true);
+
+        // When
+        ApplyCouponUseCase.OutputValues result = applyCouponUseCase.execute(input);
+
+        // Then
+        assertEquals("DISCOUNT5", result.getCoupon().getCode());
+        assertEquals(0, new BigDecimal("10").compareTo(result.getDiscountAmount()));
+        verify(couponRepository, times(1)).findTopEligibleCoupons(any(), any(), anyInt());
+        // The best coupon is not tried twice
+        verify(couponRepository, times(1)).decrementRemainingUsage("DISCOUNT10");
+    }
+
+}
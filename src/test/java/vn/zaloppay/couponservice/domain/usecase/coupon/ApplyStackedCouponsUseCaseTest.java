@@ -0,0 +1,165 @@
+package vn.zaloppay.couponservice.domain.usecase.coupon;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import vn.zaloppay.couponservice.domain.exceptions.BadRequestException;
+import vn.zaloppay.couponservice.domain.model.Coupon;
+import vn.zaloppay.couponservice.domain.model.UsageType;
+import vn.zaloppay.couponservice.domain.model.discount.DiscountType;
+import vn.zaloppay.couponservice.domain.repository.ICouponRepository;
+import vn.zaloppay.couponservice.domain.service.ISoldOutRegistry;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ApplyStackedCouponsUseCaseTest {
+
+    @Mock
+    private ApplyCouponUseCase applyCouponUseCase;
+
+    @Mock
+    private ICouponRepository couponRepository;
+
+    @Mock
+    private ISoldOutRegistry soldOutRegistry;
+
+    @Spy
+    private ApplyCouponProperties applyProperties = new ApplyCouponProperties();
+
+    @InjectMocks
+    private ApplyStackedCouponsUseCase applyStackedCouponsUseCase;
+
+    private Coupon manualCoupon;
+    private Coupon smallAutoCoupon;
+    private Coupon bigAutoCoupon;
+    private LocalDateTime now;
+
+    @BeforeEach
+    void setUp() {
+        now = LocalDateTime.now();
+        manualCoupon = coupon("MANUAL10", UsageType.MANUAL, DiscountType.PERCENT, "10");
+        smallAutoCoupon = coupon("AUTO5", UsageType.AUTO, DiscountType.FIXED, "5");
+        bigAutoCoupon = coupon("AUTO30", UsageType.AUTO, DiscountType.FIXED, "30");
+    }
+
+    @Test
+    void execute_WithCouponCode_ShouldStackItWithTheBestAutoCoupon() {
+        // Given
+        ApplyStackedCouponsUseCase.InputValues input =
+                new ApplyStackedCouponsUseCase.InputValues(new BigDecimal("200"), now, "MANUAL10");
+        when(couponRepository.findByCode("MANUAL10")).thenReturn(manualCoupon);
+        when(couponRepository.findEligibleCoupons(new BigDecimal("200"), now))
+                .thenReturn(List.of(manualCoupon, smallAutoCoupon, bigAutoCoupon));
+        stubApply(manualCoupon, "20");
+        stubApply(bigAutoCoupon, "30");
+
+        // When
+        ApplyStackedCouponsUseCase.OutputValues result = applyStackedCouponsUseCase.execute(input);
+
+        // Then
+        assertEquals(0, new BigDecimal("50").compareTo(result.getTotalDiscount()));
+        assertEquals(2, result.getCoupons().size());
+        assertEquals("MANUAL10", result.getCoupons().get(0).getCoupon().getCode());
+        assertEquals("AUTO30", result.getCoupons().get(1).getCoupon().getCode());
+        verify(applyCouponUseCase, never()).execute(argThat(applied -> "AUTO5".equals(applied.getCouponCode())));
+    }
+
+    @Test
+    void execute_WhenOneChosenCouponFails_ShouldReleaseTheUsagesAlreadyTaken() {
+        // Given
+        ApplyStackedCouponsUseCase.InputValues input =
+                new ApplyStackedCouponsUseCase.InputValues(new BigDecimal("200"), now, "MANUAL10");
+        when(couponRepository.findByCode("MANUAL10")).thenReturn(manualCoupon);
+        when(couponRepository.findEligibleCoupons(new BigDecimal("200"), now)).thenReturn(List.of(bigAutoCoupon));
+        stubApply(manualCoupon, "20");
+        when(applyCouponUseCase.execute(argThat(applied -> applied != null && "AUTO30".equals(applied.getCouponCode()))))
+                .thenThrow(new BadRequestException("Coupon has no remaining usage"));
+
+        // When & Then
+        BadRequestException exception = assertThrows(BadRequestException.class,
+                () -> applyStackedCouponsUseCase.execute(input));
+        assertEquals("Coupon has no remaining usage", exception.getMessage());
+        verify(couponRepository).releaseUsage("MANUAL10", 1);
+        verify(couponRepository, never()).releaseUsage(eq("AUTO30"), anyInt());
+    }
+
+    @Test
+    void execute_WhenReleasingOneUsageFails_ShouldStillReleaseTheOthers() {
+        // Given: a stack of three coupons, the last one fails
+        applyProperties.setMaxStackedCoupons(3);
+        applyProperties.setStackingExclusiveUsageTypes(EnumSet.of(UsageType.MANUAL));
+        ApplyStackedCouponsUseCase.InputValues input =
+                new ApplyStackedCouponsUseCase.InputValues(new BigDecimal("200"), now, "MANUAL10");
+        when(couponRepository.findByCode("MANUAL10")).thenReturn(manualCoupon);
+        when(couponRepository.findEligibleCoupons(new BigDecimal("200"), now)).thenReturn(List.of(bigAutoCoupon, smallAutoCoupon));
+        List<String> appliedCodes = new ArrayList<>();
+        when(applyCouponUseCase.execute(any())).thenAnswer(invocation -> {
+            ApplyCouponUseCase.InputValues applied = invocation.getArgument(0);
+            if (appliedCodes.size() == 2) {
+                throw new BadRequestException("Coupon has no remaining usage");
+            }
+            appliedCodes.add(applied.getCouponCode());
+            return new ApplyCouponUseCase.OutputValues(BigDecimal.ONE, manualCoupon);
+        });
+        doThrow(new IllegalStateException("Store unavailable")).when(couponRepository).releaseUsage("MANUAL10", 1);
+
+        // When & Then
+        BadRequestException exception = assertThrows(BadRequestException.class,
+                () -> applyStackedCouponsUseCase.execute(input));
+        assertEquals(1, exception.getSuppressed().length);
+        assertTrue(appliedCodes.contains("MANUAL10"));
+        verify(couponRepository).releaseUsage(appliedCodes.get(0), 1);
+        verify(couponRepository).releaseUsage(appliedCodes.get(1), 1);
+    }
+
+    @Test
+    void execute_WithoutEligibleCoupons_ShouldThrowBadRequestException() {
+        // Given
+        ApplyStackedCouponsUseCase.InputValues input =
+                new ApplyStackedCouponsUseCase.InputValues(new BigDecimal("200"), now, null);
+        when(couponRepository.findEligibleCoupons(new BigDecimal("200"), now)).thenReturn(List.of());
+
+        // When & Then
+        BadRequestException exception = assertThrows(BadRequestException.class,
+                () -> applyStackedCouponsUseCase.execute(input));
+        assertEquals("No eligible coupon found", exception.getMessage());
+        verify(applyCouponUseCase, never()).execute(any());
+    }
+
+    private void stubApply(Coupon coupon, String discountAmount) {
+        when(applyCouponUseCase.execute(argThat(applied -> applied != null && coupon.getCode().equals(applied.getCouponCode()))))
+                .thenReturn(new ApplyCouponUseCase.OutputValues(new BigDecimal(discountAmount), coupon));
+    }
+
+    private Coupon coupon(String code, UsageType usageType, DiscountType discountType, String discountValue) {
+        return new Coupon(
+                1L,
+                code,
+                "Title",
+                "Description",
+                discountType,
+                usageType,
+                new BigDecimal(discountValue),
+                null,
+                new BigDecimal("100"),
+                now.minusHours(1),
+                now.plusHours(1),
+                5
+        );
+    }
+
+}
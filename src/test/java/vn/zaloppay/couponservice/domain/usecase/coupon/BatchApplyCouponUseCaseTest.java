@@ -0,0 +1,228 @@
+package vn.zaloppay.couponservice.domain.usecase.coupon;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import vn.zaloppay.couponservice.domain.exceptions.BadRequestException;
+import vn.zaloppay.couponservice.domain.exceptions.ConflictException;
+import vn.zaloppay.couponservice.domain.model.ApplyMode;
+import vn.zaloppay.couponservice.domain.model.Coupon;
+import vn.zaloppay.couponservice.domain.model.UsageType;
+import vn.zaloppay.couponservice.domain.model.discount.DiscountType;
+import vn.zaloppay.couponservice.domain.repository.ICouponRepository;
+import vn.zaloppay.couponservice.domain.service.IDistributedLockService;
+import vn.zaloppay.couponservice.domain.service.ISoldOutRegistry;
+import vn.zaloppay.couponservice.domain.util.CacheKey;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BatchApplyCouponUseCaseTest {
+
+    @Mock
+    private ApplyCouponUseCase applyCouponUseCase;
+
+    @Mock
+    private ICouponRepository couponRepository;
+
+    @Mock
+    private IDistributedLockService distributedLockService;
+
+    @Mock
+    private ISoldOutRegistry soldOutRegistry;
+
+    @Spy
+    private ApplyCouponProperties applyProperties = new ApplyCouponProperties();
+
+    @InjectMocks
+    private BatchApplyCouponUseCase batchApplyCouponUseCase;
+
+    private Coupon validCoupon;
+    private LocalDateTime now;
+
+    @BeforeEach
+    void setUp() {
+        now = LocalDateTime.now();
+        validCoupon = new Coupon(
+                1L,
+                "DISCOUNT10",
+                "10% Discount",
+                "Get 10% off your order",
+                DiscountType.PERCENT,
+                UsageType.MANUAL,
+                new BigDecimal("10"),
+                new BigDecimal("50"),
+                new BigDecimal("100"),
+                now.minusHours(1),
+                now.plusHours(1),
+                5
+        );
+    }
+
+    @Test
+    void execute_WithOrdersOfSameCoupon_ShouldTakeOneLockAndOneDecrement() {
+        // Given
+        BatchApplyCouponUseCase.InputValues input = new BatchApplyCouponUseCase.InputValues(
+                List.of(
+                        new BatchApplyCouponUseCase.Order("O1", new BigDecimal("200"), "DISCOUNT10"),
+                        new BatchApplyCouponUseCase.Order("O2", new BigDecimal("300"), "DISCOUNT10"),
+                        new BatchApplyCouponUseCase.Order("O3", new BigDecimal("50"), "DISCOUNT10")
+                ),
+                now
+        );
+
+        when(distributedLockService.executeWithLockAndRetry(
+                eq(CacheKey.couponLockKey("DISCOUNT10")),
+                any(Duration.class),
+                any(Duration.class),
+                anyInt(),
+                any(Duration.class),
+                any(Supplier.class)
+        )).thenAnswer(invocation -> {
+            Supplier<?> supplier = invocation.getArgument(5);
+            return supplier.get();
+        });
+        when(couponRepository.findByCode("DISCOUNT10")).thenReturn(validCoupon);
+        when(couponRepository.decrementRemainingUsage("DISCOUNT10", 2)).thenReturn(2);
+
+        // When
+        List<BatchApplyCouponUseCase.OrderResult> results = batchApplyCouponUseCase.execute(input).getResults();
+
+        // Then
+        assertEquals(3, results.size());
+        assertTrue(results.get(0).isApplied());
+        assertEquals(0, new BigDecimal("20").compareTo(results.get(0).getDiscountAmount()));
+        assertTrue(results.get(1).isApplied());
+        assertEquals(0, new BigDecimal("30").compareTo(results.get(1).getDiscountAmount()));
+        assertFalse(results.get(2).isApplied());
+        assertEquals("The minimum order value of the coupon is greater than the order amount", results.get(2).getError());
+        verify(distributedLockService, times(1)).executeWithLockAndRetry(anyString(), any(), any(), anyInt(), any(), any());
+        verify(couponRepository, times(1)).decrementRemainingUsage("DISCOUNT10", 2);
+    }
+
+    @Test
+    void execute_WhenCouponRunsOutPartway_ShouldApplyOnlyRemainingUsage() {
+        // Given
+        applyProperties.setMode(ApplyMode.LOCK_FREE);
+
+        BatchApplyCouponUseCase.InputValues input = new BatchApplyCouponUseCase.InputValues(
+                List.of(
+                        new BatchApplyCouponUseCase.Order("O1", new BigDecimal("200"), "DISCOUNT10"),
+                        new BatchApplyCouponUseCase.Order("O2", new BigDecimal("200"), "DISCOUNT10"),
+                        new BatchApplyCouponUseCase.Order("O3", new BigDecimal("200"), "DISCOUNT10")
+                ),
+                now
+        );
+
+        when(couponRepository.findByCode("DISCOUNT10")).thenReturn(validCoupon);
+        when(couponRepository.decrementRemainingUsage("DISCOUNT10", 3)).thenReturn(1);
+
+        // When
+        List<BatchApplyCouponUseCase.OrderResult> results = batchApplyCouponUseCase.execute(input).getResults();
+
+        // Then
+        assertTrue(results.get(0).isApplied());
+        assertFalse(results.get(1).isApplied());
+        assertEquals("Coupon has no remaining usage", results.get(1).getError());
+        assertFalse(results.get(2).isApplied());
+        verify(distributedLockService, never()).executeWithLockAndRetry(anyString(), any(), any(), anyInt(), any(), any());
+    }
+
+    @Test
+    void execute_WithMixedOrders_ShouldAutoApplyOrdersWithoutCouponAndRejectSoldOut() {
+        // Given
+        BatchApplyCouponUseCase.InputValues input = new BatchApplyCouponUseCase.InputValues(
+                List.of(
+                        new BatchApplyCouponUseCase.Order("O1", new BigDecimal("200"), null),
+                        new BatchApplyCouponUseCase.Order("O2", new BigDecimal("200"), "SOLDOUT"),
+                        new BatchApplyCouponUseCase.Order("O3", new BigDecimal("20"), null)
+                ),
+                now
+        );
+
+        when(applyCouponUseCase.execute(new ApplyCouponUseCase.InputValues(new BigDecimal("200"), now, null, "O1")))
+                .thenReturn(new ApplyCouponUseCase.OutputValues(new BigDecimal("20"), validCoupon));
+        when(applyCouponUseCase.execute(new ApplyCouponUseCase.InputValues(new BigDecimal("20"), now, null, "O3")))
+                .thenThrow(new BadRequestException("No eligible coupon found"));
+        when(soldOutRegistry.isSoldOut("SOLDOUT")).thenReturn(true);
+
+        // When
+        List<BatchApplyCouponUseCase.OrderResult> results = batchApplyCouponUseCase.execute(input).getResults();
+
+        // Then
+        assertTrue(results.get(0).isApplied());
+        assertEquals("O1", results.get(0).getOrderId());
+        assertEquals("Coupon has no remaining usage", results.get(1).getError());
+        assertEquals("No eligible coupon found", results.get(2).getError());
+        verify(couponRepository, never()).findByCode(anyString());
+    }
+
+    @Test
+    void execute_WithOrderIdRepeatedOrAppliedBefore_ShouldApplyEachOrderOnce() {
+        // Given: O1 was applied by a previous request, O2 is sent twice
+        applyProperties.setMode(ApplyMode.LOCK_FREE);
+
+        BatchApplyCouponUseCase.InputValues input = new BatchApplyCouponUseCase.InputValues(
+                List.of(
+                        new BatchApplyCouponUseCase.Order("O1", new BigDecimal("200"), "DISCOUNT10"),
+                        new BatchApplyCouponUseCase.Order("O2", new BigDecimal("300"), "DISCOUNT10"),
+                        new BatchApplyCouponUseCase.Order("O2", new BigDecimal("300"), "DISCOUNT10")
+                ),
+                now
+        );
+
+        when(applyCouponUseCase.claim("O1", "DISCOUNT10|200"))
+                .thenReturn(Optional.of(new ApplyCouponUseCase.OutputValues(new BigDecimal("20"), validCoupon)));
+        when(applyCouponUseCase.claim("O2", "DISCOUNT10|300")).thenReturn(Optional.empty());
+        when(couponRepository.findByCode("DISCOUNT10")).thenReturn(validCoupon);
+        when(couponRepository.decrementRemainingUsage("DISCOUNT10", 1)).thenReturn(1);
+
+        // When
+        List<BatchApplyCouponUseCase.OrderResult> results = batchApplyCouponUseCase.execute(input).getResults();
+
+        // Then: only O2 takes a usage, and its result is kept for its retries
+        assertTrue(results.get(0).isApplied());
+        assertEquals(0, new BigDecimal("20").compareTo(results.get(0).getDiscountAmount()));
+        assertTrue(results.get(1).isApplied());
+        assertEquals("Order id appears more than once in the batch", results.get(2).getError());
+        verify(couponRepository, times(1)).decrementRemainingUsage("DISCOUNT10", 1);
+        verify(applyCouponUseCase).remember(eq("O2"), eq("DISCOUNT10|300"), any(ApplyCouponUseCase.OutputValues.class));
+        verify(applyCouponUseCase).release("O2");
+        verify(applyCouponUseCase, never()).release("O1");
+    }
+
+    @Test
+    void execute_WithOrderBeingAppliedElsewhere_ShouldRejectItWithoutTakingUsage() {
+        // Given
+        BatchApplyCouponUseCase.InputValues input = new BatchApplyCouponUseCase.InputValues(
+                List.of(new BatchApplyCouponUseCase.Order("O1", new BigDecimal("200"), "DISCOUNT10")),
+                now
+        );
+
+        when(applyCouponUseCase.claim("O1", "DISCOUNT10|200"))
+                .thenThrow(new ConflictException("Order is already being applied, please try again"));
+
+        // When
+        List<BatchApplyCouponUseCase.OrderResult> results = batchApplyCouponUseCase.execute(input).getResults();
+
+        // Then
+        assertEquals("Order is already being applied, please try again", results.get(0).getError());
+        verify(couponRepository, never()).decrementRemainingUsage(anyString(), anyInt());
+        verify(applyCouponUseCase, never()).release(anyString());
+    }
+
+}
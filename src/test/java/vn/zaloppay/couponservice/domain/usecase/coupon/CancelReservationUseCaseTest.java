@@ -0,0 +1,62 @@
+package vn.zaloppay.couponservice.domain.usecase.coupon;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import vn.zaloppay.couponservice.domain.exceptions.ResourceNotFoundException;
+import vn.zaloppay.couponservice.domain.model.Reservation;
+import vn.zaloppay.couponservice.domain.repository.ICouponRepository;
+import vn.zaloppay.couponservice.domain.repository.IReservationRepository;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CancelReservationUseCaseTest {
+
+    @Mock
+    private ICouponRepository couponRepository;
+
+    @Mock
+    private IReservationRepository reservationRepository;
+
+    @InjectMocks
+    private CancelReservationUseCase cancelReservationUseCase;
+
+    @Test
+    void execute_WithPendingReservation_ShouldReleaseUsage() {
+        // Given
+        LocalDateTime now = LocalDateTime.now();
+        Reservation reservation = new Reservation("R1", "DISCOUNT10", new BigDecimal("200"), new BigDecimal("20"), now, now.plusMinutes(5));
+
+        when(reservationRepository.take("R1")).thenReturn(reservation);
+
+        // When
+        CancelReservationUseCase.OutputValues result = cancelReservationUseCase.execute(
+                new CancelReservationUseCase.InputValues("R1")
+        );
+
+        // Then
+        assertSame(reservation, result.getReservation());
+        verify(couponRepository).releaseUsage("DISCOUNT10", 1);
+    }
+
+    @Test
+    void execute_WithSettledReservation_ShouldThrowResourceNotFoundException() {
+        // Given
+        when(reservationRepository.take("R1")).thenReturn(null);
+
+        // When & Then
+        assertThrows(ResourceNotFoundException.class,
+                () -> cancelReservationUseCase.execute(new CancelReservationUseCase.InputValues("R1")));
+        verify(couponRepository, never()).releaseUsage(anyString(), anyInt());
+    }
+
+}
@@ -0,0 +1,57 @@
+package vn.zaloppay.couponservice.domain.usecase.coupon;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import vn.zaloppay.couponservice.domain.exceptions.ResourceNotFoundException;
+import vn.zaloppay.couponservice.domain.model.Reservation;
+import vn.zaloppay.couponservice.domain.repository.IReservationRepository;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ConfirmReservationUseCaseTest {
+
+    @Mock
+    private IReservationRepository reservationRepository;
+
+    @InjectMocks
+    private ConfirmReservationUseCase confirmReservationUseCase;
+
+    @Test
+    void execute_WithActiveReservation_ShouldConfirmIt() {
+        // Given
+        LocalDateTime now = LocalDateTime.now();
+        Reservation reservation = new Reservation("R1", "DISCOUNT10", new BigDecimal("200"), new BigDecimal("20"), now, now.plusMinutes(5));
+
+        when(reservationRepository.takeActive("R1", now)).thenReturn(reservation);
+
+        // When
+        ConfirmReservationUseCase.OutputValues result = confirmReservationUseCase.execute(
+                new ConfirmReservationUseCase.InputValues("R1", now)
+        );
+
+        // Then
+        assertSame(reservation, result.getReservation());
+    }
+
+    @Test
+    void execute_WithExpiredOrUnknownReservation_ShouldThrowResourceNotFoundException() {
+        // Given
+        LocalDateTime now = LocalDateTime.now();
+
+        when(reservationRepository.takeActive("R1", now)).thenReturn(null);
+
+        // When & Then
+        assertThrows(ResourceNotFoundException.class,
+                () -> confirmReservationUseCase.execute(new ConfirmReservationUseCase.InputValues("R1", now)));
+    }
+
+}
@@ -260,4 +260,62 @@ class CreateCouponUseCaseTest {
         assertNotNull(result);
     }
 
-} 
\ No newline at end of file
+    @Test
+    void execute_WithTieredDiscountRules_ShouldCreateCoupon() {
+        // Given
+        CreateCouponUseCase.InputValues tieredInput = new CreateCouponUseCase.InputValues(
+                "TIERED",
+                "Tiered Coupon",
+                "10% up to 200000, 15% above",
+                DiscountType.TIERED,
+                UsageType.AUTO,
+                new BigDecimal("10"),
+                new BigDecimal("100000"),
+                BigDecimal.ZERO,
+                now.plusHours(1),
+                now.plusDays(7),
+                5,
+                "0:10%;200000:15%"
+        );
+
+        when(couponRepository.findByCode("TIERED")).thenReturn(null);
+        when(couponRepository.save(any(Coupon.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        // When
+        CreateCouponUseCase.OutputValues result = createCouponUseCase.execute(tieredInput);
+
+        // Then
+        assertEquals("0:10%;200000:15%", result.getCoupon().getDiscountRules());
+        assertEquals(0, new BigDecimal("35000").compareTo(result.getCoupon().calculateDiscount(new BigDecimal("300000"))));
+    }
+
+    @Test
+    void execute_WithMalformedDiscountRules_ShouldThrowBadRequestException() {
+        // Given
+        CreateCouponUseCase.InputValues invalidInput = new CreateCouponUseCase.InputValues(
+                "BADRULES",
+                "Bad Rules Coupon",
+                "Fixed tiers are not allowed in tiered rules",
+                DiscountType.TIERED,
+                UsageType.AUTO,
+                new BigDecimal("10"),
+                new BigDecimal("100000"),
+                BigDecimal.ZERO,
+                now.plusHours(1),
+                now.plusDays(7),
+                5,
+                "0:10%;200000:5000"
+        );
+
+        when(couponRepository.findByCode("BADRULES")).thenReturn(null);
+
+        // When & Then
+        BadRequestException exception = assertThrows(
+                BadRequestException.class,
+                () -> createCouponUseCase.execute(invalidInput)
+        );
+        assertEquals("TIERED discount rules must only have percent tiers", exception.getMessage());
+        verify(couponRepository, never()).save(any(Coupon.class));
+    }
+
+}
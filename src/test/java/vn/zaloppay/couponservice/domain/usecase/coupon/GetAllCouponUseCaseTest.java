@@ -3,6 +3,7 @@ package vn.zaloppay.couponservice.domain.usecase.coupon;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
@@ -10,8 +11,14 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.ScrollPosition;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import vn.zaloppay.couponservice.domain.exceptions.BadRequestException;
 import vn.zaloppay.couponservice.domain.model.Coupon;
+import vn.zaloppay.couponservice.domain.model.CouponCursor;
+import vn.zaloppay.couponservice.domain.model.PagingMode;
 import vn.zaloppay.couponservice.domain.model.UsageType;
 import vn.zaloppay.couponservice.domain.model.discount.DiscountType;
 import vn.zaloppay.couponservice.domain.repository.ICouponRepository;
@@ -20,10 +27,18 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -296,4 +311,70 @@ class GetAllCouponUseCaseTest {
         verify(couponRepository).findAll(null, null, expectedPageable);
     }
 
-} 
\ No newline at end of file
+    @Test
+    void execute_InCursorMode_ShouldSeekPastTheLastCouponOfThePreviousPage() {
+        // Given: coupons sorted by a nullable column, the first page ending on a coupon without max discount
+        Coupon uncapped = new Coupon(3L, "FIXED20", "Fixed 20 Off", "Get 20 off", DiscountType.FIXED, UsageType.AUTO,
+                new BigDecimal("20"), null, new BigDecimal("100"), now.minusHours(1), now.plusHours(1), 5);
+        Sort keysetSort = Sort.by(Sort.Order.asc("maxDiscountAmount"), Sort.Order.asc("id"));
+        Window<Coupon> firstWindow = Window.from(List.of(uncapped), index -> CouponCursor.positionOf(uncapped, keysetSort), true);
+        Window<Coupon> secondWindow = Window.from(testCoupons, index -> CouponCursor.positionOf(testCoupons.get(index), keysetSort), false);
+
+        when(couponRepository.scrollAll(null, null, keysetSort, ScrollPosition.keyset(), 1)).thenReturn(firstWindow);
+        when(couponRepository.scrollAll(eq(null), eq(null), eq(keysetSort), any(KeysetScrollPosition.class), eq(2)))
+                .thenReturn(secondWindow);
+
+        // When
+        GetAllCouponUseCase.OutputValues firstPage = getAllCouponUseCase.execute(new GetAllCouponUseCase.InputValues(
+                null, null, 0, 1, "maxDiscountAmount", "ASC", PagingMode.CURSOR, null, false));
+        GetAllCouponUseCase.OutputValues secondPage = getAllCouponUseCase.execute(new GetAllCouponUseCase.InputValues(
+                null, null, 0, 2, "maxDiscountAmount", "ASC", PagingMode.CURSOR, firstPage.getNextCursor(), false));
+
+        // Then
+        assertNull(firstPage.getCoupons());
+        assertNotNull(firstPage.getNextCursor());
+        assertEquals(testCoupons, secondPage.getCouponWindow().getContent());
+        assertNull(secondPage.getNextCursor());
+
+        ArgumentCaptor<KeysetScrollPosition> position = ArgumentCaptor.forClass(KeysetScrollPosition.class);
+        verify(couponRepository).scrollAll(eq(null), eq(null), eq(keysetSort), position.capture(), eq(2));
+        Map<String, Object> expectedKeys = new HashMap<>();
+        expectedKeys.put("maxDiscountAmount", null);
+        expectedKeys.put("id", 3L);
+        assertEquals(expectedKeys, position.getValue().getKeys());
+    }
+
+    @Test
+    void execute_InCursorModeWithACursorOfAnotherSort_ShouldThrowBadRequestException() {
+        // Given
+        Coupon last = testCoupons.get(0);
+        Sort titleSort = Sort.by(Sort.Order.desc("title"), Sort.Order.desc("id"));
+        String cursor = CouponCursor.encode(CouponCursor.positionOf(last, titleSort), Sort.Order.desc("title"));
+
+        // When & Then
+        assertThrows(BadRequestException.class, () -> getAllCouponUseCase.execute(new GetAllCouponUseCase.InputValues(
+                null, null, 0, 10, "endTime", "DESC", PagingMode.CURSOR, cursor, false)));
+        assertThrows(BadRequestException.class, () -> getAllCouponUseCase.execute(new GetAllCouponUseCase.InputValues(
+                null, null, 0, 10, "title", "DESC", PagingMode.CURSOR, "not a cursor", false)));
+    }
+
+    @Test
+    void execute_InSliceModeOnTheFirstPage_ShouldNotCount() {
+        // Given
+        Sort sort = Sort.by(Sort.Direction.ASC, "title");
+        Window<Coupon> window = Window.from(testCoupons, ScrollPosition::offset, true);
+        when(couponRepository.scrollAll(DiscountType.PERCENT, null, sort, ScrollPosition.offset(), 2)).thenReturn(window);
+
+        // When
+        GetAllCouponUseCase.OutputValues result = getAllCouponUseCase.execute(new GetAllCouponUseCase.InputValues(
+                DiscountType.PERCENT, null, 0, 2, "title", "ASC", PagingMode.SLICE, null, false));
+
+        // Then
+        assertEquals(testCoupons, result.getCouponWindow().getContent());
+        assertTrue(result.getCouponWindow().hasNext());
+        assertNull(result.getTotalElements());
+        verify(couponRepository, never()).countAll(any(), any());
+        verify(couponRepository, never()).findAll(any(), any(), any(Pageable.class));
+    }
+
+}
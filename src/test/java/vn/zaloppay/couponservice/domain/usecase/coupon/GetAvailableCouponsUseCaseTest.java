@@ -10,8 +10,13 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import vn.zaloppay.couponservice.domain.exceptions.BadRequestException;
 import vn.zaloppay.couponservice.domain.model.Coupon;
+import vn.zaloppay.couponservice.domain.model.CouponCursor;
+import vn.zaloppay.couponservice.domain.model.PagingMode;
 import vn.zaloppay.couponservice.domain.model.UsageType;
 import vn.zaloppay.couponservice.domain.model.discount.DiscountType;
 import vn.zaloppay.couponservice.domain.repository.ICouponRepository;
@@ -23,8 +28,12 @@ import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -262,4 +271,136 @@ class GetAvailableCouponsUseCaseTest {
                 eq(expectedPageable)
         );
     }
-} 
\ No newline at end of file
+
+    @Test
+    void execute_InCursorMode_ShouldScrollWithoutCountingAndReturnTheNextCursor() {
+        // Given
+        GetAvailableCouponsUseCase.InputValues input = new GetAvailableCouponsUseCase.InputValues(
+                new BigDecimal("250"),
+                null,
+                0,
+                2,
+                "endTime",
+                "DESC",
+                PagingMode.CURSOR,
+                null,
+                false
+        );
+
+        Sort keysetSort = Sort.by(Sort.Order.desc("endTime"), Sort.Order.desc("id"));
+        Window<Coupon> window = Window.from(
+                availableCoupons, index -> CouponCursor.positionOf(availableCoupons.get(index), keysetSort), true);
+        when(couponRepository.scrollAvailableCoupons(
+                eq(new BigDecimal("250")),
+                eq(null),
+                any(LocalDateTime.class),
+                eq(keysetSort),
+                eq(ScrollPosition.keyset()),
+                eq(2)
+        )).thenReturn(window);
+
+        // When
+        GetAvailableCouponsUseCase.OutputValues result = getAvailableCouponsUseCase.execute(input);
+
+        // Then
+        assertNull(result.getCouponsPage());
+        assertEquals(availableCoupons, result.getCouponsWindow().getContent());
+        assertEquals(2, result.getEstimatedDiscounts().size());
+        assertEquals(
+                CouponCursor.positionOf(availableCoupons.get(1), keysetSort),
+                CouponCursor.decode(result.getNextCursor(), Sort.Order.desc("endTime"))
+        );
+        verify(couponRepository, never()).findAvailableCoupons(any(), any(), any(), any());
+    }
+
+    @Test
+    void execute_InSliceModeWithTotals_ShouldSkipToThePageWithoutCountingItsRows() {
+        // Given
+        GetAvailableCouponsUseCase.InputValues input = new GetAvailableCouponsUseCase.InputValues(
+                new BigDecimal("250"),
+                DiscountType.FIXED,
+                2,
+                5,
+                "discountValue",
+                "DESC",
+                PagingMode.SLICE,
+                null,
+                true
+        );
+
+        Sort sort = Sort.by(Sort.Direction.DESC, "discountValue");
+        Window<Coupon> window = Window.from(availableCoupons, ScrollPosition::offset, false);
+        when(couponRepository.scrollAvailableCoupons(
+                eq(new BigDecimal("250")),
+                eq(DiscountType.FIXED),
+                any(LocalDateTime.class),
+                eq(sort),
+                eq(ScrollPosition.offset(9)),
+                eq(5)
+        )).thenReturn(window);
+        when(couponRepository.countAvailableCoupons(new BigDecimal("250"), DiscountType.FIXED)).thenReturn(12L);
+
+        // When
+        GetAvailableCouponsUseCase.OutputValues result = getAvailableCouponsUseCase.execute(input);
+
+        // Then
+        assertNull(result.getCouponsPage());
+        assertEquals(availableCoupons, result.getCouponsWindow().getContent());
+        assertEquals(12L, result.getTotalElements());
+        assertNull(result.getNextCursor());
+        verify(couponRepository, never()).findAvailableCoupons(any(), any(), any(), any());
+    }
+
+    @Test
+    void execute_SortedByEstimatedDiscount_ShouldRankCouponsInTheRepository() {
+        // Given
+        GetAvailableCouponsUseCase.InputValues input = new GetAvailableCouponsUseCase.InputValues(
+                new BigDecimal("250"),
+                null,
+                1,
+                2,
+                GetAvailableCouponsUseCase.SORT_BY_ESTIMATED_DISCOUNT,
+                "DESC"
+        );
+
+        Page<Coupon> page = new PageImpl<>(availableCoupons, PageRequest.of(1, 2), 6);
+        when(couponRepository.findAvailableCouponsByDiscount(
+                eq(new BigDecimal("250")),
+                eq(null),
+                any(LocalDateTime.class),
+                eq(Sort.Direction.DESC),
+                eq(PageRequest.of(1, 2))
+        )).thenReturn(page);
+
+        // When
+        GetAvailableCouponsUseCase.OutputValues result = getAvailableCouponsUseCase.execute(input);
+
+        // Then
+        assertEquals(page, result.getCouponsPage());
+        assertEquals(2, result.getEstimatedDiscounts().size());
+        assertEquals(0, new BigDecimal("25").compareTo(result.getEstimatedDiscounts().get(0)));
+        assertEquals(0, new BigDecimal("50").compareTo(result.getEstimatedDiscounts().get(1)));
+        verify(couponRepository, never()).findAvailableCoupons(any(), any(), any(), any());
+    }
+
+    @Test
+    void execute_SortedByEstimatedDiscountInCursorMode_ShouldThrowBadRequestException() {
+        // Given
+        GetAvailableCouponsUseCase.InputValues input = new GetAvailableCouponsUseCase.InputValues(
+                new BigDecimal("250"),
+                null,
+                0,
+                2,
+                GetAvailableCouponsUseCase.SORT_BY_ESTIMATED_DISCOUNT,
+                "DESC",
+                PagingMode.CURSOR,
+                null,
+                false
+        );
+
+        // When & Then
+        assertThrows(BadRequestException.class, () -> getAvailableCouponsUseCase.execute(input));
+        verifyNoInteractions(couponRepository);
+    }
+
+}
@@ -0,0 +1,73 @@
+package vn.zaloppay.couponservice.domain.usecase.coupon;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import vn.zaloppay.couponservice.domain.model.Coupon;
+import vn.zaloppay.couponservice.domain.model.UsageType;
+import vn.zaloppay.couponservice.domain.model.discount.DiscountType;
+import vn.zaloppay.couponservice.domain.repository.ICouponRepository;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class GetTopCouponsUseCaseTest {
+
+    @Mock
+    private ICouponRepository couponRepository;
+
+    @InjectMocks
+    private GetTopCouponsUseCase getTopCouponsUseCase;
+
+    @Test
+    void execute_WithEligibleCoupons_ShouldReturnTopCouponsWithTheirDiscounts() {
+        // Given
+        LocalDateTime now = LocalDateTime.now();
+        Coupon fixed = new Coupon(1L, "FIXED50", "Fixed 50", "Get 50 off", DiscountType.FIXED, UsageType.AUTO,
+                new BigDecimal("50"), null, new BigDecimal("100"), now.minusHours(1), now.plusHours(1), 5);
+        Coupon percent = new Coupon(2L, "PERCENT10", "Percent 10", "Get 10% off", DiscountType.PERCENT, UsageType.AUTO,
+                new BigDecimal("10"), new BigDecimal("40"), new BigDecimal("100"), now.minusHours(1), now.plusHours(1), 5);
+        BigDecimal orderAmount = new BigDecimal("500");
+
+        when(couponRepository.findTopEligibleCoupons(eq(orderAmount), any(LocalDateTime.class), eq(2)))
+                .thenReturn(List.of(fixed, percent));
+
+        // When
+        GetTopCouponsUseCase.OutputValues result = getTopCouponsUseCase.execute(
+                new GetTopCouponsUseCase.InputValues(orderAmount, 2));
+
+        // Then
+        assertEquals(List.of(fixed, percent), result.getCoupons());
+        assertEquals(0, new BigDecimal("50").compareTo(result.getDiscounts().get(0)));
+        assertEquals(0, new BigDecimal("40").compareTo(result.getDiscounts().get(1)));
+        verify(couponRepository).findTopEligibleCoupons(eq(orderAmount), any(LocalDateTime.class), eq(2));
+    }
+
+    @Test
+    void execute_WithNoEligibleCoupons_ShouldReturnEmptyResult() {
+        // Given
+        BigDecimal orderAmount = new BigDecimal("10");
+        when(couponRepository.findTopEligibleCoupons(eq(orderAmount), any(LocalDateTime.class), eq(3)))
+                .thenReturn(List.of());
+
+        // When
+        GetTopCouponsUseCase.OutputValues result = getTopCouponsUseCase.execute(
+                new GetTopCouponsUseCase.InputValues(orderAmount, 3));
+
+        // Then
+        assertTrue(result.getCoupons().isEmpty());
+        assertTrue(result.getDiscounts().isEmpty());
+    }
+
+}
@@ -0,0 +1,191 @@
+package vn.zaloppay.couponservice.domain.usecase.coupon;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import vn.zaloppay.couponservice.domain.model.Coupon;
+import vn.zaloppay.couponservice.domain.model.UsageType;
+import vn.zaloppay.couponservice.domain.model.discount.DiscountType;
+import vn.zaloppay.couponservice.domain.repository.ICouponRepository;
+import vn.zaloppay.couponservice.domain.service.ISoldOutRegistry;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class QuoteCouponsUseCaseTest {
+
+    @Mock
+    private ICouponRepository couponRepository;
+
+    @Mock
+    private ISoldOutRegistry soldOutRegistry;
+
+    @InjectMocks
+    private QuoteCouponsUseCase quoteCouponsUseCase;
+
+    private Coupon manualCoupon;
+    private Coupon autoCoupon;
+    private LocalDateTime now;
+
+    @BeforeEach
+    void setUp() {
+        now = LocalDateTime.now();
+        manualCoupon = new Coupon(
+                1L,
+                "DISCOUNT10",
+                "10% Discount",
+                "Get 10% off your order",
+                DiscountType.PERCENT,
+                UsageType.MANUAL,
+                new BigDecimal("10"),
+                new BigDecimal("50"),
+                new BigDecimal("100"),
+                now.minusHours(1),
+                now.plusHours(1),
+                5
+        );
+        autoCoupon = new Coupon(
+                2L,
+                "AUTO20",
+                "20 Off",
+                "Get 20 off your order",
+                DiscountType.FIXED,
+                UsageType.AUTO,
+                new BigDecimal("20"),
+                null,
+                new BigDecimal("50"),
+                now.minusHours(1),
+                now.plusHours(1),
+                5
+        );
+    }
+
+    @Test
+    void execute_WithCouponCodes_ShouldQuoteEachAmountAndLookUpTheCouponOnce() {
+        // Given
+        QuoteCouponsUseCase.InputValues input = new QuoteCouponsUseCase.InputValues(
+                List.of(
+                        new QuoteCouponsUseCase.Quote(new BigDecimal("200"), "DISCOUNT10"),
+                        new QuoteCouponsUseCase.Quote(new BigDecimal("1000"), "DISCOUNT10"),
+                        new QuoteCouponsUseCase.Quote(new BigDecimal("50"), "DISCOUNT10")
+                ),
+                now
+        );
+        when(couponRepository.findByCode("DISCOUNT10")).thenReturn(manualCoupon);
+
+        // When
+        QuoteCouponsUseCase.OutputValues result = quoteCouponsUseCase.execute(input);
+
+        // Then
+        assertEquals(3, result.getResults().size());
+        assertEquals(0, new BigDecimal("20").compareTo(result.getResults().get(0).getDiscountAmount()));
+        assertEquals(0, new BigDecimal("50").compareTo(result.getResults().get(1).getDiscountAmount()));
+        assertFalse(result.getResults().get(2).isQuoted());
+        assertEquals("The minimum order value of the coupon is greater than the order amount",
+                result.getResults().get(2).getError());
+        verify(couponRepository, times(1)).findByCode("DISCOUNT10");
+        verify(couponRepository, never()).decrementRemainingUsage(anyString());
+        verify(couponRepository, never()).applyUsage(any(), any(), any());
+    }
+
+    @Test
+    void execute_WithoutCouponCode_ShouldQuoteTheBestCouponOncePerAmount() {
+        // Given
+        QuoteCouponsUseCase.InputValues input = new QuoteCouponsUseCase.InputValues(
+                List.of(
+                        new QuoteCouponsUseCase.Quote(new BigDecimal("200"), null),
+                        new QuoteCouponsUseCase.Quote(new BigDecimal("200.00"), null),
+                        new QuoteCouponsUseCase.Quote(new BigDecimal("10"), null)
+                ),
+                now
+        );
+        when(couponRepository.findEligibleCoupons(new BigDecimal("2E+2"), now)).thenReturn(List.of(autoCoupon));
+
+        // When
+        QuoteCouponsUseCase.OutputValues result = quoteCouponsUseCase.execute(input);
+
+        // Then
+        assertEquals("AUTO20", result.getResults().get(0).getCoupon().getCode());
+        assertEquals(0, new BigDecimal("20").compareTo(result.getResults().get(1).getDiscountAmount()));
+        assertEquals("No eligible coupon found", result.getResults().get(2).getError());
+        verify(couponRepository, times(1)).findEligibleCoupons(any(), any());
+        verify(couponRepository, never()).findBestCoupon(any(), any());
+    }
+
+    @Test
+    void execute_WithManyAmounts_ShouldPriceEveryAmountAgainstOneRead() {
+        // Given: the 10% coupon wins above 200, only the fixed one is eligible below 100
+        QuoteCouponsUseCase.InputValues input = new QuoteCouponsUseCase.InputValues(
+                List.of(
+                        new QuoteCouponsUseCase.Quote(new BigDecimal("1000"), null),
+                        new QuoteCouponsUseCase.Quote(new BigDecimal("60"), null),
+                        new QuoteCouponsUseCase.Quote(new BigDecimal("40"), null)
+                ),
+                now
+        );
+        when(couponRepository.findEligibleCoupons(new BigDecimal("1E+3"), now)).thenReturn(List.of(manualCoupon, autoCoupon));
+
+        // When
+        QuoteCouponsUseCase.OutputValues result = quoteCouponsUseCase.execute(input);
+
+        // Then
+        assertEquals("DISCOUNT10", result.getResults().get(0).getCoupon().getCode());
+        assertEquals(0, new BigDecimal("50").compareTo(result.getResults().get(0).getDiscountAmount()));
+        assertEquals("AUTO20", result.getResults().get(1).getCoupon().getCode());
+        assertEquals("No eligible coupon found", result.getResults().get(2).getError());
+        verify(couponRepository, times(1)).findEligibleCoupons(any(), any());
+    }
+
+    @Test
+    void execute_WithAmountBeyondMinorUnits_ShouldPriceEveryAmountInBigDecimal() {
+        // Given
+        QuoteCouponsUseCase.InputValues input = new QuoteCouponsUseCase.InputValues(
+                List.of(
+                        new QuoteCouponsUseCase.Quote(new BigDecimal("200.001"), null),
+                        new QuoteCouponsUseCase.Quote(new BigDecimal("60"), null)
+                ),
+                now
+        );
+        when(couponRepository.findEligibleCoupons(new BigDecimal("200.001"), now)).thenReturn(List.of(manualCoupon, autoCoupon));
+
+        // When
+        QuoteCouponsUseCase.OutputValues result = quoteCouponsUseCase.execute(input);
+
+        // Then
+        assertEquals("DISCOUNT10", result.getResults().get(0).getCoupon().getCode());
+        assertEquals("AUTO20", result.getResults().get(1).getCoupon().getCode());
+    }
+
+    @Test
+    void execute_WithSoldOutCoupons_ShouldSkipThemWithoutFailingTheRequest() {
+        // Given
+        QuoteCouponsUseCase.InputValues input = new QuoteCouponsUseCase.InputValues(
+                List.of(
+                        new QuoteCouponsUseCase.Quote(new BigDecimal("200"), "DISCOUNT10"),
+                        new QuoteCouponsUseCase.Quote(new BigDecimal("200"), null)
+                ),
+                now
+        );
+        when(soldOutRegistry.isSoldOut("DISCOUNT10")).thenReturn(true);
+        when(couponRepository.findEligibleCoupons(any(), eq(now))).thenReturn(List.of(manualCoupon, autoCoupon));
+
+        // When
+        QuoteCouponsUseCase.OutputValues result = quoteCouponsUseCase.execute(input);
+
+        // Then
+        assertEquals("Coupon has no remaining usage", result.getResults().get(0).getError());
+        assertEquals("AUTO20", result.getResults().get(1).getCoupon().getCode());
+        verify(couponRepository, never()).findByCode(anyString());
+    }
+
+}
@@ -0,0 +1,100 @@
+package vn.zaloppay.couponservice.domain.usecase.coupon;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import vn.zaloppay.couponservice.domain.model.Reservation;
+import vn.zaloppay.couponservice.domain.repository.ICouponRepository;
+import vn.zaloppay.couponservice.domain.repository.IReservationRepository;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ReleaseExpiredReservationsUseCaseTest {
+
+    @Mock
+    private ICouponRepository couponRepository;
+
+    @Mock
+    private IReservationRepository reservationRepository;
+
+    @InjectMocks
+    private ReleaseExpiredReservationsUseCase releaseExpiredReservationsUseCase;
+
+    @Test
+    void execute_WithExpiredReservations_ShouldReleaseOncePerCoupon() {
+        // Given
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime expiredAt = now.minusSeconds(1);
+        List<Reservation> expired = List.of(
+                new Reservation("R1", "DISCOUNT10", new BigDecimal("200"), new BigDecimal("20"), now.minusMinutes(5), expiredAt),
+                new Reservation("R2", "DISCOUNT10", new BigDecimal("300"), new BigDecimal("30"), now.minusMinutes(5), expiredAt),
+                new Reservation("R3", "FIXED50", new BigDecimal("500"), new BigDecimal("50"), now.minusMinutes(5), expiredAt)
+        );
+
+        when(reservationRepository.takeExpired(now, 100)).thenReturn(expired);
+
+        // When
+        ReleaseExpiredReservationsUseCase.OutputValues result = releaseExpiredReservationsUseCase.execute(
+                new ReleaseExpiredReservationsUseCase.InputValues(now, 100)
+        );
+
+        // Then
+        assertEquals(3, result.getReleasedCount());
+        verify(couponRepository).releaseUsage("DISCOUNT10", 2);
+        verify(couponRepository).releaseUsage("FIXED50", 1);
+    }
+
+    @Test
+    void execute_WhenAReleaseFails_ShouldReleaseTheOtherCouponsAndKeepItsReservations() {
+        // Given
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime expiredAt = now.minusSeconds(1);
+        Reservation failing = new Reservation("R1", "DISCOUNT10", new BigDecimal("200"), new BigDecimal("20"),
+                now.minusMinutes(5), expiredAt);
+        Reservation released = new Reservation("R2", "FIXED50", new BigDecimal("500"), new BigDecimal("50"),
+                now.minusMinutes(5), expiredAt);
+
+        when(reservationRepository.takeExpired(now, 100)).thenReturn(List.of(failing, released));
+        lenient().doThrow(new RuntimeException("TiDB unavailable")).when(couponRepository).releaseUsage("DISCOUNT10", 1);
+
+        // When
+        ReleaseExpiredReservationsUseCase.OutputValues result = releaseExpiredReservationsUseCase.execute(
+                new ReleaseExpiredReservationsUseCase.InputValues(now, 100)
+        );
+
+        // Then
+        assertEquals(1, result.getReleasedCount());
+        verify(couponRepository).releaseUsage("FIXED50", 1);
+        verify(reservationRepository).save(failing);
+        verify(reservationRepository, never()).save(released);
+    }
+
+    @Test
+    void execute_WithoutExpiredReservations_ShouldReleaseNothing() {
+        // Given
+        LocalDateTime now = LocalDateTime.now();
+
+        when(reservationRepository.takeExpired(now, 100)).thenReturn(Collections.emptyList());
+
+        // When
+        ReleaseExpiredReservationsUseCase.OutputValues result = releaseExpiredReservationsUseCase.execute(
+                new ReleaseExpiredReservationsUseCase.InputValues(now, 100)
+        );
+
+        // Then
+        assertEquals(0, result.getReleasedCount());
+        verify(couponRepository, never()).releaseUsage(anyString(), anyInt());
+    }
+
+}
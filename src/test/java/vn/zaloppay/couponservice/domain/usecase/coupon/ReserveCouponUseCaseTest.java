@@ -0,0 +1,117 @@
+package vn.zaloppay.couponservice.domain.usecase.coupon;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import vn.zaloppay.couponservice.domain.exceptions.BadRequestException;
+import vn.zaloppay.couponservice.domain.model.Coupon;
+import vn.zaloppay.couponservice.domain.model.Reservation;
+import vn.zaloppay.couponservice.domain.model.UsageType;
+import vn.zaloppay.couponservice.domain.model.discount.DiscountType;
+import vn.zaloppay.couponservice.domain.repository.ICouponRepository;
+import vn.zaloppay.couponservice.domain.repository.IReservationRepository;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ReserveCouponUseCaseTest {
+
+    @Mock
+    private ApplyCouponUseCase applyCouponUseCase;
+
+    @Mock
+    private ICouponRepository couponRepository;
+
+    @Mock
+    private IReservationRepository reservationRepository;
+
+    @Spy
+    private ApplyCouponProperties applyProperties = new ApplyCouponProperties();
+
+    @InjectMocks
+    private ReserveCouponUseCase reserveCouponUseCase;
+
+    private Coupon validCoupon;
+    private LocalDateTime now;
+
+    @BeforeEach
+    void setUp() {
+        now = LocalDateTime.now();
+        validCoupon = new Coupon(
+                1L,
+                "DISCOUNT10",
+                "10% Discount",
+                "Get 10% off your order",
+                DiscountType.PERCENT,
+                UsageType.MANUAL,
+                new BigDecimal("10"),
+                new BigDecimal("50"),
+                new BigDecimal("100"),
+                now.minusHours(1),
+                now.plusHours(1),
+                5
+        );
+    }
+
+    @Test
+    void execute_WithApplicableCoupon_ShouldHoldUsageUntilExpiry() {
+        // Given
+        ReserveCouponUseCase.InputValues input = new ReserveCouponUseCase.InputValues(new BigDecimal("200"), now, "DISCOUNT10");
+
+        when(applyCouponUseCase.execute(any(ApplyCouponUseCase.InputValues.class)))
+                .thenReturn(new ApplyCouponUseCase.OutputValues(new BigDecimal("20"), validCoupon));
+
+        // When
+        ReserveCouponUseCase.OutputValues result = reserveCouponUseCase.execute(input);
+
+        // Then
+        ArgumentCaptor<Reservation> captor = ArgumentCaptor.forClass(Reservation.class);
+        verify(reservationRepository).save(captor.capture());
+        Reservation reservation = captor.getValue();
+
+        assertSame(reservation, result.getReservation());
+        assertEquals("DISCOUNT10", reservation.getCouponCode());
+        assertEquals(0, new BigDecimal("20").compareTo(reservation.getDiscountAmount()));
+        assertEquals(now.plus(applyProperties.getReservationTtl()), reservation.getExpiresAt());
+        verify(couponRepository, never()).releaseUsage(anyString(), anyInt());
+    }
+
+    @Test
+    void execute_WhenCouponCannotBeApplied_ShouldNotReserve() {
+        // Given
+        ReserveCouponUseCase.InputValues input = new ReserveCouponUseCase.InputValues(new BigDecimal("50"), now, "DISCOUNT10");
+
+        when(applyCouponUseCase.execute(any(ApplyCouponUseCase.InputValues.class)))
+                .thenThrow(new BadRequestException("The minimum order value of the coupon is greater than the order amount"));
+
+        // When & Then
+        assertThrows(BadRequestException.class, () -> reserveCouponUseCase.execute(input));
+        verify(reservationRepository, never()).save(any());
+    }
+
+    @Test
+    void execute_WhenReservationCannotBeStored_ShouldReleaseUsage() {
+        // Given
+        ReserveCouponUseCase.InputValues input = new ReserveCouponUseCase.InputValues(new BigDecimal("200"), now, "DISCOUNT10");
+
+        when(applyCouponUseCase.execute(any(ApplyCouponUseCase.InputValues.class)))
+                .thenReturn(new ApplyCouponUseCase.OutputValues(new BigDecimal("20"), validCoupon));
+        doThrow(new RuntimeException("Redis unavailable")).when(reservationRepository).save(any());
+
+        // When & Then
+        assertThrows(RuntimeException.class, () -> reserveCouponUseCase.execute(input));
+        verify(couponRepository).releaseUsage("DISCOUNT10", 1);
+    }
+
+}
@@ -83,7 +83,7 @@ class UpdateCouponUseCaseTest {
         );
 
         when(couponRepository.findByCode("UPDATEME")).thenReturn(existingCoupon);
-        when(couponRepository.update(any(Coupon.class))).thenReturn(expectedUpdatedCoupon);
+        when(couponRepository.update(any(Coupon.class), anyBoolean())).thenReturn(expectedUpdatedCoupon);
 
         // When
         UpdateCouponUseCase.OutputValues result = updateCouponUseCase.execute(validUpdateInput);
@@ -105,7 +105,7 @@ class UpdateCouponUseCaseTest {
         assertEquals(new BigDecimal("10"), result.getCoupon().getDiscountValue());
 
         verify(couponRepository).findByCode("UPDATEME");
-        verify(couponRepository).update(any(Coupon.class));
+        verify(couponRepository).update(any(Coupon.class), eq(true));
     }
 
     @Test
@@ -133,7 +133,7 @@ class UpdateCouponUseCaseTest {
         );
         assertEquals("Cannot find coupon with code: NONEXISTENT", exception.getMessage());
         verify(couponRepository).findByCode("NONEXISTENT");
-        verify(couponRepository, never()).update(any(Coupon.class));
+        verify(couponRepository, never()).update(any(Coupon.class), anyBoolean());
     }
 
     @Test
@@ -168,7 +168,7 @@ class UpdateCouponUseCaseTest {
         );
 
         when(couponRepository.findByCode("UPDATEME")).thenReturn(existingCoupon);
-        when(couponRepository.update(any(Coupon.class))).thenReturn(expectedPartiallyUpdatedCoupon);
+        when(couponRepository.update(any(Coupon.class), anyBoolean())).thenReturn(expectedPartiallyUpdatedCoupon);
 
         // When
         UpdateCouponUseCase.OutputValues result = updateCouponUseCase.execute(partialUpdateInput);
@@ -179,7 +179,8 @@ class UpdateCouponUseCaseTest {
         assertEquals(existingCoupon.getDescription(), result.getCoupon().getDescription());
         assertEquals(existingCoupon.getDiscountType(), result.getCoupon().getDiscountType());
         verify(couponRepository).findByCode("UPDATEME");
-        verify(couponRepository).update(any(Coupon.class));
+        // The remaining usage sent back unchanged keeps the usage taken since it was read
+        verify(couponRepository).update(any(Coupon.class), eq(false));
     }
 
     @Test
@@ -214,7 +215,7 @@ class UpdateCouponUseCaseTest {
         );
 
         when(couponRepository.findByCode("UPDATEME")).thenReturn(existingCoupon);
-        when(couponRepository.update(any(Coupon.class))).thenReturn(expectedChangedTypeCoupon);
+        when(couponRepository.update(any(Coupon.class), anyBoolean())).thenReturn(expectedChangedTypeCoupon);
 
         // When
         UpdateCouponUseCase.OutputValues result = updateCouponUseCase.execute(changeTypeInput);
@@ -225,14 +226,14 @@ class UpdateCouponUseCaseTest {
         assertEquals(UsageType.AUTO, result.getCoupon().getUsageType());
         assertEquals("Changed to Fixed", result.getCoupon().getTitle());
         verify(couponRepository).findByCode("UPDATEME");
-        verify(couponRepository).update(any(Coupon.class));
+        verify(couponRepository).update(any(Coupon.class), anyBoolean());
     }
 
     @Test
     void execute_ShouldPreserveOriginalDiscountValue() {
         // Given - Ensure discount value is always preserved from original coupon
         when(couponRepository.findByCode("UPDATEME")).thenReturn(existingCoupon);
-        when(couponRepository.update(any(Coupon.class))).thenAnswer(invocation -> {
+        when(couponRepository.update(any(Coupon.class), anyBoolean())).thenAnswer(invocation -> {
             Coupon updatedCoupon = invocation.getArgument(0);
             // Verify that the discount value matches the original
             assertEquals(existingCoupon.getDiscountValue(), updatedCoupon.getDiscountValue());
@@ -245,6 +246,6 @@ class UpdateCouponUseCaseTest {
         // Then
         assertNotNull(result);
         verify(couponRepository).findByCode("UPDATEME");
-        verify(couponRepository).update(any(Coupon.class));
+        verify(couponRepository).update(any(Coupon.class), anyBoolean());
     }
 } 
\ No newline at end of file
@@ -0,0 +1,51 @@
+package vn.zaloppay.couponservice.domain.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TopKTest {
+
+    @Test
+    void toList_ShouldMatchTheFirstItemsOfAStableSortByDecreasingScore() {
+        // Given
+        Random random = new Random(19);
+        List<BigDecimal> scores = IntStream.range(0, 2_000)
+                .mapToObj(i -> BigDecimal.valueOf(random.nextInt(300), 1))
+                .toList();
+
+        for (int k : new int[]{1, 5, 50, 2_000, 5_000}) {
+            TopK<Integer> top = new TopK<>(k);
+
+            // When
+            IntStream.range(0, scores.size()).forEach(i -> top.offer(i, scores.get(i)));
+
+            // Then
+            List<Integer> expected = IntStream.range(0, scores.size()).boxed()
+                    .sorted(Comparator.comparing(scores::get, Comparator.reverseOrder()))
+                    .limit(k)
+                    .toList();
+            assertEquals(expected, top.toList(), "k=" + k);
+        }
+    }
+
+    @Test
+    void toList_WithZeroK_ShouldBeEmpty() {
+        // Given
+        TopK<String> top = new TopK<>(0);
+
+        // When
+        top.offer("coupon", BigDecimal.TEN);
+
+        // Then
+        assertTrue(top.toList().isEmpty());
+    }
+
+}
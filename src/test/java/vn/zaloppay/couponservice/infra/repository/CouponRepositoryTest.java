@@ -0,0 +1,359 @@
+package vn.zaloppay.couponservice.infra.repository;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.OffsetScrollPosition;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.data.jpa.domain.Specification;
+
+import vn.zaloppay.couponservice.domain.model.Coupon;
+import vn.zaloppay.couponservice.domain.model.UsageType;
+import vn.zaloppay.couponservice.domain.model.discount.DiscountType;
+import vn.zaloppay.couponservice.domain.service.ICacheService;
+import vn.zaloppay.couponservice.domain.service.ISoldOutRegistry;
+import vn.zaloppay.couponservice.infra.model.CouponEntity;
+import vn.zaloppay.couponservice.infra.repository.count.CouponCountCache;
+import vn.zaloppay.couponservice.infra.repository.index.CouponIndex;
+import vn.zaloppay.couponservice.infra.repository.listing.AvailableCouponCache;
+import vn.zaloppay.couponservice.infra.repository.usage.UsageStore;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CouponRepositoryTest {
+
+    private static final BigDecimal ORDER_AMOUNT = new BigDecimal("1000");
+
+    @Mock
+    private JpaCouponRepository jpaCouponRepository;
+
+    @Mock
+    private ICacheService cacheService;
+
+    @Mock
+    private UsageStore usageStore;
+
+    @Mock
+    private ISoldOutRegistry soldOutRegistry;
+
+    @Mock
+    private CouponEntityMapper couponEntityMapper;
+
+    @Mock
+    private CouponIndex couponIndex;
+
+    @Mock
+    private CouponCountCache couponCountCache;
+
+    @Mock
+    private AvailableCouponCache availableCouponCache;
+
+    @InjectMocks
+    private CouponRepository couponRepository;
+
+    @Test
+    void update_WithRemainingUsageUnchanged_ShouldKeepUsageTakenSinceRead() {
+        // Given: the admin sends back the 100 usages read before, 40 were taken since
+        Coupon coupon = coupon(100);
+        CouponEntity sent = CouponEntity.builder().id(1L).code("FLASH").remainingUsage(100).build();
+        CouponEntity current = CouponEntity.builder().id(1L).code("FLASH").remainingUsage(60).usageShards(0).build();
+        when(couponEntityMapper.toEntity(coupon)).thenReturn(sent);
+        when(jpaCouponRepository.findByIdForUpdate(1L)).thenReturn(Optional.of(current));
+        when(jpaCouponRepository.save(sent)).thenReturn(sent);
+        when(couponEntityMapper.toDomainObject(sent)).thenReturn(coupon(60));
+
+        // When
+        couponRepository.update(coupon, false);
+
+        // Then
+        assertEquals(60, sent.getRemainingUsage());
+        verify(usageStore, never()).reset(any());
+    }
+
+    @Test
+    void update_WithRemainingUsageChanged_ShouldResetStore() {
+        // Given
+        Coupon coupon = coupon(500);
+        CouponEntity sent = CouponEntity.builder().id(1L).code("FLASH").remainingUsage(500).build();
+        when(couponEntityMapper.toEntity(coupon)).thenReturn(sent);
+        when(jpaCouponRepository.save(sent)).thenReturn(sent);
+        when(couponEntityMapper.toDomainObject(sent)).thenReturn(coupon);
+
+        // When
+        couponRepository.update(coupon, true);
+
+        // Then
+        verify(jpaCouponRepository, never()).findByIdForUpdate(anyLong());
+        verify(usageStore).reset(coupon);
+    }
+
+    @Test
+    void decrementRemainingUsage_WhenStoreRunsOut_ShouldMarkSoldOut() {
+        // Given
+        when(usageStore.decrement("FLASH")).thenReturn(false);
+        when(usageStore.isExhausted("FLASH")).thenReturn(true);
+
+        // When
+        boolean result = couponRepository.decrementRemainingUsage("FLASH");
+
+        // Then
+        assertFalse(result);
+        verify(soldOutRegistry).markSoldOut("FLASH");
+        verify(couponIndex).markSoldOut("FLASH");
+        verify(availableCouponCache).invalidate(null);
+    }
+
+    @Test
+    void applyUsage_WhenTaken_ShouldKeepCachedListings() {
+        // Given
+        Coupon coupon = coupon(10);
+        LocalDateTime now = LocalDateTime.now();
+        when(usageStore.apply(coupon, BigDecimal.TEN, now)).thenReturn(true);
+
+        // When
+        boolean result = couponRepository.applyUsage(coupon, BigDecimal.TEN, now);
+
+        // Then
+        assertTrue(result);
+        verify(availableCouponCache, never()).invalidate(any());
+    }
+
+    @Test
+    void applyUsage_WhenTakingTheLastUsageOfACachedCoupon_ShouldDropCachedListings() {
+        // Given
+        Coupon coupon = coupon(1);
+        LocalDateTime now = LocalDateTime.now();
+        when(availableCouponCache.isActive()).thenReturn(true);
+        when(usageStore.apply(coupon, BigDecimal.TEN, now)).thenReturn(true);
+        when(usageStore.isExhausted("FLASH")).thenReturn(false, true);
+
+        // When
+        couponRepository.applyUsage(coupon, BigDecimal.TEN, now);
+
+        // Then: usage remains
+        verify(availableCouponCache, never()).invalidate(any());
+
+        // When: the last usage is taken
+        couponRepository.applyUsage(coupon, BigDecimal.TEN, now);
+
+        // Then
+        verify(soldOutRegistry).markSoldOut("FLASH");
+        verify(availableCouponCache).invalidate(DiscountType.FIXED);
+    }
+
+    @Test
+    void applyUsage_WhenCouponRunsOut_ShouldDropCachedListingsOfItsDiscountTypeOnce() {
+        // Given: the second failed take finds the coupon already marked
+        Coupon coupon = coupon(0);
+        LocalDateTime now = LocalDateTime.now();
+        when(usageStore.apply(coupon, new BigDecimal("20000"), now)).thenReturn(false);
+        when(usageStore.isExhausted("FLASH")).thenReturn(true);
+        when(soldOutRegistry.isSoldOut("FLASH")).thenReturn(false, true);
+
+        // When
+        couponRepository.applyUsage(coupon, new BigDecimal("20000"), now);
+        couponRepository.applyUsage(coupon, new BigDecimal("20000"), now);
+
+        // Then
+        verify(availableCouponCache, times(1)).invalidate(DiscountType.FIXED);
+    }
+
+    @Test
+    void releaseUsage_ShouldOnlyDropCachedListingsOfCouponsSoldOut() {
+        // Given
+        when(soldOutRegistry.isSoldOut("FLASH")).thenReturn(false, true);
+
+        // When
+        couponRepository.releaseUsage("FLASH", 1);
+        verify(availableCouponCache, never()).invalidate(any());
+        couponRepository.releaseUsage("FLASH", 1);
+
+        // Then
+        verify(availableCouponCache).invalidate(null);
+    }
+
+    @Test
+    void decrementRemainingUsage_WhenUsageRemains_ShouldNotMarkSoldOut() {
+        // Given: the take failed in the store, or lost to a concurrent one
+        when(usageStore.decrement("FLASH")).thenReturn(false);
+        when(usageStore.isExhausted("FLASH")).thenReturn(false);
+
+        // When
+        boolean result = couponRepository.decrementRemainingUsage("FLASH");
+
+        // Then
+        assertFalse(result);
+        verify(soldOutRegistry, never()).markSoldOut(anyString());
+        verify(couponIndex, never()).markSoldOut(anyString());
+    }
+
+    @Test
+    void decrementRemainingUsage_WithCountPartlyTaken_ShouldOnlyMarkSoldOutWhenStoreRunsOut() {
+        // Given
+        when(usageStore.take("FLASH", 5, 0)).thenReturn(3);
+        when(usageStore.isExhausted("FLASH")).thenReturn(false, true);
+
+        // When
+        int first = couponRepository.decrementRemainingUsage("FLASH", 5);
+        int second = couponRepository.decrementRemainingUsage("FLASH", 5);
+
+        // Then
+        assertEquals(3, first);
+        assertEquals(3, second);
+        verify(soldOutRegistry, times(1)).markSoldOut("FLASH");
+    }
+
+    @Test
+    void findAvailableCouponsByDiscount_ShouldPageLikeAFullSortWithRuleBasedCouponsMerged() {
+        // Given
+        List<Coupon> coupons = rankableCoupons();
+
+        for (Sort.Direction direction : Sort.Direction.values()) {
+            List<Coupon> expected = coupons.stream().sorted(ranking(direction)).toList();
+            for (int size : new int[]{1, 2, 3, 5, 8}) {
+                for (int page = 0; page * size <= expected.size(); page++) {
+                    // When
+                    List<Coupon> content = couponRepository.findAvailableCouponsByDiscount(
+                            ORDER_AMOUNT, null, LocalDateTime.now(), direction, PageRequest.of(page, size)).getContent();
+
+                    // Then
+                    int from = page * size;
+                    assertEquals(codes(expected.subList(from, Math.min(from + size, expected.size()))), codes(content),
+                            direction + " page " + page + " of " + size);
+                }
+            }
+        }
+    }
+
+    @Test
+    void findAvailableCouponsByDiscount_ShouldTakeTheTotalFromTheCountCache() {
+        // Given
+        rankableCoupons();
+        when(couponCountCache.bucketOf(ORDER_AMOUNT)).thenReturn("500.00");
+        when(couponCountCache.count(eq("available|500.00|null"), any())).thenReturn(42L);
+
+        // When
+        Page<Coupon> page = couponRepository.findAvailableCouponsByDiscount(
+                ORDER_AMOUNT, null, LocalDateTime.now(), Sort.Direction.DESC, PageRequest.of(0, 1));
+
+        // Then
+        assertEquals(42, page.getTotalElements());
+        verify(jpaCouponRepository, never()).count(any(Specification.class));
+    }
+
+    @Test
+    void scrollAvailableCouponsByDiscount_ShouldScrollLikeAFullSortWithRuleBasedCouponsMerged() {
+        // Given
+        List<Coupon> coupons = rankableCoupons();
+
+        for (Sort.Direction direction : Sort.Direction.values()) {
+            List<Coupon> expected = coupons.stream().sorted(ranking(direction)).toList();
+            for (int size : new int[]{1, 3, 4}) {
+                List<Coupon> scrolled = new ArrayList<>();
+                OffsetScrollPosition position = ScrollPosition.offset();
+
+                // When
+                Window<Coupon> window;
+                do {
+                    window = couponRepository.scrollAvailableCouponsByDiscount(
+                            ORDER_AMOUNT, null, LocalDateTime.now(), direction, position, size);
+                    scrolled.addAll(window.getContent());
+                    if (window.hasNext()) {
+                        position = (OffsetScrollPosition) window.positionAt(window.size() - 1);
+                    }
+                } while (window.hasNext());
+
+                // Then
+                assertEquals(codes(expected), codes(scrolled), direction + " by " + size);
+            }
+        }
+    }
+
+    /**
+     * Percent and fixed coupons ranked by the mocked query, rule based ones read whole, with discounts tied
+     * across both so that they interleave on every page boundary
+     */
+    private List<Coupon> rankableCoupons() {
+        Random random = new Random(23);
+        LocalDateTime now = LocalDateTime.now();
+        List<Coupon> ranked = new ArrayList<>();
+        List<Coupon> ruleBased = new ArrayList<>();
+        for (long id = 1; id <= 30; id++) {
+            String code = "C" + id;
+            int value = 10 * random.nextInt(1, 8);
+            Coupon coupon = switch (random.nextInt(3)) {
+                case 0 -> new Coupon(id, code, code, code, DiscountType.FIXED, UsageType.AUTO, new BigDecimal(value),
+                        null, BigDecimal.ZERO, now.minusHours(1), now.plusHours(1), 10);
+                // A tenth of a percent of 1000 gives the same discounts
+                case 1 -> new Coupon(id, code, code, code, DiscountType.PERCENT, UsageType.AUTO,
+                        BigDecimal.valueOf(value, 1), new BigDecimal("40"), BigDecimal.ZERO,
+                        now.minusHours(1), now.plusHours(1), 10);
+                default -> new Coupon(id, code, code, code, DiscountType.STEP, UsageType.AUTO, BigDecimal.ZERO,
+                        null, BigDecimal.ZERO, now.minusHours(1), now.plusHours(1), 10, "0:" + value);
+            };
+            (coupon.getDiscountType().isRuleBased() ? ruleBased : ranked).add(coupon);
+        }
+
+        Map<String, Coupon> byCode = new HashMap<>();
+        ranked.forEach(coupon -> byCode.put(coupon.getCode(), coupon));
+        ruleBased.forEach(coupon -> byCode.put(coupon.getCode(), coupon));
+        Function<Coupon, CouponEntity> toEntity = coupon ->
+                CouponEntity.builder().id(coupon.getId()).code(coupon.getCode()).build();
+        when(couponEntityMapper.toDomainObject(any(CouponEntity.class)))
+                .thenAnswer(invocation -> byCode.get(invocation.<CouponEntity>getArgument(0).getCode()));
+        when(jpaCouponRepository.findAll(any(Specification.class)))
+                .thenAnswer(invocation -> ruleBased.stream().map(toEntity).toList());
+        when(jpaCouponRepository.findAvailableByDiscount(any(), any(), any(), anyInt(), anyInt(), anyLong()))
+                .thenAnswer(invocation -> {
+                    Sort.Direction direction = invocation.<Integer>getArgument(3) > 0 ? Sort.Direction.DESC : Sort.Direction.ASC;
+                    return ranked.stream()
+                            .sorted(ranking(direction))
+                            .skip(invocation.<Long>getArgument(5))
+                            .limit(invocation.<Integer>getArgument(4))
+                            .map(toEntity)
+                            .toList();
+                });
+
+        List<Coupon> all = new ArrayList<>(ranked);
+        all.addAll(ruleBased);
+        return all;
+    }
+
+    private static Comparator<Coupon> ranking(Sort.Direction direction) {
+        Comparator<Coupon> byDiscount = Comparator.comparing(coupon -> coupon.calculateDiscount(ORDER_AMOUNT));
+        return (direction.isDescending() ? byDiscount.reversed() : byDiscount).thenComparing(Coupon::getId);
+    }
+
+    private static String codes(List<Coupon> coupons) {
+        return coupons.stream().map(Coupon::getCode).collect(Collectors.joining(","));
+    }
+
+    private static Coupon coupon(int remainingUsage) {
+        LocalDateTime now = LocalDateTime.now();
+        return new Coupon(1L, "FLASH", "Flash sale", "Flash sale", DiscountType.FIXED, UsageType.AUTO,
+                new BigDecimal("10000"), new BigDecimal("10000"), BigDecimal.ZERO,
+                now.minusHours(1), now.plusHours(1), remainingUsage);
+    }
+
+}
@@ -0,0 +1,145 @@
+package vn.zaloppay.couponservice.infra.repository.count;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.redisson.api.RAtomicLong;
+import org.redisson.api.RedissonClient;
+
+import vn.zaloppay.couponservice.domain.util.CacheKey;
+import vn.zaloppay.couponservice.infra.repository.JpaCouponRepository;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CouponCountCacheTest {
+
+    @Mock
+    private JpaCouponRepository jpaCouponRepository;
+
+    @Mock
+    private RedissonClient redissonClient;
+
+    @Mock
+    private RAtomicLong generation;
+
+    private CouponCountProperties properties;
+
+    private CouponCountCache couponCountCache;
+
+    @BeforeEach
+    void setUp() {
+        properties = new CouponCountProperties();
+        couponCountCache = new CouponCountCache(properties, jpaCouponRepository, redissonClient);
+        lenient().when(redissonClient.getAtomicLong(CacheKey.couponCountGeneration())).thenReturn(generation);
+    }
+
+    @Test
+    void count_ShouldCountOnceUntilInvalidated() {
+        // Given
+        AtomicLong counted = new AtomicLong();
+
+        // When
+        long first = couponCountCache.count("all", counted::incrementAndGet);
+        long second = couponCountCache.count("all", counted::incrementAndGet);
+        couponCountCache.invalidate();
+        long third = couponCountCache.count("all", counted::incrementAndGet);
+
+        // Then
+        assertEquals(1, first);
+        assertEquals(1, second);
+        assertEquals(2, third);
+        verify(generation).incrementAndGet();
+    }
+
+    @Test
+    void count_AfterAWriteOnAnotherInstance_ShouldCountAgain() {
+        // Given
+        AtomicLong counted = new AtomicLong();
+        when(generation.get()).thenReturn(1L, 1L, 2L);
+
+        // When
+        couponCountCache.count("all", counted::incrementAndGet);
+        couponCountCache.count("all", counted::incrementAndGet);
+        long third = couponCountCache.count("all", counted::incrementAndGet);
+
+        // Then
+        assertEquals(2, third);
+    }
+
+    @Test
+    void refresh_ShouldCountReadTotalsAgainAndDropTheOthers() {
+        // Given
+        AtomicLong read = new AtomicLong();
+        AtomicLong unread = new AtomicLong();
+        couponCountCache.count("read", read::incrementAndGet);
+        couponCountCache.count("unread", unread::incrementAndGet);
+        couponCountCache.refresh();
+        couponCountCache.count("read", read::incrementAndGet);
+
+        // When
+        couponCountCache.refresh();
+
+        // Then: the read total was counted at each refresh, the other one is counted on its next request
+        assertEquals(2, read.get());
+        assertEquals(3, couponCountCache.count("read", read::incrementAndGet));
+        assertEquals(2, couponCountCache.count("unread", unread::incrementAndGet));
+    }
+
+    @Test
+    void count_BeyondMaxEntries_ShouldCountEveryRequest() {
+        // Given
+        properties.setMaxEntries(1);
+        AtomicLong counted = new AtomicLong();
+        couponCountCache.count("first", () -> 0);
+
+        // When
+        couponCountCache.count("second", counted::incrementAndGet);
+        couponCountCache.count("second", counted::incrementAndGet);
+
+        // Then
+        assertEquals(2, counted.get());
+    }
+
+    @Test
+    void bucketOf_ShouldGroupAmountsBetweenMinimumOrderValues() {
+        // Given
+        when(jpaCouponRepository.findMinOrderValues(any(LocalDateTime.class), isNull()))
+                .thenReturn(List.of(new BigDecimal("0.00"), new BigDecimal("100000.00"), new BigDecimal("500000.00")));
+
+        // Then
+        assertEquals(couponCountCache.bucketOf(new BigDecimal("100000")), couponCountCache.bucketOf(new BigDecimal("499999.99")));
+        assertEquals("100000.00", couponCountCache.bucketOf(new BigDecimal("250000")));
+        assertNotEquals(couponCountCache.bucketOf(new BigDecimal("99999")), couponCountCache.bucketOf(new BigDecimal("100000")));
+        assertEquals("500000.00", couponCountCache.bucketOf(new BigDecimal("9000000")));
+        assertEquals("-", couponCountCache.bucketOf(new BigDecimal("-1")));
+        assertEquals("*", couponCountCache.bucketOf(null));
+        verify(jpaCouponRepository, times(1)).findMinOrderValues(any(LocalDateTime.class), isNull());
+    }
+
+    @Test
+    void bucketOf_AfterInvalidate_ShouldReloadMinimumOrderValues() {
+        // Given: a coupon with a new minimum order value is written
+        when(jpaCouponRepository.findMinOrderValues(any(LocalDateTime.class), isNull()))
+                .thenReturn(List.of(new BigDecimal("0.00")))
+                .thenReturn(List.of(new BigDecimal("0.00"), new BigDecimal("200000.00")));
+        assertEquals("0.00", couponCountCache.bucketOf(new BigDecimal("300000")));
+
+        // When
+        couponCountCache.invalidate();
+
+        // Then
+        assertEquals("200000.00", couponCountCache.bucketOf(new BigDecimal("300000")));
+        assertEquals("0.00", couponCountCache.bucketOf(new BigDecimal("100000")));
+    }
+
+}
@@ -0,0 +1,109 @@
+package vn.zaloppay.couponservice.infra.repository.index;
+
+import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.RepetitionInfo;
+
+import vn.zaloppay.couponservice.domain.model.Coupon;
+import vn.zaloppay.couponservice.domain.model.UsageType;
+import vn.zaloppay.couponservice.domain.model.discount.DiscountType;
+import vn.zaloppay.couponservice.domain.util.MinorUnits;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The envelope must answer the highest discount a brute force evaluation of every coupon finds, including
+ * once coupons leave it the way the in-memory index handles it: rebuilt for a winner, kept as is otherwise.
+ */
+class BestCouponEnvelopeTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.now();
+
+    // Few distinct minimum order values, so that many coupons share one
+    private static final long[] MIN_ORDER_VALUES = {0, 10_000, 25_000, 50_000, 100_000};
+
+    @RepeatedTest(50)
+    void best_ForRandomCoupons_ShouldMatchBruteForceMaximum(RepetitionInfo repetitionInfo) {
+        // Given
+        Random random = new Random(repetitionInfo.getCurrentRepetition());
+        List<IndexedCoupon> coupons = new ArrayList<>();
+        for (int i = 0; i < 1 + random.nextInt(30); i++) {
+            coupons.add(IndexedCoupon.of(randomCoupon("C" + i, random)));
+        }
+        BestCouponEnvelope envelope = BestCouponEnvelope.build(coupons);
+
+        // When & Then
+        assertMatchesBruteForce(envelope, coupons, random);
+
+        // When: coupons leave one by one, winners or not
+        while (!coupons.isEmpty()) {
+            IndexedCoupon removed = coupons.remove(random.nextInt(coupons.size()));
+            if (envelope.isWinner(removed.coupon().getCode())) {
+                envelope = BestCouponEnvelope.build(coupons);
+            }
+
+            // Then
+            assertMatchesBruteForce(envelope, coupons, random);
+        }
+    }
+
+    private static void assertMatchesBruteForce(BestCouponEnvelope envelope, List<IndexedCoupon> coupons, Random random) {
+        List<Long> amounts = new ArrayList<>();
+        for (long minOrderValue : MIN_ORDER_VALUES) {
+            amounts.add(minOrderValue);
+            amounts.add(Math.max(0, minOrderValue - 1));
+            amounts.add(minOrderValue + 1);
+        }
+        for (int i = 0; i < 200; i++) {
+            amounts.add((long) random.nextInt(500_000));
+        }
+
+        for (long amount : amounts) {
+            BigDecimal orderAmount = MinorUnits.toAmount(amount);
+            BigDecimal expected = coupons.stream()
+                    .filter(coupon -> coupon.coupon().getMinOrderValue().compareTo(orderAmount) <= 0)
+                    .map(coupon -> coupon.coupon().calculateDiscount(orderAmount))
+                    .max(BigDecimal::compareTo)
+                    .orElse(null);
+
+            IndexedCoupon best = envelope.best(amount);
+
+            if (expected == null) {
+                assertNull(best, () -> "No coupon applies to " + orderAmount);
+            } else {
+                assertNotNull(best, () -> "A coupon applies to " + orderAmount);
+                assertTrue(coupons.contains(best), () -> best.coupon().getCode() + " left the envelope");
+                assertEquals(0, expected.compareTo(best.coupon().calculateDiscount(orderAmount)),
+                        () -> best.coupon().getCode() + " is not the best coupon for " + orderAmount);
+            }
+        }
+    }
+
+    private static Coupon randomCoupon(String code, Random random) {
+        BigDecimal minOrderValue = MinorUnits.toAmount(MIN_ORDER_VALUES[random.nextInt(MIN_ORDER_VALUES.length)]);
+        if (random.nextInt(3) == 0) {
+            return coupon(code, DiscountType.FIXED, MinorUnits.toAmount(random.nextInt(30_000)), null, minOrderValue);
+        }
+
+        // Percent coupons, capped below, around or well above the discount of the amounts looked up, or uncapped
+        BigDecimal percent = MinorUnits.toAmount(1 + random.nextInt(5_000));
+        BigDecimal cap = switch (random.nextInt(4)) {
+            case 0 -> null;
+            case 1 -> MinorUnits.toAmount(random.nextInt(1_000));
+            default -> MinorUnits.toAmount(random.nextInt(100_000));
+        };
+        return coupon(code, DiscountType.PERCENT, percent, cap, minOrderValue);
+    }
+
+    private static Coupon coupon(String code, DiscountType discountType, BigDecimal discountValue,
+                                 BigDecimal maxDiscountAmount, BigDecimal minOrderValue) {
+        return new Coupon((long) code.hashCode(), code, code, code, discountType, UsageType.AUTO,
+                discountValue, maxDiscountAmount, minOrderValue, NOW.minusHours(1), NOW.plusHours(1), 10);
+    }
+
+}
@@ -0,0 +1,193 @@
+package vn.zaloppay.couponservice.infra.repository.index;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.redisson.api.RTopic;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.data.jpa.domain.Specification;
+
+import vn.zaloppay.couponservice.domain.model.Coupon;
+import vn.zaloppay.couponservice.domain.model.UsageType;
+import vn.zaloppay.couponservice.domain.model.discount.DiscountType;
+import vn.zaloppay.couponservice.domain.service.ISoldOutRegistry;
+import vn.zaloppay.couponservice.domain.util.CacheKey;
+import vn.zaloppay.couponservice.infra.model.CouponEntity;
+import vn.zaloppay.couponservice.infra.repository.CouponEntityMapper;
+import vn.zaloppay.couponservice.infra.repository.JpaCouponRepository;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class InMemoryCouponIndexTest {
+
+    private static final BigDecimal ORDER_AMOUNT = new BigDecimal("500");
+
+    @Mock
+    private JpaCouponRepository jpaCouponRepository;
+
+    @Mock
+    private CouponEntityMapper couponEntityMapper;
+
+    @Mock
+    private ISoldOutRegistry soldOutRegistry;
+
+    @Mock
+    private RedissonClient redissonClient;
+
+    @Mock
+    private RTopic topic;
+
+    private InMemoryCouponIndex couponIndex;
+
+    private LocalDateTime now;
+
+    @BeforeEach
+    void setUp() {
+        now = LocalDateTime.now();
+        couponIndex = new InMemoryCouponIndex(jpaCouponRepository, couponEntityMapper, soldOutRegistry, redissonClient);
+        lenient().when(redissonClient.getTopic(CacheKey.couponIndexTopic(), StringCodec.INSTANCE)).thenReturn(topic);
+    }
+
+    @Test
+    void findEligible_AsTimeGoesBy_ShouldSweepCouponsInAndOutAtTheirStartAndEndTimes() {
+        // Given
+        Coupon running = coupon("RUNNING", "10", now.minusHours(1), now.plusHours(1));
+        Coupon upcoming = coupon("UPCOMING", "20", now.plusHours(2), now.plusHours(4));
+        loads(running, upcoming);
+
+        // When & Then
+        assertEquals(List.of("RUNNING"), eligibleCodes(now));
+        assertEquals(List.of(), eligibleCodes(now.plusMinutes(90)));
+        assertEquals(List.of("UPCOMING"), eligibleCodes(now.plusHours(3)));
+        assertEquals("UPCOMING", couponIndex.findBest(ORDER_AMOUNT, now.plusHours(3), null).getCode());
+        assertEquals(List.of(), eligibleCodes(now.plusHours(5)));
+        verify(jpaCouponRepository, times(1)).findAll(any(Specification.class));
+    }
+
+    @Test
+    void refresh_WithChangesWhileLoading_ShouldReplayThemOnReloadedIndex() {
+        // Given: A is sold out and C created while the refresh reads rows still listing A but not C
+        Coupon a = coupon("A", "10", now.minusHours(1), now.plusHours(1));
+        Coupon b = coupon("B", "20", now.minusHours(1), now.plusHours(1));
+        Coupon c = coupon("C", "30", now.minusHours(1), now.plusHours(1));
+        CouponEntity aEntity = entity(a);
+        CouponEntity bEntity = entity(b);
+        when(jpaCouponRepository.findAll(any(Specification.class)))
+                .thenReturn(List.of(aEntity, bEntity))
+                .thenAnswer(invocation -> {
+                    couponIndex.markSoldOut("A");
+                    couponIndex.upsert(c);
+                    return List.of(aEntity, bEntity);
+                });
+        assertEquals(List.of("A", "B"), eligibleCodes(now));
+
+        // When
+        couponIndex.refresh();
+
+        // Then
+        assertEquals(List.of("B", "C"), eligibleCodes(now));
+        assertEquals("C", couponIndex.findBest(ORDER_AMOUNT, now, null).getCode());
+    }
+
+    @Test
+    void markAvailable_AfterSoldOut_ShouldBringCouponBack() {
+        // Given
+        Coupon best = coupon("BEST", "50", now.minusHours(1), now.plusHours(1));
+        Coupon other = coupon("OTHER", "10", now.minusHours(1), now.plusHours(1));
+        loads(best, other);
+        assertEquals("BEST", couponIndex.findBest(ORDER_AMOUNT, now, null).getCode());
+
+        // When & Then
+        couponIndex.markSoldOut("BEST");
+        assertEquals("OTHER", couponIndex.findBest(ORDER_AMOUNT, now, null).getCode());
+        assertEquals(List.of("OTHER"), eligibleCodes(now));
+
+        couponIndex.markAvailable("BEST");
+        assertEquals("BEST", couponIndex.findBest(ORDER_AMOUNT, now, null).getCode());
+        assertEquals(List.of("BEST", "OTHER"), eligibleCodes(now));
+    }
+
+    @Test
+    void refresh_WithCouponSoldOutInRegistry_ShouldKeepItOutDespiteItsRow() {
+        // Given: the row of a write-behind store still shows usage
+        Coupon soldOut = coupon("SOLDOUT", "50", now.minusHours(1), now.plusHours(1));
+        Coupon other = coupon("OTHER", "10", now.minusHours(1), now.plusHours(1));
+        loads(soldOut, other);
+        when(soldOutRegistry.isSoldOut("SOLDOUT")).thenReturn(true);
+
+        // When
+        couponIndex.refresh();
+
+        // Then
+        assertEquals(List.of("OTHER"), eligibleCodes(now));
+    }
+
+    @Test
+    void upsert_ShouldTellTheOtherInstancesOfTheCouponWritten() {
+        // When
+        couponIndex.upsert(coupon("NEW", "10", now.minusHours(1), now.plusHours(1)));
+        couponIndex.remove("OLD");
+
+        // Then
+        verify(topic).publish("NEW");
+        verify(topic).publish("OLD");
+    }
+
+    @Test
+    void reload_ShouldApplyTheCouponAsItsRowReads() {
+        // Given: UPDATED got a better discount and DELETED was deleted on another instance
+        Coupon updated = coupon("UPDATED", "10", now.minusHours(1), now.plusHours(1));
+        Coupon deleted = coupon("DELETED", "20", now.minusHours(1), now.plusHours(1));
+        loads(updated, deleted);
+        assertEquals("DELETED", couponIndex.findBest(ORDER_AMOUNT, now, null).getCode());
+        CouponEntity updatedEntity = entity(coupon("UPDATED", "30", now.minusHours(1), now.plusHours(1)));
+        when(jpaCouponRepository.findByCode("UPDATED")).thenReturn(Optional.of(updatedEntity));
+        when(jpaCouponRepository.findByCode("DELETED")).thenReturn(Optional.empty());
+
+        // When
+        couponIndex.reload("UPDATED");
+        couponIndex.reload("DELETED");
+
+        // Then
+        assertEquals(List.of("UPDATED"), eligibleCodes(now));
+        assertEquals(new BigDecimal("30"), couponIndex.findBest(ORDER_AMOUNT, now, null).getDiscountValue());
+        verify(topic, never()).publish(anyString());
+    }
+
+    private void loads(Coupon... coupons) {
+        List<CouponEntity> entities = Arrays.stream(coupons).map(this::entity).toList();
+        when(jpaCouponRepository.findAll(any(Specification.class))).thenReturn(entities);
+    }
+
+    private CouponEntity entity(Coupon coupon) {
+        CouponEntity entity = CouponEntity.builder().id(coupon.getId()).code(coupon.getCode()).build();
+        when(couponEntityMapper.toDomainObject(entity)).thenReturn(coupon);
+        return entity;
+    }
+
+    private List<String> eligibleCodes(LocalDateTime time) {
+        return couponIndex.findEligible(ORDER_AMOUNT, time, null).stream()
+                .map(Coupon::getCode)
+                .sorted()
+                .toList();
+    }
+
+    private static Coupon coupon(String code, String discountValue, LocalDateTime startTime, LocalDateTime endTime) {
+        return new Coupon((long) code.hashCode(), code, code, code, DiscountType.FIXED, UsageType.AUTO,
+                new BigDecimal(discountValue), new BigDecimal(discountValue), new BigDecimal("100"),
+                startTime, endTime, 10);
+    }
+
+}
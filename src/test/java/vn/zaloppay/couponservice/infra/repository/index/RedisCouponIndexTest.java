@@ -0,0 +1,216 @@
+package vn.zaloppay.couponservice.infra.repository.index;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.redisson.api.RBatch;
+import org.redisson.api.RBucket;
+import org.redisson.api.RMap;
+import org.redisson.api.RScript;
+import org.redisson.api.RScriptAsync;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.data.jpa.domain.Specification;
+
+import vn.zaloppay.couponservice.domain.model.Coupon;
+import vn.zaloppay.couponservice.domain.model.UsageType;
+import vn.zaloppay.couponservice.domain.model.discount.DiscountType;
+import vn.zaloppay.couponservice.domain.util.CacheKey;
+import vn.zaloppay.couponservice.infra.model.CouponEntity;
+import vn.zaloppay.couponservice.infra.repository.CouponEntityMapper;
+import vn.zaloppay.couponservice.infra.repository.JpaCouponRepository;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class RedisCouponIndexTest {
+
+    private static final BigDecimal ORDER_AMOUNT = new BigDecimal("500");
+
+    @Mock
+    private RedissonClient redissonClient;
+
+    @Mock
+    private JpaCouponRepository jpaCouponRepository;
+
+    @Mock
+    private CouponEntityMapper couponEntityMapper;
+
+    @Mock
+    private RScript script;
+
+    @Mock
+    private RBucket<String> rebuildClaim;
+
+    // Time and constructor parameter name modules, as Spring Boot registers them
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+    private RedisCouponIndex couponIndex;
+
+    private LocalDateTime now;
+
+    @BeforeEach
+    void setUp() {
+        now = LocalDateTime.now().withNano(0);
+        couponIndex = new RedisCouponIndex(redissonClient, objectMapper, jpaCouponRepository, couponEntityMapper,
+                Duration.ofSeconds(30));
+        lenient().when(redissonClient.getScript(StringCodec.INSTANCE)).thenReturn(script);
+        lenient().when(redissonClient.<String>getBucket(CacheKey.couponIndexRebuilt(), StringCodec.INSTANCE))
+                .thenReturn(rebuildClaim);
+        // Pruning ended coupons
+        lenient().when(script.eval(eq(RScript.Mode.READ_WRITE), anyString(), eq(RScript.ReturnType.INTEGER),
+                eq(RedisCouponIndex.ALL_KEYS), anyString())).thenReturn(0L);
+    }
+
+    @Test
+    void refresh_WhenClaimed_ShouldLeaveCouponsChangedMeanwhileToTheirOwnWrites() {
+        // Given
+        Coupon coupon = coupon("A", DiscountType.FIXED, "10", now.minusHours(1), now.plusHours(1));
+        CouponEntity entity = entity(coupon);
+        when(rebuildClaim.setIfAbsent(anyString(), any(Duration.class))).thenReturn(true);
+        when(jpaCouponRepository.findAll(any(Specification.class))).thenReturn(List.of(entity));
+        RMap<String, String> data = mock();
+        when(redissonClient.<String, String>getMap(CacheKey.couponIndexData(), StringCodec.INSTANCE)).thenReturn(data);
+        when(data.readAllKeySet()).thenReturn(Set.of("A", "DELETED"));
+        RBatch batch = mock();
+        RScriptAsync writes = mock();
+        when(redissonClient.createBatch()).thenReturn(batch);
+        when(batch.getScript(StringCodec.INSTANCE)).thenReturn(writes);
+
+        // When
+        couponIndex.refresh();
+
+        // Then: changes are recorded before the rows are read, and the rebuild writes skip them
+        InOrder inOrder = inOrder(script, jpaCouponRepository, batch);
+        inOrder.verify(script).eval(eq(RScript.Mode.READ_WRITE), anyString(), eq(RScript.ReturnType.INTEGER),
+                eq(List.of(CacheKey.couponIndexChanges())), eq("30000"));
+        inOrder.verify(jpaCouponRepository).findAll(any(Specification.class));
+        inOrder.verify(batch).execute();
+        inOrder.verify(script).eval(eq(RScript.Mode.READ_WRITE), anyString(), eq(RScript.ReturnType.INTEGER),
+                eq(List.of(CacheKey.couponIndexChanges(), CacheKey.couponIndexBuilt())), anyString());
+        verify(writes).evalAsync(eq(RScript.Mode.READ_WRITE), anyString(), eq(RScript.ReturnType.INTEGER), anyList(),
+                eq("A"), anyString(), anyString(), eq("100"), anyString(), eq("2"), eq("1"));
+        verify(writes).evalAsync(eq(RScript.Mode.READ_WRITE), anyString(), eq(RScript.ReturnType.INTEGER), anyList(),
+                eq("DELETED"), eq("1"));
+    }
+
+    @Test
+    void findEligible_WithIndexMissing_ShouldLookUpTheDatabase() {
+        // Given: another instance holds the rebuild claim
+        Coupon coupon = coupon("A", DiscountType.FIXED, "10", now.minusHours(1), now.plusHours(1));
+        CouponEntity entity = entity(coupon);
+        when(rebuildClaim.setIfAbsent(anyString(), any(Duration.class))).thenReturn(false);
+        when(script.eval(eq(RScript.Mode.READ_ONLY), anyString(), eq(RScript.ReturnType.MULTI), anyList(), eq("500")))
+                .thenReturn(null);
+        when(jpaCouponRepository.findAll(any(Specification.class))).thenReturn(List.of(entity));
+
+        // When
+        List<Coupon> eligible = couponIndex.findEligible(ORDER_AMOUNT, now, null);
+
+        // Then
+        assertEquals(List.of(coupon), eligible);
+    }
+
+    @Test
+    void findTop_ShouldRankTheCouponsReturnedByTheScriptOnTheirExactDiscount() throws Exception {
+        // Given: the script returns its best coupons along with the rule based ones, then checked again here
+        Coupon fixed = coupon("FIXED", DiscountType.FIXED, "30", now.minusHours(1), now.plusHours(1));
+        Coupon percent = coupon("PERCENT", DiscountType.PERCENT, "10", now.minusHours(1), now.plusHours(1));
+        Coupon step = new Coupon(3L, "STEP", "STEP", "STEP", DiscountType.STEP, UsageType.AUTO, BigDecimal.ZERO,
+                null, new BigDecimal("100"), now.minusHours(1), now.plusHours(1), 10, "0:20;400:40");
+        Coupon ended = coupon("ENDED", DiscountType.FIXED, "90", now.minusHours(2), now.minusHours(1));
+        when(rebuildClaim.setIfAbsent(anyString(), any(Duration.class))).thenReturn(false);
+        List<Object> values = new ArrayList<>();
+        for (Coupon coupon : List.of(fixed, percent, step, ended)) {
+            values.add(objectMapper.writeValueAsString(coupon));
+        }
+        when(script.eval(eq(RScript.Mode.READ_ONLY), anyString(), eq(RScript.ReturnType.MULTI), anyList(),
+                eq("500"), eq("50000"), eq(String.valueOf(epochMilli(now))), eq("2")))
+                .thenReturn(values);
+
+        // When
+        List<Coupon> top = couponIndex.findTop(ORDER_AMOUNT, now, null, 2);
+
+        // Then
+        assertEquals(List.of("PERCENT", "STEP"), top.stream().map(Coupon::getCode).toList());
+    }
+
+    @Test
+    void findTop_WithInexactAmount_ShouldRankEveryEligibleCoupon() throws Exception {
+        // Given
+        Coupon low = coupon("LOW", DiscountType.FIXED, "10", now.minusHours(1), now.plusHours(1));
+        Coupon high = coupon("HIGH", DiscountType.FIXED, "30", now.minusHours(1), now.plusHours(1));
+        when(rebuildClaim.setIfAbsent(anyString(), any(Duration.class))).thenReturn(false);
+        when(script.eval(eq(RScript.Mode.READ_ONLY), anyString(), eq(RScript.ReturnType.MULTI), anyList(),
+                eq("500.005")))
+                .thenReturn(List.of(objectMapper.writeValueAsString(low), objectMapper.writeValueAsString(high)));
+
+        // When
+        Coupon best = couponIndex.findBest(new BigDecimal("500.005"), now, null);
+
+        // Then
+        assertEquals("HIGH", best.getCode());
+    }
+
+    @Test
+    void markAvailable_ShouldIndexTheCouponReadBack() {
+        // Given
+        Coupon coupon = coupon("BACK", DiscountType.PERCENT, "10", now.minusHours(1), now.plusHours(1));
+        CouponEntity entity = entity(coupon);
+        when(jpaCouponRepository.findByCode("BACK")).thenReturn(Optional.of(entity));
+
+        // When
+        couponIndex.markAvailable("BACK");
+
+        // Then
+        verify(script).eval(eq(RScript.Mode.READ_WRITE), anyString(), eq(RScript.ReturnType.INTEGER), anyList(),
+                eq("BACK"), anyString(), eq(RedisCouponIndex.termsOf(coupon)), eq("100"), anyString(), eq("2"), eq("0"));
+    }
+
+    @Test
+    void termsOf_ShouldGiveTheDiscountTermsInMinorUnits() {
+        // Given
+        Coupon percent = new Coupon(1L, "PERCENT", "PERCENT", "PERCENT", DiscountType.PERCENT, UsageType.AUTO,
+                new BigDecimal("12.5"), new BigDecimal("40"), new BigDecimal("100"), now.minusHours(1), now.plusHours(1), 10);
+        Coupon step = new Coupon(3L, "STEP", "STEP", "STEP", DiscountType.STEP, UsageType.AUTO, BigDecimal.ZERO,
+                null, new BigDecimal("100"), now.minusHours(1), now.plusHours(1), 10, "0:20;400:40");
+
+        // Then
+        assertEquals(String.join(":", "P", String.valueOf(epochMilli(now.minusHours(1))),
+                String.valueOf(epochMilli(now.plusHours(1))), "10000", "1250", "4000"), RedisCouponIndex.termsOf(percent));
+        assertTrue(RedisCouponIndex.termsOf(step).startsWith("R:"));
+        assertTrue(RedisCouponIndex.termsOf(step).endsWith(":" + Long.MAX_VALUE));
+    }
+
+    private CouponEntity entity(Coupon coupon) {
+        CouponEntity entity = CouponEntity.builder().id(coupon.getId()).code(coupon.getCode()).build();
+        when(couponEntityMapper.toDomainObject(entity)).thenReturn(coupon);
+        return entity;
+    }
+
+    private static long epochMilli(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private static Coupon coupon(String code, DiscountType discountType, String discountValue,
+                                 LocalDateTime startTime, LocalDateTime endTime) {
+        return new Coupon((long) code.hashCode(), code, code, code, discountType, UsageType.AUTO,
+                new BigDecimal(discountValue), null, new BigDecimal("100"), startTime, endTime, 10);
+    }
+
+}
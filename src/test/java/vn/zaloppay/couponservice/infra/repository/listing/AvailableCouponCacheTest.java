@@ -0,0 +1,149 @@
+package vn.zaloppay.couponservice.infra.repository.listing;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.redisson.api.RAtomicLong;
+import org.redisson.api.RAtomicLongAsync;
+import org.redisson.api.RBatch;
+import org.redisson.api.RedissonClient;
+
+import vn.zaloppay.couponservice.domain.model.discount.DiscountType;
+import vn.zaloppay.couponservice.domain.util.CacheKey;
+import vn.zaloppay.couponservice.infra.repository.JpaCouponRepository;
+import vn.zaloppay.couponservice.infra.repository.usage.UsageStore;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AvailableCouponCacheTest {
+
+    @Mock
+    private RedissonClient redissonClient;
+
+    @Mock
+    private JpaCouponRepository jpaCouponRepository;
+
+    @Mock
+    private UsageStore usageStore;
+
+    @Mock
+    private RAtomicLong generation;
+
+    private AvailableCouponCache availableCouponCache;
+
+    private final AtomicInteger loads = new AtomicInteger();
+
+    private LocalDateTime now;
+
+    @BeforeEach
+    void setUp() {
+        now = LocalDateTime.now();
+        availableCouponCache = new AvailableCouponCache(new AvailableCouponCacheProperties(), redissonClient,
+                jpaCouponRepository, usageStore);
+        lenient().when(redissonClient.getAtomicLong(CacheKey.couponAvailableGeneration("ALL"))).thenReturn(generation);
+        lenient().when(jpaCouponRepository.findMinOrderValues(any(LocalDateTime.class), isNull()))
+                .thenReturn(List.of(new BigDecimal("0.00"), new BigDecimal("100000.00"), new BigDecimal("500000.00")));
+        lenient().when(jpaCouponRepository.findNextStartOrEndTime(any(LocalDateTime.class), isNull()))
+                .thenReturn(now.plusMinutes(10));
+    }
+
+    @Test
+    void get_WithAmountsBetweenTheSameMinimumOrderValues_ShouldLoadThePageOnce() {
+        // When
+        get(new BigDecimal("100000"), now);
+        get(new BigDecimal("250000"), now);
+        get(new BigDecimal("499999.99"), now);
+
+        // Then
+        assertEquals(1, loads.get());
+
+        // When: other buckets
+        get(new BigDecimal("99999"), now);
+        get(new BigDecimal("500000"), now);
+
+        // Then
+        assertEquals(3, loads.get());
+    }
+
+    @Test
+    void get_WhenACouponStartsOrEnds_ShouldLoadAgain() {
+        // When
+        get(new BigDecimal("200000"), now);
+        get(new BigDecimal("200000"), now.plusMinutes(9));
+
+        // Then
+        assertEquals(1, loads.get());
+
+        // When: the next coupon of the scope starts or ends
+        get(new BigDecimal("200000"), now.plusMinutes(10));
+
+        // Then
+        assertEquals(2, loads.get());
+        verify(jpaCouponRepository, times(2)).findNextStartOrEndTime(any(LocalDateTime.class), isNull());
+    }
+
+    @Test
+    void get_AfterAChangeOnAnyInstance_ShouldLoadAgain() {
+        // Given
+        when(generation.get()).thenReturn(1L, 1L, 2L);
+
+        // When
+        get(new BigDecimal("200000"), now);
+        get(new BigDecimal("200000"), now);
+        get(new BigDecimal("200000"), now);
+
+        // Then
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void get_WithWriteBehindStore_ShouldNotCache() {
+        // Given
+        when(usageStore.isWriteBehind()).thenReturn(true);
+
+        // When
+        get(new BigDecimal("200000"), now);
+        get(new BigDecimal("200000"), now);
+
+        // Then
+        assertEquals(2, loads.get());
+        verifyNoInteractions(redissonClient);
+    }
+
+    @Test
+    void invalidate_ShouldOnlyBumpTheScopeOfTheDiscountType() {
+        // Given
+        RBatch batch = mock();
+        RAtomicLongAsync all = mock();
+        RAtomicLongAsync percent = mock();
+        when(redissonClient.createBatch()).thenReturn(batch);
+        when(batch.getAtomicLong(CacheKey.couponAvailableGeneration("ALL"))).thenReturn(all);
+        when(batch.getAtomicLong(CacheKey.couponAvailableGeneration("PERCENT"))).thenReturn(percent);
+
+        // When
+        availableCouponCache.invalidate(DiscountType.PERCENT);
+
+        // Then
+        verify(all).incrementAndGetAsync();
+        verify(percent).incrementAndGetAsync();
+        verify(batch, times(2)).getAtomicLong(anyString());
+        verify(batch).execute();
+    }
+
+    private void get(BigDecimal orderAmount, LocalDateTime currentTime) {
+        String page = availableCouponCache.get(orderAmount, null, currentTime, "page|0",
+                () -> "page " + loads.incrementAndGet());
+        assertNotNull(page);
+    }
+
+}
@@ -0,0 +1,199 @@
+package vn.zaloppay.couponservice.infra.repository.usage;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import vn.zaloppay.couponservice.domain.model.Coupon;
+import vn.zaloppay.couponservice.domain.model.UsageType;
+import vn.zaloppay.couponservice.domain.model.discount.DiscountType;
+import vn.zaloppay.couponservice.infra.model.CouponEntity;
+import vn.zaloppay.couponservice.infra.model.CouponUsageShardEntity;
+import vn.zaloppay.couponservice.infra.repository.JpaCouponRepository;
+import vn.zaloppay.couponservice.infra.repository.JpaCouponUsageShardRepository;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class DatabaseUsageStoreTest {
+
+    private static final Long COUPON_ID = 1L;
+
+    private static final String CODE = "FLASH";
+
+    @Mock
+    private JpaCouponRepository jpaCouponRepository;
+
+    @Mock
+    private JpaCouponUsageShardRepository jpaCouponUsageShardRepository;
+
+    private DatabaseUsageStore databaseUsageStore;
+
+    @BeforeEach
+    void setUp() {
+        UsageStoreProperties.Sharding sharding = new UsageStoreProperties.Sharding();
+        sharding.setEnabled(true);
+        sharding.setShardCount(4);
+        sharding.setMinRemainingUsage(1000);
+        databaseUsageStore = new DatabaseUsageStore(jpaCouponRepository, jpaCouponUsageShardRepository, sharding);
+    }
+
+    @Test
+    void reset_WithShardedCoupon_ShouldResplitLockedShardsInPlace() {
+        // Given: the coupon had 8 shards before
+        when(jpaCouponUsageShardRepository.findByCouponIdForUpdate(COUPON_ID)).thenReturn(shards(8, 100));
+
+        // When
+        databaseUsageStore.reset(coupon(4002));
+
+        // Then
+        ArgumentCaptor<List<CouponUsageShardEntity>> saved = ArgumentCaptor.captor();
+        verify(jpaCouponUsageShardRepository).saveAll(saved.capture());
+        assertEquals(List.of(1001, 1001, 1000, 1000),
+                saved.getValue().stream().map(CouponUsageShardEntity::getRemainingUsage).toList());
+
+        ArgumentCaptor<List<CouponUsageShardEntity>> deleted = ArgumentCaptor.captor();
+        verify(jpaCouponUsageShardRepository).deleteAll(deleted.capture());
+        assertEquals(List.of(4, 5, 6, 7), deleted.getValue().stream().map(CouponUsageShardEntity::getShardNo).toList());
+
+        verify(jpaCouponUsageShardRepository, never()).deleteByCouponId(anyLong());
+        verify(jpaCouponRepository).updateUsageShards(COUPON_ID, 4);
+    }
+
+    @Test
+    void reset_BelowShardingThreshold_ShouldDropEveryShard() {
+        // Given
+        when(jpaCouponUsageShardRepository.findByCouponIdForUpdate(COUPON_ID)).thenReturn(shards(4, 100));
+
+        // When
+        databaseUsageStore.reset(coupon(10));
+
+        // Then
+        verify(jpaCouponUsageShardRepository, never()).saveAll(anyList());
+        verify(jpaCouponUsageShardRepository).deleteAll(argThat(dropped -> ((List<?>) dropped).size() == 4));
+        verify(jpaCouponRepository).updateUsageShards(COUPON_ID, 0);
+    }
+
+    @Test
+    void decrement_WithShardedCouponWhenRandomShardIsEmpty_ShouldTakeFromAnotherShard() {
+        // Given
+        when(jpaCouponRepository.findByCode(CODE)).thenReturn(Optional.of(entity(0, 4)));
+        when(jpaCouponUsageShardRepository.decrementRemainingUsage(eq(COUPON_ID), anyInt()))
+                .thenAnswer(invocation -> invocation.<Integer>getArgument(1) == 2 ? 1 : 0);
+        lenient().when(jpaCouponUsageShardRepository.findNonEmptyShardNos(COUPON_ID)).thenReturn(List.of(2));
+
+        // When
+        boolean result = databaseUsageStore.decrement(CODE);
+
+        // Then
+        assertTrue(result);
+        verify(jpaCouponRepository, never()).decrementRemainingUsage(anyString());
+        verify(jpaCouponRepository, never()).clearRemainingUsage(anyLong());
+    }
+
+    @Test
+    void isExhausted_WithShardedCoupon_ShouldSumShardsRatherThanReadRow() {
+        // Given: the row of a sharded coupon is not its counter
+        when(jpaCouponRepository.findByCode(CODE)).thenReturn(Optional.of(entity(0, 4)));
+        when(jpaCouponUsageShardRepository.sumRemainingUsage(COUPON_ID)).thenReturn(3L, 0L);
+
+        // When & Then
+        assertFalse(databaseUsageStore.isExhausted(CODE));
+        assertTrue(databaseUsageStore.isExhausted(CODE));
+    }
+
+    @Test
+    void take_AfterLostRaces_ShouldRetryUntilUsageIsTaken() {
+        // Given: concurrent applies win the race twice, yet usage is still left
+        when(jpaCouponRepository.findByCode(CODE)).thenReturn(Optional.of(entity(5, 0)));
+        when(jpaCouponRepository.decrementRemainingUsage(CODE, 3)).thenReturn(0, 0, 1);
+
+        // When
+        int taken = databaseUsageStore.take(CODE, 3, 0);
+
+        // Then
+        assertEquals(3, taken);
+        verify(jpaCouponRepository, times(3)).decrementRemainingUsage(CODE, 3);
+    }
+
+    @Test
+    void take_AfterLostRaces_ShouldReportNothingTakenOnlyOnceReadShowsNoUsage() {
+        // Given: the usage left shrinks with each lost race, until none is left
+        when(jpaCouponRepository.findByCode(CODE))
+                .thenReturn(Optional.of(entity(5, 0)), Optional.of(entity(2, 0)), Optional.of(entity(0, 0)));
+        when(jpaCouponRepository.decrementRemainingUsage(eq(CODE), anyInt())).thenReturn(0);
+
+        // When
+        int taken = databaseUsageStore.take(CODE, 3, 0);
+
+        // Then
+        assertEquals(0, taken);
+        verify(jpaCouponRepository).decrementRemainingUsage(CODE, 2);
+    }
+
+    @Test
+    void take_DrainingEveryShard_ShouldZeroTheCouponsRow() {
+        // Given
+        when(jpaCouponRepository.findByCode(CODE)).thenReturn(Optional.of(entity(0, 2)));
+        when(jpaCouponUsageShardRepository.findByCouponId(COUPON_ID)).thenReturn(shards(2, 1));
+        when(jpaCouponUsageShardRepository.decrementRemainingUsage(eq(COUPON_ID), anyInt(), eq(1))).thenReturn(1);
+        when(jpaCouponUsageShardRepository.sumRemainingUsage(COUPON_ID)).thenReturn(0L);
+
+        // When
+        int taken = databaseUsageStore.take(CODE, 2, 0);
+
+        // Then: listings read the row
+        assertEquals(2, taken);
+        verify(jpaCouponRepository).clearRemainingUsage(COUPON_ID);
+    }
+
+    @Test
+    void take_WithShardsLeftWithUsage_ShouldKeepTheCouponsRow() {
+        // Given
+        when(jpaCouponRepository.findByCode(CODE)).thenReturn(Optional.of(entity(0, 2)));
+        when(jpaCouponUsageShardRepository.findByCouponId(COUPON_ID)).thenReturn(shards(2, 5));
+        when(jpaCouponUsageShardRepository.decrementRemainingUsage(eq(COUPON_ID), anyInt(), anyInt())).thenReturn(1);
+
+        // When
+        int taken = databaseUsageStore.take(CODE, 3, 0);
+
+        // Then
+        assertEquals(3, taken);
+        verify(jpaCouponUsageShardRepository, never()).sumRemainingUsage(anyLong());
+        verify(jpaCouponRepository, never()).clearRemainingUsage(anyLong());
+    }
+
+    private static List<CouponUsageShardEntity> shards(int shardCount, int remainingUsage) {
+        return IntStream.range(0, shardCount)
+                .mapToObj(shardNo -> new CouponUsageShardEntity(COUPON_ID, shardNo, remainingUsage))
+                .toList();
+    }
+
+    private static CouponEntity entity(int remainingUsage, int usageShards) {
+        return CouponEntity.builder()
+                .id(COUPON_ID)
+                .code(CODE)
+                .remainingUsage(remainingUsage)
+                .usageShards(usageShards)
+                .build();
+    }
+
+    private static Coupon coupon(int remainingUsage) {
+        LocalDateTime now = LocalDateTime.now();
+        return new Coupon(COUPON_ID, CODE, "Flash sale", "Flash sale", DiscountType.FIXED, UsageType.AUTO,
+                new BigDecimal("10000"), new BigDecimal("10000"), BigDecimal.ZERO,
+                now.minusHours(1), now.plusHours(1), remainingUsage);
+    }
+
+}
@@ -0,0 +1,115 @@
+package vn.zaloppay.couponservice.infra.repository.usage;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import vn.zaloppay.couponservice.domain.service.ICacheService;
+import vn.zaloppay.couponservice.domain.util.CacheKey;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class GroupCommitUsageStoreTest {
+
+    private static final String CODE = "FLASH";
+
+    private static final int CALLERS = 4;
+
+    @Mock
+    private UsageStore delegate;
+
+    @Mock
+    private ICacheService cacheService;
+
+    private GroupCommitUsageStore groupCommitUsageStore;
+
+    @BeforeEach
+    void setUp() {
+        // A window long enough for the batch to only be committed once full
+        UsageStoreProperties.GroupCommit groupCommit = new UsageStoreProperties.GroupCommit();
+        groupCommit.setWindowMs(5000);
+        groupCommit.setMaxBatchSize(CALLERS);
+        groupCommitUsageStore = new GroupCommitUsageStore(delegate, cacheService, groupCommit);
+    }
+
+    @Test
+    void decrement_WithConcurrentCallers_ShouldTakeTheirUsagesWithOneStatement() throws Exception {
+        // Given
+        when(delegate.take(CODE, CALLERS, 0)).thenReturn(CALLERS);
+
+        // When
+        List<Boolean> results = decrementConcurrently();
+
+        // Then
+        assertEquals(List.of(true, true, true, true), results);
+        verify(delegate, times(1)).take(CODE, CALLERS, 0);
+        verify(delegate, never()).decrement(CODE);
+        verify(cacheService).delete(CacheKey.couponByCode(CODE));
+    }
+
+    @Test
+    void decrement_WithPartialTake_ShouldOnlySucceedForTheUsagesTaken() throws Exception {
+        // Given: only 2 usages were left
+        when(delegate.take(CODE, CALLERS, 0)).thenReturn(2);
+
+        // When
+        List<Boolean> results = decrementConcurrently();
+
+        // Then
+        assertEquals(2, results.stream().filter(Boolean::booleanValue).count());
+        verify(delegate, times(1)).take(CODE, CALLERS, 0);
+    }
+
+    @Test
+    void take_WithUsageTaken_ShouldEvictCachedCoupon() {
+        // Given: the repository leaves the eviction of the coupon to the store
+        when(delegate.take(CODE, 3, 0)).thenReturn(3);
+
+        // When
+        int taken = groupCommitUsageStore.take(CODE, 3, 0);
+
+        // Then
+        assertEquals(3, taken);
+        assertTrue(groupCommitUsageStore.evictsCachedCoupon());
+        verify(cacheService).delete(CacheKey.couponByCode(CODE));
+    }
+
+    @Test
+    void isWriteBehind_ShouldFollowTheDelegate() {
+        // Given: rows are written by the batch statement itself
+        when(delegate.isWriteBehind()).thenReturn(false);
+
+        // Then
+        assertFalse(groupCommitUsageStore.isWriteBehind());
+        assertTrue(groupCommitUsageStore.evictsCachedCoupon());
+    }
+
+    private List<Boolean> decrementConcurrently() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(CALLERS);
+        try {
+            List<Future<Boolean>> futures = new ArrayList<>();
+            for (int i = 0; i < CALLERS; i++) {
+                futures.add(executor.submit(() -> groupCommitUsageStore.decrement(CODE)));
+            }
+
+            List<Boolean> results = new ArrayList<>();
+            for (Future<Boolean> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+}
@@ -0,0 +1,131 @@
+package vn.zaloppay.couponservice.infra.repository.usage;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import vn.zaloppay.couponservice.domain.model.Coupon;
+import vn.zaloppay.couponservice.domain.model.UsageType;
+import vn.zaloppay.couponservice.domain.model.discount.DiscountType;
+import vn.zaloppay.couponservice.domain.service.ICacheService;
+import vn.zaloppay.couponservice.domain.service.ISoldOutRegistry;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class LeasingUsageStoreTest {
+
+    private static final String CODE = "FLASH";
+
+    @Mock
+    private UsageStore delegate;
+
+    @Mock
+    private ICacheService cacheService;
+
+    @Mock
+    private ISoldOutRegistry soldOutRegistry;
+
+    private LeasingUsageStore leasingUsageStore;
+
+    @BeforeEach
+    void setUp() {
+        UsageStoreProperties.Lease lease = new UsageStoreProperties.Lease();
+        lease.setInitialBlockSize(10);
+        lease.setMinRemainingUsage(100);
+        leasingUsageStore = new LeasingUsageStore(delegate, cacheService, soldOutRegistry, lease);
+    }
+
+    @Test
+    void decrement_WithLeaseTaken_ShouldServeBlockLocallyThenRefill() {
+        // Given
+        when(delegate.take(eq(CODE), anyInt(), eq(100))).thenReturn(10);
+
+        // When
+        for (int i = 0; i < 11; i++) {
+            assertTrue(leasingUsageStore.decrement(CODE));
+        }
+
+        // Then: one block served locally, then a second one leased
+        verify(delegate, times(2)).take(eq(CODE), anyInt(), eq(100));
+        verify(delegate, never()).decrement(anyString());
+    }
+
+    @Test
+    void decrement_WithTooLittleUsageToLease_ShouldTakeFromStore() {
+        // Given
+        when(delegate.take(eq(CODE), anyInt(), eq(100))).thenReturn(0);
+        when(delegate.decrement(CODE)).thenReturn(true);
+
+        // When
+        boolean first = leasingUsageStore.decrement(CODE);
+        boolean second = leasingUsageStore.decrement(CODE);
+
+        // Then: no lease attempted again until it expires
+        assertTrue(first);
+        assertTrue(second);
+        verify(delegate, times(1)).take(eq(CODE), anyInt(), anyInt());
+        verify(delegate, times(2)).decrement(CODE);
+    }
+
+    @Test
+    void reset_ShouldStopServingUsagesLeasedBefore() {
+        // Given
+        when(delegate.take(eq(CODE), anyInt(), eq(100))).thenReturn(10);
+        leasingUsageStore.decrement(CODE);
+
+        // When
+        leasingUsageStore.reset(coupon());
+        leasingUsageStore.decrement(CODE);
+
+        // Then: the next apply leases from the new counter, the old usages are neither served nor given back
+        verify(delegate).reset(any(Coupon.class));
+        verify(delegate, times(2)).take(eq(CODE), anyInt(), eq(100));
+        verify(delegate, never()).giveBack(anyString(), anyInt());
+    }
+
+    @Test
+    void isExhausted_WithOutstandingLease_ShouldNotReportSoldOut() {
+        // Given: the shared store ran out while this instance still holds leased usages
+        when(delegate.take(eq(CODE), anyInt(), eq(100))).thenReturn(10);
+        leasingUsageStore.decrement(CODE);
+        lenient().when(delegate.isExhausted(CODE)).thenReturn(true);
+
+        // When & Then
+        assertFalse(leasingUsageStore.isExhausted(CODE));
+    }
+
+    @Test
+    void flush_WhenCouponSoldOutElsewhere_ShouldGiveLeasedUsagesBack() {
+        // Given
+        when(delegate.take(eq(CODE), anyInt(), eq(100))).thenReturn(10);
+        leasingUsageStore.decrement(CODE);
+        when(soldOutRegistry.isSoldOut(CODE)).thenReturn(true);
+
+        // When
+        leasingUsageStore.flush();
+
+        // Then
+        verify(delegate).giveBack(CODE, 9);
+        verify(soldOutRegistry).clear(CODE);
+
+        // Nothing is left on this instance either
+        when(delegate.isExhausted(CODE)).thenReturn(true);
+        assertTrue(leasingUsageStore.isExhausted(CODE));
+    }
+
+    private static Coupon coupon() {
+        LocalDateTime now = LocalDateTime.now();
+        return new Coupon(1L, CODE, "Flash sale", "Flash sale", DiscountType.FIXED, UsageType.AUTO,
+                new BigDecimal("10000"), new BigDecimal("10000"), BigDecimal.ZERO,
+                now.minusHours(1), now.plusHours(1), 5000);
+    }
+
+}
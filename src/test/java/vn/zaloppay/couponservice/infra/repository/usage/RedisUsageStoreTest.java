@@ -0,0 +1,215 @@
+package vn.zaloppay.couponservice.infra.repository.usage;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.redisson.api.RBatch;
+import org.redisson.api.RBucket;
+import org.redisson.api.RBucketAsync;
+import org.redisson.api.RFuture;
+import org.redisson.api.RKeys;
+import org.redisson.api.RScript;
+import org.redisson.api.RSet;
+import org.redisson.api.RedissonClient;
+import org.redisson.api.options.KeysScanOptions;
+import org.redisson.client.codec.LongCodec;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import vn.zaloppay.couponservice.domain.exceptions.ConflictException;
+import vn.zaloppay.couponservice.domain.model.Coupon;
+import vn.zaloppay.couponservice.domain.model.UsageType;
+import vn.zaloppay.couponservice.domain.model.discount.DiscountType;
+import vn.zaloppay.couponservice.domain.service.ICacheService;
+import vn.zaloppay.couponservice.domain.service.IDistributedLockService;
+import vn.zaloppay.couponservice.domain.util.CacheKey;
+import vn.zaloppay.couponservice.infra.model.CouponEntity;
+import vn.zaloppay.couponservice.infra.repository.JpaCouponRepository;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class RedisUsageStoreTest {
+
+    private static final String CODE = "FLASH";
+
+    @Mock
+    private RedissonClient redissonClient;
+
+    @Mock
+    private JpaCouponRepository jpaCouponRepository;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private ICacheService cacheService;
+
+    @Mock
+    private IDistributedLockService lockService;
+
+    @Mock
+    private RScript script;
+
+    @Mock
+    private RBucket<Long> counter;
+
+    @Mock
+    private RSet<String> counterCodes;
+
+    @InjectMocks
+    private RedisUsageStore redisUsageStore;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(redissonClient.getScript(LongCodec.INSTANCE)).thenReturn(script);
+        lenient().when(redissonClient.<Long>getBucket(CacheKey.couponUsage(CODE), LongCodec.INSTANCE)).thenReturn(counter);
+        lenient().when(redissonClient.<String>getSet(CacheKey.couponUsageCounters(), StringCodec.INSTANCE)).thenReturn(counterCodes);
+        lenient().when(lockService.executeWithLock(anyString(), any(), any(), any()))
+                .thenAnswer(invocation -> invocation.<Supplier<?>>getArgument(3).get());
+    }
+
+    @Test
+    void decrement_WithCounterNeverCreated_ShouldSeedItFromDatabase() {
+        // Given
+        when(script.eval(any(RScript.Mode.class), anyString(), any(RScript.ReturnType.class), anyList()))
+                .thenReturn(-1L, 1L);
+        when(counterCodes.contains(CODE)).thenReturn(false);
+        when(jpaCouponRepository.findByCode(CODE)).thenReturn(Optional.of(entity(10)));
+
+        // When
+        boolean result = redisUsageStore.decrement(CODE);
+
+        // Then
+        assertTrue(result);
+        verify(counter).setIfAbsent(10L);
+        verify(counterCodes).add(CODE);
+    }
+
+    @Test
+    void decrement_WithCounterLost_ShouldRejectWithoutSeedingFromDatabase() {
+        // Given: the counter was created once, the row lags behind the decrements it took
+        when(script.eval(any(RScript.Mode.class), anyString(), any(RScript.ReturnType.class), anyList()))
+                .thenReturn(-1L);
+        when(counterCodes.contains(CODE)).thenReturn(true);
+
+        // When
+        boolean result = redisUsageStore.decrement(CODE);
+
+        // Then
+        assertFalse(result);
+        verify(jpaCouponRepository, never()).findByCode(anyString());
+        verify(counter, never()).setIfAbsent(anyLong());
+    }
+
+    @Test
+    void flush_WhileAnotherInstanceFlushes_ShouldWriteCounterOnNextFlush() {
+        // Given
+        when(script.eval(any(RScript.Mode.class), anyString(), any(RScript.ReturnType.class), anyList()))
+                .thenReturn(1L);
+        redisUsageStore.decrement(CODE);
+        stubCounterReads(7L);
+        when(lockService.executeWithLock(eq(CacheKey.couponUsageFlushLock()), any(), any(), any()))
+                .thenThrow(new ConflictException("Resource is being processed by another request, please try again"))
+                .thenAnswer(invocation -> invocation.<Supplier<?>>getArgument(3).get());
+
+        // When
+        redisUsageStore.flush();
+        redisUsageStore.flush();
+
+        // Then
+        ArgumentCaptor<List<Object[]>> batchArgs = ArgumentCaptor.captor();
+        verify(jdbcTemplate, times(1)).batchUpdate(anyString(), batchArgs.capture());
+        assertArrayEquals(new Object[]{7L, CODE}, batchArgs.getValue().get(0));
+    }
+
+    @Test
+    void flush_WithNothingDecremented_ShouldNotTakeFlushLock() {
+        // When
+        redisUsageStore.flush();
+
+        // Then
+        verifyNoInteractions(lockService, jdbcTemplate);
+    }
+
+    @Test
+    void reset_ShouldOverwriteCounterUnderFlushLock() {
+        // Given
+        when(lockService.executeWithLock(eq(CacheKey.couponUsageFlushLock()), any(), any(), any())).thenReturn(null);
+
+        // When
+        redisUsageStore.reset(coupon(25));
+
+        // Then: nothing is written unless the lock is held
+        verify(counter, never()).set(anyLong());
+
+        // Given
+        when(lockService.executeWithLock(eq(CacheKey.couponUsageFlushLock()), any(), any(), any()))
+                .thenAnswer(invocation -> invocation.<Supplier<?>>getArgument(3).get());
+
+        // When
+        redisUsageStore.reset(coupon(25));
+
+        // Then
+        verify(counter).set(25L);
+        verify(counterCodes).add(CODE);
+    }
+
+    @Test
+    void reconcile_WithCounterLost_ShouldNotRecreateIt() {
+        // Given
+        RKeys keys = mock(RKeys.class);
+        when(redissonClient.getKeys()).thenReturn(keys);
+        when(keys.getKeys(any(KeysScanOptions.class))).thenReturn(Collections.emptyList());
+        when(counterCodes.readAll()).thenReturn(Set.of(CODE));
+
+        // When
+        redisUsageStore.reconcile();
+
+        // Then
+        verify(counter, never()).set(anyLong());
+        verify(counter, never()).setIfAbsent(anyLong());
+        verifyNoInteractions(jdbcTemplate, jpaCouponRepository);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void stubCounterReads(Long value) {
+        RBatch batch = mock(RBatch.class);
+        RBucketAsync<Long> asyncCounter = mock(RBucketAsync.class);
+        RFuture<Long> future = mock(RFuture.class);
+        when(redissonClient.createBatch()).thenReturn(batch);
+        when(batch.<Long>getBucket(CacheKey.couponUsage(CODE), LongCodec.INSTANCE)).thenReturn(asyncCounter);
+        when(asyncCounter.getAsync()).thenReturn(future);
+        when(future.toCompletableFuture()).thenReturn(CompletableFuture.completedFuture(value));
+    }
+
+    private static CouponEntity entity(int remainingUsage) {
+        CouponEntity entity = new CouponEntity();
+        entity.setCode(CODE);
+        entity.setRemainingUsage(remainingUsage);
+        return entity;
+    }
+
+    private static Coupon coupon(int remainingUsage) {
+        LocalDateTime now = LocalDateTime.now();
+        return new Coupon(1L, CODE, "Flash sale", "Flash sale", DiscountType.FIXED, UsageType.AUTO,
+                new BigDecimal("10000"), new BigDecimal("10000"), BigDecimal.ZERO,
+                now.minusHours(1), now.plusHours(1), remainingUsage);
+    }
+
+}